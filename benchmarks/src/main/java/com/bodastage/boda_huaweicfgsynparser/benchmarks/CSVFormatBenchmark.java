@@ -0,0 +1,64 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser.benchmarks;
+
+import com.bodastage.boda_huaweicfgsynparser.CSVRow;
+import com.bodastage.boda_huaweicfgsynparser.HuaweiCfgSynParser;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Formatting of parameter values as csv fields: toCSVFormat against the
+ * single pass escaping of CSVRow used when rows are written.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CSVFormatBenchmark {
+
+    private HuaweiCfgSynParser parser;
+
+    private CSVRow row;
+
+    private String[] values;
+
+    @Setup
+    public void setUp() {
+        parser = new HuaweiCfgSynParser();
+        row = new CSVRow();
+        values = Documents.values();
+    }
+
+    @Benchmark
+    public void toCSVFormat(Blackhole bh) {
+        for (String value : values) {
+            bh.consume(parser.toCSVFormat(value));
+        }
+    }
+
+    @Benchmark
+    public int appendValue() {
+        row.clear();
+        for (String value : values) {
+            row.appendValue(value);
+        }
+        return row.length();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser.benchmarks;
+
+import com.bodastage.boda_huaweicfgsynparser.CorpusGenerator;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * In memory syn backup documents for the benchmarks, written by the corpus
+ * generator with a fixed seed.
+ *
+ * A document has a syndata per node with a number of MO instances spread
+ * over eight MO classes. Parameter values are mostly short numbers and names,
+ * some with commas and double quotes, and some parameters are followed by a
+ * comment holding the translated value, as in real dumps.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public final class Documents {
+
+    private static final int MO_CLASSES = 8;
+
+    private Documents() {
+    }
+
+    /**
+     * Build a document.
+     *
+     * @param nodes Number of syndata elements
+     * @param instances MO instances per node
+     * @param parameters Parameters per MO instance
+     * @return byte[] UTF-8 document
+     */
+    public static byte[] build(int nodes, int instances, int parameters) {
+        CorpusGenerator generator = new CorpusGenerator();
+        generator.setNodes(nodes);
+        generator.setMOClasses(MO_CLASSES);
+        generator.setInstances(Math.max(1, instances / MO_CLASSES));
+        generator.setParameters(parameters);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            generator.generate(out, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Sample parameter values for the csv formatting benchmarks.
+     *
+     * @return String[]
+     */
+    public static String[] values() {
+        return new String[]{"1", "SITE12_CELL3", "2019-08-13T09:41:59", "a,b,5", "\"q\"3",
+            "0&1&2&3&4&5", "", "ENABLE"};
+    }
+}
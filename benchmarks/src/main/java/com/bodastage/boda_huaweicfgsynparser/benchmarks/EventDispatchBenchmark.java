@@ -0,0 +1,53 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser.benchmarks;
+
+import com.bodastage.boda_huaweicfgsynparser.HuaweiCfgSynParser;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dispatch of start element, character and end element events to the
+ * parser's handlers during parameter extraction, without the XML reader.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EventDispatchBenchmark {
+
+    private List<XMLEvent> events;
+
+    private HuaweiCfgSynParser parser;
+
+    @Setup
+    public void setUp() throws XMLStreamException {
+        events = Events.read(Documents.build(4, 200, 30));
+        parser = new HuaweiCfgSynParser();
+    }
+
+    @Benchmark
+    public HuaweiCfgSynParser dispatch() throws IOException {
+        Events.replay(parser, events);
+        return parser;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser.benchmarks;
+
+import com.bodastage.boda_huaweicfgsynparser.HuaweiCfgSynParser;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Comment;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Pre-read StAX events of a document, replayed into the parser's handlers
+ * the same way the event engine dispatches them. This leaves the XML reader
+ * out of the measurement.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public final class Events {
+
+    private Events() {
+    }
+
+    /**
+     * Read all the events of a document.
+     *
+     * @param document
+     * @return List
+     * @throws XMLStreamException
+     */
+    public static List<XMLEvent> read(byte[] document) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        XMLEventReader reader = factory.createXMLEventReader(new ByteArrayInputStream(document));
+        List<XMLEvent> events = new ArrayList<XMLEvent>();
+        try {
+            while (reader.hasNext()) {
+                events.add(reader.nextEvent());
+            }
+        } finally {
+            reader.close();
+        }
+        return events;
+    }
+
+    /**
+     * Dispatch events to the parser.
+     *
+     * @param parser
+     * @param events
+     * @throws IOException
+     */
+    public static void replay(HuaweiCfgSynParser parser, List<XMLEvent> events)
+            throws IOException {
+        for (int i = 0, n = events.size(); i < n; i++) {
+            XMLEvent event = events.get(i);
+            switch (event.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    parser.startElementEvent(event);
+                    break;
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.CHARACTERS:
+                    parser.characterEvent(event);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    parser.endELementEvent(event);
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    parser.comment(((Comment) event).getText());
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,525 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser.benchmarks;
+
+import com.bodastage.boda_huaweicfgsynparser.CorpusGenerator;
+import com.bodastage.boda_huaweicfgsynparser.HuaweiCfgSynParser;
+import com.bodastage.boda_huaweicfgsynparser.ParserEngines;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+/**
+ * End to end throughput of HuaweiCfgSynParser.parse() on generated corpora.
+ *
+ * Each scenario's corpus is generated once in the work directory and parsed
+ * a number of times. The best run is reported with its MB/s and MO
+ * instances/s, along with the peak heap, the peak resident set size (Linux
+ * only) and the GC time of that run. The report is a csv file. When a
+ * baseline report is given, the runner exits with status 2 if a scenario's
+ * throughput dropped by more than the tolerance.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class MacroBenchmark {
+
+    private static final String REPORT_HEADER = "SCENARIO,ENGINE,THREADS,BYTES,INSTANCES,"
+            + "SECONDS,MB_PER_SECOND,INSTANCES_PER_SECOND,PEAK_HEAP_MB,PEAK_RSS_MB,GC_MS";
+
+    /**
+     * A corpus shape.
+     */
+    static class Scenario {
+
+        final String name;
+
+        final int files;
+
+        final int moClasses;
+
+        final int parameters;
+
+        final int instances;
+
+        Scenario(String name, int files, int moClasses, int parameters, int instances) {
+            this.name = name;
+            this.files = files;
+            this.moClasses = moClasses;
+            this.parameters = parameters;
+            this.instances = instances;
+        }
+    }
+
+    /**
+     * Measurements of a scenario.
+     */
+    static class Result {
+
+        String scenario;
+
+        long bytes;
+
+        long instances;
+
+        double seconds;
+
+        long peakHeap;
+
+        long peakRss;
+
+        long gcMillis;
+
+        double mbPerSecond() {
+            return bytes / (1024.0 * 1024.0) / seconds;
+        }
+
+        double instancesPerSecond() {
+            return instances / seconds;
+        }
+    }
+
+    private File workDirectory;
+
+    private long size = 256L * 1024 * 1024;
+
+    private int repetitions = 3;
+
+    private String engine = "cursor";
+
+    private int threads = 1;
+
+    public void setWorkDirectory(File workDirectory) {
+        this.workDirectory = workDirectory;
+    }
+
+    /**
+     * Set the corpus size of each scenario.
+     *
+     * @param size Bytes
+     */
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public void setRepetitions(int repetitions) {
+        this.repetitions = Math.max(1, repetitions);
+    }
+
+    /**
+     * Set the parsing engine.
+     *
+     * @param engine Name of one of the ParserEngines
+     */
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * The scenarios: one huge file, many small files, wide MOs and many MO
+     * classes.
+     *
+     * @return List
+     */
+    public List<Scenario> getScenarios() {
+        int smallFiles = (int) Math.max(10, Math.min(2000, size / (1024 * 1024)));
+        return Arrays.asList(
+                new Scenario("huge-file", 1, 20, 30, 10),
+                new Scenario("many-small-files", smallFiles, 20, 30, 10),
+                new Scenario("wide-mos", 1, 4, 500, 20),
+                new Scenario("many-classes", 1, 2000, 8, 1));
+    }
+
+    /**
+     * Generate the corpus of a scenario unless it is already in the work
+     * directory.
+     */
+    private File getCorpus(Scenario scenario) throws IOException {
+        File corpus = new File(workDirectory, "corpus" + File.separator + scenario.name + "-" + size);
+        File done = new File(corpus.getPath() + ".complete");
+        if (done.isFile()) {
+            return corpus;
+        }
+
+        System.out.println("Generating " + scenario.name + " corpus...");
+        CorpusGenerator generator = new CorpusGenerator();
+        generator.setMOClasses(scenario.moClasses);
+        generator.setParameters(scenario.parameters);
+        generator.setInstances(scenario.instances);
+        generator.setFileSize(size / scenario.files);
+        if (!corpus.isDirectory() && !corpus.mkdirs()) {
+            throw new IOException("Cannot create " + corpus);
+        }
+        generator.generate(corpus, scenario.files, false);
+        done.createNewFile();
+        return corpus;
+    }
+
+    /**
+     * Run a scenario.
+     *
+     * @param scenario
+     * @return Result of the fastest run
+     * @throws Exception
+     */
+    public Result run(Scenario scenario) throws Exception {
+        File corpus = getCorpus(scenario);
+        File output = new File(workDirectory, "output");
+
+        Result best = null;
+        for (int r = 0; r < repetitions; r++) {
+            clean(output);
+            System.gc();
+            resetPeaks();
+            long gcStart = getGCMillis();
+
+            long start = System.nanoTime();
+            HuaweiCfgSynParser parser = new HuaweiCfgSynParser();
+            parser.setDataSource(corpus.getAbsolutePath());
+            parser.setOutputDirectory(output.getAbsolutePath());
+            parser.setEngine(ParserEngines.fromName(engine));
+            parser.setThreads(threads);
+            parser.parse();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Result result = new Result();
+            result.scenario = scenario.name;
+            result.seconds = seconds;
+            result.gcMillis = getGCMillis() - gcStart;
+            result.peakHeap = getPeakHeap();
+            result.peakRss = getPeakRss();
+            System.out.println(String.format(Locale.ROOT, "%s run %d: %.2f s", scenario.name,
+                    r + 1, seconds));
+
+            if (best == null || result.seconds < best.seconds) {
+                best = result;
+            }
+        }
+
+        best.bytes = getBytes(corpus);
+        best.instances = countRows(output);
+        return best;
+    }
+
+    private static void clean(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+    }
+
+    private static long getBytes(File corpus) {
+        long bytes = 0;
+        File[] files = corpus.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (f.getName().endsWith(".xml")) {
+                    bytes += f.length();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Count the MO instances written, one per csv row.
+     */
+    private static long countRows(File output) throws IOException {
+        long rows = 0;
+        File[] files = output.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (!f.getName().endsWith(".csv") || f.getName().equals("fileFooter.csv")) {
+                    continue;
+                }
+                BufferedReader br = new BufferedReader(new FileReader(f), 64 * 1024);
+                try {
+                    //Skip the header
+                    if (br.readLine() != null) {
+                        while (br.readLine() != null) {
+                            rows++;
+                        }
+                    }
+                } finally {
+                    br.close();
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static void resetPeaks() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+
+        //Reset VmHWM on Linux
+        try {
+            Files.write(Paths.get("/proc/self/clear_refs"), "5".getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            //Not available
+        } catch (SecurityException e) {
+            //Not available
+        }
+    }
+
+    private static long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Peak resident set size from /proc, or -1 where it is not available.
+     */
+    private static long getPeakRss() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"),
+                    StandardCharsets.US_ASCII)) {
+                if (line.startsWith("VmHWM:")) {
+                    String kb = line.substring(6).trim().split("\\s+")[0];
+                    return Long.parseLong(kb) * 1024;
+                }
+            }
+        } catch (IOException e) {
+            //Not available
+        }
+        return -1;
+    }
+
+    private static long getGCMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * Write the report.
+     *
+     * @param results
+     * @param report
+     * @throws IOException
+     */
+    public void writeReport(List<Result> results, File report) throws IOException {
+        PrintWriter pw = new PrintWriter(new FileWriter(report));
+        try {
+            pw.println(REPORT_HEADER);
+            for (Result r : results) {
+                pw.println(String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.3f,%.2f,%.0f,%d,%d,%d",
+                        r.scenario, engine, threads, r.bytes,
+                        r.instances, r.seconds, r.mbPerSecond(), r.instancesPerSecond(),
+                        r.peakHeap / (1024 * 1024), r.peakRss < 0 ? -1 : r.peakRss / (1024 * 1024),
+                        r.gcMillis));
+            }
+        } finally {
+            pw.close();
+        }
+    }
+
+    /**
+     * Read the MB/s of each scenario from a report.
+     *
+     * @param report
+     * @return Map
+     * @throws IOException
+     */
+    public static Map<String, Double> readThroughput(File report) throws IOException {
+        Map<String, Double> throughput = new LinkedHashMap<String, Double>();
+        List<String> lines = Files.readAllLines(report.toPath(), StandardCharsets.UTF_8);
+        if (lines.isEmpty()) {
+            return throughput;
+        }
+
+        List<String> columns = Arrays.asList(lines.get(0).split(","));
+        int scenario = columns.indexOf("SCENARIO");
+        int mbPerSecond = columns.indexOf("MB_PER_SECOND");
+        if (scenario < 0 || mbPerSecond < 0) {
+            throw new IOException("Not a benchmark report: " + report);
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split(",");
+            if (fields.length > Math.max(scenario, mbPerSecond)) {
+                throughput.put(fields[scenario], Double.parseDouble(fields[mbPerSecond]));
+            }
+        }
+        return throughput;
+    }
+
+    /**
+     * Compare the results with a baseline report.
+     *
+     * @param results
+     * @param baseline
+     * @param tolerance Allowed drop in throughput as a percentage
+     * @return List of the regressions, empty if there are none
+     * @throws IOException
+     */
+    public static List<String> compare(List<Result> results, File baseline, double tolerance)
+            throws IOException {
+        Map<String, Double> expected = readThroughput(baseline);
+        List<String> regressions = new ArrayList<String>();
+        for (Result r : results) {
+            Double base = expected.get(r.scenario);
+            if (base == null) {
+                continue;
+            }
+            double change = (r.mbPerSecond() - base) / base * 100;
+            String line = String.format(Locale.ROOT, "%s: %.2f MB/s, baseline %.2f MB/s (%+.1f%%)",
+                    r.scenario, r.mbPerSecond(), base, change);
+            System.out.println(line);
+            if (change < -tolerance) {
+                regressions.add(line);
+            }
+        }
+        return regressions;
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options();
+        options.addOption(Option.builder("w")
+                .longOpt( "work-directory" )
+                .desc( "directory for the generated corpora and the parser output")
+                .hasArg()
+                .argName( "WORK_DIRECTORY" ).build());
+        options.addOption(Option.builder("s")
+                .longOpt( "size" )
+                .desc( "corpus size of each scenario such as 64M or 2G (default 256M)")
+                .hasArg()
+                .argName( "SIZE" ).build());
+        options.addOption(Option.builder("c")
+                .longOpt( "scenarios" )
+                .desc( "comma separated scenarios: huge-file, many-small-files, wide-mos, many-classes (default all)")
+                .hasArg()
+                .argName( "SCENARIOS" ).build());
+        options.addOption(Option.builder("r")
+                .longOpt( "repetitions" )
+                .desc( "runs per scenario, the fastest is reported (default 3)")
+                .hasArg()
+                .argName( "REPETITIONS" ).build());
+        options.addOption(Option.builder("e")
+                .longOpt( "engine" )
+                .desc( "xml parsing engine: cursor (default), event or scanner")
+                .hasArg()
+                .argName( "ENGINE" ).build());
+        options.addOption(Option.builder("t")
+                .longOpt( "threads" )
+                .desc( "number of files to parse in parallel")
+                .hasArg()
+                .argName( "THREADS" ).build());
+        options.addOption(Option.builder("o")
+                .longOpt( "report" )
+                .desc( "report file (default benchmark-report.csv in the work directory)")
+                .hasArg()
+                .argName( "REPORT" ).build());
+        options.addOption(Option.builder("b")
+                .longOpt( "baseline" )
+                .desc( "report of a previous version to compare with")
+                .hasArg()
+                .argName( "BASELINE" ).build());
+        options.addOption(Option.builder("l")
+                .longOpt( "tolerance" )
+                .desc( "allowed throughput drop against the baseline in percent (default 10)")
+                .hasArg()
+                .argName( "PERCENT" ).build());
+        options.addOption( "h", "help", false, "show help" );
+
+        try {
+            CommandLineParser parser = new DefaultParser();
+            CommandLine cmd = parser.parse( options, args);
+
+            if (cmd.hasOption("h") || !cmd.hasOption("w")) {
+                HelpFormatter formatter = new HelpFormatter();
+                String header = "Measures the end to end throughput of the parser on generated corpora\n\n";
+                String footer = "\nExamples: \n";
+                footer += "java -cp benchmarks.jar com.bodastage.boda_huaweicfgsynparser.benchmarks.MacroBenchmark -w /tmp/bench -s 1G\n";
+                footer += "java -cp benchmarks.jar com.bodastage.boda_huaweicfgsynparser.benchmarks.MacroBenchmark -w /tmp/bench -b baseline.csv -l 5\n";
+                formatter.printHelp( "java -cp benchmarks.jar com.bodastage.boda_huaweicfgsynparser.benchmarks.MacroBenchmark", header, options, footer );
+                System.exit(0);
+            }
+
+            MacroBenchmark benchmark = new MacroBenchmark();
+            File workDirectory = new File(cmd.getOptionValue("w"));
+            benchmark.setWorkDirectory(workDirectory);
+            if (cmd.hasOption("s")) {
+                benchmark.setSize(CorpusGenerator.parseSize(cmd.getOptionValue("s")));
+            }
+            benchmark.setRepetitions(Integer.parseInt(cmd.getOptionValue("r", "3")));
+            benchmark.setThreads(Integer.parseInt(cmd.getOptionValue("t", "1")));
+            if (cmd.hasOption("e")) {
+                if (ParserEngines.fromName(cmd.getOptionValue("e")) == -1) {
+                    System.err.println("ERROR: Unknown engine. Use cursor, event or scanner.");
+                    System.exit(1);
+                }
+                benchmark.setEngine(cmd.getOptionValue("e"));
+            }
+
+            List<String> selected = cmd.hasOption("c")
+                    ? Arrays.asList(cmd.getOptionValue("c").split(",")) : null;
+            List<Result> results = new ArrayList<Result>();
+            for (Scenario scenario : benchmark.getScenarios()) {
+                if (selected == null || selected.contains(scenario.name)) {
+                    results.add(benchmark.run(scenario));
+                }
+            }
+
+            File report = new File(cmd.getOptionValue("o",
+                    new File(workDirectory, "benchmark-report.csv").getPath()));
+            benchmark.writeReport(results, report);
+            System.out.println("Report: " + report);
+
+            if (cmd.hasOption("b")) {
+                double tolerance = Double.parseDouble(cmd.getOptionValue("l", "10"));
+                List<String> regressions = compare(results, new File(cmd.getOptionValue("b")),
+                        tolerance);
+                if (!regressions.isEmpty()) {
+                    System.err.println("ERROR: Throughput dropped by more than " + tolerance + "%:");
+                    for (String regression : regressions) {
+                        System.err.println("  " + regression);
+                    }
+                    System.exit(2);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
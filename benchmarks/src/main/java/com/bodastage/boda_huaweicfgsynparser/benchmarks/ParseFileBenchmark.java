@@ -0,0 +1,90 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser.benchmarks;
+
+import com.bodastage.boda_huaweicfgsynparser.HuaweiCfgSynParser;
+import com.bodastage.boda_huaweicfgsynparser.ParserEngines;
+import com.bodastage.boda_huaweicfgsynparser.ParserInput;
+import com.bodastage.boda_huaweicfgsynparser.ParserStates;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import javax.xml.stream.XMLStreamException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of a whole in memory document with each engine, from the bytes to
+ * the csv files.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseFileBenchmark {
+
+    @Param({"cursor", "event", "scanner"})
+    public String engine;
+
+    private byte[] document;
+
+    private File outputDirectory;
+
+    @Setup
+    public void setUp() throws IOException {
+        document = Documents.build(20, 200, 30);
+        outputDirectory = Files.createTempDirectory("parsefile").toFile();
+    }
+
+    private HuaweiCfgSynParser newParser() {
+        HuaweiCfgSynParser parser = new HuaweiCfgSynParser();
+        parser.setEngine(ParserEngines.fromName(engine));
+        parser.setOutputDirectory(outputDirectory.getAbsolutePath());
+        return parser;
+    }
+
+    @Benchmark
+    public HuaweiCfgSynParser extractParameters() throws XMLStreamException, IOException {
+        HuaweiCfgSynParser parser = newParser();
+        parser.parseInput(ParserInput.forBytes("bench.xml", document));
+        return parser;
+    }
+
+    @Benchmark
+    public HuaweiCfgSynParser parseTwoPass() throws XMLStreamException, IOException {
+        HuaweiCfgSynParser parser = newParser();
+        parser.parseInput(ParserInput.forBytes("bench.xml", document));
+        parser.setParserState(ParserStates.EXTRACTING_VALUES);
+        parser.parseInput(ParserInput.forBytes("bench.xml", document));
+        parser.closeMOPWMap();
+        return parser;
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = outputDirectory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        outputDirectory.delete();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser.benchmarks;
+
+import com.bodastage.boda_huaweicfgsynparser.HuaweiCfgSynParser;
+import com.bodastage.boda_huaweicfgsynparser.ParserStates;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.XMLEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Value extraction: the rows assembled in endElement at the end of each
+ * attributes element and written to the MO csv files in a temporary
+ * directory.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RowAssemblyBenchmark {
+
+    private List<XMLEvent> events;
+
+    private HuaweiCfgSynParser parser;
+
+    private File outputDirectory;
+
+    @Setup
+    public void setUp() throws XMLStreamException, IOException {
+        events = Events.read(Documents.build(4, 200, 30));
+        outputDirectory = Files.createTempDirectory("rowassembly").toFile();
+
+        //Discover the MO columns, then switch to value extraction
+        parser = new HuaweiCfgSynParser();
+        parser.setOutputDirectory(outputDirectory.getAbsolutePath());
+        Events.replay(parser, events);
+        parser.setParserState(ParserStates.EXTRACTING_VALUES);
+    }
+
+    @Benchmark
+    public HuaweiCfgSynParser assembleRows() throws IOException {
+        Events.replay(parser, events);
+        return parser;
+    }
+
+    /**
+     * Close the csv files. They are truncated when the next iteration
+     * reopens them.
+     */
+    @TearDown(Level.Iteration)
+    public void closeOutput() {
+        parser.closeMOPWMap();
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = outputDirectory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        outputDirectory.delete();
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads the entries of a zip, tar or gzip compressed tar archive one after
+ * the other without extracting them to disk.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+final class ArchiveReader implements Closeable {
+
+    private static final int TAR_BLOCK_SIZE = 512;
+
+    private final InputStream in;
+
+    private final ZipInputStream zipIn;
+
+    /**
+     * Unread data and padding bytes of the current tar entry.
+     */
+    private long tarRemaining = 0;
+
+    private long tarPadding = 0;
+
+    private ArchiveReader(InputStream in, boolean zip) {
+        this.in = in;
+        this.zipIn = zip ? new ZipInputStream(in) : null;
+    }
+
+    /**
+     * Open an archive.
+     *
+     * @param file
+     * @param format One of ParserInput.ZIP, ParserInput.TAR or
+     * ParserInput.TAR_GZIP
+     * @return ArchiveReader
+     * @throws IOException
+     */
+    static ArchiveReader open(Path file, int format) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024);
+        try {
+            if (format == ParserInput.TAR_GZIP) {
+                in = new GZIPInputStream(in, 64 * 1024);
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new ArchiveReader(in, format == ParserInput.ZIP);
+    }
+
+    /**
+     * Move to the next regular file in the archive.
+     *
+     * @return String Entry name or null at the end of the archive
+     * @throws IOException
+     */
+    String nextEntry() throws IOException {
+        if (zipIn != null) {
+            ZipEntry entry;
+            while ((entry = zipIn.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    return entry.getName();
+                }
+            }
+            return null;
+        }
+        return nextTarEntry();
+    }
+
+    /**
+     * Stream over the data of the current entry. Closing it does not close
+     * the archive.
+     *
+     * @return InputStream
+     */
+    InputStream getEntryStream() {
+        if (zipIn != null) {
+            return new FilterInputStream(zipIn) {
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                if (tarRemaining <= 0) {
+                    return -1;
+                }
+                int b = in.read();
+                if (b >= 0) {
+                    tarRemaining--;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (tarRemaining <= 0) {
+                    return -1;
+                }
+                int n = in.read(b, off, (int) Math.min(len, tarRemaining));
+                if (n > 0) {
+                    tarRemaining -= n;
+                }
+                return n;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String nextTarEntry() throws IOException {
+        skipFully(tarRemaining + tarPadding);
+        tarRemaining = 0;
+        tarPadding = 0;
+
+        String longName = null;
+        byte[] header = new byte[TAR_BLOCK_SIZE];
+        while (true) {
+            if (!readBlock(header) || isZeroBlock(header)) {
+                return null;
+            }
+
+            String name = field(header, 0, 100);
+            if (field(header, 257, 5).equals("ustar")) {
+                String prefix = field(header, 345, 155);
+                if (!prefix.isEmpty()) {
+                    name = prefix + "/" + name;
+                }
+            }
+
+            long size = size(header);
+            tarRemaining = size;
+            tarPadding = (TAR_BLOCK_SIZE - size % TAR_BLOCK_SIZE) % TAR_BLOCK_SIZE;
+
+            byte type = header[156];
+            if (type == 'L') {
+                //GNU long name of the next entry
+                longName = trimNul(readEntryString());
+                continue;
+            }
+            if (type == 'x') {
+                String path = paxPath(readEntryString());
+                if (path != null) {
+                    longName = path;
+                }
+                continue;
+            }
+
+            if (longName != null) {
+                name = longName;
+                longName = null;
+            }
+
+            if (type == '0' || type == 0 || type == '7') {
+                return name;
+            }
+
+            skipFully(tarRemaining + tarPadding);
+            tarRemaining = 0;
+            tarPadding = 0;
+        }
+    }
+
+    private String readEntryString() throws IOException {
+        byte[] data = new byte[(int) tarRemaining];
+        readFully(data);
+        skipFully(tarPadding);
+        tarRemaining = 0;
+        tarPadding = 0;
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the path from pax extended header records ("length key=value\n").
+     */
+    private static String paxPath(String records) {
+        int i = 0;
+        while (i < records.length()) {
+            int space = records.indexOf(' ', i);
+            if (space < 0) {
+                break;
+            }
+            int length = Integer.parseInt(records.substring(i, space));
+            String record = records.substring(space + 1, i + length - 1);
+            if (record.startsWith("path=")) {
+                return record.substring(5);
+            }
+            i += length;
+        }
+        return null;
+    }
+
+    private static long size(byte[] header) {
+        //GNU base-256 encoding for large files
+        if ((header[124] & 0x80) != 0) {
+            long size = header[124] & 0x7f;
+            for (int i = 125; i < 136; i++) {
+                size = (size << 8) | (header[i] & 0xff);
+            }
+            return size;
+        }
+
+        String octal = field(header, 124, 12).trim();
+        return octal.isEmpty() ? 0 : Long.parseLong(octal, 8);
+    }
+
+    private static String field(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static String trimNul(String s) {
+        int end = s.indexOf('\0');
+        return end < 0 ? s : s.substring(0, end);
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean readBlock(byte[] block) throws IOException {
+        int n = 0;
+        while (n < block.length) {
+            int r = in.read(block, n, block.length - n);
+            if (r < 0) {
+                if (n == 0) {
+                    return false;
+                }
+                throw new EOFException("Truncated tar header");
+            }
+            n += r;
+        }
+        return true;
+    }
+
+    private void readFully(byte[] data) throws IOException {
+        int n = 0;
+        while (n < data.length) {
+            int r = in.read(data, n, data.length - n);
+            if (r < 0) {
+                throw new EOFException("Truncated tar entry");
+            }
+            n += r;
+        }
+    }
+
+    private void skipFully(long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Truncated tar entry");
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+}
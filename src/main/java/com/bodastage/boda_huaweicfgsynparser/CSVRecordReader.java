@@ -0,0 +1,66 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the rows of a csv file written by the parser. A row ends at a line
+ * break outside double quotes, so quoted values can span lines.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class CSVRecordReader implements Closeable {
+
+    private final Reader in;
+
+    private final StringBuilder record = new StringBuilder();
+
+    /**
+     * Whether the last row ended with a carriage return, so that a line feed
+     * following it is skipped.
+     */
+    private boolean skipLineFeed = false;
+
+    public CSVRecordReader(Reader in) {
+        this.in = in instanceof BufferedReader ? in : new BufferedReader(in, 64 * 1024);
+    }
+
+    /**
+     * Read the next row without its line break.
+     *
+     * @return String or null at the end of the file
+     * @throws IOException
+     */
+    public String readRecord() throws IOException {
+        record.setLength(0);
+        boolean quoted = false;
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (c == '\n') {
+                    continue;
+                }
+            }
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && (c == '\n' || c == '\r')) {
+                skipLineFeed = c == '\r';
+                return record.toString();
+            }
+            record.append((char) c);
+        }
+        return record.length() > 0 ? record.toString() : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
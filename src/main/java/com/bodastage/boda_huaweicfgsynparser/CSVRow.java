@@ -0,0 +1,133 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.util.Arrays;
+
+/**
+ * A reusable csv row buffer. Fields are separated by commas as they are
+ * appended and values are escaped in a single pass, the same way as
+ * HuaweiCfgSynParser.toCSVFormat.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class CSVRow {
+
+    private char[] chars = new char[1024];
+
+    private int length = 0;
+
+    private int fields = 0;
+
+    /**
+     * Empty the buffer for the next row.
+     *
+     * @return CSVRow
+     */
+    public CSVRow clear() {
+        length = 0;
+        fields = 0;
+        return this;
+    }
+
+    /**
+     * Append a field as is. A null field is written as "null" like in string
+     * concatenation.
+     *
+     * @param text
+     * @return CSVRow
+     */
+    public CSVRow append(String text) {
+        separate();
+        if (text == null) {
+            text = "null";
+        }
+        int n = text.length();
+        ensureCapacity(n);
+        text.getChars(0, n, chars, length);
+        length += n;
+        return this;
+    }
+
+    /**
+     * Append a parameter value, quoting it if it contains a comma, a double
+     * quote or a line break. A null value is written as an empty field.
+     *
+     * @param value
+     * @return CSVRow
+     */
+    public CSVRow appendValue(String value) {
+        separate();
+        if (value == null) {
+            return this;
+        }
+
+        int n = value.length();
+        int i = 0;
+        ensureCapacity(n);
+        while (i < n) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                break;
+            }
+            chars[length + i] = c;
+            i++;
+        }
+        if (i == n) {
+            length += n;
+            return this;
+        }
+
+        //Worst case every character is a double quote
+        ensureCapacity(2 * n + 2);
+        chars[length++] = '"';
+        value.getChars(0, i, chars, length);
+        length += i;
+        for (; i < n; i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                chars[length++] = '"';
+            }
+            chars[length++] = c;
+        }
+        chars[length++] = '"';
+        return this;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    char[] getChars() {
+        return chars;
+    }
+
+    /**
+     * Append the row to a string builder.
+     *
+     * @param sb
+     */
+    public void appendTo(StringBuilder sb) {
+        sb.append(chars, 0, length);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+    private void separate() {
+        if (fields++ > 0) {
+            ensureCapacity(1);
+            chars[length++] = ',';
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (length + n > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(length + n, chars.length * 2));
+        }
+    }
+}
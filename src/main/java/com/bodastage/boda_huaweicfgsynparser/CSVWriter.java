@@ -0,0 +1,360 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes csv rows to a file channel through a byte buffer.
+ *
+ * The output is the same as that of a PrintWriter on the file: text is
+ * encoded with the platform default charset, characters that cannot be
+ * encoded are replaced and lines end with the platform line separator. ASCII
+ * text is copied to the buffer without going through the encoder.
+ *
+ * With a WritePipeline the full buffers are written, and the file opened and
+ * closed, on a writer thread of the pipeline.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class CSVWriter implements Closeable {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The file. It is only used on the writer thread with a pipeline.
+     */
+    private FileChannel channel = null;
+
+    private final CharsetEncoder encoder;
+
+    /**
+     * Whether ASCII characters are encoded as single bytes of the same value.
+     */
+    private final boolean asciiCompatible;
+
+    private ByteBuffer bytes;
+
+    /**
+     * Pipeline writing the buffers and the writer thread of the file, or
+     * null to write on the calling thread.
+     */
+    private final WritePipeline pipeline;
+
+    private final int lane;
+
+    private boolean closed = false;
+
+    /**
+     * Fields of the row being reordered.
+     */
+    private List<String> fields = new ArrayList<String>();
+
+    /**
+     * Where the write time is added or null.
+     */
+    private ParserMetrics metrics = null;
+
+    /**
+     * Create or truncate a csv file.
+     *
+     * @param file
+     * @throws FileNotFoundException
+     */
+    public CSVWriter(File file) throws FileNotFoundException {
+        this(file, false, Charset.defaultCharset());
+    }
+
+    /**
+     * Open a csv file.
+     *
+     * @param file
+     * @param append Write to the end of the file instead of truncating it
+     * @throws FileNotFoundException
+     */
+    public CSVWriter(File file, boolean append) throws FileNotFoundException {
+        this(file, append, Charset.defaultCharset());
+    }
+
+    public CSVWriter(File file, boolean append, Charset charset) throws FileNotFoundException {
+        pipeline = null;
+        lane = 0;
+        bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        open(file, append);
+        encoder = newEncoder(charset);
+        asciiCompatible = SyndataScanner.isSupportedCharset(charset);
+    }
+
+    /**
+     * Open a csv file written by a pipeline.
+     *
+     * @param file
+     * @param append Write to the end of the file instead of truncating it
+     * @param charset
+     * @param pipeline
+     * @throws IOException A write error of the pipeline
+     */
+    public CSVWriter(final File file, final boolean append, Charset charset,
+            WritePipeline pipeline) throws IOException {
+        this.pipeline = pipeline;
+        lane = pipeline.getLane(file);
+        bytes = pipeline.newBuffer();
+        encoder = newEncoder(charset);
+        asciiCompatible = SyndataScanner.isSupportedCharset(charset);
+        pipeline.submit(lane, new WritePipeline.Task() {
+            @Override
+            public void run() throws IOException {
+                open(file, append);
+            }
+        });
+    }
+
+    private void open(File file, boolean append) throws FileNotFoundException {
+        Object event = ParserEvents.get().beginWriterOpen();
+        channel = new FileOutputStream(file, append).getChannel();
+        if (event != null) {
+            ParserEvents.get().endWriterOpen(event, file, append);
+        }
+    }
+
+    private static CharsetEncoder newEncoder(Charset charset) {
+        return charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    public void setMetrics(ParserMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Write a row followed by a line separator.
+     *
+     * @param row
+     * @throws IOException
+     */
+    public void writeRow(CSVRow row) throws IOException {
+        write(row.getChars(), row.length());
+        write(LINE_SEPARATOR);
+    }
+
+    /**
+     * Write a csv row with its fields in another order, followed by a line
+     * separator.
+     *
+     * @param row
+     * @param fieldOrder Field of the row for each field to write. Fields past
+     * the end of the row are written empty.
+     * @throws IOException
+     */
+    public void writeRow(String row, int[] fieldOrder) throws IOException {
+        fields = DeltaSnapshot.splitFields(row, fields);
+        for (int i = 0; i < fieldOrder.length; i++) {
+            if (i > 0) {
+                write(",");
+            }
+            if (fieldOrder[i] < fields.size()) {
+                write(fields.get(fieldOrder[i]));
+            }
+        }
+        write(LINE_SEPARATOR);
+    }
+
+    /**
+     * Write a line followed by a line separator.
+     *
+     * @param line
+     * @throws IOException
+     */
+    public void writeLine(String line) throws IOException {
+        write(line);
+        write(LINE_SEPARATOR);
+    }
+
+    /**
+     * Write text as is.
+     *
+     * @param text
+     * @throws IOException
+     */
+    public void write(CharSequence text) throws IOException {
+        int n = text.length();
+        int i = 0;
+        if (asciiCompatible) {
+            byte[] b = bytes.array();
+            int pos = bytes.position();
+            for (; i < n; i++) {
+                char c = text.charAt(i);
+                if (c >= 0x80) {
+                    break;
+                }
+                if (pos == b.length) {
+                    bytes.position(pos);
+                    flushBuffer();
+                    b = bytes.array();
+                    pos = 0;
+                }
+                b[pos++] = (byte) c;
+            }
+            bytes.position(pos);
+        }
+        if (i < n) {
+            encode(CharBuffer.wrap(text, i, n));
+        }
+    }
+
+    private void write(char[] chars, int length) throws IOException {
+        int i = 0;
+        if (asciiCompatible) {
+            byte[] b = bytes.array();
+            int pos = bytes.position();
+            for (; i < length; i++) {
+                char c = chars[i];
+                if (c >= 0x80) {
+                    break;
+                }
+                if (pos == b.length) {
+                    bytes.position(pos);
+                    flushBuffer();
+                    b = bytes.array();
+                    pos = 0;
+                }
+                b[pos++] = (byte) c;
+            }
+            bytes.position(pos);
+        }
+        if (i < length) {
+            encode(CharBuffer.wrap(chars, i, length - i));
+        }
+    }
+
+    /**
+     * Encode text. The other charsets keep the state of the encoder from one
+     * write to the next, so that a UTF-16 file has a single byte order mark as
+     * with a PrintWriter, and the encoding ends when the file is closed.
+     */
+    private void encode(CharBuffer in) throws IOException {
+        if (!asciiCompatible) {
+            while (encoder.encode(in, bytes, false).isOverflow()) {
+                flushBuffer();
+            }
+            return;
+        }
+        endEncoding(in);
+    }
+
+    private void endEncoding(CharBuffer in) throws IOException {
+        while (encoder.encode(in, bytes, true).isOverflow()) {
+            flushBuffer();
+        }
+        while (encoder.flush(bytes).isOverflow()) {
+            flushBuffer();
+        }
+        encoder.reset();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (pipeline == null) {
+            writeBuffer(bytes);
+            return;
+        }
+
+        //The writer thread gets the full buffer and the rows go on in another
+        final ByteBuffer full = bytes;
+        bytes = pipeline.newBuffer();
+        pipeline.submit(lane, new WritePipeline.Task() {
+            @Override
+            public void run() throws IOException {
+                writeBuffer(full);
+                pipeline.recycle(full);
+            }
+        });
+    }
+
+    private void writeBuffer(ByteBuffer buffer) throws IOException {
+        if (channel == null) {
+            //The file could not be opened, which has been reported
+            buffer.clear();
+            return;
+        }
+        long start = metrics == null ? 0 : System.nanoTime();
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        if (metrics != null) {
+            metrics.addWriteTime(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Hand the buffered bytes to the file, or to the writer thread with a
+     * pipeline.
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        if (bytes.position() > 0) {
+            flushBuffer();
+        }
+    }
+
+    /**
+     * Write the buffered bytes and close the file.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (pipeline != null) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (!asciiCompatible) {
+                endEncoding(CharBuffer.allocate(0));
+            }
+            if (bytes.position() > 0) {
+                flushBuffer();
+            }
+            pipeline.submit(lane, new WritePipeline.Task() {
+                @Override
+                public void run() throws IOException {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                }
+            });
+            return;
+        }
+
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            if (!asciiCompatible) {
+                endEncoding(CharBuffer.allocate(0));
+            }
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+}
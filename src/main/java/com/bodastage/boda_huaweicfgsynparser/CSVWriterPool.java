@@ -0,0 +1,283 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The csv writers of the MOs with a bound on the number of open files.
+ *
+ * When the bound is reached the least recently used writer is flushed and
+ * closed. It is reopened in append mode the next time a row is written to
+ * its MO, so the header is only written once.
+ *
+ * With writer threads the files are written by a WritePipeline that is
+ * started with the first writer and stopped by close().
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class CSVWriterPool {
+
+    public static final int DEFAULT_MAX_OPEN = 512;
+
+    /**
+     * Maximum number of open writers.
+     */
+    private int maxOpen = DEFAULT_MAX_OPEN;
+
+    /**
+     * Output file of every MO that has been created.
+     */
+    private final Map<String, File> files = new LinkedHashMap<String, File>();
+
+    /**
+     * Open writers from the least to the most recently used.
+     */
+    private final LinkedHashMap<String, CSVWriter> writers
+            = new LinkedHashMap<String, CSVWriter>(16, 0.75f, true);
+
+    private long hits = 0;
+
+    private long misses = 0;
+
+    private long evictions = 0;
+
+    /**
+     * Where the writers report the write time and the number of open writers
+     * or null.
+     */
+    private ParserMetrics metrics = null;
+
+    /**
+     * Number of writer threads or 0 to write on the calling thread.
+     */
+    private int writeThreads = 0;
+
+    private int writeQueueSize = WritePipeline.DEFAULT_QUEUE_SIZE;
+
+    private WritePipeline pipeline = null;
+
+    public void setMaxOpen(int maxOpen) {
+        this.maxOpen = Math.max(1, maxOpen);
+    }
+
+    public int getMaxOpen() {
+        return maxOpen;
+    }
+
+    public void setMetrics(ParserMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Write the files on other threads.
+     *
+     * @param writeThreads Number of writer threads or 0 to write on the
+     * calling thread
+     */
+    public void setWriteThreads(int writeThreads) {
+        this.writeThreads = writeThreads;
+    }
+
+    /**
+     * Set the number of 64 KB buffers queued per writer thread before the
+     * parser waits.
+     *
+     * @param writeQueueSize
+     */
+    public void setWriteQueueSize(int writeQueueSize) {
+        this.writeQueueSize = writeQueueSize;
+    }
+
+    /**
+     * Check whether the output of an MO has been created.
+     *
+     * @param mo
+     * @return boolean
+     */
+    public boolean contains(String mo) {
+        return files.containsKey(mo);
+    }
+
+    /**
+     * Create or truncate the output file of an MO.
+     *
+     * @param mo
+     * @param file
+     * @return CSVWriter
+     * @throws IOException
+     */
+    public CSVWriter create(String mo, File file) throws IOException {
+        CSVWriter writer = writers.remove(mo);
+        if (writer != null) {
+            writer.close();
+        }
+
+        misses++;
+        evict();
+        writer = newWriter(file, false);
+        files.put(mo, file);
+        open(mo, writer);
+        return writer;
+    }
+
+    /**
+     * Append to the output file of an MO written by an earlier run.
+     *
+     * @param mo
+     * @param file
+     */
+    public void resume(String mo, File file) {
+        files.put(mo, file);
+    }
+
+    /**
+     * Get the writer of an MO, reopening its file if the writer was evicted.
+     *
+     * @param mo
+     * @return CSVWriter
+     * @throws IOException
+     */
+    public CSVWriter get(String mo) throws IOException {
+        CSVWriter writer = writers.get(mo);
+        if (writer != null) {
+            hits++;
+            return writer;
+        }
+
+        File file = files.get(mo);
+        if (file == null) {
+            throw new IllegalStateException("No csv output for " + mo);
+        }
+
+        misses++;
+        evict();
+        writer = newWriter(file, true);
+        open(mo, writer);
+        return writer;
+    }
+
+    private CSVWriter newWriter(File file, boolean append) throws IOException {
+        if (writeThreads <= 0) {
+            return new CSVWriter(file, append);
+        }
+        if (pipeline == null) {
+            pipeline = new WritePipeline(writeThreads, writeQueueSize,
+                    metrics != null ? metrics : new ParserMetrics());
+        }
+        return new CSVWriter(file, append, Charset.defaultCharset(), pipeline);
+    }
+
+    private void open(String mo, CSVWriter writer) {
+        writers.put(mo, writer);
+        if (metrics != null) {
+            writer.setMetrics(metrics);
+            metrics.setOpenWriters(writers.size());
+        }
+    }
+
+    /**
+     * Close the least recently used writers until there is room for one more.
+     */
+    private void evict() throws IOException {
+        Iterator<CSVWriter> iter = writers.values().iterator();
+        while (writers.size() >= maxOpen && iter.hasNext()) {
+            CSVWriter writer = iter.next();
+            iter.remove();
+            evictions++;
+            writer.close();
+        }
+    }
+
+    /**
+     * Write the buffered rows of all writers, force the files to the disk
+     * and get their lengths.
+     *
+     * @return Map Length of the output file of each MO
+     * @throws IOException
+     */
+    public Map<String, Long> sync() throws IOException {
+        for (CSVWriter writer : writers.values()) {
+            writer.flush();
+        }
+        if (pipeline != null) {
+            pipeline.sync();
+        }
+
+        Map<String, Long> lengths = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, File> me : files.entrySet()) {
+            FileChannel channel = FileChannel.open(me.getValue().toPath(), StandardOpenOption.READ);
+            try {
+                channel.force(true);
+                lengths.put(me.getKey(), channel.size());
+            } finally {
+                channel.close();
+            }
+        }
+        return lengths;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public int getOpenCount() {
+        return writers.size();
+    }
+
+    /**
+     * Close all writers, wait for the writer threads and forget the outputs.
+     *
+     * @throws IOException The first error closing a writer
+     */
+    public void close() throws IOException {
+        IOException error = null;
+        for (CSVWriter writer : writers.values()) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        writers.clear();
+        files.clear();
+        if (metrics != null) {
+            metrics.setOpenWriters(0);
+        }
+
+        //Wait for the queued writes
+        if (pipeline != null) {
+            try {
+                pipeline.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+            pipeline = null;
+        }
+
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Journal of the value extraction pass, so that a run that stopped can go on
+ * from its last checkpoint instead of starting over.
+ *
+ * When the pass starts the schema is saved to .checkpoint.schema in the
+ * output directory. At file boundaries, at most once per interval, the csv
+ * files are forced to the disk and a checkpoint is appended to .checkpoint
+ * with the inputs completed since the last one and the length of every csv
+ * file. A checkpoint only counts once its closing line has been written, so
+ * a run stopping while writing one resumes from the one before.
+ *
+ * Resuming truncates the csv files to the lengths of the last checkpoint,
+ * which drops the rows of the inputs that were not completed, and skips the
+ * completed inputs.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class CheckpointJournal {
+
+    static Logger logger = LoggerFactory.getLogger(CheckpointJournal.class);
+
+    public static final int DEFAULT_INTERVAL_SECONDS = 60;
+
+    private static final String JOURNAL_FILE = ".checkpoint";
+
+    private static final String SCHEMA_FILE = ".checkpoint.schema";
+
+    private final File journalFile;
+
+    private final File schemaFile;
+
+    private final long intervalMillis;
+
+    private long lastCheckpoint = 0;
+
+    /**
+     * Inputs completed before the last checkpoint.
+     */
+    private final Set<String> completed = new HashSet<String>();
+
+    /**
+     * Inputs completed since the last checkpoint.
+     */
+    private final List<String> pending = new ArrayList<String>();
+
+    /**
+     * State saved when the pass started.
+     */
+    private final Map<String, ColumnRegistry> schema = new LinkedHashMap<String, ColumnRegistry>();
+
+    private String dateTime = null;
+
+    private boolean schemaFromCache = false;
+
+    /**
+     * State at the last checkpoint.
+     */
+    private Map<String, Long> outputLengths = new LinkedHashMap<String, Long>();
+
+    private long schemaMisses = 0;
+
+    /**
+     * End of the last complete checkpoint in the journal file.
+     */
+    private long journalLength = 0;
+
+    private FileChannel journal = null;
+
+    /**
+     * @param directory Output directory
+     * @param intervalSeconds Minimum seconds between checkpoints
+     */
+    public CheckpointJournal(File directory, int intervalSeconds) {
+        this.journalFile = new File(directory, JOURNAL_FILE);
+        this.schemaFile = new File(directory, SCHEMA_FILE);
+        this.intervalMillis = TimeUnit.SECONDS.toMillis(Math.max(0, intervalSeconds));
+    }
+
+    /**
+     * Start the journal of a value extraction pass, replacing the previous
+     * one.
+     *
+     * @param schema MO columns of the pass
+     * @param dateTime Date time written to the rows
+     * @param schemaFromCache Whether the schema comes from the schema cache
+     * @throws IOException
+     */
+    public void start(Map<String, ColumnRegistry> schema, String dateTime,
+            boolean schemaFromCache) throws IOException {
+        close();
+        completed.clear();
+        pending.clear();
+        outputLengths.clear();
+        schemaMisses = 0;
+
+        File tmpFile = new File(schemaFile.getPath() + ".tmp");
+        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(tmpFile.toPath()), StandardCharsets.UTF_8));
+        try {
+            SchemaCache.writeSchema(bw, schema);
+        } finally {
+            bw.close();
+        }
+
+        //A journal without its start line is not resumed, so the schema file
+        //never goes with the checkpoints of another pass
+        journal = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        journal.force(true);
+        Files.move(tmpFile.toPath(), schemaFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        journalLength = 0;
+        append("start\t" + schemaFromCache + "\t" + (dateTime == null ? "" : dateTime) + "\n");
+        lastCheckpoint = System.currentTimeMillis();
+    }
+
+    /**
+     * Read the last complete checkpoint and go on appending to the journal.
+     *
+     * @return boolean false if there is no journal to resume
+     * @throws IOException
+     */
+    public boolean resume() throws IOException {
+        if (!journalFile.isFile() || !schemaFile.isFile()) {
+            return false;
+        }
+
+        BufferedReader br = Files.newBufferedReader(schemaFile.toPath(), StandardCharsets.UTF_8);
+        try {
+            SchemaCache.readSchema(br, schema);
+        } finally {
+            br.close();
+        }
+
+        byte[] data = Files.readAllBytes(journalFile.toPath());
+        boolean started = false;
+        List<String> files = new ArrayList<String>();
+        Map<String, Long> lengths = new LinkedHashMap<String, Long>();
+        int start = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] != '\n') {
+                continue;
+            }
+            String line = new String(data, start, i - start, StandardCharsets.UTF_8);
+            start = i + 1;
+
+            String[] fields = line.split("\t", 3);
+            if (fields[0].equals("start") && fields.length == 3) {
+                started = true;
+                schemaFromCache = Boolean.parseBoolean(fields[1]);
+                dateTime = fields[2].isEmpty() ? null : fields[2];
+                journalLength = start;
+            } else if (fields[0].equals("done") && fields.length >= 2) {
+                files.add(line.substring(5));
+            } else if (fields[0].equals("output") && fields.length == 3) {
+                lengths.put(fields[1], Long.parseLong(fields[2]));
+            } else if (fields[0].equals("checkpoint") && fields.length == 2) {
+                completed.addAll(files);
+                files.clear();
+                outputLengths = lengths;
+                lengths = new LinkedHashMap<String, Long>();
+                schemaMisses = Long.parseLong(fields[1]);
+                journalLength = start;
+            } else {
+                throw new IOException("Unexpected line in " + journalFile + ": " + line);
+            }
+        }
+        if (!started) {
+            return false;
+        }
+
+        //Drop the checkpoint that was being written
+        journal = FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE);
+        journal.truncate(journalLength);
+        journal.position(journalLength);
+        lastCheckpoint = System.currentTimeMillis();
+        return true;
+    }
+
+    public Map<String, ColumnRegistry> getSchema() {
+        return schema;
+    }
+
+    public String getDateTime() {
+        return dateTime;
+    }
+
+    public boolean isSchemaFromCache() {
+        return schemaFromCache;
+    }
+
+    /**
+     * Get the length of the csv file of each MO at the last checkpoint.
+     *
+     * @return Map
+     */
+    public Map<String, Long> getOutputLengths() {
+        return outputLengths;
+    }
+
+    public long getSchemaMisses() {
+        return schemaMisses;
+    }
+
+    public int getCompletedCount() {
+        return completed.size();
+    }
+
+    /**
+     * Check whether an input was completed before the last checkpoint.
+     *
+     * @param inputId
+     * @return boolean
+     */
+    public boolean isCompleted(String inputId) {
+        return completed.contains(inputId);
+    }
+
+    /**
+     * Record that the rows of an input have been handed to the csv writers.
+     *
+     * @param inputId
+     */
+    public void addCompleted(String inputId) {
+        pending.add(inputId);
+    }
+
+    /**
+     * Check whether the interval since the last checkpoint has passed.
+     *
+     * @return boolean
+     */
+    public boolean isDue() {
+        return System.currentTimeMillis() - lastCheckpoint >= intervalMillis;
+    }
+
+    /**
+     * Append a checkpoint. The csv files have to be on the disk with the
+     * given lengths.
+     *
+     * @param lengths Length of the csv file of each MO
+     * @param schemaMisses MOs and parameters missing from the cached schema
+     * so far
+     * @throws IOException
+     */
+    public void checkpoint(Map<String, Long> lengths, long schemaMisses) throws IOException {
+        StringBuilder record = new StringBuilder();
+        for (String inputId : pending) {
+            record.append("done\t").append(inputId).append('\n');
+        }
+        for (Map.Entry<String, Long> me : lengths.entrySet()) {
+            record.append("output\t").append(me.getKey()).append('\t')
+                    .append(me.getValue()).append('\n');
+        }
+        record.append("checkpoint\t").append(schemaMisses).append('\n');
+        append(record.toString());
+
+        completed.addAll(pending);
+        pending.clear();
+        outputLengths = lengths;
+        this.schemaMisses = schemaMisses;
+        lastCheckpoint = System.currentTimeMillis();
+    }
+
+    private void append(String text) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            journal.write(bytes);
+        }
+        journal.force(false);
+        journalLength = journal.position();
+    }
+
+    private void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    /**
+     * Remove the journal once the run has completed.
+     *
+     * @throws IOException
+     */
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(journalFile.toPath());
+        Files.deleteIfExists(schemaFile.toPath());
+    }
+}
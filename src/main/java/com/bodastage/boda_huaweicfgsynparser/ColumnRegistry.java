@@ -0,0 +1,79 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parameter columns of an MO. Columns keep the order in which they were
+ * added and each parameter name maps to a fixed slot, so the values of an MO
+ * instance can be held in an array indexed by slot.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class ColumnRegistry {
+
+    private final List<String> names = new ArrayList<String>();
+
+    private final Map<String, Integer> slots = new HashMap<String, Integer>();
+
+    /**
+     * Add a column if it is not registered yet.
+     *
+     * @param name Parameter name
+     * @return int Slot of the column
+     */
+    public int add(String name) {
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            slot = names.size();
+            names.add(name);
+            slots.put(name, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Get the slot of a column.
+     *
+     * @param name Parameter name
+     * @return int Slot of the column or -1 if it is not registered
+     */
+    public int indexOf(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    public boolean contains(String name) {
+        return slots.containsKey(name);
+    }
+
+    /**
+     * Get the name of the column in a slot.
+     */
+    public String get(int slot) {
+        return names.get(slot);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Get a copy of the columns.
+     *
+     * @return ColumnRegistry
+     */
+    public ColumnRegistry copy() {
+        ColumnRegistry copy = new ColumnRegistry();
+        for (String name : names) {
+            copy.add(name);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,464 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+/**
+ * Writes synthetic syn backup files for scale testing.
+ *
+ * The files follow the layout in the README: a file header, one syndata per
+ * node with a number of instances of each MO class, and a file footer. The
+ * output only depends on the settings and the seed, so the same command
+ * always writes the same bytes. Each file has its own random sequence, so
+ * files can be generated in any order.
+ *
+ * With a schema variation the MO instances do not all have the same
+ * parameters: some are left out of each instance, and instances of later
+ * nodes get parameters that no earlier node has, so new columns show up in
+ * the middle of a file.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class CorpusGenerator {
+
+    private static final String[] MO_CLASSES = {"NE", "CELL", "GCELL", "TRX", "BTS",
+        "LOCELL", "NRCELL", "EUTRANINTERFREQNCELL", "UCELL", "BTSRXUBP", "CNOPERATOR",
+        "GTRXDEV", "ENODEBFUNCTION", "SECTOR", "SECTOREQM", "CELLDRX"};
+
+    private static final String[] WORDS = {"ENABLE", "DISABLE", "ON", "OFF", "TRUE",
+        "FALSE", "AUTO", "MANUAL", "NORMAL", "BLOCKED", "FDD", "TDD", "DL", "UL"};
+
+    private static final String VALUE_CHARS
+            = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789_-.";
+
+    private int nodes = 10;
+
+    private int moClasses = 20;
+
+    private int parameters = 30;
+
+    private int instances = 10;
+
+    /**
+     * Percentage of parameters followed by a translated value comment.
+     */
+    private int commentRatio = 20;
+
+    /**
+     * Maximum length of text values.
+     */
+    private int valueLength = 16;
+
+    /**
+     * Percentage of text values with commas, double quotes or ampersands.
+     */
+    private int specialRatio = 5;
+
+    /**
+     * Output size per file in bytes. When set, nodes are written until the
+     * size is reached and the node count is ignored.
+     */
+    private long fileSize = 0;
+
+    private long seed = 1;
+
+    /**
+     * Percentage of parameters left out of an instance, which is also the
+     * percentage of instances with a parameter first seen in a later node.
+     */
+    private int variation = 0;
+
+    public void setNodes(int nodes) {
+        this.nodes = nodes;
+    }
+
+    public void setMOClasses(int moClasses) {
+        this.moClasses = moClasses;
+    }
+
+    public void setParameters(int parameters) {
+        this.parameters = Math.max(1, parameters);
+    }
+
+    public void setInstances(int instances) {
+        this.instances = instances;
+    }
+
+    public void setCommentRatio(int commentRatio) {
+        this.commentRatio = commentRatio;
+    }
+
+    public void setValueLength(int valueLength) {
+        this.valueLength = Math.max(1, valueLength);
+    }
+
+    public void setSpecialRatio(int specialRatio) {
+        this.specialRatio = specialRatio;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setVariation(int variation) {
+        this.variation = variation;
+    }
+
+    /**
+     * Write a document.
+     *
+     * @param out
+     * @param fileIndex Index of the file in the corpus. Node names and the
+     * random sequence depend on it.
+     * @throws IOException
+     */
+    public void generate(OutputStream out, int fileIndex) throws IOException {
+        CountingWriter w = new CountingWriter(new BufferedWriter(
+                new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024));
+        Random random = new Random(seed * 31 + fileIndex);
+
+        w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        w.write("<spec:BACKUPCFG xmlns:spec=\"http://www.huawei.com/specs/huawei_wl_bulkcm_xml_baseline_syn_1.0.0\""
+                + " xmlns=\"http://www.huawei.com/specs/bsc6000_nrm_forSyn_collapse_1.0.0\""
+                + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n");
+        w.write("\t<spec:fileHeader fileFormatVersion=\"1.1.0\" nenrmversion=\"V100R011C10\""
+                + " neversion=\"BTS3900 V100R011C10SPC262\" syntype=\"synall\" synlabel=\"CORPUS\""
+                + " producttype=\"BTS3900\"/>\n");
+
+        //The file is full once the footer would take it past the size
+        long limit = fileSize - 256;
+        StringBuilder sb = new StringBuilder(1024);
+        for (int n = 0; fileSize > 0 ? n == 0 || w.count < limit : n < nodes; n++) {
+            String node = "SITE" + fileIndex + "_" + n;
+            w.write("\t<spec:syndata FunctionType=\"NODE\" Id=\"NE=" + node + "\""
+                    + " productversion=\"BTS3900 V100R011C10SPC262\" nermversion=\"V100R011C10\""
+                    + " objId=\"" + n + "\">\n");
+
+            classes:
+            for (int c = 0; c < moClasses; c++) {
+                String mo = getMOClass(c);
+                for (int i = 0; i < instances; i++) {
+                    if (fileSize > 0 && w.count >= limit) {
+                        break classes;
+                    }
+                    sb.setLength(0);
+                    sb.append("\t\t<class>\n\t\t\t<").append(mo).append(">\n\t\t\t\t<attributes>\n");
+                    appendParameters(sb, random, mo, i, n);
+                    sb.append("\t\t\t\t</attributes>\n\t\t\t</").append(mo).append(">\n\t\t</class>\n");
+                    w.append(sb);
+                }
+            }
+
+            w.write("\t</spec:syndata>\n");
+        }
+
+        w.write("\t<spec:fileFooter label=\"CORPUS\" ExportResult=\"Success\" dateTime=\"2019-08-13T09:41:59\">\n");
+        w.write("\t\t<spec:moclistincluded></spec:moclistincluded>\n");
+        w.write("\t</spec:fileFooter>\n</spec:BACKUPCFG>\n");
+        w.flush();
+    }
+
+    /**
+     * Write a corpus: a single file, or a number of files in a directory.
+     *
+     * @param output File or directory
+     * @param files Number of files. More than one requires a directory.
+     * @param gzip Gzip the files
+     * @throws IOException
+     */
+    public void generate(File output, int files, boolean gzip) throws IOException {
+        if (files <= 1 && !output.isDirectory()) {
+            writeFile(output, 0, gzip);
+            return;
+        }
+
+        if (!output.isDirectory() && !output.mkdirs()) {
+            throw new IOException("Cannot create directory " + output);
+        }
+        for (int f = 0; f < files; f++) {
+            String name = String.format("corpus_%05d.xml", f) + (gzip ? ".gz" : "");
+            writeFile(new File(output, name), f, gzip);
+        }
+    }
+
+    private void writeFile(File file, int fileIndex, boolean gzip) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+        try {
+            if (gzip) {
+                out = new GZIPOutputStream(out, 64 * 1024);
+            }
+            generate(out, fileIndex);
+        } finally {
+            out.close();
+        }
+    }
+
+    private String getMOClass(int index) {
+        if (index < MO_CLASSES.length) {
+            return MO_CLASSES[index];
+        }
+        return "MOCLASS" + index;
+    }
+
+    private void appendParameters(StringBuilder sb, Random random, String mo, int instance,
+            int node) {
+        for (int p = 0; p < parameters; p++) {
+            if (p > 0 && variation > 0 && random.nextInt(100) < variation) {
+                continue;
+            }
+            appendParameter(sb, random, p == 0 ? mo + "ID" : "PARAM" + p, p, instance);
+        }
+
+        //The parameters past the first ones are added node by node
+        if (variation > 0 && node > 0 && random.nextInt(100) < variation) {
+            int p = parameters + random.nextInt(Math.min(node, parameters));
+            appendParameter(sb, random, "PARAM" + p, p, instance);
+        }
+    }
+
+    private void appendParameter(StringBuilder sb, Random random, String name, int p,
+            int instance) {
+        sb.append("\t\t\t\t\t<").append(name).append('>');
+
+        String translation = null;
+        if (p == 0) {
+            sb.append(instance);
+        } else {
+            switch (p % 4) {
+                case 0:
+                    sb.append(random.nextInt(65536));
+                    break;
+                case 1:
+                    int word = random.nextInt(WORDS.length);
+                    sb.append(word);
+                    translation = WORDS[word];
+                    break;
+                default:
+                    appendText(sb, random);
+            }
+        }
+
+        sb.append("</").append(name).append('>');
+        if (translation != null || (p > 0 && random.nextInt(100) < commentRatio)) {
+            sb.append("<!--")
+                    .append(translation != null ? translation : WORDS[random.nextInt(WORDS.length)])
+                    .append("-->");
+        }
+        sb.append('\n');
+    }
+
+    /**
+     * Append an escaped text value. Some values get commas, double quotes and
+     * ampersands, which the csv output has to quote or unescape.
+     */
+    private void appendText(StringBuilder sb, Random random) {
+        int length = 1 + random.nextInt(valueLength);
+        boolean special = random.nextInt(100) < specialRatio;
+        for (int i = 0; i < length; i++) {
+            if (special && random.nextInt(4) == 0) {
+                switch (random.nextInt(3)) {
+                    case 0:
+                        sb.append(',');
+                        break;
+                    case 1:
+                        sb.append("&quot;");
+                        break;
+                    default:
+                        sb.append("&amp;");
+                }
+            } else {
+                sb.append(VALUE_CHARS.charAt(random.nextInt(VALUE_CHARS.length())));
+            }
+        }
+    }
+
+    /**
+     * Parse a size such as 512K, 100M or 20G.
+     *
+     * @param size
+     * @return long bytes
+     */
+    public static long parseSize(String size) {
+        String s = size.trim().toUpperCase();
+        long unit = 1;
+        if (s.endsWith("B")) {
+            s = s.substring(0, s.length() - 1);
+        }
+        if (s.endsWith("K")) {
+            unit = 1024L;
+        } else if (s.endsWith("M")) {
+            unit = 1024L * 1024;
+        } else if (s.endsWith("G")) {
+            unit = 1024L * 1024 * 1024;
+        }
+        if (unit > 1) {
+            s = s.substring(0, s.length() - 1);
+        }
+        return (long) (Double.parseDouble(s) * unit);
+    }
+
+    /**
+     * Counts the characters written, which are the bytes as the documents
+     * are ASCII.
+     */
+    private static class CountingWriter extends FilterWriter {
+
+        long count = 0;
+
+        CountingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            count++;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+            count += len;
+        }
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options();
+        options.addOption(Option.builder("o")
+                .longOpt( "output" )
+                .desc( "output file, or directory when writing more than one file")
+                .hasArg()
+                .argName( "OUTPUT" ).build());
+        options.addOption(Option.builder("n")
+                .longOpt( "nodes" )
+                .desc( "number of nodes (syndata) per file (default 10)")
+                .hasArg()
+                .argName( "NODES" ).build());
+        options.addOption(Option.builder("c")
+                .longOpt( "classes" )
+                .desc( "number of MO classes (default 20)")
+                .hasArg()
+                .argName( "CLASSES" ).build());
+        options.addOption(Option.builder("p")
+                .longOpt( "parameters" )
+                .desc( "parameters per MO (default 30)")
+                .hasArg()
+                .argName( "PARAMETERS" ).build());
+        options.addOption(Option.builder("m")
+                .longOpt( "instances" )
+                .desc( "instances of each MO class per node (default 10)")
+                .hasArg()
+                .argName( "INSTANCES" ).build());
+        options.addOption(Option.builder("t")
+                .longOpt( "comment-ratio" )
+                .desc( "percentage of parameters with a translated value comment (default 20)")
+                .hasArg()
+                .argName( "PERCENT" ).build());
+        options.addOption(Option.builder("l")
+                .longOpt( "value-length" )
+                .desc( "maximum length of text values (default 16)")
+                .hasArg()
+                .argName( "LENGTH" ).build());
+        options.addOption(Option.builder("q")
+                .longOpt( "special-ratio" )
+                .desc( "percentage of text values with commas and quotes (default 5)")
+                .hasArg()
+                .argName( "PERCENT" ).build());
+        options.addOption(Option.builder("s")
+                .longOpt( "size" )
+                .desc( "total output size such as 512K, 100M or 20G. Replaces the node count")
+                .hasArg()
+                .argName( "SIZE" ).build());
+        options.addOption(Option.builder("f")
+                .longOpt( "files" )
+                .desc( "number of files (default 1)")
+                .hasArg()
+                .argName( "FILES" ).build());
+        options.addOption(Option.builder("r")
+                .longOpt( "seed" )
+                .desc( "random seed (default 1)")
+                .hasArg()
+                .argName( "SEED" ).build());
+        options.addOption(Option.builder("v")
+                .longOpt( "variation" )
+                .desc( "percentage of parameters left out of each MO instance and of instances "
+                        + "with parameters first seen in later nodes (default 0)")
+                .hasArg()
+                .argName( "PERCENT" ).build());
+        options.addOption( "z", "gzip", false, "gzip the files" );
+        options.addOption( "h", "help", false, "show help" );
+
+        try {
+            CommandLineParser parser = new DefaultParser();
+            CommandLine cmd = parser.parse( options, args);
+
+            if (cmd.hasOption("h") || !cmd.hasOption("o")) {
+                HelpFormatter formatter = new HelpFormatter();
+                String header = "Writes synthetic Huawei syn backup files for scale testing\n\n";
+                String footer = "\n";
+                footer += "Examples: \n";
+                footer += "java -cp boda-huaweicfgsynparser.jar com.bodastage.boda_huaweicfgsynparser.CorpusGenerator -o corpus.xml -s 100M\n";
+                footer += "java -cp boda-huaweicfgsynparser.jar com.bodastage.boda_huaweicfgsynparser.CorpusGenerator -o corpus_folder -f 100 -s 20G -z\n";
+                formatter.printHelp( "java -cp boda-huaweicfgsynparser.jar com.bodastage.boda_huaweicfgsynparser.CorpusGenerator", header, options, footer );
+                System.exit(0);
+            }
+
+            CorpusGenerator generator = new CorpusGenerator();
+            int files = Integer.parseInt(cmd.getOptionValue("f", "1"));
+            generator.setNodes(Integer.parseInt(cmd.getOptionValue("n", "10")));
+            generator.setMOClasses(Integer.parseInt(cmd.getOptionValue("c", "20")));
+            generator.setParameters(Integer.parseInt(cmd.getOptionValue("p", "30")));
+            generator.setInstances(Integer.parseInt(cmd.getOptionValue("m", "10")));
+            generator.setCommentRatio(Integer.parseInt(cmd.getOptionValue("t", "20")));
+            generator.setValueLength(Integer.parseInt(cmd.getOptionValue("l", "16")));
+            generator.setSpecialRatio(Integer.parseInt(cmd.getOptionValue("q", "5")));
+            generator.setSeed(Long.parseLong(cmd.getOptionValue("r", "1")));
+            generator.setVariation(Integer.parseInt(cmd.getOptionValue("v", "0")));
+            if (cmd.hasOption("s")) {
+                generator.setFileSize(parseSize(cmd.getOptionValue("s")) / Math.max(1, files));
+            }
+
+            generator.generate(new File(cmd.getOptionValue("o")), files, cmd.hasOption("z"));
+        } catch (ParseException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        } catch (NumberFormatException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
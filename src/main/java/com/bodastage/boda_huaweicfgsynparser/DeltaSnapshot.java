@@ -0,0 +1,578 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reduces the csv output of a run to the MO instances that changed since the
+ * previous run.
+ *
+ * The snapshot directory has one file per MO with a record per instance: a
+ * hash of the instance key, a digest of its values and the key values. Only
+ * the hashes are held in memory, one MO at a time. An instance is keyed by
+ * its node and identifying parameters. The csv file of each MO is rewritten
+ * with a CHANGE column and only the ADDED, MODIFIED and REMOVED rows. Removed
+ * rows only have their key values. The snapshot is then replaced with the
+ * instances of this run.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class DeltaSnapshot {
+
+    static Logger logger = LoggerFactory.getLogger(DeltaSnapshot.class);
+
+    public static final String ADDED = "ADDED";
+
+    public static final String MODIFIED = "MODIFIED";
+
+    public static final String REMOVED = "REMOVED";
+
+    private static final String SNAPSHOT_EXTENSION = ".snap";
+
+    private static final int FORMAT = 1;
+
+    /**
+     * Columns that change with every dump and are not compared.
+     */
+    private static final Set<String> IGNORED_COLUMNS = new HashSet<String>(
+            Arrays.asList("FILENAME", "DATETIME"));
+
+    /**
+     * Columns added by the parser that never identify an instance.
+     */
+    private static final Set<String> METADATA_COLUMNS = new HashSet<String>(
+            Arrays.asList("FILENAME", "DATETIME", "NODENAME", "SYNCDATAFUNCTIONTYPE",
+                    "SYNCDATAID", "SYNCDATAPRODUCTVERSION", "SYNCDATANERMVERSION",
+                    "SYNCDATAOBJID"));
+
+    private final File directory;
+
+    /**
+     * Identifying parameters per MO.
+     */
+    private final Map<String, ColumnRegistry> keys = new LinkedHashMap<String, ColumnRegistry>();
+
+    private long added = 0;
+
+    private long modified = 0;
+
+    private long removed = 0;
+
+    private long unchanged = 0;
+
+    public DeltaSnapshot(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Load the identifying parameters of MOs from a file in the parameter
+     * file layout. MOs that are not in the file are identified by their
+     * parameters ending in ID, or by all their values if they have none.
+     *
+     * @param filename
+     * @throws IOException
+     */
+    public void loadKeys(String filename) throws IOException {
+        BufferedReader br = new BufferedReader(new FileReader(filename));
+        try {
+            SchemaCache.readSchema(br, keys);
+        } finally {
+            br.close();
+        }
+    }
+
+    /**
+     * Reduce the csv files of the given MOs to their changes and replace the
+     * snapshot. MOs in the snapshot without output in this run are written
+     * with all their instances removed.
+     *
+     * @param outputDirectory
+     * @param mos MOs with a csv file from this run
+     * @throws IOException
+     */
+    public void apply(File outputDirectory, Collection<String> mos) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create snapshot directory " + directory);
+        }
+
+        Set<String> snapshotFiles = new HashSet<String>();
+        for (String mo : mos) {
+            File csvFile = new File(outputDirectory, mo + ".csv");
+            if (csvFile.isFile()) {
+                applyMO(getFile(mo), csvFile);
+                snapshotFiles.add(getFile(mo).getName());
+            }
+        }
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                String name = f.getName();
+                if (name.endsWith(SNAPSHOT_EXTENSION) && !snapshotFiles.contains(name)) {
+                    String mo = name.substring(0, name.length() - SNAPSHOT_EXTENSION.length());
+                    writeRemovedMO(f, new File(outputDirectory, mo + ".csv"));
+                    f.delete();
+                }
+            }
+        }
+
+        logger.info("Delta: " + added + " added, " + modified + " modified, "
+                + removed + " removed, " + unchanged + " unchanged");
+    }
+
+    public long getAdded() {
+        return added;
+    }
+
+    public long getModified() {
+        return modified;
+    }
+
+    public long getRemoved() {
+        return removed;
+    }
+
+    public long getUnchanged() {
+        return unchanged;
+    }
+
+    private File getFile(String mo) {
+        return new File(directory, mo + SNAPSHOT_EXTENSION);
+    }
+
+    /**
+     * Compare the csv file of an MO with its snapshot.
+     */
+    private void applyMO(File snapshotFile, File csvFile) throws IOException {
+        DigestTable previous = new DigestTable();
+        if (snapshotFile.isFile()) {
+            readSnapshot(snapshotFile, previous);
+        }
+
+        File deltaFile = File.createTempFile("." + csvFile.getName() + "-", ".tmp",
+                csvFile.getParentFile());
+        File newSnapshotFile = File.createTempFile("." + snapshotFile.getName() + "-",
+                ".tmp", directory);
+        try {
+            CSVRecordReader br = new CSVRecordReader(new FileReader(csvFile));
+            CSVWriter writer = new CSVWriter(deltaFile);
+            DataOutputStream out = openSnapshot(newSnapshotFile);
+            try {
+                String header = br.readRecord();
+                if (header == null) {
+                    return;
+                }
+                List<String> columns = splitFields(header, new ArrayList<String>());
+                String mo = csvFile.getName().substring(0, csvFile.getName().length() - 4);
+                int[] keyColumns = getKeyColumns(mo, columns);
+
+                StringBuilder keyHeader = new StringBuilder();
+                for (int i = 0; i < keyColumns.length; i++) {
+                    keyHeader.append(i > 0 ? "," : "").append(columns.get(keyColumns[i]));
+                }
+                writeString(out, keyHeader.toString());
+                writer.writeLine("CHANGE," + header);
+
+                DigestTable current = new DigestTable();
+                List<String> fields = new ArrayList<String>();
+                StringBuilder key = new StringBuilder();
+                for (String line; (line = br.readRecord()) != null;) {
+                    splitFields(line, fields);
+
+                    key.setLength(0);
+                    for (int i = 0; i < keyColumns.length; i++) {
+                        key.append(i > 0 ? "," : "").append(field(fields, keyColumns[i]));
+                    }
+                    String keyText = key.toString();
+
+                    //Repeated keys are told apart by their position
+                    long keyHash = hash(keyText);
+                    for (int n = 1; current.contains(keyHash); n++) {
+                        keyHash = hash(keyText + '\u0000' + n);
+                    }
+                    current.put(keyHash, 0);
+
+                    long digest = digest(columns, fields);
+                    out.writeLong(keyHash);
+                    out.writeLong(digest);
+                    writeString(out, keyText);
+
+                    int slot = previous.find(keyHash);
+                    if (slot < 0) {
+                        added++;
+                        writer.writeLine(ADDED + "," + line);
+                    } else {
+                        previous.mark(slot);
+                        if (previous.valueAt(slot) != digest) {
+                            modified++;
+                            writer.writeLine(MODIFIED + "," + line);
+                        } else {
+                            unchanged++;
+                        }
+                    }
+                }
+
+                if (snapshotFile.isFile()) {
+                    writeRemovedRows(snapshotFile, previous, columns, writer);
+                }
+            } finally {
+                br.close();
+                writer.close();
+                out.close();
+            }
+
+            Files.move(deltaFile.toPath(), csvFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(newSnapshotFile.toPath(), snapshotFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            deltaFile.delete();
+            newSnapshotFile.delete();
+        }
+    }
+
+    /**
+     * Get the columns identifying an instance: the node and the key parameters
+     * of the MO.
+     */
+    private int[] getKeyColumns(String mo, List<String> columns) {
+        ColumnRegistry moKeys = keys.get(mo);
+        List<Integer> keyColumns = new ArrayList<Integer>();
+        for (int i = 0; i < columns.size(); i++) {
+            String name = columns.get(i);
+            if (name.equals("NODENAME")) {
+                keyColumns.add(i);
+            } else if (moKeys != null ? moKeys.contains(name)
+                    : !METADATA_COLUMNS.contains(name) && name.toUpperCase().endsWith("ID")) {
+                keyColumns.add(i);
+            }
+        }
+
+        //Without key parameters an instance is identified by all its values
+        if (moKeys == null && keyColumns.size() <= 1) {
+            keyColumns.clear();
+            for (int i = 0; i < columns.size(); i++) {
+                if (!IGNORED_COLUMNS.contains(columns.get(i))) {
+                    keyColumns.add(i);
+                }
+            }
+        }
+
+        int[] result = new int[keyColumns.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = keyColumns.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Digest of the non empty values of a row, so that parameters added to the
+     * MO in a later dump do not change the digest of the rows without them.
+     */
+    private static long digest(List<String> columns, List<String> fields) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < fields.size() && i < columns.size(); i++) {
+            String value = fields.get(i);
+            if (value.isEmpty() || IGNORED_COLUMNS.contains(columns.get(i))) {
+                continue;
+            }
+            h = hash(h, columns.get(i));
+            h = (h ^ 0xff) * FNV_PRIME;
+            h = hash(h, value);
+            h = (h ^ 0xfe) * FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Write the instances of the snapshot that were not seen in this run.
+     */
+    private void writeRemovedRows(File snapshotFile, DigestTable previous,
+            List<String> columns, CSVWriter writer) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(snapshotFile), 64 * 1024));
+        try {
+            if (in.readInt() != FORMAT) {
+                return;
+            }
+            List<String> keyColumns = splitFields(readString(in), new ArrayList<String>());
+
+            //Position of the key columns in this run's header
+            int[] positions = new int[keyColumns.size()];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = columns.indexOf(keyColumns.get(i));
+            }
+
+            String[] values = new String[columns.size()];
+            List<String> keyValues = new ArrayList<String>();
+            CSVRow row = new CSVRow();
+            while (true) {
+                long keyHash;
+                try {
+                    keyHash = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                in.readLong();
+                String keyText = readString(in);
+
+                int slot = previous.find(keyHash);
+                if (slot >= 0 && previous.isMarked(slot)) {
+                    continue;
+                }
+
+                Arrays.fill(values, "");
+                splitFields(keyText, keyValues);
+                for (int i = 0; i < positions.length && i < keyValues.size(); i++) {
+                    if (positions[i] >= 0) {
+                        values[positions[i]] = keyValues.get(i);
+                    }
+                }
+
+                row.clear().append(REMOVED);
+                for (String value : values) {
+                    row.append(value);
+                }
+                writer.writeRow(row);
+                removed++;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Write the csv file of an MO that has no output in this run.
+     */
+    private void writeRemovedMO(File snapshotFile, File csvFile) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(snapshotFile), 64 * 1024));
+        String keyHeader;
+        try {
+            if (in.readInt() != FORMAT) {
+                return;
+            }
+            keyHeader = readString(in);
+        } finally {
+            in.close();
+        }
+
+        CSVWriter writer = new CSVWriter(csvFile);
+        try {
+            writer.writeLine("CHANGE," + keyHeader);
+            writeRemovedRows(snapshotFile, new DigestTable(),
+                    splitFields(keyHeader, new ArrayList<String>()), writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void readSnapshot(File snapshotFile, DigestTable table) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(snapshotFile), 64 * 1024));
+        try {
+            if (in.readInt() != FORMAT) {
+                return;
+            }
+            readString(in);
+            while (true) {
+                long keyHash;
+                try {
+                    keyHash = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                table.put(keyHash, in.readLong());
+                in.skipBytes(in.readInt());
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static DataOutputStream openSnapshot(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file), 64 * 1024));
+        out.writeInt(FORMAT);
+        return out;
+    }
+
+    /**
+     * Split a csv line into its fields as written, quotes included.
+     *
+     * @param line
+     * @param fields List to fill
+     * @return List
+     */
+    static List<String> splitFields(String line, List<String> fields) {
+        fields.clear();
+        int start = 0;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                fields.add(line.substring(start, i));
+                start = i + 1;
+            }
+        }
+        fields.add(line.substring(start));
+        return fields;
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index < fields.size() ? fields.get(index) : "";
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    static long hash(String s) {
+        return mix(hash(FNV_OFFSET, s));
+    }
+
+    private static long hash(long h, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            h = (h ^ (c & 0xff)) * FNV_PRIME;
+            h = (h ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * Spread the bits of an FNV hash.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Open addressing table of key hashes to digests with a mark per entry.
+     */
+    static class DigestTable {
+
+        private long[] keys = new long[1024];
+
+        private long[] values = new long[1024];
+
+        private boolean[] used = new boolean[1024];
+
+        private boolean[] marked = new boolean[1024];
+
+        private int size = 0;
+
+        void put(long key, long value) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            int slot = slotOf(key);
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] = value;
+        }
+
+        boolean contains(long key) {
+            return find(key) >= 0;
+        }
+
+        /**
+         * @return int slot of the key or -1
+         */
+        int find(long key) {
+            int slot = slotOf(key);
+            return used[slot] ? slot : -1;
+        }
+
+        long valueAt(int slot) {
+            return values[slot];
+        }
+
+        void mark(int slot) {
+            marked[slot] = true;
+        }
+
+        boolean isMarked(int slot) {
+            return marked[slot];
+        }
+
+        private int slotOf(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) key & mask;
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            boolean[] oldUsed = used;
+            boolean[] oldMarked = marked;
+
+            keys = new long[oldKeys.length * 2];
+            values = new long[keys.length];
+            used = new boolean[keys.length];
+            marked = new boolean[keys.length];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    int slot = slotOf(oldKeys[i]);
+                    used[slot] = true;
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                    marked[slot] = oldMarked[i];
+                    size++;
+                }
+            }
+        }
+    }
+}
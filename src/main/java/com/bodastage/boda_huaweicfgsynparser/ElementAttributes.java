@@ -0,0 +1,108 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+
+/**
+ * Attributes of the start tag being handled. Lets the same element handlers
+ * serve all the parsing engines.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public interface ElementAttributes {
+
+    /**
+     * Number of attributes on the tag.
+     */
+    int getCount();
+
+    /**
+     * Local name of the attribute at the given index.
+     */
+    String getLocalName(int index);
+
+    /**
+     * Value of the attribute at the given index.
+     */
+    String getValue(int index);
+
+    /**
+     * Attributes read off the current position of an XMLStreamReader.
+     *
+     * @since 1.3.0
+     */
+    public static class StreamReaderAttributes implements ElementAttributes {
+
+        private final XMLStreamReader reader;
+
+        public StreamReaderAttributes(XMLStreamReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int getCount() {
+            return reader.getAttributeCount();
+        }
+
+        @Override
+        public String getLocalName(int index) {
+            return reader.getAttributeLocalName(index);
+        }
+
+        @Override
+        public String getValue(int index) {
+            return reader.getAttributeValue(index);
+        }
+    }
+
+    /**
+     * Attributes of a StartElement event. They are only collected when
+     * accessed.
+     *
+     * @since 1.3.0
+     */
+    public static class StartElementAttributes implements ElementAttributes {
+
+        private final StartElement startElement;
+
+        private List<Attribute> attributes;
+
+        public StartElementAttributes(StartElement startElement) {
+            this.startElement = startElement;
+        }
+
+        private List<Attribute> attributes() {
+            if (attributes == null) {
+                attributes = new ArrayList<Attribute>();
+                Iterator<Attribute> iter = startElement.getAttributes();
+                while (iter.hasNext()) {
+                    attributes.add(iter.next());
+                }
+            }
+            return attributes;
+        }
+
+        @Override
+        public int getCount() {
+            return attributes().size();
+        }
+
+        @Override
+        public String getLocalName(int index) {
+            return attributes().get(index).getName().getLocalPart();
+        }
+
+        @Override
+        public String getValue(int index) {
+            return attributes().get(index).getValue();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Output of a single file parsed by a worker when parsing in parallel.
+ *
+ * Workers do not write to the shared csv files. Everything a file contributes
+ * is buffered here and committed by the coordinating thread in the order the
+ * files were listed so that the output does not depend on the number of
+ * threads.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class FileParseResult {
+
+    /**
+     * A row buffered in single pass mode. The values follow the column order
+     * of the file's own schema and are re-aligned to the global schema and
+     * escaped on commit.
+     *
+     * @since 1.3.0
+     */
+    public static class SpillRow {
+
+        final String fileName;
+
+        final String metadata;
+
+        final String[] values;
+
+        SpillRow(String fileName, String metadata, String[] values) {
+            this.fileName = fileName;
+            this.metadata = metadata;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Absolute path of the parsed file.
+     *
+     * @since 1.3.0
+     */
+    final String fileName;
+
+    /**
+     * Id of the parsed input.
+     *
+     * @since 1.3.0
+     */
+    String inputId;
+
+    /**
+     * MO parameters discovered in this file.
+     *
+     * @since 1.3.0
+     */
+    Map<String, ColumnRegistry> moColumns;
+
+    /**
+     * MO parameters per product and NRM version discovered in this file.
+     *
+     * @since 1.3.0
+     */
+    Map<String, Map<String, ColumnRegistry>> versionColumns;
+
+    /**
+     * MO parameters in the order the value pass over a cached schema found
+     * them in this file.
+     *
+     * @since 1.3.0
+     */
+    Map<String, ColumnRegistry> moDiscoveredColumns;
+
+    /**
+     * MOs and parameters missing from the cached schema.
+     *
+     * @since 1.3.0
+     */
+    long schemaMisses;
+
+    /**
+     * csv headers per MO.
+     *
+     * @since 1.3.0
+     */
+    final Map<String, String> moHeaders = new LinkedHashMap<String, String>();
+
+    /**
+     * csv rows per MO.
+     *
+     * @since 1.3.0
+     */
+    final Map<String, StringBuilder> moRows = new LinkedHashMap<String, StringBuilder>();
+
+    /**
+     * Number of csv rows per MO.
+     *
+     * @since 1.3.0
+     */
+    final Map<String, int[]> moRowCounts = new LinkedHashMap<String, int[]>();
+
+    /**
+     * End of each csv row in moRows when keepRowEnds is set. The rows of an
+     * MO whose columns were extended by an earlier file are moved to its
+     * spill file one by one on commit.
+     *
+     * @since 1.3.0
+     */
+    final Map<String, int[]> moRowEnds = new LinkedHashMap<String, int[]>();
+
+    boolean keepRowEnds = false;
+
+    /**
+     * Rows per MO in single pass mode.
+     *
+     * @since 1.3.0
+     */
+    final Map<String, List<SpillRow>> moSpillRows = new LinkedHashMap<String, List<SpillRow>>();
+
+    /**
+     * Date time from the file footer.
+     *
+     * @since 1.3.0
+     */
+    String dateTime;
+
+    /**
+     * fileFooter csv header and values.
+     *
+     * @since 1.3.0
+     */
+    String footerHeaders;
+
+    String footerValues;
+
+    /**
+     * Error that stopped the parsing of the file.
+     *
+     * @since 1.3.0
+     */
+    Exception error;
+
+    /**
+     * Fingerprint of the input in an incremental run or null.
+     *
+     * @since 1.3.0
+     */
+    IncrementalManifest.Entry manifestEntry;
+
+    /**
+     * Whether the input did not change since the last incremental run, in
+     * which case it was not parsed.
+     *
+     * @since 1.3.0
+     */
+    boolean unchanged = false;
+
+    public FileParseResult(String fileName) {
+        this.fileName = fileName;
+    }
+
+    boolean hasMO(String mo) {
+        return moHeaders.containsKey(mo);
+    }
+
+    void addMO(String mo, String header) {
+        moHeaders.put(mo, header);
+        moRows.put(mo, new StringBuilder());
+        moRowCounts.put(mo, new int[1]);
+    }
+
+    void addRow(String mo, CSVRow row) {
+        StringBuilder rows = moRows.get(mo);
+        row.appendTo(rows);
+        rows.append(System.lineSeparator());
+        int count = moRowCounts.get(mo)[0]++;
+
+        if (keepRowEnds) {
+            int[] ends = moRowEnds.get(mo);
+            if (ends == null || ends.length == count) {
+                ends = ends == null ? new int[16] : Arrays.copyOf(ends, count * 2);
+                moRowEnds.put(mo, ends);
+            }
+            ends[count] = rows.length();
+        }
+    }
+
+    void addSpillRow(String mo, String fileName, String metadata, String[] values) {
+        List<SpillRow> rows = moSpillRows.get(mo);
+        if (rows == null) {
+            rows = new ArrayList<SpillRow>();
+            moSpillRows.put(mo, rows);
+        }
+        rows.add(new SpillRow(fileName, metadata, values));
+    }
+}
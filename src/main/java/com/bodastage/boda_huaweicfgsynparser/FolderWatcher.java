@@ -0,0 +1,361 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parses the files added to a directory as they arrive, keeping one parser
+ * and JVM running.
+ *
+ * A file is parsed once its size and modification time have not changed for
+ * the settle time, so files still being copied are left alone. Files moved
+ * into the directory are parsed after one settle time. Hidden files and
+ * names ending in .tmp or .part are ignored.
+ *
+ * The output is written per period: the files that arrive during a period
+ * go to a hidden directory of the output directory that is renamed to the
+ * start time of the period (yyyyMMdd_HHmmss) when the period ends. Without a
+ * parameter file the instances are spilled as in single pass mode and the
+ * csv files are written at the end of the period with the parameters seen in
+ * it. With a parameter file the rows are appended to the csv files as the
+ * files are parsed.
+ *
+ * The files of the published periods are listed in .watched in the output
+ * directory and are not parsed again after a restart. stop() finishes the
+ * files being parsed, publishes the current period and closes the csv files.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class FolderWatcher {
+
+    static Logger logger = LoggerFactory.getLogger(FolderWatcher.class);
+
+    public static final int DEFAULT_SETTLE_SECONDS = 5;
+
+    public static final int DEFAULT_ROTATE_MINUTES = 60;
+
+    private static final String PROCESSED_LIST = ".watched";
+
+    private final HuaweiCfgSynParser parser;
+
+    private final Path inputDirectory;
+
+    private final Path outputDirectory;
+
+    private long settleMillis = TimeUnit.SECONDS.toMillis(DEFAULT_SETTLE_SECONDS);
+
+    private long rotateMillis = TimeUnit.MINUTES.toMillis(DEFAULT_ROTATE_MINUTES);
+
+    /**
+     * Files waiting to settle with the size, modification time and time of
+     * their last change.
+     */
+    private final Map<Path, long[]> candidates = new LinkedHashMap<Path, long[]>();
+
+    /**
+     * Keys of the files that have been parsed.
+     */
+    private final Set<String> processed = new HashSet<String>();
+
+    /**
+     * Keys of the files parsed in the current period.
+     */
+    private final List<String> periodFiles = new ArrayList<String>();
+
+    private long periodStart = 0;
+
+    private Path periodDirectory = null;
+
+    private volatile boolean stopping = false;
+
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * @param parser Configured parser. Its data source is not used.
+     * @param inputDirectory Directory to watch
+     * @param outputDirectory Directory of the period directories
+     */
+    public FolderWatcher(HuaweiCfgSynParser parser, Path inputDirectory, Path outputDirectory) {
+        this.parser = parser;
+        this.inputDirectory = inputDirectory;
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * Set how long a file has to stay unchanged before it is parsed.
+     *
+     * @param settleSeconds
+     */
+    public void setSettleSeconds(int settleSeconds) {
+        this.settleMillis = TimeUnit.SECONDS.toMillis(Math.max(0, settleSeconds));
+    }
+
+    /**
+     * Set how often the output is rotated.
+     *
+     * @param rotateMinutes
+     */
+    public void setRotateMinutes(int rotateMinutes) {
+        this.rotateMillis = TimeUnit.MINUTES.toMillis(Math.max(1, rotateMinutes));
+    }
+
+    /**
+     * Watch the directory until stop() is called.
+     *
+     * @throws IOException
+     */
+    public void run() throws IOException {
+        try {
+            parser.beginWatch();
+            Files.createDirectories(outputDirectory);
+            watch();
+        } finally {
+            parser.endWatch();
+            stopped.countDown();
+        }
+    }
+
+    private void watch() throws IOException {
+        WatchService watchService = inputDirectory.getFileSystem().newWatchService();
+        try {
+            inputDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            loadProcessed();
+
+            //Files that arrived while the watcher was not running
+            addDirectoryFiles();
+            logger.info("Watching " + inputDirectory + " for new files...");
+
+            while (!stopping) {
+                WatchKey key;
+                try {
+                    key = watchService.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                } catch (ClosedWatchServiceException e) {
+                    break;
+                }
+
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            addDirectoryFiles();
+                        } else {
+                            addCandidate(inputDirectory.resolve((Path) event.context()));
+                        }
+                    }
+                    key.reset();
+                }
+
+                List<Path> ready = getSettledFiles();
+                if (!ready.isEmpty()) {
+                    parseFiles(ready);
+                }
+
+                if (periodDirectory != null
+                        && System.currentTimeMillis() - periodStart >= rotateMillis) {
+                    endPeriod();
+                }
+            }
+
+            if (periodDirectory != null) {
+                endPeriod();
+            }
+        } finally {
+            watchService.close();
+        }
+    }
+
+    /**
+     * Stop watching and wait for the current period to be written.
+     *
+     * @param timeoutSeconds Seconds to wait
+     */
+    public void stop(long timeoutSeconds) {
+        stopping = true;
+        try {
+            if (!stopped.await(timeoutSeconds, TimeUnit.SECONDS)) {
+                logger.warn("Timed out waiting for the watcher to stop.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void addDirectoryFiles() throws IOException {
+        File[] files = inputDirectory.toFile().listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list " + inputDirectory);
+        }
+        for (File f : files) {
+            addCandidate(f.toPath());
+        }
+    }
+
+    private void addCandidate(Path file) {
+        String name = file.getFileName().toString();
+        if (name.startsWith(".") || name.endsWith(".tmp") || name.endsWith(".part")
+                || candidates.containsKey(file)) {
+            return;
+        }
+        candidates.put(file, new long[]{-1, -1, System.currentTimeMillis()});
+    }
+
+    /**
+     * Get the candidates that did not change during the settle time.
+     */
+    private List<Path> getSettledFiles() {
+        List<Path> ready = new ArrayList<Path>();
+        long now = System.currentTimeMillis();
+
+        Iterator<Map.Entry<Path, long[]>> iter = candidates.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<Path, long[]> me = iter.next();
+            File f = me.getKey().toFile();
+            if (!f.isFile()) {
+                //Deleted, renamed away or a directory
+                iter.remove();
+                continue;
+            }
+
+            long[] state = me.getValue();
+            long size = f.length();
+            long lastModified = f.lastModified();
+            if (size != state[0] || lastModified != state[1]) {
+                state[0] = size;
+                state[1] = lastModified;
+                state[2] = now;
+                continue;
+            }
+
+            if (now - state[2] >= settleMillis) {
+                iter.remove();
+                if (processed.add(getKey(me.getKey(), size, lastModified))) {
+                    ready.add(me.getKey());
+                }
+            }
+        }
+
+        Collections.sort(ready);
+        return ready;
+    }
+
+    private static String getKey(Path file, long size, long lastModified) {
+        return file.getFileName() + "\t" + size + "\t" + lastModified;
+    }
+
+    private void parseFiles(List<Path> files) throws IOException {
+        if (periodDirectory == null) {
+            startPeriod();
+        }
+
+        File[] fList = new File[files.size()];
+        for (int i = 0; i < fList.length; i++) {
+            File f = files.get(i).toFile();
+            fList[i] = f;
+            periodFiles.add(getKey(files.get(i), f.length(), f.lastModified()));
+        }
+
+        logger.info("Parsing " + fList.length + " new file(s)...");
+        parser.parseWatchedFiles(fList);
+    }
+
+    private void startPeriod() throws IOException {
+        periodStart = System.currentTimeMillis();
+        periodDirectory = outputDirectory.resolve("." + getPeriodName() + ".tmp");
+        Files.createDirectories(periodDirectory);
+        parser.startWatchPeriod(periodDirectory.toString());
+    }
+
+    /**
+     * Write the csv files of the period and move them to their final
+     * directory.
+     */
+    private void endPeriod() throws IOException {
+        parser.endWatchPeriod();
+
+        Path target = outputDirectory.resolve(getPeriodName());
+        Files.move(periodDirectory, target, StandardCopyOption.ATOMIC_MOVE);
+        saveProcessed(periodFiles);
+        logger.info("Wrote the output of " + periodFiles.size() + " file(s) to " + target);
+
+        periodFiles.clear();
+        periodDirectory = null;
+    }
+
+    private String getPeriodName() {
+        return new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date(periodStart));
+    }
+
+    /**
+     * Read the list of parsed files, dropping the ones that are gone.
+     */
+    private void loadProcessed() throws IOException {
+        Path list = outputDirectory.resolve(PROCESSED_LIST);
+        if (!Files.exists(list)) {
+            return;
+        }
+
+        List<String> kept = new ArrayList<String>();
+        BufferedReader br = Files.newBufferedReader(list, StandardCharsets.UTF_8);
+        try {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String name = line.substring(0, Math.max(0, line.indexOf('\t')));
+                if (!name.isEmpty() && Files.exists(inputDirectory.resolve(name))
+                        && processed.add(line)) {
+                    kept.add(line);
+                }
+            }
+        } finally {
+            br.close();
+        }
+
+        Path tmp = outputDirectory.resolve(PROCESSED_LIST + ".tmp");
+        Files.write(tmp, kept, StandardCharsets.UTF_8);
+        Files.move(tmp, list, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void saveProcessed(List<String> keys) throws IOException {
+        BufferedWriter bw = Files.newBufferedWriter(outputDirectory.resolve(PROCESSED_LIST),
+                StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        try {
+            for (String key : keys) {
+                bw.write(key);
+                bw.newLine();
+            }
+        } finally {
+            bw.close();
+        }
+    }
+}
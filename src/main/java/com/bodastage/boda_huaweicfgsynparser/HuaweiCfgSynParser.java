@@ -8,20 +8,41 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.LinkedHashSet;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Stack;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.Characters;
 import javax.xml.stream.events.EndElement;
 import javax.xml.stream.events.StartElement;
@@ -45,8 +66,26 @@ public class HuaweiCfgSynParser {
 
     static Logger logger = LoggerFactory.getLogger(HuaweiCfgSynParser.class);
 
+    private static final ParserEvents EVENTS = ParserEvents.get();
+
+    /**
+     * Leading columns of the csv file of an MO, before its parameters.
+     */
+    private static final String METADATA_COLUMNS = "FILENAME,DATETIME,NODENAME,"
+            + "SYNCDATAFUNCTIONTYPE,SYNCDATAID,SYNCDATAPRODUCTVERSION,SYNCDATANERMVERSION,"
+            + "SYNCDATAOBJID";
+
+    private static final int METADATA_COLUMN_COUNT = METADATA_COLUMNS.split(",").length;
+
     final static String VERSION = "1.3.0";
 
+    /**
+     * spec:fileFooter attributes written to fileFooter.csv, in column order.
+     *
+     * @since 1.3.0
+     */
+    final static String[] FILE_FOOTER_ATTRIBUTES = {"dateTime", "label", "ExportResult"};
+
     /**
      * Mark that we are in a class tag.
      *
@@ -76,22 +115,91 @@ public class HuaweiCfgSynParser {
     private String baseFileName = "";
 
     /**
-     * The holds the parameters and corresponding values for the moi tag
-     * currently being processed.
+     * The holds the parameter values for the moi tag currently being
+     * processed, indexed by the column slots of moiColumns.
      *
      * @since 1.0.0
+     * @version 1.3.0
+     */
+    private String[] moiValues = new String[64];
+
+    /**
+     * Values of the parameters of the current moi that were replaced by
+     * their translated value. Only allocated when a document has
+     * translations.
+     *
+     * @since 1.3.0
+     */
+    private String[] moiRawValues = null;
+
+    private boolean hasRawValues = false;
+
+    /**
+     * Columns of the moi tag currently being processed. This is null when the
+     * MO is not extracted.
+     *
+     * @since 1.3.0
+     */
+    private ColumnRegistry moiColumns = null;
+
+    /**
+     * Column slot of the last parameter or -1.
+     *
+     * @since 1.3.0
      */
-    private Map<String, String> moiParameterValueMap
-            = new LinkedHashMap<String, String>();
+    private int previousSlot = -1;
 
     /**
      * This holds a map of the Managed Object Instances (MOIs) to the respective
      * csv print writers.
      *
      * @since 1.0.0
+     * @version 1.3.0
+     */
+    private CSVWriterPool moiPrintWriters = new CSVWriterPool();
+
+    /**
+     * Buffer for the csv row being built.
+     *
+     * @since 1.3.0
+     */
+    private final CSVRow csvRow = new CSVRow();
+
+    /**
+     * Record of the MO instance being delivered. Reused for every instance.
+     *
+     * @since 1.3.0
+     */
+    private final MORecord record = new MORecord();
+
+    /**
+     * Writes the MO instances to the csv files.
+     *
+     * @since 1.3.0
+     */
+    private final MORecordHandler csvOutput = new MORecordHandler() {
+        @Override
+        public void onRecord(MORecord record) throws IOException {
+            if (parameterFile != null) {
+                if (ParserStates.EXTRACTING_VALUES == parserState) {
+                    writeParameterFileRow(record);
+                }
+            } else if (ParserStates.EXTRACTING_PARAMETERS_AND_VALUES == parserState
+                    || moExtendedColumns.containsKey(record.mo)) {
+                spillRow(record);
+            } else {
+                writeMORow(record);
+            }
+        }
+    };
+
+    /**
+     * Receives the MO instances. This is the csv output unless another
+     * handler is set.
+     *
+     * @since 1.3.0
      */
-    private Map<String, PrintWriter> moiPrintWriters
-            = new LinkedHashMap<String, PrintWriter>();
+    private MORecordHandler recordHandler = csvOutput;
 
     /**
      * Output directory.
@@ -112,11 +220,10 @@ public class HuaweiCfgSynParser {
      * Tracks Managed Object attributes to write to file. This is dictated by
      * the first instance of the MO found.
      *
-     * @TODO: Handle this better.
-     *
      * @since 1.0.0
+     * @version 1.3.0
      */
-    private Map<String, Stack> moColumns = new LinkedHashMap<String, Stack>();
+    private Map<String, ColumnRegistry> moColumns = new LinkedHashMap<String, ColumnRegistry>();
 
     /**
      * Parser start time.
@@ -140,6 +247,13 @@ public class HuaweiCfgSynParser {
      */
     private String dataSource;
 
+    /**
+     * Finds the files of a directory data source or of an input list.
+     *
+     * @since 1.3.0
+     */
+    private InputFinder inputFinder = new InputFinder();
+
     /**
      * File format version tag for spec:fileHeader.
      *
@@ -233,240 +347,1935 @@ public class HuaweiCfgSynParser {
      */
     private String parameterFile = null;
 
-    public HuaweiCfgSynParser() {
-    }
+    /**
+     * Extract parameters and values in one pass over the input instead of two.
+     *
+     * @since 1.3.0
+     */
+    private boolean singlePass = false;
 
     /**
-     * Set the parameter file name
+     * Spilled rows per MO while the column set is still growing in single
+     * pass mode.
      *
-     * @param filename
+     * @since 1.3.0
      */
-    public void setParameterFile(String filename) {
-        parameterFile = filename;
-    }
+    private SpillFilePool moiSpillFiles = new SpillFilePool();
 
     /**
-     * Extract parameter list from parameter file
+     * Number of files parsed in parallel in directory mode.
      *
-     * @param filename
+     * @since 1.3.0
      */
-    public void getParametersToExtract(String filename) throws FileNotFoundException, IOException {
-        // logger.debug("getParameterToExtract(...");
-        BufferedReader br = new BufferedReader(new FileReader(filename));
-        for (String line; (line = br.readLine()) != null;) {
-            String[] moAndParameters = line.split(":");
-            String mo = moAndParameters[0];
-            String[] parameters = moAndParameters[1].split(",");
+    private int threads = 1;
 
-            // logger.debug("Added mo " + mo);
-            Stack parameterStack = new Stack();
-            for (int i = 0; i < parameters.length; i++) {
-                parameterStack.push(parameters[i]);
+    /**
+     * Size of the parts large uncompressed files are split into when parsing
+     * in parallel, or 0 to parse files whole.
+     *
+     * @since 1.3.0
+     */
+    private long splitSize = DEFAULT_SPLIT_SIZE;
 
-            }
+    public static final long DEFAULT_SPLIT_SIZE = 16L * 1024 * 1024;
 
-            moColumns.put(mo, parameterStack);
+    /**
+     * Buffered output of the file being parsed when this instance is a
+     * worker. Workers do not write to the csv files directly.
+     *
+     * @since 1.3.0
+     */
+    private FileParseResult parseResult = null;
 
-        }
+    /**
+     * XML parsing engine.
+     *
+     * @since 1.3.0
+     */
+    private int engine = ParserEngines.CURSOR;
 
-        //Move to the parameter value extraction stage
-        //parserState = ParserStates.EXTRACTING_VALUES;
-    }
+    /**
+     * Schemas saved by earlier runs. This is null when the cache is not used.
+     *
+     * @since 1.3.0
+     */
+    private SchemaCache schemaCache = null;
 
     /**
-     * Parser entry point
+     * MO columns per product and NRM version. This is what is saved to the
+     * schema cache.
      *
-     * @since 1.0.0
-     * @version 1.1.0
+     * @since 1.3.0
+     */
+    private Map<String, Map<String, ColumnRegistry>> versionColumns
+            = new LinkedHashMap<String, Map<String, ColumnRegistry>>();
+
+    /**
+     * Columns of the current MO in versionColumns.
      *
-     * @throws XMLStreamException
-     * @throws FileNotFoundException
-     * @throws UnsupportedEncodingException
+     * @since 1.3.0
      */
-    public void parse() throws XMLStreamException, FileNotFoundException, UnsupportedEncodingException {
-        //Extract parameters
-        if (parserState == ParserStates.EXTRACTING_PARAMETERS) {
-            processFileOrDirectory();
+    private ColumnRegistry moiVersionColumns = null;
 
-            parserState = ParserStates.EXTRACTING_VALUES;
-        }
+    /**
+     * Schema cache key of the current syndata.
+     *
+     * @since 1.3.0
+     */
+    private String versionKey = null;
 
-        //Extracting values
-        if (parserState == ParserStates.EXTRACTING_VALUES) {
-            processFileOrDirectory();
-            parserState = ParserStates.EXTRACTING_DONE;
-        }
+    /**
+     * Whether moColumns was loaded from the schema cache. MOs and parameters
+     * missing from it are counted in schemaMisses.
+     *
+     * @since 1.3.0
+     */
+    private boolean schemaFromCache = false;
 
-        closeMOPWMap();
+    private long schemaMisses = 0;
 
-        printExecutionTime();
-    }
+    /**
+     * Whether the value pass over a cached schema adds the MOs and parameters
+     * of each syndata to the schema of its version. With a single version the
+     * missing ones are found against moColumns, which holds the same schema.
+     *
+     * @since 1.3.0
+     */
+    private boolean trackVersionColumns = false;
 
     /**
-     * Determines if the source data file is a regular file or a directory and
-     * parses it accordingly
+     * Whether the value pass added MOs or parameters to the schema of a
+     * version, which is then saved to the schema cache.
      *
-     * @since 1.1.0
-     * @version 1.0.0
-     * @throws XMLStreamException
-     * @throws FileNotFoundException
-     * @throws UnsupportedEncodingException
+     * @since 1.3.0
      */
-    public void processFileOrDirectory()
-            throws XMLStreamException, FileNotFoundException, UnsupportedEncodingException {
-        //this.dataFILe;
-        Path file = Paths.get(this.dataSource);
-        boolean isRegularExecutableFile = Files.isRegularFile(file)
-                & Files.isReadable(file);
+    private boolean versionColumnsChanged = false;
 
-        boolean isReadableDirectory = Files.isDirectory(file)
-                & Files.isReadable(file);
+    /**
+     * Columns of the MOs extended with the MOs and parameters missing from
+     * the schema cache. They take the place of the cached columns, which are
+     * shared with the workers and do not change during the pass. The rows of
+     * an extended MO are spilled as in single pass mode.
+     *
+     * @since 1.3.0
+     */
+    private Map<String, ColumnRegistry> moExtendedColumns
+            = new LinkedHashMap<String, ColumnRegistry>();
 
-        if (isRegularExecutableFile) {
-            this.setFileName(this.dataSource);
-            this.parseFile(this.dataSource);
-        }
+    /**
+     * Number of parameters in the csv header of the extended MOs whose csv
+     * file was started before they were extended.
+     *
+     * @since 1.3.0
+     */
+    private Map<String, Integer> extendedHeaderColumns = new HashMap<String, Integer>();
 
-        if (isReadableDirectory) {
+    /**
+     * Parameters of each MO in the order the value pass over a cached schema
+     * finds them, which is the order a parameter pass would give them. The
+     * csv files of the extended MOs are written with their columns in this
+     * order. It is null in other passes and in resumed runs.
+     *
+     * @since 1.3.0
+     */
+    private Map<String, ColumnRegistry> moDiscoveredColumns = null;
 
-            File directory = new File(this.dataSource);
+    /**
+     * Columns of the current MO in moDiscoveredColumns.
+     *
+     * @since 1.3.0
+     */
+    private ColumnRegistry moiDiscoveredColumns = null;
 
-            //get all the files from a directory
-            File[] fList = directory.listFiles();
+    /**
+     * Reuse the output of the inputs that did not change since the last run
+     * in the output directory.
+     *
+     * @since 1.3.0
+     */
+    private boolean incremental = false;
 
-            for (File f : fList) {
-                resetInternalVariables();
-                
-                this.setFileName(f.getAbsolutePath());
-                try {
+    /**
+     * Seconds between checkpoints of the value extraction pass, or 0 for no
+     * checkpoints.
+     *
+     * @since 1.3.0
+     */
+    private int checkpointInterval = 0;
 
-                    //@TODO: Duplicate call in parseFile. Remove!
-                    baseFileName = getFileBasename(this.dataFile);
-                    if (parserState == ParserStates.EXTRACTING_PARAMETERS) {
-                        logger.info("Extracting parameters from " + this.baseFileName + "...");
-                    } else {
-                        logger.info("Parsing " + this.baseFileName + "...");
-                    }
+    /**
+     * Go on from the last checkpoint in the output directory.
+     *
+     * @since 1.3.0
+     */
+    private boolean resume = false;
 
-                    resetInternalVariables();
-                    //Parse
-                    this.parseFile(f.getAbsolutePath());
-                    if (parserState == ParserStates.EXTRACTING_PARAMETERS) {
-                        logger.info("Done.");
-                    } else {
-                        logger.info("Done.");
-                        //System.out.println(this.baseFileName + " successfully parsed.\n");
-                    }
+    /**
+     * Journal of the value extraction pass or null.
+     *
+     * @since 1.3.0
+     */
+    private CheckpointJournal checkpoint = null;
 
-                } catch (Exception e) {
-                    logger.error(e.getMessage());
-                    logger.info("Skipping file: " + this.baseFileName + "\n");
-                }
-            }
-        }
+    /**
+     * Inputs of the last run. This is null when the run is not incremental.
+     *
+     * @since 1.3.0
+     */
+    private IncrementalManifest manifest = null;
 
-    }
+    /**
+     * Number of csv rows per MO of the input being parsed or committed in an
+     * incremental run.
+     *
+     * @since 1.3.0
+     */
+    private Map<String, Integer> inputRowCounts = null;
 
     /**
-     * Parses a single file
+     * csv headers of the MOs written with a parameter file in an incremental
+     * run. Their rows are spilled and written at the end of the run.
      *
-     * @since 1.0.0
-     * @version 1.0.0
-     * @throws XMLStreamException
-     * @throws FileNotFoundException
-     * @throws UnsupportedEncodingException
+     * @since 1.3.0
+     */
+    private Map<String, String> incrementalHeaders = new HashMap<String, String>();
+
+    /**
+     * Snapshot of the last run the output is compared with. This is null
+     * when the full output is written.
      *
+     * @since 1.3.0
      */
-    public void parseFile(String filename)
-            throws XMLStreamException, FileNotFoundException, UnsupportedEncodingException {
-        XMLInputFactory factory = XMLInputFactory.newInstance();
+    private DeltaSnapshot deltaSnapshot = null;
 
-        XMLEventReader eventReader = factory.createXMLEventReader(
-                new FileReader(filename));
-        baseFileName = getFileBasename(filename);
+    /**
+     * MOs with a csv file in the output directory.
+     *
+     * @since 1.3.0
+     */
+    private Set<String> outputMOs = new LinkedHashSet<String>();
 
-        while (eventReader.hasNext()) {
-            XMLEvent event = eventReader.nextEvent();
+    /**
+     * Counters of the run. Shared with the workers.
+     *
+     * @since 1.3.0
+     */
+    private ParserMetrics metrics = new ParserMetrics();
 
-            switch (event.getEventType()) {
-                case XMLStreamConstants.START_ELEMENT:
-                    startElementEvent(event);
-                    break;
-                case XMLStreamConstants.SPACE:
-                case XMLStreamConstants.CHARACTERS:
-                    characterEvent(event);
-                    break;
-                case XMLStreamConstants.END_ELEMENT:
-                    endELementEvent(event);
-                    break;
-                case XMLStreamConstants.COMMENT:
-                    if (moiParameterValueMap.containsKey(this.previousTag)) {
-                        String comment
-                                = ((javax.xml.stream.events.Comment) event).getText();
-                        moiParameterValueMap.put(previousTag, comment);
-                    }
-                    break;
-            }
-        }
+    /**
+     * File the metrics are written to periodically or null.
+     *
+     * @since 1.3.0
+     */
+    private File metricsFile = null;
 
-    }
+    private int metricsInterval = 10;
 
     /**
-     * Handle start element event.
+     * Logs the progress of the passes or null.
      *
-     * @param xmlEvent
+     * @since 1.3.0
+     */
+    private ProgressReporter progress = null;
+
+    public HuaweiCfgSynParser() {
+    }
+
+    /**
+     * Set the parameter file name
      *
-     * @since 1.0.0
-     * @version 1.0.0
+     * @param filename
+     */
+    public void setParameterFile(String filename) {
+        parameterFile = filename;
+    }
+
+    /**
+     * Parse the input in a single pass. Rows are spilled per MO and aligned to
+     * the final column set once all the input has been read.
      *
+     * @since 1.3.0
+     * @param singlePass
      */
-    public void startElementEvent(XMLEvent xmlEvent) throws FileNotFoundException {
-        StartElement startElement = xmlEvent.asStartElement();
-        String qName = startElement.getName().getLocalPart();
-        String prefix = startElement.getName().getPrefix();
+    public void setSinglePass(boolean singlePass) {
+        this.singlePass = singlePass;
+    }
 
-        Iterator<Attribute> attributes = startElement.getAttributes();
+    /**
+     * Set the parsing stage. parse() moves through the stages on its own; this
+     * is for driving parseInput directly, for example from the benchmarks.
+     *
+     * @since 1.3.0
+     * @param parserState One of the ParserStates
+     */
+    public void setParserState(int parserState) {
+        this.parserState = parserState;
+    }
 
-        //<spec:syndata ..>
-        if (qName.equals("syndata")) {
-            while (attributes.hasNext()) {
-                Attribute attribute = attributes.next();
-                if (attribute.getName().getLocalPart().equals("FunctionType")) {
-                    this.functionType = attribute.getValue();
-                }
-                if (attribute.getName().getLocalPart().equals("Id")) {
-                    this.syndataId = attribute.getValue();
-                    String[] arr = this.syndataId.split("=");
-                    if (arr.length > 1) {
-                        this.nodeName = arr[1];
-                    } else {
-                        this.nodeName = this.syndataId;
-                    }
-                }
-                if (attribute.getName().getLocalPart().equals("productversion")) {
-                    this.productVersion = attribute.getValue();
-                }                //nermversion
-                if (attribute.getName().getLocalPart().equals("nermversion")) {
-                    this.neRMVersion = attribute.getValue();
-                }
-                if (attribute.getName().getLocalPart().equals("objId")) {
-                    this.syndataObjId = attribute.getValue();
-                }
-            }
-        }
+    /**
+     * Set the number of files to parse in parallel in directory mode.
+     *
+     * @since 1.3.0
+     * @param threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
 
-        //spec:fileFooter
-        if (qName.equals("fileFooter") && parserState == ParserStates.EXTRACTING_PARAMETERS) {
-            while (attributes.hasNext()) {
-                Attribute attribute = attributes.next();
-                if (attribute.getName().getLocalPart().equals("dateTime")) {
-                    this.varDateTime = attribute.getValue();
-                }
-            }
-        }
+    /**
+     * Set the size of the parts that uncompressed files of at least twice
+     * this size are split into when parsing with more than one thread. The
+     * parts are cut at class elements and parsed in parallel.
+     *
+     * @since 1.3.0
+     * @param splitSize Bytes or 0 to parse files whole
+     */
+    public void setSplitSize(long splitSize) {
+        this.splitSize = splitSize;
+    }
 
-        //<parameter>
-        if (inClass == true && inAttributes == false
+    /**
+     * Set how the files of a directory are found. By default the files
+     * directly in the directory are parsed in the order they are listed.
+     *
+     * @since 1.3.0
+     * @param inputFinder
+     */
+    public void setInputFinder(InputFinder inputFinder) {
+        this.inputFinder = inputFinder;
+    }
+
+    /**
+     * Set the number of threads writing the csv files. The parser hands the
+     * rows to them through bounded queues and goes on parsing. With 0 the
+     * files are written on the parsing thread.
+     *
+     * @since 1.3.0
+     * @param writeThreads
+     */
+    public void setWriteThreads(int writeThreads) {
+        moiPrintWriters.setWriteThreads(writeThreads);
+    }
+
+    /**
+     * Set the number of 64 KB buffers queued per writer thread before the
+     * parser waits for the writers.
+     *
+     * @since 1.3.0
+     * @param writeQueueSize
+     */
+    public void setWriteQueueSize(int writeQueueSize) {
+        moiPrintWriters.setWriteQueueSize(writeQueueSize);
+    }
+
+    /**
+     * Set the maximum number of csv files kept open. The least recently used
+     * file is closed when more are needed.
+     *
+     * @since 1.3.0
+     * @param maxOpenFiles
+     */
+    public void setMaxOpenFiles(int maxOpenFiles) {
+        moiPrintWriters.setMaxOpen(maxOpenFiles);
+        moiSpillFiles.setMaxOpen(maxOpenFiles);
+    }
+
+    /**
+     * Set the XML parsing engine.
+     *
+     * @since 1.3.0
+     * @param engine One of the ParserEngines
+     */
+    public void setEngine(int engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Use a schema cache directory. Runs without a parameter file load the
+     * schema of the input's versions from it instead of extracting the
+     * parameters and save the schemas they extract to it.
+     *
+     * @since 1.3.0
+     * @param directory
+     */
+    public void setSchemaCache(String directory) {
+        schemaCache = new SchemaCache(new File(directory));
+    }
+
+    /**
+     * Only parse the inputs that changed since the last incremental run in
+     * the output directory. The rows of the other inputs are kept in the csv
+     * files. Incremental runs parse in a single pass.
+     *
+     * @since 1.3.0
+     * @param incremental
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Save a checkpoint of the csv files at a file boundary every given
+     * number of seconds while extracting values, so that a run that stopped
+     * can be resumed. Not available in single pass, incremental and delta
+     * runs, which write their csv files at the end.
+     *
+     * @since 1.3.0
+     * @param intervalSeconds Seconds between checkpoints or 0 to disable
+     */
+    public void setCheckpointInterval(int intervalSeconds) {
+        this.checkpointInterval = intervalSeconds;
+    }
+
+    /**
+     * Go on from the last checkpoint of the run that stopped in the output
+     * directory. The csv files are truncated to the checkpoint and the
+     * inputs completed before it are skipped. The run has to use the same
+     * options. Without a checkpoint the run starts over.
+     *
+     * @since 1.3.0
+     * @param resume
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * Only write the MO instances that were added, modified or removed since
+     * the run that saved the snapshot directory. Cannot be used in
+     * incremental runs.
+     *
+     * @since 1.3.0
+     * @param directory Snapshot directory
+     * @param keyFile Identifying parameters per MO or null
+     * @throws IOException
+     */
+    public void setDeltaSnapshot(String directory, String keyFile) throws IOException {
+        deltaSnapshot = new DeltaSnapshot(new File(directory));
+        if (keyFile != null) {
+            deltaSnapshot.loadKeys(keyFile);
+        }
+    }
+
+    /**
+     * Get the counters of the run.
+     *
+     * @since 1.3.0
+     * @return ParserMetrics
+     */
+    public ParserMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Write the metrics to a file in the Prometheus text format while
+     * parsing.
+     *
+     * @since 1.3.0
+     * @param file
+     * @param intervalSeconds
+     */
+    public void setMetricsFile(String file, int intervalSeconds) {
+        this.metricsFile = new File(file);
+        this.metricsInterval = intervalSeconds;
+    }
+
+    /**
+     * Deliver the MO instances to a handler instead of writing csv files.
+     * The instances are delivered in the stages that extract values. Inputs
+     * are parsed one at a time on the calling thread and incremental and
+     * delta runs are not supported. The same record is passed for every
+     * instance, so a handler keeping records must keep MORecord.copy().
+     *
+     * @since 1.3.0
+     * @param handler Record handler or null to write csv files
+     */
+    public void setRecordHandler(MORecordHandler handler) {
+        this.recordHandler = handler == null ? csvOutput : handler;
+    }
+
+    /**
+     * Get a stream of the MO instances of a file or of the files in a
+     * directory. No csv files are written.
+     *
+     * Each document is parsed in a single pass, so a record has the
+     * parameters of its MO seen so far in its document, and its date time is
+     * null as the file footer follows the instances. The records are copies
+     * that can be kept. A parallel stream parses different files on different
+     * threads. Documents that cannot be parsed are logged and skipped.
+     * A stream that is not consumed to the end should be closed to close the
+     * document it stopped in.
+     *
+     * @since 1.3.0
+     * @param path File or directory
+     * @return Stream
+     * @throws IOException If the path does not exist
+     */
+    public static Stream<MORecord> stream(Path path) throws IOException {
+        return stream(path, new InputFinder());
+    }
+
+    /**
+     * Get a stream of the MO instances of the files found by an input
+     * finder, with its depth, globs or input list.
+     *
+     * @since 1.3.0
+     * @param path File or directory, not used with an input list
+     * @param finder
+     * @return Stream
+     * @throws IOException If the path does not exist
+     */
+    public static Stream<MORecord> stream(final Path path, final InputFinder finder)
+            throws IOException {
+        if (!finder.hasInputList() && !Files.exists(path)) {
+            throw new IOException("Cannot find " + path);
+        }
+
+        List<Path> files = new ArrayList<Path>();
+        for (Iterator<Path> it = finder.find(path); it.hasNext();) {
+            files.add(it.next());
+        }
+        final MORecordSpliterator spliterator = new MORecordSpliterator(
+                files.toArray(new Path[files.size()]), new Function<Path, String>() {
+                    @Override
+                    public String apply(Path file) {
+                        return finder.getName(path, file);
+                    }
+                }, 0, files.size());
+        return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+            @Override
+            public void run() {
+                spliterator.close();
+            }
+        });
+    }
+
+    /**
+     * Log the progress of each pass over the input.
+     *
+     * @since 1.3.0
+     * @param intervalSeconds Seconds between progress lines
+     */
+    public void setProgressInterval(int intervalSeconds) {
+        progress = new ProgressReporter(metrics, intervalSeconds);
+    }
+
+    /**
+     * Extract parameter list from parameter file
+     *
+     * @param filename
+     */
+    public void getParametersToExtract(String filename) throws FileNotFoundException, IOException {
+        // logger.debug("getParameterToExtract(...");
+        BufferedReader br = new BufferedReader(new FileReader(filename));
+        try {
+            SchemaCache.readSchema(br, moColumns);
+        } finally {
+            br.close();
+        }
+
+        //Move to the parameter value extraction stage
+        //parserState = ParserStates.EXTRACTING_VALUES;
+    }
+
+    /**
+     * Parser entry point
+     *
+     * @since 1.0.0
+     * @version 1.2.0
+     *
+     * @throws XMLStreamException
+     * @throws IOException
+     */
+    public void parse() throws XMLStreamException, IOException {
+        moiPrintWriters.setMetrics(metrics);
+        if (metricsFile != null) {
+            metrics.startFileExport(metricsFile, metricsInterval);
+        }
+        try {
+            parseSources();
+        } finally {
+            deleteSpillFiles();
+            if (progress != null) {
+                progress.close();
+            }
+            metrics.setStage(ParserStates.EXTRACTING_DONE);
+            metrics.setCurrentFile(null);
+            if (metricsFile != null) {
+                metrics.stopFileExport();
+            }
+        }
+
+        printExecutionTime();
+    }
+
+    /**
+     * Run the parsing stages.
+     *
+     * @since 1.3.0
+     * @throws XMLStreamException
+     * @throws IOException
+     */
+    private void parseSources() throws XMLStreamException, IOException {
+        if (recordHandler != csvOutput && (incremental || deltaSnapshot != null)) {
+            throw new IllegalStateException("Incremental and delta runs need the csv output");
+        }
+        if (incremental && deltaSnapshot != null) {
+            throw new IllegalStateException("Incremental runs keep all rows in the csv files "
+                    + "and cannot be delta runs");
+        }
+
+        if ((checkpointInterval > 0 || resume)
+                && (singlePass || incremental || deltaSnapshot != null || recordHandler != csvOutput)) {
+            throw new IllegalStateException("Checkpoints cannot be used in single pass, "
+                    + "incremental or delta runs or without the csv output");
+        }
+        if (checkpointInterval > 0 || resume) {
+            checkpoint = new CheckpointJournal(new File(outputDirectory),
+                    checkpointInterval > 0 ? checkpointInterval : CheckpointJournal.DEFAULT_INTERVAL_SECONDS);
+        }
+        boolean resumed = resume && resumeCheckpoint();
+
+        int pass = 0;
+        int passes = singlePass || parserState == ParserStates.EXTRACTING_VALUES ? 1 : 2;
+
+        //What an input contributes to the output only depends on the input
+        //when parameters and values are extracted in one pass. The columns
+        //of the last run come first so that its rows only need padding.
+        if (incremental) {
+            singlePass = true;
+            manifest = IncrementalManifest.open(new File(outputDirectory),
+                    parameterFile == null ? "discover"
+                            : "parameters=" + IncrementalManifest.hash(new File(parameterFile)));
+            if (parameterFile == null) {
+                mergeSchema(moColumns, manifest.getSchema());
+            }
+            for (Map.Entry<String, Map<String, ColumnRegistry>> me
+                    : manifest.getVersionColumns().entrySet()) {
+                Map<String, ColumnRegistry> schema = new LinkedHashMap<String, ColumnRegistry>();
+                mergeSchema(schema, me.getValue());
+                versionColumns.put(me.getKey(), schema);
+            }
+        }
+
+        //Start from the cached schema of the input's versions
+        moDiscoveredColumns = null;
+        if (!singlePass && schemaCache != null && parameterFile == null
+                && parserState == ParserStates.EXTRACTING_PARAMETERS && loadCachedSchema()) {
+            schemaFromCache = true;
+            moDiscoveredColumns = new LinkedHashMap<String, ColumnRegistry>();
+            parserState = ParserStates.EXTRACTING_VALUES;
+        }
+
+        if (schemaFromCache) {
+            passes = 1;
+            trackVersionColumns = versionColumns.size() > 1;
+            if (!resumed) {
+                startCheckpoints();
+            }
+            resumed = false;
+            processPass(++pass, passes);
+            endCheckpoints();
+            parserState = ParserStates.EXTRACTING_DONE;
+
+            if (schemaMisses > 0) {
+                logger.info("Added " + schemaMisses + " MOs or parameters missing from "
+                        + "the schema cache to " + moExtendedColumns.size() + " MOs.");
+            }
+        }
+
+        //Extract parameters and values in one pass
+        if (singlePass && parserState == ParserStates.EXTRACTING_PARAMETERS) {
+            parserState = ParserStates.EXTRACTING_PARAMETERS_AND_VALUES;
+            processPass(++pass, passes);
+            if (manifest == null) {
+                writeSpilledRows();
+            }
+            saveSchemaCache();
+            parserState = ParserStates.EXTRACTING_DONE;
+        }
+
+        //Extract parameters
+        if (parserState == ParserStates.EXTRACTING_PARAMETERS) {
+            processPass(++pass, passes);
+            saveSchemaCache();
+
+            parserState = ParserStates.EXTRACTING_VALUES;
+        }
+
+        //Extracting values
+        if (parserState == ParserStates.EXTRACTING_VALUES) {
+            if (!resumed) {
+                startCheckpoints();
+            }
+            processPass(++pass, passes);
+            endCheckpoints();
+            parserState = ParserStates.EXTRACTING_DONE;
+        }
+
+        closeMOPWMap();
+
+        //The csv files of the extended MOs are rewritten with the new
+        //columns, after which the checkpoints no longer match them
+        if (!moExtendedColumns.isEmpty()) {
+            if (checkpoint != null) {
+                checkpoint.delete();
+            }
+            writeSpilledRows();
+            saveSchemaCache();
+        } else if (versionColumnsChanged) {
+            saveSchemaCache();
+        }
+
+        if (checkpoint != null) {
+            checkpoint.delete();
+        }
+
+        if (manifest != null) {
+            writeIncrementalOutput();
+            manifest.save(moColumns, versionColumns, outputMOs);
+        }
+
+        if (deltaSnapshot != null) {
+            deltaSnapshot.apply(new File(outputDirectory), outputMOs);
+        }
+    }
+
+    /**
+     * Restore the state of the last checkpoint in the output directory. The
+     * csv files are truncated to their length at the checkpoint and appended
+     * to.
+     *
+     * @since 1.3.0
+     * @return boolean false if there is no checkpoint
+     * @throws IOException
+     */
+    private boolean resumeCheckpoint() throws IOException {
+        if (!checkpoint.resume()) {
+            logger.info("No checkpoint in " + outputDirectory + ". Parsing from the start.");
+            return false;
+        }
+
+        moColumns.clear();
+        moColumns.putAll(checkpoint.getSchema());
+        varDateTime = checkpoint.getDateTime();
+        schemaFromCache = checkpoint.isSchemaFromCache();
+        schemaMisses = checkpoint.getSchemaMisses();
+        parserState = ParserStates.EXTRACTING_VALUES;
+
+        for (Map.Entry<String, Long> me : checkpoint.getOutputLengths().entrySet()) {
+            File moiFile = new File(outputDirectory + File.separatorChar + me.getKey() + ".csv");
+            FileChannel channel = FileChannel.open(moiFile.toPath(), StandardOpenOption.WRITE);
+            try {
+                if (channel.size() < me.getValue()) {
+                    throw new IOException(moiFile + " is shorter than at the last checkpoint");
+                }
+                channel.truncate(me.getValue());
+            } finally {
+                channel.close();
+            }
+            moiPrintWriters.resume(me.getKey(), moiFile);
+            outputMOs.add(me.getKey());
+        }
+
+        logger.info("Resuming from the last checkpoint. Skipping "
+                + checkpoint.getCompletedCount() + " completed input(s).");
+        return true;
+    }
+
+    /**
+     * Start the journal of a value extraction pass.
+     *
+     * @since 1.3.0
+     */
+    private void startCheckpoints() throws IOException {
+        if (checkpoint != null) {
+            checkpoint.start(moColumns, varDateTime, schemaFromCache);
+        }
+    }
+
+    /**
+     * Save a checkpoint after an input if the interval has passed.
+     *
+     * @since 1.3.0
+     * @param inputId Input whose rows have been written
+     */
+    private void addCheckpointInput(String inputId) throws IOException {
+        if (checkpoint == null || parserState != ParserStates.EXTRACTING_VALUES) {
+            return;
+        }
+        checkpoint.addCompleted(inputId);
+
+        //Spilled rows are not journaled, so there are no more checkpoints
+        //once an MO has been extended
+        if (checkpoint.isDue() && moExtendedColumns.isEmpty()) {
+            checkpoint.checkpoint(moiPrintWriters.sync(), schemaMisses);
+        }
+    }
+
+    /**
+     * Save the checkpoint of the end of a value extraction pass.
+     *
+     * @since 1.3.0
+     */
+    private void endCheckpoints() throws IOException {
+        if (checkpoint != null && moExtendedColumns.isEmpty()) {
+            checkpoint.checkpoint(moiPrintWriters.sync(), schemaMisses);
+        }
+    }
+
+    /**
+     * Get the inputs that were not completed before the last checkpoint.
+     *
+     * @since 1.3.0
+     */
+    private Iterator<ParserInput> skipCompletedInputs(final Iterator<ParserInput> inputs) {
+        if (checkpoint == null || parserState != ParserStates.EXTRACTING_VALUES
+                || checkpoint.getCompletedCount() == 0) {
+            return inputs;
+        }
+
+        return new Iterator<ParserInput>() {
+            private ParserInput next = null;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && inputs.hasNext()) {
+                    ParserInput input = inputs.next();
+                    if (!checkpoint.isCompleted(input.getId())) {
+                        next = input;
+                    } else if (progress != null) {
+                        try {
+                            progress.addSkipped(Math.max(0, input.getSize()));
+                        } catch (IOException e) {
+                            logger.debug("Cannot get the size of " + input.getName());
+                        }
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public ParserInput next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ParserInput input = next;
+                next = null;
+                return input;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Start a watch mode run.
+     *
+     * @since 1.3.0
+     */
+    void beginWatch() {
+        if (recordHandler != csvOutput || incremental || deltaSnapshot != null) {
+            throw new IllegalStateException(
+                    "Watch mode cannot be combined with incremental or delta runs");
+        }
+        moiPrintWriters.setMetrics(metrics);
+        if (metricsFile != null) {
+            metrics.startFileExport(metricsFile, metricsInterval);
+        }
+    }
+
+    /**
+     * End a watch mode run.
+     *
+     * @since 1.3.0
+     */
+    void endWatch() {
+        deleteSpillFiles();
+        metrics.setStage(ParserStates.EXTRACTING_DONE);
+        metrics.setCurrentFile(null);
+        if (metricsFile != null) {
+            metrics.stopFileExport();
+        }
+    }
+
+    /**
+     * Start writing the files of a watch period to a directory. Without a
+     * parameter file the instances are spilled and endWatchPeriod writes the
+     * csv files with the parameters seen in the period.
+     *
+     * @since 1.3.0
+     * @param directory
+     */
+    void startWatchPeriod(String directory) {
+        outputDirectory = directory;
+        outputMOs.clear();
+        varDateTime = null;
+        if (parameterFile == null) {
+            moColumns.clear();
+            parserState = ParserStates.EXTRACTING_PARAMETERS_AND_VALUES;
+        } else {
+            parserState = ParserStates.EXTRACTING_VALUES;
+        }
+    }
+
+    /**
+     * Parse files into the current watch period. Files that cannot be parsed
+     * are logged and skipped.
+     *
+     * @since 1.3.0
+     * @param files
+     * @throws IOException
+     */
+    void parseWatchedFiles(File[] files) throws IOException {
+        processInputs(ParserInput.expandAll(files));
+    }
+
+    /**
+     * Write the csv files of the current watch period and close them.
+     *
+     * @since 1.3.0
+     * @throws IOException
+     */
+    void endWatchPeriod() throws IOException {
+        if (parserState == ParserStates.EXTRACTING_PARAMETERS_AND_VALUES) {
+            writeSpilledRows();
+            saveSchemaCache();
+        }
+        closeMOPWMap();
+    }
+
+    /**
+     * Parse the data source in the current state, reporting the progress of
+     * the pass.
+     *
+     * @since 1.3.0
+     * @param pass Number of the pass
+     * @param passes Expected number of passes
+     * @throws XMLStreamException
+     * @throws IOException
+     */
+    private void processPass(int pass, int passes) throws XMLStreamException, IOException {
+        if (progress == null) {
+            processFileOrDirectory();
+            return;
+        }
+
+        if (!progress.hasTotal()) {
+            progress.setTotalBytes(estimateDataSourceBytes());
+        }
+        progress.startPhase(ParserStates.getName(parserState).toLowerCase(Locale.ROOT)
+                .replace('_', ' '), pass, passes);
+        try {
+            processFileOrDirectory();
+        } finally {
+            progress.endPhase();
+        }
+    }
+
+    /**
+     * Estimate the uncompressed size of the documents of the data source
+     * from the file sizes.
+     *
+     * @since 1.3.0
+     * @return long Bytes
+     */
+    private long estimateDataSourceBytes() {
+        Iterator<Path> files;
+        if (isFileDataSource()) {
+            files = Collections.singletonList(Paths.get(dataSource)).iterator();
+        } else {
+            files = inputFinder.find(dataSource == null ? null : Paths.get(dataSource));
+        }
+
+        long total = 0;
+        while (files.hasNext()) {
+            Path f = files.next();
+            if (!Files.isRegularFile(f)) {
+                continue;
+            }
+            try {
+                total += ParserInput.estimateDocumentBytes(f, ParserInput.detectFormat(f));
+            } catch (IOException e) {
+                logger.debug("Cannot estimate the size of " + f + ": " + e.getMessage());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Determines if the source data file is a regular file or a directory and
+     * parses it accordingly
+     *
+     * @since 1.1.0
+     * @version 1.0.0
+     * @throws XMLStreamException
+     * @throws IOException
+     */
+    public void processFileOrDirectory()
+            throws XMLStreamException, IOException {
+        //The files come from the input list
+        if (inputFinder.hasInputList()) {
+            processInputs(findInputs(null));
+            return;
+        }
+
+        //this.dataFILe;
+        Path file = Paths.get(this.dataSource);
+        boolean isRegularExecutableFile = Files.isRegularFile(file)
+                & Files.isReadable(file);
+
+        boolean isReadableDirectory = Files.isDirectory(file)
+                & Files.isReadable(file);
+
+        if (isRegularExecutableFile) {
+            this.setFileName(this.dataSource);
+
+            //Archives hold one document per NE. A large plain file is split
+            //into parts by the workers.
+            int format = ParserInput.detectFormat(file);
+            boolean split = format == ParserInput.PLAIN && threads > 1 && splitSize > 0
+                    && recordHandler == csvOutput;
+            if (ParserInput.isArchive(format) || manifest != null || split || checkpoint != null) {
+                processInputs(ParserInput.expand(file, format));
+            } else {
+                this.parseInput(ParserInput.forFile(file, format));
+            }
+        }
+
+        if (isReadableDirectory) {
+
+            //Walk the directory as the files are parsed
+            processInputs(findInputs(file));
+        }
+
+    }
+
+    /**
+     * Get the documents of the data source.
+     *
+     * @since 1.3.0
+     * @return Iterator
+     * @throws IOException
+     */
+    private Iterator<ParserInput> getInputs() throws IOException {
+        if (inputFinder.hasInputList()) {
+            return findInputs(null);
+        }
+        Path file = Paths.get(this.dataSource);
+        if (isFileDataSource()) {
+            return ParserInput.expand(file, ParserInput.detectFormat(file));
+        }
+        if (Files.isDirectory(file) && Files.isReadable(file)) {
+            return findInputs(file);
+        }
+        return Collections.<ParserInput>emptyList().iterator();
+    }
+
+    /**
+     * Get the documents of the files the input finder finds in a data
+     * source, named for the FILENAME column by the input finder.
+     *
+     * @since 1.3.0
+     * @param source Directory or null with an input list
+     * @return Iterator
+     */
+    private Iterator<ParserInput> findInputs(final Path source) {
+        final InputFinder finder = inputFinder;
+        return ParserInput.expandAll(finder.find(source), new Function<Path, String>() {
+            @Override
+            public String apply(Path file) {
+                return finder.getName(source, file);
+            }
+        });
+    }
+
+    /**
+     * Check whether the data source is a single readable file.
+     */
+    private boolean isFileDataSource() {
+        if (inputFinder.hasInputList()) {
+            return false;
+        }
+        Path file = Paths.get(this.dataSource);
+        return Files.isRegularFile(file) && Files.isReadable(file);
+    }
+
+    /**
+     * Load the cached schemas of the versions in the input. The versions and
+     * the date time of the last file footer are read from the raw bytes of
+     * each document, on the worker pool when there is more than one thread.
+     *
+     * @since 1.3.0
+     * @return boolean false if a version is not in the cache
+     * @throws IOException
+     */
+    private boolean loadCachedSchema() throws IOException {
+        boolean complete = true;
+        String dateTime = null;
+
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        Deque<Future<SchemaCache.Summary>> pending
+                = new ArrayDeque<Future<SchemaCache.Summary>>();
+        Iterator<ParserInput> inputs = getInputs();
+        try {
+            while (inputs.hasNext() || !pending.isEmpty()) {
+                SchemaCache.Summary summary;
+                if (executor == null) {
+                    summary = summarize(inputs.next());
+                } else if (inputs.hasNext() && pending.size() < threads * 2) {
+                    final ParserInput input = detachInput(inputs.next());
+                    if (input != null) {
+                        pending.add(executor.submit(new Callable<SchemaCache.Summary>() {
+                            @Override
+                            public SchemaCache.Summary call() {
+                                return summarize(input);
+                            }
+                        }));
+                    }
+                    continue;
+                } else {
+                    summary = awaitResult(pending.poll());
+                }
+
+                if (summary == null) {
+                    continue;
+                }
+
+                if (summary.dateTime != null) {
+                    dateTime = summary.dateTime;
+                }
+
+                //Documents without versions are checked while parsing
+                if (summary.key == null || versionColumns.containsKey(summary.key)) {
+                    continue;
+                }
+
+                Map<String, ColumnRegistry> schema = schemaCache.load(summary.key);
+                if (schema == null) {
+                    logger.info("No cached schema for " + summary.key);
+                    complete = false;
+                    continue;
+                }
+                versionColumns.put(summary.key, schema);
+                mergeSchema(moColumns, schema);
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        if (!complete || versionColumns.isEmpty()) {
+            return false;
+        }
+
+        varDateTime = dateTime;
+        return true;
+    }
+
+    /**
+     * Read the versions and the footer date time of a document. Plain files
+     * are read from both ends.
+     *
+     * @since 1.3.0
+     * @return SchemaCache.Summary or null if the input cannot be read
+     */
+    private static SchemaCache.Summary summarize(ParserInput input) {
+        try {
+            Path file = input.getPlainFile();
+            if (file != null) {
+                return SchemaCache.summarize(file);
+            }
+            InputStream in = input.open();
+            try {
+                return SchemaCache.summarize(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            logger.error(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Save the extracted schemas to the schema cache.
+     *
+     * @since 1.3.0
+     */
+    private void saveSchemaCache() {
+        if (schemaCache == null || parameterFile != null) {
+            return;
+        }
+
+        for (Map.Entry<String, Map<String, ColumnRegistry>> me : versionColumns.entrySet()) {
+            try {
+                schemaCache.save(me.getKey(), me.getValue());
+            } catch (IOException e) {
+                logger.error("Cannot save the schema of " + me.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Add the MOs and columns of a schema to another one.
+     *
+     * @since 1.3.0
+     * @return boolean Whether an MO or column was added
+     */
+    private static boolean mergeSchema(Map<String, ColumnRegistry> schema,
+            Map<String, ColumnRegistry> other) {
+        boolean changed = false;
+        for (Map.Entry<String, ColumnRegistry> me : other.entrySet()) {
+            ColumnRegistry columns = schema.get(me.getKey());
+            if (columns == null) {
+                columns = new ColumnRegistry();
+                schema.put(me.getKey(), columns);
+                changed = true;
+            }
+            ColumnRegistry otherColumns = me.getValue();
+            for (int i = 0; i < otherColumns.size(); i++) {
+                int size = columns.size();
+                if (columns.add(otherColumns.get(i)) == size) {
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Parse a sequence of documents, skipping the ones that fail.
+     *
+     * @since 1.3.0
+     * @param inputs
+     * @throws IOException
+     */
+    private void processInputs(Iterator<ParserInput> inputs) throws IOException {
+        if (threads > 1 && recordHandler == csvOutput) {
+            processInputsInParallel(inputs);
+            return;
+        }
+
+        inputs = skipCompletedInputs(inputs);
+        while (inputs.hasNext()) {
+            ParserInput input = inputs.next();
+            IncrementalManifest.Entry entry = null;
+            if (manifest != null) {
+                entry = manifest.fingerprint(input);
+                if (isUnchanged(manifest, entry)) {
+                    manifest.keep(entry);
+                    continue;
+                }
+                inputRowCounts = new LinkedHashMap<String, Integer>();
+            }
+            boolean complete = true;
+            resetInternalVariables();
+
+            this.setFileName(input.getName());
+            try {
+
+                baseFileName = input.getName();
+                if (parserState == ParserStates.EXTRACTING_PARAMETERS) {
+                    logger.info("Extracting parameters from " + this.baseFileName + "...");
+                } else {
+                    logger.info("Parsing " + this.baseFileName + "...");
+                }
+
+                resetInternalVariables();
+                //Parse
+                this.parseInput(input);
+                logger.info("Done.");
+
+            } catch (Exception e) {
+                complete = false;
+                logger.error(e.getMessage());
+                logger.info("Skipping file: " + this.baseFileName + "\n");
+            }
+            addCheckpointInput(input.getId());
+
+            if (entry != null) {
+                manifest.add(entry, inputRowCounts, complete);
+                inputRowCounts = null;
+            }
+        }
+    }
+
+    /**
+     * Parse documents on a pool of workers. Each worker parses one document
+     * into its own buffer and the buffers are committed in input order so the
+     * output is the same for any number of threads.
+     *
+     * @since 1.3.0
+     * @param inputs
+     * @throws IOException
+     */
+    private void processInputsInParallel(Iterator<ParserInput> inputs) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Deque<Future<FileParseResult>> pending
+                = new ArrayDeque<Future<FileParseResult>>();
+
+        //Parts of a file are committed in order like whole files. Incremental
+        //runs keep whole files as their saved output is per file.
+        if (threads > 1 && splitSize > 0 && manifest == null) {
+            inputs = new SyndataSplitter(inputs, splitSize);
+        }
+        inputs = skipCompletedInputs(inputs);
+
+        try {
+            while (inputs.hasNext()) {
+                //Limit the number of buffered documents waiting to be committed
+                if (pending.size() >= threads * 2) {
+                    commitFileParseResult(awaitResult(pending.poll()));
+                }
+
+                final ParserInput input = detachInput(inputs.next());
+                if (input == null) {
+                    continue;
+                }
+
+                final HuaweiCfgSynParser worker = newWorker();
+                pending.add(executor.submit(new Callable<FileParseResult>() {
+                    @Override
+                    public FileParseResult call() {
+                        return manifest == null ? worker.parseInputToResult(input)
+                                : worker.parseInputIncrementally(input, manifest);
+                    }
+                }));
+            }
+
+            while (!pending.isEmpty()) {
+                commitFileParseResult(awaitResult(pending.poll()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Get an input that a worker can read. Archive entries are read into
+     * memory here as the archive is read in order.
+     *
+     * @since 1.3.0
+     * @return ParserInput or null if the input could not be read
+     */
+    private ParserInput detachInput(ParserInput input) {
+        try {
+            return input.detach();
+        } catch (IOException e) {
+            logger.error(e.getMessage());
+            logger.info("Skipping file: " + input.getName() + "\n");
+            return null;
+        }
+    }
+
+    /**
+     * Wait for the task of a worker.
+     *
+     * @since 1.3.0
+     */
+    private static <T> T awaitResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for parser workers", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Create a parser that shares this parser's configuration and parses a
+     * single file into a FileParseResult.
+     *
+     * @since 1.3.0
+     */
+    private HuaweiCfgSynParser newWorker() {
+        HuaweiCfgSynParser worker = new HuaweiCfgSynParser();
+        worker.parserState = parserState;
+        worker.parameterFile = parameterFile;
+        worker.outputDirectory = outputDirectory;
+        worker.singlePass = singlePass;
+        worker.engine = engine;
+        worker.schemaCache = schemaCache;
+        worker.schemaFromCache = schemaFromCache;
+        worker.incremental = incremental;
+        worker.trackVersionColumns = trackVersionColumns;
+        worker.metrics = metrics;
+        worker.progress = progress;
+
+        //The schema is only read during value extraction. The other stages
+        //discover it per file and merge it on commit.
+        if (parserState == ParserStates.EXTRACTING_VALUES) {
+            worker.moColumns = moColumns;
+            worker.varDateTime = varDateTime;
+        }
+
+        return worker;
+    }
+
+    /**
+     * Parse a document into a buffer. Used by the workers.
+     *
+     * @since 1.3.0
+     * @param input
+     * @return FileParseResult
+     */
+    private FileParseResult parseInputToResult(ParserInput input) {
+        parseResult = new FileParseResult(input.getName());
+        parseResult.inputId = input.getId();
+        parseResult.keepRowEnds = incremental
+                || (schemaFromCache && parserState == ParserStates.EXTRACTING_VALUES);
+        this.setFileName(input.getName());
+        baseFileName = input.getName();
+        if (schemaFromCache && parserState == ParserStates.EXTRACTING_VALUES) {
+            moDiscoveredColumns = new LinkedHashMap<String, ColumnRegistry>();
+        }
+
+        if (parserState == ParserStates.EXTRACTING_PARAMETERS) {
+            logger.info("Extracting parameters from " + this.baseFileName + "...");
+        } else {
+            logger.info("Parsing " + this.baseFileName + "...");
+        }
+
+        try {
+            this.parseInput(input);
+            logger.info("Done.");
+        } catch (Exception e) {
+            parseResult.error = e;
+        }
+
+        parseResult.dateTime = varDateTime;
+        parseResult.schemaMisses = schemaMisses;
+        if (parserState != ParserStates.EXTRACTING_VALUES) {
+            parseResult.moColumns = moColumns;
+            parseResult.versionColumns = versionColumns;
+        } else {
+            if (!moExtendedColumns.isEmpty()) {
+                parseResult.moColumns = moExtendedColumns;
+            }
+            if (!moExtendedColumns.isEmpty() || trackVersionColumns) {
+                parseResult.versionColumns = versionColumns;
+            }
+            parseResult.moDiscoveredColumns = moDiscoveredColumns;
+        }
+
+        return parseResult;
+    }
+
+    /**
+     * Parse a document unless it did not change since the last incremental
+     * run. Used by the workers.
+     *
+     * @since 1.3.0
+     * @param input
+     * @param manifest
+     * @return FileParseResult
+     */
+    private FileParseResult parseInputIncrementally(ParserInput input,
+            IncrementalManifest manifest) {
+        IncrementalManifest.Entry entry = manifest.fingerprint(input);
+        FileParseResult result;
+        if (isUnchanged(manifest, entry)) {
+            result = new FileParseResult(input.getName());
+            result.unchanged = true;
+        } else {
+            result = parseInputToResult(input);
+
+            //The content is hashed here rather than on commit
+            if (result.error == null) {
+                try {
+                    manifest.hash(entry);
+                } catch (IOException e) {
+                    logger.warn("Cannot hash " + input.getName() + ": " + e.getMessage());
+                }
+            }
+        }
+        result.manifestEntry = entry;
+        return result;
+    }
+
+    /**
+     * Check whether an input did not change since the last incremental run.
+     *
+     * @since 1.3.0
+     */
+    private boolean isUnchanged(IncrementalManifest manifest, IncrementalManifest.Entry entry) {
+        try {
+            if (!manifest.isUnchanged(entry)) {
+                return false;
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot check whether " + entry.input.getName() + " changed: "
+                    + e.getMessage());
+            return false;
+        }
+
+        logger.info("Unchanged: " + entry.input.getName());
+        if (progress != null) {
+            progress.addSkipped(Math.max(0, entry.size));
+        }
+        return true;
+    }
+
+    /**
+     * Merge the output of a worker into the schema and the csv files.
+     *
+     * @since 1.3.0
+     * @param result
+     * @throws IOException
+     */
+    private void commitFileParseResult(FileParseResult result) throws IOException {
+        if (result.unchanged) {
+            manifest.keep(result.manifestEntry);
+            return;
+        }
+        if (result.manifestEntry != null) {
+            inputRowCounts = new LinkedHashMap<String, Integer>();
+        }
+
+        boolean extending = parserState == ParserStates.EXTRACTING_VALUES;
+        if (result.moColumns != null && !extending) {
+            mergeSchema(moColumns, result.moColumns);
+        }
+
+        if (result.versionColumns != null) {
+            for (Map.Entry<String, Map<String, ColumnRegistry>> me
+                    : result.versionColumns.entrySet()) {
+                Map<String, ColumnRegistry> schema = versionColumns.get(me.getKey());
+                if (schema == null) {
+                    schema = new LinkedHashMap<String, ColumnRegistry>();
+                    versionColumns.put(me.getKey(), schema);
+                }
+                if (mergeSchema(schema, me.getValue()) && extending) {
+                    versionColumnsChanged = true;
+                }
+            }
+        }
+        schemaMisses += result.schemaMisses;
+        if (result.moDiscoveredColumns != null && moDiscoveredColumns != null) {
+            mergeSchema(moDiscoveredColumns, result.moDiscoveredColumns);
+        }
+
+        if (result.dateTime != null) {
+            varDateTime = result.dateTime;
+        }
+
+        for (Map.Entry<String, StringBuilder> me : result.moRows.entrySet()) {
+            String mo = me.getKey();
+
+            //Rows that follow the rows of an extended MO are spilled after them
+            if (moExtendedColumns.containsKey(mo) || manifest != null) {
+                if (!hasMOOutput(mo)) {
+                    openMOOutput(mo, result.moHeaders.get(mo));
+                }
+                spillRows(mo, me.getValue(), result.moRowEnds.get(mo),
+                        result.moRowCounts.get(mo)[0]);
+                continue;
+            }
+
+            if (!moiPrintWriters.contains(mo)) {
+                openMOOutput(mo, result.moHeaders.get(mo));
+            }
+            moiPrintWriters.get(mo).write(me.getValue());
+            metrics.addRowsWritten(mo, result.moRowCounts.get(mo)[0]);
+        }
+
+        //MOs the worker extended with parameters missing from the schema cache
+        if (result.moColumns != null && extending) {
+            for (Map.Entry<String, ColumnRegistry> me : result.moColumns.entrySet()) {
+                ColumnRegistry columns = moExtendedColumns.get(me.getKey());
+                if (columns == null) {
+                    ColumnRegistry cached = moColumns.get(me.getKey());
+                    columns = extendMO(me.getKey(),
+                            cached == null ? new ColumnRegistry() : cached.copy());
+                }
+                ColumnRegistry fileColumns = me.getValue();
+                for (int i = 0; i < fileColumns.size(); i++) {
+                    columns.add(fileColumns.get(i));
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<FileParseResult.SpillRow>> me : result.moSpillRows.entrySet()) {
+            String mo = me.getKey();
+            ColumnRegistry moiAttributes = getColumns(mo);
+            ColumnRegistry fileAttributes = result.moColumns != null
+                    ? result.moColumns.get(mo) : moiAttributes;
+
+            //Position of the file's columns in the merged schema
+            int[] slots = new int[fileAttributes.size()];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = moiAttributes.indexOf(fileAttributes.get(i));
+            }
+
+            String[] values = new String[moiAttributes.size()];
+            for (FileParseResult.SpillRow row : me.getValue()) {
+                Arrays.fill(values, null);
+                for (int i = 0; i < row.values.length; i++) {
+                    values[slots[i]] = row.values[i];
+                }
+
+                CSVRow paramValues = csvRow.clear().append(row.metadata);
+                for (int i = 0; i < values.length; i++) {
+                    paramValues.appendValue(values[i]);
+                }
+                moiSpillFiles.append(new File(outputDirectory), mo, row.fileName,
+                        values.length, paramValues.toString());
+            }
+            countInputRows(mo, me.getValue().size());
+        }
+
+        if (result.footerHeaders != null) {
+            writeFileFooter(result.footerHeaders, result.footerValues);
+        }
+
+        if (result.error != null) {
+            logger.error(result.error.getMessage());
+            logger.info("Skipping file: " + result.fileName + "\n");
+        }
+
+        if (result.inputId != null) {
+            addCheckpointInput(result.inputId);
+        }
+
+        if (result.manifestEntry != null) {
+            manifest.add(result.manifestEntry, inputRowCounts, result.error == null);
+            inputRowCounts = null;
+        }
+    }
+
+    /**
+     * Move the csv rows of a worker to the spill file of their MO. The rows
+     * have the cached columns of the MO.
+     *
+     * @since 1.3.0
+     * @param mo
+     * @param rows
+     * @param rowEnds End of each row in rows
+     * @param rowCount
+     * @throws IOException
+     */
+    private void spillRows(String mo, StringBuilder rows, int[] rowEnds, int rowCount)
+            throws IOException {
+        if (rowCount > 0 && rowEnds == null) {
+            throw new IllegalStateException("No row boundaries for " + mo);
+        }
+
+        int columnCount = moColumns.get(mo).size();
+        int separator = System.lineSeparator().length();
+        int start = 0;
+        for (int i = 0; i < rowCount; i++) {
+            moiSpillFiles.appendRow(new File(outputDirectory), mo, columnCount,
+                    rows.substring(start, rowEnds[i] - separator));
+            start = rowEnds[i];
+        }
+        countInputRows(mo, rowCount);
+    }
+
+    /**
+     * Count the rows of the current input in an incremental run.
+     *
+     * @since 1.3.0
+     */
+    private void countInputRows(String mo, int rows) {
+        if (inputRowCounts != null && rows > 0) {
+            Integer count = inputRowCounts.get(mo);
+            inputRowCounts.put(mo, count == null ? rows : count + rows);
+        }
+    }
+
+    /**
+     * Parses a single file. Gzip compressed files are decompressed on the fly.
+     *
+     * @since 1.0.0
+     * @version 1.1.0
+     * @throws XMLStreamException
+     * @throws IOException
+     *
+     */
+    public void parseFile(String filename)
+            throws XMLStreamException, IOException {
+        Path file = Paths.get(filename);
+        parseInput(ParserInput.forFile(file, ParserInput.detectFormat(file)));
+    }
+
+    /**
+     * Parses a single document.
+     *
+     * @since 1.3.0
+     * @param input
+     * @throws XMLStreamException
+     * @throws IOException
+     */
+    public void parseInput(ParserInput input)
+            throws XMLStreamException, IOException {
+        baseFileName = input.getName();
+        metrics.setCurrentFile(baseFileName);
+        metrics.setStage(parserState);
+
+        Object event = EVENTS.beginFileParse();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            parseDocument(input);
+            failed = false;
+        } finally {
+            metrics.addParseTime(System.nanoTime() - start);
+            metrics.addFile(parserState, failed);
+            if (event != null) {
+                EVENTS.endFileParse(event, baseFileName, getInputSize(input), nodeName,
+                        parserState, failed);
+            }
+        }
+    }
+
+    /**
+     * Get the size of an input or -1 if it is not known.
+     *
+     * @since 1.3.0
+     */
+    private static long getInputSize(ParserInput input) {
+        try {
+            return input.getSize();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parse a document with the configured engine.
+     *
+     * @since 1.3.0
+     * @param input
+     * @throws XMLStreamException
+     * @throws IOException
+     */
+    private void parseDocument(ParserInput input)
+            throws XMLStreamException, IOException {
+        //Element events already handled by the byte scanner
+        long handledElementEvents = 0;
+        if (engine == ParserEngines.SCANNER) {
+            SyndataScanner scanner = new SyndataScanner(this);
+            if (scanner.scan(metrics.count(input.openChannel()))) {
+                return;
+            }
+
+            handledElementEvents = scanner.getElementEvents();
+            logger.debug("Scanner falling back to the cursor engine for "
+                    + baseFileName + " after " + handledElementEvents + " element events.");
+        }
+
+        XMLInputFactory factory = newInputFactory();
+        InputStream in = metrics.count(input.open());
+
+        try {
+            if (engine == ParserEngines.EVENT) {
+                parseEvents(factory.createXMLEventReader(in));
+            } else {
+                parseCursor(factory.createXMLStreamReader(in), handledElementEvents);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Create the StAX factory of the engines. StAX reads the encoding from the
+     * XML declaration. Text is coalesced so a value is not cut where the
+     * reader's buffer ends, which moves when a file is split into parts.
+     *
+     * @since 1.3.0
+     */
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        return factory;
+    }
+
+    /**
+     * Start parsing a document with the cursor engine one event at a time.
+     * Each event of the returned cursor is passed to cursorEvent, so the
+     * caller can stop after any MO instance.
+     *
+     * @since 1.3.0
+     * @param input
+     * @param in Stream of the document, closed by the caller
+     * @return XMLStreamReader
+     * @throws XMLStreamException
+     */
+    XMLStreamReader openCursor(ParserInput input, InputStream in) throws XMLStreamException {
+        baseFileName = input.getName();
+        return newInputFactory().createXMLStreamReader(in);
+    }
+
+    /**
+     * Parse with the XMLEventReader engine.
+     *
+     * @since 1.3.0
+     * @param eventReader
+     * @throws XMLStreamException
+     * @throws IOException
+     */
+    private void parseEvents(XMLEventReader eventReader)
+            throws XMLStreamException, IOException {
+        while (eventReader.hasNext()) {
+            XMLEvent event = eventReader.nextEvent();
+
+            switch (event.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    startElementEvent(event);
+                    break;
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.CHARACTERS:
+                    characterEvent(event);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    endELementEvent(event);
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    if (expectsComment()) {
+                        comment(((javax.xml.stream.events.Comment) event).getText());
+                    }
+                    break;
+            }
+        }
+        eventReader.close();
+    }
+
+    /**
+     * Parse with the XMLStreamReader cursor engine. Tag names, attributes and
+     * text are read off the cursor without creating event objects.
+     *
+     * @since 1.3.0
+     * @param streamReader
+     * @param skipElementEvents Number of leading start and end element events
+     * to skip because they were handled by the byte scanner
+     * @throws XMLStreamException
+     * @throws IOException
+     */
+    private void parseCursor(XMLStreamReader streamReader, long skipElementEvents)
+            throws XMLStreamException, IOException {
+        ElementAttributes attributes
+                = new ElementAttributes.StreamReaderAttributes(streamReader);
+
+        while (skipElementEvents > 0 && streamReader.hasNext()) {
+            int event = streamReader.next();
+            if (event == XMLStreamConstants.START_ELEMENT
+                    || event == XMLStreamConstants.END_ELEMENT) {
+                skipElementEvents--;
+            }
+        }
+
+        while (streamReader.hasNext()) {
+            cursorEvent(streamReader, streamReader.next(), attributes);
+        }
+        streamReader.close();
+    }
+
+    /**
+     * Handle the current event of the cursor engine.
+     *
+     * @since 1.3.0
+     * @param streamReader
+     * @param event Type of the event
+     * @param attributes Attributes read off the cursor
+     * @throws IOException
+     */
+    void cursorEvent(XMLStreamReader streamReader, int event, ElementAttributes attributes)
+            throws IOException {
+        switch (event) {
+            case XMLStreamConstants.START_ELEMENT:
+                startElement(streamReader.getLocalName(), attributes);
+                break;
+            case XMLStreamConstants.SPACE:
+            case XMLStreamConstants.CHARACTERS:
+                if (!streamReader.isWhiteSpace()) {
+                    characters(streamReader.getText());
+                }
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                endElement(streamReader.getLocalName());
+                break;
+            case XMLStreamConstants.COMMENT:
+                if (expectsComment()) {
+                    comment(streamReader.getText());
+                }
+                break;
+        }
+    }
+
+    /**
+     * Handle start element event.
+     *
+     * @param xmlEvent
+     *
+     * @since 1.0.0
+     * @version 1.1.0
+     *
+     */
+    public void startElementEvent(XMLEvent xmlEvent) throws FileNotFoundException {
+        StartElement startElement = xmlEvent.asStartElement();
+        startElement(startElement.getName().getLocalPart(),
+                new ElementAttributes.StartElementAttributes(startElement));
+    }
+
+    /**
+     * Handle a start tag.
+     *
+     * @param qName Local name of the tag
+     * @param attributes
+     *
+     * @since 1.3.0
+     */
+    public void startElement(String qName, ElementAttributes attributes)
+            throws FileNotFoundException {
+
+        //<spec:syndata ..>
+        if (qName.equals("syndata")) {
+            for (int i = 0; i < attributes.getCount(); i++) {
+                String name = attributes.getLocalName(i);
+                if (name.equals("FunctionType")) {
+                    this.functionType = attributes.getValue(i);
+                }
+                if (name.equals("Id")) {
+                    this.syndataId = attributes.getValue(i);
+                    String[] arr = this.syndataId.split("=");
+                    if (arr.length > 1) {
+                        this.nodeName = arr[1];
+                    } else {
+                        this.nodeName = this.syndataId;
+                    }
+                }
+                if (name.equals("productversion")) {
+                    this.productVersion = attributes.getValue(i);
+                }                //nermversion
+                if (name.equals("nermversion")) {
+                    this.neRMVersion = attributes.getValue(i);
+                }
+                if (name.equals("objId")) {
+                    this.syndataObjId = attributes.getValue(i);
+                }
+            }
+            versionKey = SchemaCache.getKey(productVersion, neRMVersion);
+        }
+
+        //spec:fileFooter
+        if (qName.equals("fileFooter") && (parserState == ParserStates.EXTRACTING_PARAMETERS
+                || parserState == ParserStates.EXTRACTING_PARAMETERS_AND_VALUES)) {
+            String dateTime = getAttributeValue(attributes, "dateTime");
+            if (dateTime != null) {
+                this.varDateTime = dateTime;
+            }
+        }
+
+        //<parameter>
+        if (inClass == true && inAttributes == false
                 && !qName.endsWith("attributes") && !qName.endsWith("class")) {
 
             moiXSIType = qName;
@@ -478,254 +2287,876 @@ public class HuaweiCfgSynParser {
             inClass = true;
             return;
         }
-
-        //<atributes>
-        if (qName.equals("attributes")) {
-            inAttributes = true;
+
+        //<atributes>
+        if (qName.equals("attributes")) {
+            inAttributes = true;
+            moiColumns = getMOIColumns();
+            moiVersionColumns = getMOIVersionColumns();
+            moiDiscoveredColumns = getMOIDiscoveredColumns();
+        }
+
+        //<ManagedObjects>
+        if (inClass == true && inAttributes == false) {
+            inMO = true;
+            return;
+        }
+
+        //</fileFooter
+        if (qName.equals("fileFooter") && recordHandler == csvOutput) {
+
+            //If the file footer is not in the paramter file dont create it
+            if (parameterFile != null && !moColumns.containsKey("fileFooter")) {
+                return;
+            }
+
+            String headers = "FILENAME,NODENAME";
+            String values = baseFileName + "," + nodeName;
+
+            //Same column order for all the engines
+            for (String name : FILE_FOOTER_ATTRIBUTES) {
+                String value = getAttributeValue(attributes, name);
+                if (value != null) {
+                    headers += "," + name;
+                    values += "," + value;
+                }
+            }
+
+            if (parseResult != null) {
+                parseResult.footerHeaders = headers;
+                parseResult.footerValues = values;
+            } else {
+                writeFileFooter(headers, values);
+            }
+        }
+
+    }
+
+    /**
+     * Get the value of the named attribute or null if the tag does not have
+     * it.
+     *
+     * @since 1.3.0
+     */
+    private static String getAttributeValue(ElementAttributes attributes, String name) {
+        for (int i = 0; i < attributes.getCount(); i++) {
+            if (attributes.getLocalName(i).equals(name)) {
+                return attributes.getValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Write fileFooter.csv.
+     *
+     * @since 1.3.0
+     * @param headers
+     * @param values
+     * @throws FileNotFoundException
+     */
+    private void writeFileFooter(String headers, String values) throws FileNotFoundException {
+        String footerFile = outputDirectory + File.separatorChar + "fileFooter.csv";
+        PrintWriter pw = new PrintWriter(new File(footerFile));
+        pw.println(headers);
+        pw.println(values);
+        pw.println();
+        pw.close();
+    }
+
+    public void endELementEvent(XMLEvent xmlEvent) throws IOException {
+        EndElement endElement = xmlEvent.asEndElement();
+        endElement(endElement.getName().getLocalPart());
+    }
+
+    /**
+     * Handle an end tag.
+     *
+     * @param qName Local name of the tag
+     *
+     * @since 1.3.0
+     */
+    public void endElement(String qName) throws IOException {
+
+        // logger.debug("Processing " + moiXSIType);
+        //</class>
+        if (qName.equals("class")) {
+            inClass = false;
+            return;
+        }
+
+        if (inClass == true && inAttributes == true
+                && !qName.endsWith("attributes") && !qName.endsWith("class")) {
+
+            setParameterValue(qName, tagData);
+            this.previousTag = qName;
+            tagData = "";
+            return;
+        }
+
+        //we are at </attributes
+        if (qName.equals("attributes")) {
+            if (ParserStates.EXTRACTING_PARAMETERS != parserState) {
+                metrics.addMOInstance(moiXSIType);
+            }
+
+            //Parameter extraction when no parameter file is provided.
+            if ((ParserStates.EXTRACTING_PARAMETERS == parserState
+                    || ParserStates.EXTRACTING_PARAMETERS_AND_VALUES == parserState)
+                    && parameterFile == null) {
+                //The columns are added to moiColumns as the parameters are read
+                if (!moColumns.containsKey(moiXSIType)) {
+                    moColumns.put(moiXSIType, moiColumns);
+                }
+            }
+
+            //Deliver the MO instance in the stages that extract values
+            if (ParserStates.EXTRACTING_PARAMETERS != parserState) {
+
+                //MO missing from the schema cache or the parameter file
+                if (moiColumns == null) {
+                    inAttributes = false;
+                    clearParameterValues();
+                    return;
+                }
+
+                record.mo = moiXSIType;
+                record.fileName = baseFileName;
+                record.dateTime = varDateTime;
+                record.nodeName = nodeName;
+                record.functionType = functionType;
+                record.syndataId = syndataId;
+                record.productVersion = productVersion;
+                record.neRMVersion = neRMVersion;
+                record.syndataObjId = syndataObjId;
+                record.columns = moiColumns;
+                record.values = moiValues;
+                record.rawValues = hasRawValues ? moiRawValues : null;
+                recordHandler.onRecord(record);
+            }
+
+            clearParameterValues();
+            inAttributes = false;
+            return;
+        }
+
+    }
+
+    /**
+     * Write an MO instance to the csv file of its MO.
+     *
+     * @since 1.3.0
+     * @param record
+     * @throws IOException
+     */
+    private void writeMORow(MORecord record) throws IOException {
+        CSVRow paramValues = csvRow.clear().append(record.fileName)
+                .append(record.dateTime).append(record.nodeName).append(record.functionType)
+                .append(record.syndataId).append(record.productVersion).append(record.neRMVersion)
+                .append(record.syndataObjId);
+
+        //Get the parameter list
+        ColumnRegistry moiAttributes = record.columns;
+
+        //check if print writer doesn't exists and create it
+        //This runs once per file.
+        if (!hasMOOutput(record.mo)) {
+
+            //Create the header
+            String pName = METADATA_COLUMNS;
+            for (int i = 0; i < moiAttributes.size(); i++) {
+                String p = moiAttributes.get(i);
+
+                pName += "," + p;
+            }
+
+            openMOOutput(record.mo, pName);
+        }
+
+        for (int i = 0; i < moiAttributes.size(); i++) {
+            paramValues.appendValue(record.getOutputValue(i));
+        }
+
+        printMORow(record.mo, paramValues);
+    }
+
+    /**
+     * Write an MO instance with the columns of the parameter file.
+     *
+     * @since 1.3.0
+     * @param record
+     * @throws IOException
+     */
+    private void writeParameterFileRow(MORecord record) throws IOException {
+        String paramNames = "";
+
+        //Get the parameter list
+        ColumnRegistry moiAttributes = record.columns;
+
+        //check if print writer doesn't exists and create it
+        //This runs once per file.
+        if (!hasMOOutput(record.mo)) {
+
+            //Create the header
+            String pName = paramNames;
+            for (int i = 0; i < moiAttributes.size(); i++) {
+                String p = moiAttributes.get(i);
+
+                if (p.equals("FILENAME")) {
+                    pName += ",FILENAME";
+                } else if (p.equals("DATETIME")) {
+                    pName += ",DATETIME";
+                } else if (p.equals("NODENAME")) {
+                    pName += ",NODENAME";
+                } else if (p.equals("SYNCDATAFUNCTIONTYPE")) {
+                    pName += ",SYNCDATAFUNCTIONTYPE";
+                } else if (p.equals("SYNCDATAID")) {
+                    pName += ",SYNCDATAID";
+                } else if (p.equals("SYNCDATARODUCTVERSION")) {
+                    pName += ",SYNCDATAPRODUCTVERSION";
+                } else if (p.equals("SYNCDATANERMVERSION")) {
+                    pName += ",SYNCDATANERMVERSION";
+                } else if (p.equals("SYNCDATAOBJID")) {
+                    pName += ",SYNCDATAOBJID";
+                } else {
+                    pName += "," + p;
+                }
+
+            }
+            //Remove leading commas
+            pName = pName.replaceAll("^,","");
+
+            openMOOutput(record.mo, pName);
+
+        }
+
+        //The first column has no leading comma
+        CSVRow paramValues = csvRow.clear();
+        for (int i = 0; i < moiAttributes.size(); i++) {
+            String pName = moiAttributes.get(i);
+            String value = record.getOutputValue(i);
+
+            if (value != null) {
+                paramValues.appendValue(value);
+            } else {
+
+                if (pName.equals("FILENAME")) {
+                    paramValues.append(record.fileName);
+                } else if (pName.equals("DATETIME")) {
+                    paramValues.append(record.dateTime);
+                } else if (pName.equals("NODENAME")) {
+                    paramValues.append(record.nodeName);
+                } else if (pName.equals("SYNCDATAFUNCTIONTYPE")) {
+                    paramValues.append(record.functionType);
+                } else if (pName.equals("SYNCDATASYNCDATAID")) {
+                    paramValues.append(record.syndataId);
+                } else if (pName.equals("SYNCDATAPRODUCTVERSION")) {
+                    paramValues.append(record.productVersion);
+                } else if (pName.equals("SYNCDATANERMVERSION")) {
+                    paramValues.append(record.neRMVersion);
+                } else if (pName.equals("SYNCDATAOBJID")) {
+                    paramValues.append(record.syndataObjId);
+                } else {
+                    paramValues.appendValue(null);
+                }
+            }
+        }
+
+        printMORow(record.mo, paramValues);
+    }
+
+    /**
+     * Get the columns of the current MO. During parameter extraction the MO
+     * gets a new registry if it has none yet.
+     *
+     * @since 1.3.0
+     */
+    private ColumnRegistry getMOIColumns() {
+        ColumnRegistry columns = moColumns.get(moiXSIType);
+        if (columns == null && parameterFile == null
+                && (ParserStates.EXTRACTING_PARAMETERS == parserState
+                || ParserStates.EXTRACTING_PARAMETERS_AND_VALUES == parserState)) {
+            columns = new ColumnRegistry();
+        }
+        if (schemaFromCache && parameterFile == null
+                && ParserStates.EXTRACTING_VALUES == parserState) {
+            ColumnRegistry extended = moExtendedColumns.get(moiXSIType);
+            if (extended != null) {
+                return extended;
+            }
+            if (columns == null) {
+                schemaMisses++;
+                columns = extendMO(moiXSIType, new ColumnRegistry());
+                addVersionColumns(columns);
+            }
+            return columns;
+        }
+
+        if (columns == null && schemaFromCache) {
+            schemaMisses++;
+        }
+        return columns;
+    }
+
+    /**
+     * Get the columns of an MO, which are its extended columns if it has
+     * been extended.
+     *
+     * @since 1.3.0
+     */
+    private ColumnRegistry getColumns(String mo) {
+        ColumnRegistry columns = moExtendedColumns.get(mo);
+        return columns != null ? columns : moColumns.get(mo);
+    }
+
+    /**
+     * Extend the columns of an MO that are missing parameters of the input.
+     *
+     * @since 1.3.0
+     * @param mo
+     * @param columns Cached columns of the MO
+     * @return ColumnRegistry
+     */
+    private ColumnRegistry extendMO(String mo, ColumnRegistry columns) {
+        moExtendedColumns.put(mo, columns);
+        if (parseResult == null && moiPrintWriters.contains(mo)) {
+            extendedHeaderColumns.put(mo, moColumns.get(mo).size());
+        }
+        return columns;
+    }
+
+    /**
+     * Add a parameter missing from the schema cache to the columns of the
+     * current MO.
+     *
+     * @since 1.3.0
+     * @param name
+     * @return int Slot of the parameter
+     */
+    private int extendMOIColumns(String name) {
+        if (moExtendedColumns.get(moiXSIType) != moiColumns) {
+            moiColumns = extendMO(moiXSIType, moiColumns.copy());
+        }
+        int slot = moiColumns.add(name);
+        EVENTS.schemaGrowth(moiXSIType, name, slot + 1);
+        addVersionColumns(moiColumns);
+        return slot;
+    }
+
+    /**
+     * Add the columns of the current MO to the schema of its version for the
+     * schema cache.
+     *
+     * @since 1.3.0
+     */
+    private void addVersionColumns(ColumnRegistry columns) {
+        if (schemaCache == null || versionKey == null) {
+            return;
+        }
+        ColumnRegistry versionMOColumns = getVersionColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            versionMOColumns.add(columns.get(i));
+        }
+    }
+
+    /**
+     * Get the columns of the current MO for the schema cache.
+     *
+     * @since 1.3.0
+     */
+    private ColumnRegistry getMOIVersionColumns() {
+        if (schemaCache == null || versionKey == null || parameterFile != null
+                || (ParserStates.EXTRACTING_VALUES == parserState && !trackVersionColumns)) {
+            return null;
+        }
+        return getVersionColumns();
+    }
+
+    /**
+     * Get the columns of the current MO in the schema of its version.
+     *
+     * @since 1.3.0
+     */
+    private ColumnRegistry getVersionColumns() {
+        Map<String, ColumnRegistry> schema = versionColumns.get(versionKey);
+        if (schema == null) {
+            schema = new LinkedHashMap<String, ColumnRegistry>();
+            versionColumns.put(versionKey, schema);
+        }
+        ColumnRegistry columns = schema.get(moiXSIType);
+        if (columns == null) {
+            columns = new ColumnRegistry();
+            schema.put(moiXSIType, columns);
+            versionColumnsChanged = true;
+        }
+        return columns;
+    }
+
+    /**
+     * Get the columns of the current MO in the order they are found by the
+     * value pass over a cached schema.
+     *
+     * @since 1.3.0
+     */
+    private ColumnRegistry getMOIDiscoveredColumns() {
+        if (moDiscoveredColumns == null || moiColumns == null
+                || ParserStates.EXTRACTING_VALUES != parserState) {
+            return null;
+        }
+        ColumnRegistry columns = moDiscoveredColumns.get(moiXSIType);
+        if (columns == null) {
+            columns = new ColumnRegistry();
+            moDiscoveredColumns.put(moiXSIType, columns);
         }
+        return columns;
+    }
 
-        //<ManagedObjects>
-        if (inClass == true && inAttributes == false) {
-            inMO = true;
+    /**
+     * Set the value of a parameter of the current MO instance. Parameters
+     * that are not columns of the MO are ignored unless the columns are
+     * being extracted.
+     *
+     * @since 1.3.0
+     */
+    private void setParameterValue(String name, String value) {
+        previousSlot = -1;
+        if (moiColumns == null) {
             return;
         }
 
-        //</fileFooter
-        if (qName.equals("fileFooter")) {
-
-            //If the file footer is not in the paramter file dont create it
-            if (parameterFile != null && !moColumns.containsKey("fileFooter")) {
-                return;
+        if (parameterFile == null && ParserStates.EXTRACTING_VALUES != parserState) {
+            int columns = moiColumns.size();
+            previousSlot = moiColumns.add(name);
+            if (previousSlot == columns) {
+                EVENTS.schemaGrowth(moiXSIType, name, columns + 1);
             }
-
-            String footerFile = outputDirectory + File.separatorChar + "fileFooter.csv";
-            PrintWriter pw = new PrintWriter(new File(footerFile));
-            String headers = "FILENAME,NODENAME";
-            String values = baseFileName + "," + nodeName;
-
-            while (attributes.hasNext()) {
-                Attribute attribute = attributes.next();
-                if (attribute.getName().getLocalPart().equals("label")) {
-                    headers += ",label";
-                    values += "," + attribute.getValue();
-                }
-                if (attribute.getName().getLocalPart().equals("ExportResult")) {
-                    headers += ",ExportResult";
-                    values += "," + attribute.getValue();
+            if (moiVersionColumns != null) {
+                moiVersionColumns.add(name);
+            }
+        } else {
+            if (moiDiscoveredColumns != null) {
+                moiDiscoveredColumns.add(name);
+            }
+            if (moiVersionColumns != null) {
+                int columns = moiVersionColumns.size();
+                if (moiVersionColumns.add(name) == columns) {
+                    versionColumnsChanged = true;
                 }
-                if (attribute.getName().getLocalPart().equals("dateTime")) {
-                    headers += ",dateTime";
-                    values += "," + attribute.getValue();
+            }
+            previousSlot = moiColumns.indexOf(name);
+            if (previousSlot < 0 && schemaFromCache) {
+                schemaMisses++;
+                if (parameterFile == null && ParserStates.EXTRACTING_VALUES == parserState) {
+                    previousSlot = extendMOIColumns(name);
                 }
             }
+        }
 
-            pw.println(headers);
-            pw.println(values);
-            pw.println();
-            pw.close();
+        if (previousSlot >= 0) {
+            if (previousSlot >= moiValues.length) {
+                moiValues = Arrays.copyOf(moiValues, Math.max(previousSlot + 1, moiValues.length * 2));
+            }
+            moiValues[previousSlot] = value;
         }
+    }
 
+    /**
+     * Clear the parameter values of the current MO instance.
+     *
+     * @since 1.3.0
+     */
+    private void clearParameterValues() {
+        Arrays.fill(moiValues, 0, moiColumns == null ? moiValues.length
+                : Math.min(moiColumns.size(), moiValues.length), null);
+        if (hasRawValues) {
+            Arrays.fill(moiRawValues, null);
+            hasRawValues = false;
+        }
+        moiColumns = null;
+        moiVersionColumns = null;
+        moiDiscoveredColumns = null;
+        previousSlot = -1;
     }
 
-    public void endELementEvent(XMLEvent xmlEvent)
-            throws FileNotFoundException, UnsupportedEncodingException {
+    /**
+     * Spill an MO instance in single pass mode.
+     *
+     * @since 1.3.0
+     * @param record
+     * @throws IOException
+     */
+    private void spillRow(MORecord record) throws IOException {
+        ColumnRegistry moiAttributes = record.columns;
+
+        //DATETIME is only known once the file footer is read
+        CSVRow paramValues = csvRow.clear().append(record.nodeName).append(record.functionType)
+                .append(record.syndataId).append(record.productVersion).append(record.neRMVersion)
+                .append(record.syndataObjId);
+
+        //Workers align the row to the merged schema on commit
+        if (parseResult != null) {
+            parseResult.addSpillRow(record.mo, record.fileName, paramValues.toString(),
+                    Arrays.copyOf(record.values, moiAttributes.size()));
+            return;
+        }
 
-        EndElement endElement = xmlEvent.asEndElement();
-        String prefix = endElement.getName().getPrefix();
-        String qName = endElement.getName().getLocalPart();
+        for (int i = 0; i < moiAttributes.size(); i++) {
+            paramValues.appendValue(record.getOutputValue(i));
+        }
 
-//        String paramNames = "FILENAME,DATETIME,NODENAME,FUNCTIONTYPE,SYNCDATAID,PRODUCTVERSION,NERMVERSION,SYNCDATAOBJID";
-//        String paramValues = baseFileName+ "," + varDateTime + ","+nodeName+","+functionType+","+syndataId
-//                +","+productVersion+","+neRMVersion+","+syndataObjId;
-//        
-        String paramNames = "";
-        String paramValues = "";
+        moiSpillFiles.append(new File(outputDirectory), record.mo, record.fileName,
+                moiAttributes.size(), paramValues.toString());
+        countInputRows(record.mo, 1);
+    }
 
-        // logger.debug("Processing " + moiXSIType);
-        //</class>
-        if (qName.equals("class")) {
-            inClass = false;
-            return;
+    /**
+     * Check whether the csv output of an MO has been started.
+     *
+     * @since 1.3.0
+     */
+    private boolean hasMOOutput(String mo) {
+        if (parseResult != null) {
+            return parseResult.hasMO(mo);
         }
+        return moiPrintWriters.contains(mo) || incrementalHeaders.containsKey(mo);
+    }
 
-        if (inClass == true && inAttributes == true
-                && !qName.endsWith("attributes") && !qName.endsWith("class")) {
+    /**
+     * Start the csv output of an MO with the given header.
+     *
+     * @since 1.3.0
+     */
+    private void openMOOutput(String mo, String header) throws IOException {
+        if (parseResult != null) {
+            parseResult.addMO(mo, header);
+            return;
+        }
 
-            moiParameterValueMap.put(qName, tagData);
-            this.previousTag = qName;
-            tagData = "";
+        //Incremental runs write the csv files at the end
+        if (manifest != null) {
+            incrementalHeaders.put(mo, header);
             return;
         }
 
-        //we are at </attributes
-        if (qName.equals("attributes")) {
+        String moiFile = outputDirectory + File.separatorChar + mo + ".csv";
+        moiPrintWriters.create(mo, new File(moiFile)).writeLine(header);
+        outputMOs.add(mo);
+    }
 
-            //Parameter extraction when no parameter file is provided.
-            if (ParserStates.EXTRACTING_PARAMETERS == parserState && parameterFile == null) {
-                Stack moiAttributes = new Stack();
+    /**
+     * Write a row to the csv output of an MO.
+     *
+     * @since 1.3.0
+     */
+    private void printMORow(String mo, CSVRow row) throws IOException {
+        Object event = EVENTS.beginRow();
+        if (parseResult != null) {
+            parseResult.addRow(mo, row);
+        } else if (manifest != null) {
+            moiSpillFiles.appendRow(new File(outputDirectory), mo, moColumns.get(mo).size(),
+                    row.toString());
+            countInputRows(mo, 1);
+        } else {
+            moiPrintWriters.get(mo).writeRow(row);
+            metrics.addRowsWritten(mo, 1);
+        }
+        if (event != null) {
+            EVENTS.endRow(event, mo, row.length());
+        }
+    }
 
-                if (moColumns.containsKey(moiXSIType)) {
-                    moiAttributes = moColumns.get(moiXSIType);
-                } else {
-                    moColumns.put(moiXSIType, moiAttributes);
-                }
+    /**
+     * Remove the spill files left by a run that failed.
+     *
+     * @since 1.3.0
+     */
+    private void deleteSpillFiles() {
+        try {
+            moiSpillFiles.clear();
+        } catch (IOException e) {
+            logger.warn("Cannot remove the spill files: " + e.getMessage());
+        }
+    }
 
-                Iterator<Map.Entry<String, String>> iter
-                        = moiParameterValueMap.entrySet().iterator();
+    /**
+     * Write the spilled rows to the MO csv files with the final headers. The
+     * csv files of extended MOs that were started before are rewritten with
+     * their rows padded to the new columns, followed by the spilled rows.
+     *
+     * @since 1.3.0
+     * @throws IOException
+     */
+    private void writeSpilledRows() throws IOException {
+        Map<String, MOSpillFile> spillFiles = moiSpillFiles.getFiles();
+        Set<String> mos = new LinkedHashSet<String>(spillFiles.keySet());
+        mos.addAll(extendedHeaderColumns.keySet());
+        for (String mo : mos) {
+            ColumnRegistry moiAttributes = getColumns(mo);
+            MOSpillFile spillFile = spillFiles.get(mo);
+            Integer headerColumns = extendedHeaderColumns.get(mo);
+            ColumnRegistry orderedAttributes = getDiscoveryOrder(mo, moiAttributes);
+            int[] fieldOrder = getFieldOrder(moiAttributes, orderedAttributes);
+
+            File moiFile = new File(outputDirectory + File.separatorChar + mo + ".csv");
+            File file = headerColumns == null ? moiFile
+                    : File.createTempFile("." + mo + "-", ".tmp", new File(outputDirectory));
+            try {
+                CSVWriter writer = new CSVWriter(file);
+                writer.setMetrics(metrics);
+                outputMOs.add(mo);
+
+                String pName = METADATA_COLUMNS;
+                for (int i = 0; i < orderedAttributes.size(); i++) {
+                    pName += "," + orderedAttributes.get(i);
+                }
 
-                while (iter.hasNext()) {
-                    Map.Entry<String, String> me = iter.next();
-                    if (!moiAttributes.contains(me.getKey())) {
-                        moiAttributes.push(me.getKey());
+                //As in the two pass mode, DATETIME is the last extracted date time
+                try {
+                    writer.writeLine(pName);
+                    if (headerColumns != null) {
+                        copyPaddedRows(moiFile, writer, moiAttributes.size() - headerColumns,
+                                null, fieldOrder);
+                    }
+                    if (spillFile != null) {
+                        metrics.addRowsWritten(mo, spillFile.drainTo(writer, varDateTime,
+                                moiAttributes.size(), fieldOrder));
                     }
+                } finally {
+                    writer.close();
                 }
-            }
-
-            //Value extraction stage 
-            if (ParserStates.EXTRACTING_VALUES == parserState) {
-
-                //logger.debug("EXTRACTING_VALUES values state");
-                if (parameterFile == null) {
-                    //logger.debug("moiXSIType:" + moiXSIType);
-
-                    paramNames = "FILENAME,DATETIME,NODENAME,SYNCDATAFUNCTIONTYPE,SYNCDATAID,SYNCDATAPRODUCTVERSION,SYNCDATANERMVERSION,SYNCDATAOBJID";
-                    paramValues = baseFileName + "," + varDateTime + "," + nodeName + "," + functionType + "," + syndataId
-                            + "," + productVersion + "," + neRMVersion + "," + syndataObjId;
 
-                    //Get the parameter list
-                    Stack moiAttributes = moColumns.get(moiXSIType);
+                if (headerColumns != null) {
+                    Files.move(file.toPath(), moiFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                if (file != moiFile) {
+                    file.delete();
+                }
+            }
+        }
+        moiSpillFiles.clear();
+        extendedHeaderColumns.clear();
+    }
 
-                    //check if print writer doesn't exists and create it
-                    //This runs once per file.
-                    if (!moiPrintWriters.containsKey(moiXSIType)) {
+    /**
+     * Get the columns of an MO in the order a run without the schema cache
+     * gives them. The columns of an MO extended during the value pass over a
+     * cached schema are put in the order they were found, followed by the
+     * cached columns that were not found. The schemas of the versions are
+     * put in the same order for the schema cache.
+     *
+     * @since 1.3.0
+     * @param mo
+     * @param columns Columns of the MO
+     * @return ColumnRegistry The columns in the discovery order
+     */
+    private ColumnRegistry getDiscoveryOrder(String mo, ColumnRegistry columns) {
+        ColumnRegistry discovered = moDiscoveredColumns == null ? null
+                : moDiscoveredColumns.get(mo);
+        if (discovered == null || !moExtendedColumns.containsKey(mo)) {
+            return columns;
+        }
 
-                        //Create print writer
-                        String moiFile = outputDirectory + File.separatorChar + moiXSIType + ".csv";
-                        moiPrintWriters.put(moiXSIType, new PrintWriter(moiFile));
+        ColumnRegistry ordered = new ColumnRegistry();
+        for (int i = 0; i < discovered.size(); i++) {
+            if (columns.indexOf(discovered.get(i)) >= 0) {
+                ordered.add(discovered.get(i));
+            }
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            ordered.add(columns.get(i));
+        }
 
-                        //Create the header
-                        String pName = paramNames;
-                        for (int i = 0; i < moiAttributes.size(); i++) {
-                            String p = moiAttributes.get(i).toString();
+        for (Map<String, ColumnRegistry> schema : versionColumns.values()) {
+            ColumnRegistry versionMOColumns = schema.get(mo);
+            if (versionMOColumns == null) {
+                continue;
+            }
+            ColumnRegistry orderedVersionColumns = new ColumnRegistry();
+            for (int i = 0; i < ordered.size(); i++) {
+                if (versionMOColumns.indexOf(ordered.get(i)) >= 0) {
+                    orderedVersionColumns.add(ordered.get(i));
+                }
+            }
+            for (int i = 0; i < versionMOColumns.size(); i++) {
+                orderedVersionColumns.add(versionMOColumns.get(i));
+            }
+            schema.put(mo, orderedVersionColumns);
+        }
+        return ordered;
+    }
 
-                            pName += "," + p;
-                        }
+    /**
+     * Get the field of a csv row with the columns in one order that goes to
+     * each field of the row with the columns in another order.
+     *
+     * @since 1.3.0
+     * @param columns Columns of the rows
+     * @param ordered Columns of the output
+     * @return int[] Field order or null if the columns are in the same order
+     */
+    private static int[] getFieldOrder(ColumnRegistry columns, ColumnRegistry ordered) {
+        if (ordered == columns) {
+            return null;
+        }
+        int[] order = new int[METADATA_COLUMN_COUNT + ordered.size()];
+        boolean same = true;
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i < METADATA_COLUMN_COUNT ? i
+                    : METADATA_COLUMN_COUNT + columns.indexOf(ordered.get(i - METADATA_COLUMN_COUNT));
+            same &= order[i] == i;
+        }
+        return same ? null : order;
+    }
 
+    /**
+     * Copy runs of rows of a csv file after its header, adding empty values
+     * for the columns added since it was written.
+     *
+     * @since 1.3.0
+     * @param rowRuns Number of rows to keep when positive or to drop when
+     * negative, or null to copy all rows
+     * @param fieldOrder Field of the padded row for each output field, or
+     * null to keep the fields in order
+     */
+    private static void copyPaddedRows(File file, CSVWriter writer, int addedColumns,
+            int[] rowRuns, int[] fieldOrder) throws IOException {
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < addedColumns; i++) {
+            padding.append(',');
+        }
 
-                        moColumns.put(moiXSIType, moiAttributes);
-                        moiPrintWriters.get(moiXSIType).println(pName);
+        CSVRecordReader reader = new CSVRecordReader(new FileReader(file));
+        try {
+            reader.readRecord();
+            int run = 0;
+            int rows = 0;
+            for (String row; (row = reader.readRecord()) != null;) {
+                if (rowRuns != null) {
+                    while (rows == 0 && run < rowRuns.length) {
+                        rows = rowRuns[run++];
                     }
-
-                    for (int i = 0; i < moiAttributes.size(); i++) {
-                        String pName = moiAttributes.get(i).toString();
-
-                        if (moiParameterValueMap.containsKey(pName)) {
-                            paramValues += "," + toCSVFormat(moiParameterValueMap.get(pName));
-                        } else {
-                            paramValues += ",";
-                        }
+                    if (rows == 0) {
+                        throw new IOException(file + " has more rows than the last incremental run wrote");
                     }
-
-                    PrintWriter pw = moiPrintWriters.get(moiXSIType);
-                    pw.println(paramValues);
+                    if (rows < 0) {
+                        rows++;
+                        continue;
+                    }
+                    rows--;
                 }
+                if (fieldOrder != null) {
+                    writer.writeRow(row, fieldOrder);
+                    continue;
+                }
+                writer.write(row);
+                writer.writeLine(padding.toString());
+            }
+        } finally {
+            reader.close();
+        }
+    }
 
-                //If parameter file is present
-                if (parameterFile != null) {
-
-                    // Skip MOs not in the parameter file 
-                    if(!moColumns.containsKey(moiXSIType)){
-                        inAttributes = false;
-                        moiParameterValueMap.clear();
-                        return;
-                    }
-                    
-                    //Get the parameter list
-                    Stack moiAttributes = moColumns.get(moiXSIType);
-
-                    //check if print writer doesn't exists and create it
-                    //This runs once per file.
-                    if (!moiPrintWriters.containsKey(moiXSIType)) {
-
-                        //Create print writer
-                        String moiFile = outputDirectory + File.separatorChar + moiXSIType + ".csv";
-                        moiPrintWriters.put(moiXSIType, new PrintWriter(moiFile));
-
-                        //Create the header
-                        String pName = paramNames;
-                        for (int i = 0; i < moiAttributes.size(); i++) {
-                            String p = moiAttributes.get(i).toString();
-
-                            if (p.equals("FILENAME")) {
-                                pName += ",FILENAME";
-                            } else if (p.equals("DATETIME")) {
-                                pName += ",DATETIME";
-                            } else if (p.equals("NODENAME")) {
-                                pName += ",NODENAME";
-                            } else if (p.equals("SYNCDATAFUNCTIONTYPE")) {
-                                pName += ",SYNCDATAFUNCTIONTYPE";
-                            } else if (p.equals("SYNCDATAID")) {
-                                pName += ",SYNCDATAID";
-                            } else if (p.equals("SYNCDATARODUCTVERSION")) {
-                                pName += ",SYNCDATAPRODUCTVERSION";
-                            } else if (p.equals("SYNCDATANERMVERSION")) {
-                                pName += ",SYNCDATANERMVERSION";
-                            } else if (p.equals("SYNCDATAOBJID")) {
-                                pName += ",SYNCDATAOBJID";
-                            } else {
-                                pName += "," + p;
-                            }
+    /**
+     * Write the csv files of an incremental run. A file is left as it is
+     * when none of its rows changed, and the new rows are appended to it when
+     * no rows were dropped and it has no new columns. Otherwise it is
+     * rewritten with the rows kept from the last run, padded to the new
+     * columns, followed by the new rows.
+     *
+     * The kept rows are copied with the DATETIME of the run that wrote them.
+     * Only the new rows get the last date time of this run, which is taken
+     * from the parsed files alone.
+     *
+     * @since 1.3.0
+     * @throws IOException
+     */
+    private void writeIncrementalOutput() throws IOException {
+        Map<String, MOSpillFile> spillFiles = moiSpillFiles.getFiles();
+        Set<String> mos = new LinkedHashSet<String>(manifest.getOutputs());
+        mos.addAll(spillFiles.keySet());
+        for (String mo : mos) {
+            ColumnRegistry moiAttributes = moColumns.get(mo);
+            MOSpillFile spillFile = spillFiles.get(mo);
+            File moiFile = new File(outputDirectory + File.separatorChar + mo + ".csv");
+
+            String header = incrementalHeaders.get(mo);
+            if (parameterFile == null) {
+                header = METADATA_COLUMNS;
+                for (int i = 0; i < moiAttributes.size(); i++) {
+                    header += "," + moiAttributes.get(i);
+                }
+            }
 
-                        }
-                        //Remove leading commas
-                        pName = pName.replaceAll("^,","");
+            //An MO that had no csv file is written like in a single pass run
+            if (!manifest.getOutputs().contains(mo)) {
+                CSVWriter writer = new CSVWriter(moiFile);
+                try {
+                    writer.writeLine(header);
+                    metrics.addRowsWritten(mo,
+                            spillFile.drainTo(writer, varDateTime, moiAttributes.size()));
+                } finally {
+                    writer.close();
+                }
+                outputMOs.add(mo);
+                continue;
+            }
 
-                        moiPrintWriters.get(moiXSIType).println(pName);
+            ColumnRegistry lastAttributes = manifest.getSchema().get(mo);
+            int addedColumns = parameterFile != null || lastAttributes == null ? 0
+                    : moiAttributes.size() - lastAttributes.size();
+            int[] rowRuns = manifest.getRowRuns(mo);
+            int keptRows = 0;
+            for (int rows : rowRuns) {
+                keptRows += Math.max(0, rows);
+            }
 
+            if (keptRows == 0 && spillFile == null) {
+                Files.deleteIfExists(moiFile.toPath());
+                continue;
+            }
+            outputMOs.add(mo);
+
+            if (!manifest.dropsRows(mo) && addedColumns == 0) {
+                if (spillFile != null) {
+                    CSVWriter writer = new CSVWriter(moiFile, true);
+                    try {
+                        metrics.addRowsWritten(mo,
+                                spillFile.drainTo(writer, varDateTime, moiAttributes.size()));
+                    } finally {
+                        writer.close();
                     }
+                }
+                continue;
+            }
 
-                    for (int i = 0; i < moiAttributes.size(); i++) {
-                        String pName = moiAttributes.get(i).toString();
-
-                        if (moiParameterValueMap.containsKey(pName)) {
-                            paramValues += "," + toCSVFormat(moiParameterValueMap.get(pName));
-                        } else {
-
-                            if (pName.equals("FILENAME")) {
-                                paramValues += "," + baseFileName;
-                            } else if (pName.equals("DATETIME")) {
-                                paramValues += "," + varDateTime;
-                            } else if (pName.equals("NODENAME")) {
-                                paramValues += "," + nodeName;
-                            } else if (pName.equals("SYNCDATAFUNCTIONTYPE")) {
-                                paramValues += "," + functionType;
-                            } else if (pName.equals("SYNCDATASYNCDATAID")) {
-                                paramValues += "," + syndataId;
-                            } else if (pName.equals("SYNCDATAPRODUCTVERSION")) {
-                                paramValues += "," + productVersion;
-                            } else if (pName.equals("SYNCDATANERMVERSION")) {
-                                paramValues += "," + neRMVersion;
-                            } else if (pName.equals("SYNCDATAOBJID")) {
-                                paramValues += "," + syndataObjId;
-                            } else {
-                                paramValues += ",";
-                            }
+            File file = File.createTempFile("." + mo + "-", ".tmp", new File(outputDirectory));
+            try {
+                CSVWriter writer = new CSVWriter(file);
+                try {
+                    if (header == null) {
+                        CSVRecordReader reader = new CSVRecordReader(new FileReader(moiFile));
+                        try {
+                            header = reader.readRecord();
+                        } finally {
+                            reader.close();
                         }
                     }
-                    //Remove leading commas
-                    paramValues = paramValues.replaceAll("^,","");
-
-                    PrintWriter pw = moiPrintWriters.get(moiXSIType);
-                    pw.println(paramValues);
+                    writer.writeLine(header);
+                    copyPaddedRows(moiFile, writer, addedColumns, rowRuns, null);
+                    if (spillFile != null) {
+                        metrics.addRowsWritten(mo,
+                                spillFile.drainTo(writer, varDateTime, moiAttributes.size()));
+                    }
+                } finally {
+                    writer.close();
                 }
-
+                Files.move(file.toPath(), moiFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                file.delete();
             }
-
-            moiParameterValueMap.clear();
-            inAttributes = false;
-            return;
         }
-
+        moiSpillFiles.clear();
     }
 
     /**
@@ -738,7 +3169,49 @@ public class HuaweiCfgSynParser {
     public void characterEvent(XMLEvent xmlEvent) {
         Characters characters = xmlEvent.asCharacters();
         if (!characters.isWhiteSpace()) {
-            tagData = characters.getData();
+            characters(characters.getData());
+        }
+    }
+
+    /**
+     * Handle non whitespace text.
+     *
+     * @param text
+     * @since 1.3.0
+     */
+    public void characters(String text) {
+        tagData = text;
+    }
+
+    /**
+     * Check whether a comment following the current position would hold the
+     * translated value of the last parameter.
+     *
+     * @since 1.3.0
+     */
+    boolean expectsComment() {
+        return previousSlot >= 0;
+    }
+
+    /**
+     * Handle a comment. Comments after a parameter hold its translated value.
+     *
+     * @param text
+     * @since 1.3.0
+     */
+    public void comment(String text) {
+        if (expectsComment()) {
+            //Keep the value for the record handlers
+            if (moiRawValues == null) {
+                moiRawValues = new String[moiValues.length];
+            } else if (previousSlot >= moiRawValues.length) {
+                moiRawValues = Arrays.copyOf(moiRawValues, moiValues.length);
+            }
+            if (moiRawValues[previousSlot] == null) {
+                moiRawValues[previousSlot] = moiValues[previousSlot];
+            }
+            hasRawValues = true;
+            moiValues[previousSlot] = text;
         }
     }
 
@@ -784,14 +3257,13 @@ public class HuaweiCfgSynParser {
         if (runningTime > 1000) {
             int secs = (int) Math.floor(runningTime / (1000));
             s = s + secs + " seconds ";
-            runningTime = runningTime - (secs / 1000);
+            runningTime = runningTime - (secs * 1000);
         }
 
         //Get milliseconds
         if (runningTime > 0) {
-            int msecs = (int) Math.floor(runningTime / (1000));
+            int msecs = (int) runningTime;
             s = s + msecs + " milliseconds ";
-            runningTime = runningTime - (msecs / 1000);
         }
 
         logger.info(s);
@@ -804,12 +3276,18 @@ public class HuaweiCfgSynParser {
      * @version 1.0.0
      */
     public void closeMOPWMap() {
-        Iterator<Map.Entry<String, PrintWriter>> iter
-                = moiPrintWriters.entrySet().iterator();
-        while (iter.hasNext()) {
-            iter.next().getValue().close();
+        if (moiPrintWriters.getMisses() > 0) {
+            logger.info("Output writers: " + moiPrintWriters.getHits() + " hits, "
+                    + moiPrintWriters.getMisses() + " misses, "
+                    + moiPrintWriters.getEvictions() + " evictions (max open "
+                    + moiPrintWriters.getMaxOpen() + ")");
+        }
+
+        try {
+            moiPrintWriters.close();
+        } catch (IOException e) {
+            logger.error(e.getMessage());
         }
-        moiPrintWriters.clear();
     }
 
     /**
@@ -822,8 +3300,8 @@ public class HuaweiCfgSynParser {
     public String toCSVFormat(String s) {
         String csvValue = s;
 
-        //Check if value contains comma
-        if (s.contains(",")) {
+        //Check if value contains comma or a line break
+        if (s.contains(",") || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0) {
             csvValue = "\"" + s + "\"";
         }
 
@@ -890,6 +3368,8 @@ public class HuaweiCfgSynParser {
         baseFileName = "";
         moiXSIType = null;
         previousTag = null;
+        clearParameterValues();
+        tagData = "";
     }
     
     public static void main(String[] args) {
@@ -900,6 +3380,29 @@ public class HuaweiCfgSynParser {
         String parameterConfigFile = null;
         Boolean showHelpMessage = false;
         Boolean showVersion = false;
+        Boolean singlePass = false;
+        int threads = 1;
+        int engine = ParserEngines.CURSOR;
+        int maxOpenFiles = CSVWriterPool.DEFAULT_MAX_OPEN;
+        String schemaCacheDirectory = null;
+        Boolean incremental = false;
+        String deltaSnapshotDirectory = null;
+        String deltaKeyFile = null;
+        String metricsFile = null;
+        int metricsInterval = 10;
+        int progressInterval = 0;
+        long splitSize = DEFAULT_SPLIT_SIZE;
+        int writeThreads = 0;
+        Boolean watch = false;
+        int rotateMinutes = FolderWatcher.DEFAULT_ROTATE_MINUTES;
+        int settleSeconds = FolderWatcher.DEFAULT_SETTLE_SECONDS;
+        String[] includeGlobs = null;
+        String[] excludeGlobs = null;
+        int maxDepth = 1;
+        String inputList = null;
+        Boolean largestFirst = false;
+        int checkpointInterval = 0;
+        Boolean resume = false;
         
         
         try {
@@ -920,6 +3423,101 @@ public class HuaweiCfgSynParser {
                     .desc( "parameter configuration file")
                     .hasArg()
                     .argName( "PARAMETER_CONFIG" ).build() );
+            options.addOption(Option.builder("e")
+                    .longOpt( "engine" )
+                    .desc( "xml parsing engine: cursor (default), event or scanner")
+                    .hasArg()
+                    .argName( "ENGINE" ).build());
+            options.addOption(Option.builder("l")
+                    .longOpt( "input-list" )
+                    .desc( "file listing the files or directories to parse, one per line, or - to read the list from the standard input")
+                    .hasArg()
+                    .argName( "INPUT_LIST" ).build());
+            options.addOption(Option.builder("g")
+                    .longOpt( "include" )
+                    .desc( "only parse the files of the input directory matching GLOB, for example *.xml. Can be repeated")
+                    .hasArg()
+                    .argName( "GLOB" ).build());
+            options.addOption(Option.builder("x")
+                    .longOpt( "exclude" )
+                    .desc( "skip the files and directories matching GLOB. Can be repeated")
+                    .hasArg()
+                    .argName( "GLOB" ).build());
+            options.addOption(Option.builder("L")
+                    .longOpt( "max-depth" )
+                    .desc( "levels of directories to walk for files (default 1, the input directory only, 0 for no limit)")
+                    .hasArg()
+                    .argName( "DEPTH" ).build());
+            options.addOption( "b", "largest-first", false, "parse the largest files first" );
+            options.addOption( "s", "single-pass", false, "extract parameters and values in one pass" );
+            options.addOption(Option.builder("t")
+                    .longOpt( "threads" )
+                    .desc( "number of files to parse in parallel")
+                    .hasArg()
+                    .argName( "THREADS" ).build());
+            options.addOption(Option.builder("m")
+                    .longOpt( "max-open-files" )
+                    .desc( "maximum number of csv files kept open (default " + CSVWriterPool.DEFAULT_MAX_OPEN + ")")
+                    .hasArg()
+                    .argName( "MAX_OPEN_FILES" ).build());
+            options.addOption(Option.builder("w")
+                    .longOpt( "write-threads" )
+                    .desc( "number of threads writing the csv files while parsing (default 0, write on the parsing thread)")
+                    .hasArg()
+                    .argName( "THREADS" ).build());
+            options.addOption( "W", "watch", false, "keep running and parse the files added to the input directory" );
+            options.addOption(Option.builder("r")
+                    .longOpt( "rotate" )
+                    .desc( "with -W, start a new output directory every MINUTES minutes (default " + FolderWatcher.DEFAULT_ROTATE_MINUTES + ")")
+                    .hasArg()
+                    .argName( "MINUTES" ).build());
+            options.addOption(Option.builder("S")
+                    .longOpt( "settle" )
+                    .desc( "with -W, parse a file once it has not changed for SECONDS seconds (default " + FolderWatcher.DEFAULT_SETTLE_SECONDS + ")")
+                    .hasArg()
+                    .argName( "SECONDS" ).build());
+            options.addOption(Option.builder("z")
+                    .longOpt( "split-size" )
+                    .desc( "with -t, split uncompressed files of at least twice this size into parts parsed in parallel (default " + DEFAULT_SPLIT_SIZE / (1024 * 1024) + ", 0 to disable)")
+                    .hasArg()
+                    .argName( "MB" ).build());
+            options.addOption(Option.builder("k")
+                    .longOpt( "schema-cache" )
+                    .desc( "directory of schemas cached per product and NRM version")
+                    .hasArg()
+                    .argName( "SCHEMA_CACHE" ).build());
+            options.addOption(Option.builder("d")
+                    .longOpt( "delta-snapshot" )
+                    .desc( "only write the MO instances that changed since the run that saved this snapshot directory")
+                    .hasArg()
+                    .argName( "DELTA_SNAPSHOT" ).build());
+            options.addOption(Option.builder("D")
+                    .longOpt( "delta-keys" )
+                    .desc( "identifying parameters per MO for the delta, in the parameter file layout")
+                    .hasArg()
+                    .argName( "DELTA_KEYS" ).build());
+            options.addOption(Option.builder("P")
+                    .longOpt( "metrics-file" )
+                    .desc( "write parser metrics to this file in the Prometheus text format while parsing")
+                    .hasArg()
+                    .argName( "METRICS_FILE" ).build());
+            options.addOption(Option.builder("I")
+                    .longOpt( "metrics-interval" )
+                    .desc( "seconds between metrics file updates (default 10)")
+                    .hasArg()
+                    .argName( "SECONDS" ).build());
+            options.addOption(Option.builder("p")
+                    .longOpt( "progress" )
+                    .desc( "log the progress of each pass every SECONDS seconds")
+                    .hasArg()
+                    .argName( "SECONDS" ).build());
+            options.addOption( "n", "incremental", false, "only parse the files that changed since the last run in the output directory" );
+            options.addOption(Option.builder("j")
+                    .longOpt( "checkpoint" )
+                    .desc( "save a checkpoint of the csv files every SECONDS seconds so that a stopped run can be resumed with -R")
+                    .hasArg()
+                    .argName( "SECONDS" ).build());
+            options.addOption( "R", "resume", false, "go on from the last checkpoint of the run that stopped in the output directory" );
             options.addOption( "h", "help", false, "show help" );
             
             CommandLineParser parser = new DefaultParser();
@@ -944,6 +3542,98 @@ public class HuaweiCfgSynParser {
             if(cmd.hasOption('c')){
                 parameterConfigFile = cmd.getOptionValue("c"); 
             }
+            
+            if(cmd.hasOption('s')){
+                singlePass = true;
+            }
+            
+            if(cmd.hasOption('e')){
+                engine = ParserEngines.fromName(cmd.getOptionValue("e")); 
+            }
+            
+            if(cmd.hasOption('t')){
+                threads = Integer.parseInt(cmd.getOptionValue("t")); 
+            }
+            
+            if(cmd.hasOption('m')){
+                maxOpenFiles = Integer.parseInt(cmd.getOptionValue("m")); 
+            }
+            
+            if(cmd.hasOption('w')){
+                writeThreads = Integer.parseInt(cmd.getOptionValue("w")); 
+            }
+            
+            if(cmd.hasOption('l')){
+                inputList = cmd.getOptionValue("l"); 
+            }
+            
+            if(cmd.hasOption('g')){
+                includeGlobs = cmd.getOptionValues("g"); 
+            }
+            
+            if(cmd.hasOption('x')){
+                excludeGlobs = cmd.getOptionValues("x"); 
+            }
+            
+            if(cmd.hasOption('L')){
+                maxDepth = Integer.parseInt(cmd.getOptionValue("L")); 
+            }
+            
+            if(cmd.hasOption('b')){
+                largestFirst = true;
+            }
+            
+            if(cmd.hasOption('W')){
+                watch = true;
+            }
+            
+            if(cmd.hasOption('r')){
+                rotateMinutes = Integer.parseInt(cmd.getOptionValue("r")); 
+            }
+            
+            if(cmd.hasOption('S')){
+                settleSeconds = Integer.parseInt(cmd.getOptionValue("S")); 
+            }
+            
+            if(cmd.hasOption('z')){
+                splitSize = Long.parseLong(cmd.getOptionValue("z")) * 1024 * 1024; 
+            }
+            
+            if(cmd.hasOption('k')){
+                schemaCacheDirectory = cmd.getOptionValue("k"); 
+            }
+            
+            if(cmd.hasOption('j')){
+                checkpointInterval = Integer.parseInt(cmd.getOptionValue("j")); 
+            }
+            
+            if(cmd.hasOption('R')){
+                resume = true;
+            }
+            
+            if(cmd.hasOption('n')){
+                incremental = true;
+            }
+            
+            if(cmd.hasOption('d')){
+                deltaSnapshotDirectory = cmd.getOptionValue("d"); 
+            }
+            
+            if(cmd.hasOption('D')){
+                deltaKeyFile = cmd.getOptionValue("D"); 
+            }
+            
+            if(cmd.hasOption('P')){
+                metricsFile = cmd.getOptionValue("P"); 
+            }
+            
+            if(cmd.hasOption('I')){
+                metricsInterval = Integer.parseInt(cmd.getOptionValue("I")); 
+            }
+            
+            if(cmd.hasOption('p')){
+                progressInterval = Integer.parseInt(cmd.getOptionValue("p")); 
+            }
       
        }catch(IllegalArgumentException e){
            
@@ -962,7 +3652,7 @@ public class HuaweiCfgSynParser {
             
             //show help
             if( showHelpMessage == true || 
-                inputFile == null || 
+                ( inputFile == null && inputList == null ) || 
                 ( outputDirectory == null ) ){
                      HelpFormatter formatter = new HelpFormatter();
                      String header = "Parses Huawei AUTOBAK/CM Backup configuration data file to csv\n\n";
@@ -970,11 +3660,32 @@ public class HuaweiCfgSynParser {
                      footer += "Examples: \n";
                      footer += "java -jar boda-huaweicfgsynparser.jar -i dump.xml -o out_folder\n";
                      footer += "java -jar boda-huaweicfgsynparser.jar -i input_folder -o out_folder\n";
+                     footer += "java -jar boda-huaweicfgsynparser.jar -i input_folder -o out_folder -s\n";
+                     footer += "java -jar boda-huaweicfgsynparser.jar -i input_folder -o out_folder -k schema_cache\n";
+                     footer += "java -jar boda-huaweicfgsynparser.jar -i input_folder -o out_folder -n\n";
+                     footer += "java -jar boda-huaweicfgsynparser.jar -i input_folder -o out_folder -d snapshot\n";
+                     footer += "java -jar boda-huaweicfgsynparser.jar -i input_folder -o out_folder -P metrics.prom\n";
+                     footer += "java -jar boda-huaweicfgsynparser.jar -i input_folder -o out_folder -p 30\n";
+                     footer += "java -jar boda-huaweicfgsynparser.jar -i dump.xml -o /mnt/nfs/out_folder -w 2\n";
+                     footer += "java -jar boda-huaweicfgsynparser.jar -i incoming_folder -o out_folder -W -r 15\n";
+                     footer += "java -jar boda-huaweicfgsynparser.jar -i archive -o out_folder -L 0 -g \"*.xml\" -t 8 -b\n";
+                     footer += "find archive -name \"*.xml\" | java -jar boda-huaweicfgsynparser.jar -l - -o out_folder\n";
+                     footer += "java -jar boda-huaweicfgsynparser.jar -i archive -o out_folder -L 0 -j 60 -R\n";
                      footer += "\nCopyright (c) 2019 Bodastage Solutions(http://www.bodastage.com)";
                      formatter.printHelp( "java -jar boda-huaweicfgsynparser.jar", header, options, footer );
                      System.exit(0);
             }
             
+            if(engine == -1){
+                System.err.println("ERROR: Unknown engine. Use cursor, event or scanner.");
+                System.exit(1);
+            }
+
+            if(watch && (inputFile == null || !new File(inputFile).isDirectory())){
+                System.err.println("ERROR: Watch mode needs an input directory.");
+                System.exit(1);
+            }
+
             //Confirm that the output directory is a directory and has write 
             //privileges
             if(outputDirectory != null ){
@@ -1004,6 +3715,64 @@ public class HuaweiCfgSynParser {
             
             parser.setDataSource(inputFile);
             parser.setOutputDirectory(outputDirectory);
+            parser.setSinglePass(singlePass);
+            parser.setThreads(threads);
+            parser.setEngine(engine);
+            parser.setMaxOpenFiles(maxOpenFiles);
+            parser.setSplitSize(splitSize);
+            parser.setWriteThreads(writeThreads);
+
+            InputFinder inputFinder = new InputFinder();
+            if(includeGlobs != null){
+                for(String glob : includeGlobs){
+                    inputFinder.addInclude(glob);
+                }
+            }
+            if(excludeGlobs != null){
+                for(String glob : excludeGlobs){
+                    inputFinder.addExclude(glob);
+                }
+            }
+            inputFinder.setMaxDepth(maxDepth);
+            inputFinder.setLargestFirst(largestFirst);
+            if(inputList != null){
+                inputFinder.setInputList(inputList);
+            }
+            parser.setInputFinder(inputFinder);
+            if(schemaCacheDirectory != null){
+                parser.setSchemaCache(schemaCacheDirectory);
+            }
+            parser.setIncremental(incremental);
+            parser.setCheckpointInterval(checkpointInterval);
+            parser.setResume(resume);
+            if(deltaSnapshotDirectory != null){
+                parser.setDeltaSnapshot(deltaSnapshotDirectory, deltaKeyFile);
+            }
+            if(metricsFile != null){
+                parser.setMetricsFile(metricsFile, metricsInterval);
+            }
+            if(progressInterval > 0){
+                parser.setProgressInterval(progressInterval);
+            }
+            parser.getMetrics().registerMBean();
+
+            if(watch){
+                final FolderWatcher watcher = new FolderWatcher(parser,
+                        Paths.get(inputFile), Paths.get(outputDirectory));
+                watcher.setRotateMinutes(rotateMinutes);
+                watcher.setSettleSeconds(settleSeconds);
+
+                //Write the current period and close the csv files on exit
+                Runtime.getRuntime().addShutdownHook(new Thread() {
+                    @Override
+                    public void run() {
+                        watcher.stop(300);
+                    }
+                });
+                watcher.run();
+                return;
+            }
+
             parser.parse();
 
         } catch (Exception e) {
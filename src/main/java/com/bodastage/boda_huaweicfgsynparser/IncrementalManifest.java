@@ -0,0 +1,525 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers the inputs of the last run in the output directory so that the
+ * inputs that did not change are not parsed again.
+ *
+ * The rows of the inputs are only kept in the csv files. The manifest holds
+ * what cannot be read back from them: the size, last modified time and
+ * SHA-256 hash of each input, the number of rows it has in each csv file, the
+ * columns of each MO and the length of each csv file. An input is unchanged
+ * when its size and time are the same or, failing that, when its content has
+ * the same hash.
+ *
+ * The inputs are listed in the order their rows are in the csv files: the
+ * inputs kept from the last run first, then the inputs parsed in this run.
+ * The rows of an input are found by counting the rows of the inputs before
+ * it. If a csv file does not have the length it had at the end of the last
+ * run the whole manifest is ignored and every input is parsed.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class IncrementalManifest {
+
+    static Logger logger = LoggerFactory.getLogger(IncrementalManifest.class);
+
+    /**
+     * Directory in the output directory holding the manifest.
+     */
+    public static final String DIRECTORY = ".incremental";
+
+    private static final String MANIFEST_FILE = "manifest";
+
+    private static final int FORMAT = 3;
+
+    /**
+     * An input of the current or last run.
+     */
+    public static class Entry {
+
+        final ParserInput input;
+
+        final String id;
+
+        /**
+         * Size of the input or -1 if it is unknown or the input failed, so
+         * that it is parsed again.
+         */
+        final long size;
+
+        final long lastModified;
+
+        String hash;
+
+        /**
+         * Number of csv rows per MO.
+         */
+        Map<String, Integer> rowCounts = new LinkedHashMap<String, Integer>();
+
+        Entry(ParserInput input, String id, long size, long lastModified) {
+            this.input = input;
+            this.id = id;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private final File directory;
+
+    private final File outputDirectory;
+
+    /**
+     * Settings the csv files depend on.
+     */
+    private final String config;
+
+    /**
+     * Inputs of the last run in the order of their rows.
+     */
+    private final Map<String, Entry> previous = new LinkedHashMap<String, Entry>();
+
+    /**
+     * MO columns at the end of the last run.
+     */
+    private final Map<String, ColumnRegistry> schema = new LinkedHashMap<String, ColumnRegistry>();
+
+    /**
+     * MO columns per product and NRM version at the end of the last run.
+     */
+    private final Map<String, Map<String, ColumnRegistry>> versionColumns
+            = new LinkedHashMap<String, Map<String, ColumnRegistry>>();
+
+    /**
+     * Length of the csv file of each MO at the end of the last run.
+     */
+    private final Map<String, Long> outputLengths = new LinkedHashMap<String, Long>();
+
+    /**
+     * Inputs of the last run that did not change.
+     */
+    private final Map<String, Entry> kept = new LinkedHashMap<String, Entry>();
+
+    /**
+     * Inputs parsed in this run in the order of their rows.
+     */
+    private final Map<String, Entry> added = new LinkedHashMap<String, Entry>();
+
+    /**
+     * Open the manifest of an output directory. The last run is ignored if
+     * it used other settings or its csv files changed.
+     *
+     * @param outputDirectory
+     * @param config Settings that change the csv files
+     * @return IncrementalManifest
+     * @throws IOException
+     */
+    public static IncrementalManifest open(File outputDirectory, String config)
+            throws IOException {
+        IncrementalManifest manifest = new IncrementalManifest(outputDirectory, config);
+        manifest.load();
+        return manifest;
+    }
+
+    private IncrementalManifest(File outputDirectory, String config) {
+        this.outputDirectory = outputDirectory;
+        this.directory = new File(outputDirectory, DIRECTORY);
+        this.config = config;
+    }
+
+    private void load() throws IOException {
+        File file = new File(directory, MANIFEST_FILE);
+        if (!file.isFile()) {
+            return;
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file.toPath()), 64 * 1024));
+        try {
+            if (in.readInt() != FORMAT || !config.equals(in.readUTF())) {
+                logger.info("The last incremental run used other settings. Parsing all inputs.");
+                return;
+            }
+
+            readSchema(in, schema);
+            for (int i = in.readInt(); i > 0; i--) {
+                Map<String, ColumnRegistry> version = new LinkedHashMap<String, ColumnRegistry>();
+                versionColumns.put(in.readUTF(), version);
+                readSchema(in, version);
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                outputLengths.put(in.readUTF(), in.readLong());
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                Entry entry = new Entry(null, in.readUTF(), in.readLong(), in.readLong());
+                entry.hash = in.readBoolean() ? in.readUTF() : null;
+                for (int j = in.readInt(); j > 0; j--) {
+                    entry.rowCounts.put(in.readUTF(), in.readInt());
+                }
+                previous.put(entry.id, entry);
+            }
+        } finally {
+            in.close();
+        }
+
+        for (Map.Entry<String, Long> me : outputLengths.entrySet()) {
+            File csvFile = getOutputFile(me.getKey());
+            if (csvFile.length() != me.getValue()) {
+                logger.warn(csvFile + " changed since the last incremental run. Parsing all inputs.");
+                previous.clear();
+                schema.clear();
+                versionColumns.clear();
+                outputLengths.clear();
+                return;
+            }
+        }
+    }
+
+    private File getOutputFile(String mo) {
+        return new File(outputDirectory, mo + ".csv");
+    }
+
+    /**
+     * Get the MO columns at the end of the last run.
+     *
+     * @return Map
+     */
+    public Map<String, ColumnRegistry> getSchema() {
+        return schema;
+    }
+
+    /**
+     * Get the MO columns per product and NRM version at the end of the last
+     * run.
+     *
+     * @return Map
+     */
+    public Map<String, Map<String, ColumnRegistry>> getVersionColumns() {
+        return versionColumns;
+    }
+
+    /**
+     * Get the MOs that had a csv file at the end of the last run.
+     *
+     * @return Set
+     */
+    public Set<String> getOutputs() {
+        return outputLengths.keySet();
+    }
+
+    /**
+     * Get the size and time of an input.
+     *
+     * @param input
+     * @return Entry
+     */
+    public Entry fingerprint(ParserInput input) {
+        try {
+            return new Entry(input, input.getId(), input.getSize(), input.getLastModified());
+        } catch (IOException e) {
+            return new Entry(input, input.getId(), -1, 0);
+        }
+    }
+
+    /**
+     * Check whether an input is the same as in the last run. The content is
+     * only hashed when the size or time changed.
+     *
+     * @param entry
+     * @return boolean
+     * @throws IOException
+     */
+    public boolean isUnchanged(Entry entry) throws IOException {
+        Entry last = previous.get(entry.id);
+        if (last == null || last.size < 0) {
+            return false;
+        }
+        if (entry.size >= 0 && entry.size == last.size && entry.lastModified == last.lastModified) {
+            entry.hash = last.hash;
+            return true;
+        }
+        if (last.hash == null) {
+            return false;
+        }
+        hash(entry);
+        return entry.hash.equals(last.hash);
+    }
+
+    /**
+     * Hash the content of an input if it is not hashed yet.
+     *
+     * @param entry
+     * @throws IOException
+     */
+    public void hash(Entry entry) throws IOException {
+        if (entry.hash == null) {
+            entry.hash = hash(entry.input);
+        }
+    }
+
+    /**
+     * Keep the rows of an unchanged input.
+     *
+     * @param entry
+     */
+    public synchronized void keep(Entry entry) {
+        entry.rowCounts = previous.get(entry.id).rowCounts;
+        kept.put(entry.id, entry);
+    }
+
+    /**
+     * Record the rows of an input parsed in this run. They follow the rows
+     * of the inputs added before it.
+     *
+     * @param entry
+     * @param rowCounts Number of csv rows per MO
+     * @param complete Whether the input was parsed without errors. Inputs
+     * that failed are parsed again by the next run.
+     */
+    public synchronized void add(Entry entry, Map<String, Integer> rowCounts, boolean complete) {
+        Entry recorded = entry;
+        if (!complete) {
+            recorded = new Entry(entry.input, entry.id, -1, 0);
+        } else if (entry.hash == null) {
+            try {
+                hash(entry);
+            } catch (IOException e) {
+                logger.warn("Cannot hash " + entry.id + ": " + e.getMessage());
+            }
+        }
+        recorded.rowCounts = new LinkedHashMap<String, Integer>(rowCounts);
+        added.remove(entry.id);
+        added.put(entry.id, recorded);
+    }
+
+    /**
+     * Check whether rows of the last run are dropped from the csv file of an
+     * MO because their input changed or is gone.
+     *
+     * @param mo
+     * @return boolean
+     */
+    public synchronized boolean dropsRows(String mo) {
+        for (Entry entry : previous.values()) {
+            Integer count = entry.rowCounts.get(mo);
+            if (count != null && count > 0 && !kept.containsKey(entry.id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the rows of the csv file of an MO to keep, as runs of rows in file
+     * order. A positive run is kept and a negative run is dropped.
+     *
+     * @param mo
+     * @return int[]
+     */
+    public synchronized int[] getRowRuns(String mo) {
+        List<Integer> runs = new ArrayList<Integer>();
+        int run = 0;
+        for (Entry entry : previous.values()) {
+            Integer count = entry.rowCounts.get(mo);
+            if (count == null || count == 0) {
+                continue;
+            }
+            int rows = kept.containsKey(entry.id) ? count : -count;
+            if (run != 0 && (run > 0) != (rows > 0)) {
+                runs.add(run);
+                run = 0;
+            }
+            run += rows;
+        }
+        if (run != 0) {
+            runs.add(run);
+        }
+
+        int[] result = new int[runs.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = runs.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Write the manifest of this run once the csv files are written.
+     *
+     * @param moColumns MO columns of this run
+     * @param moVersionColumns MO columns per version of this run
+     * @param outputs MOs with a csv file
+     * @throws IOException
+     */
+    public synchronized void save(Map<String, ColumnRegistry> moColumns,
+            Map<String, Map<String, ColumnRegistry>> moVersionColumns,
+            Collection<String> outputs) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        List<Entry> entries = new ArrayList<Entry>();
+        for (Entry entry : previous.values()) {
+            if (kept.containsKey(entry.id) && !added.containsKey(entry.id)) {
+                entries.add(kept.get(entry.id));
+            }
+        }
+        entries.addAll(added.values());
+
+        File file = new File(directory, MANIFEST_FILE);
+        File tmpFile = File.createTempFile("." + MANIFEST_FILE + "-", ".tmp", directory);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(tmpFile.toPath()), 64 * 1024));
+            try {
+                out.writeInt(FORMAT);
+                out.writeUTF(config);
+                writeSchema(out, moColumns);
+                out.writeInt(moVersionColumns.size());
+                for (Map.Entry<String, Map<String, ColumnRegistry>> me : moVersionColumns.entrySet()) {
+                    out.writeUTF(me.getKey());
+                    writeSchema(out, me.getValue());
+                }
+
+                List<String> mos = new ArrayList<String>();
+                for (String mo : outputs) {
+                    if (getOutputFile(mo).isFile()) {
+                        mos.add(mo);
+                    }
+                }
+                out.writeInt(mos.size());
+                for (String mo : mos) {
+                    out.writeUTF(mo);
+                    out.writeLong(getOutputFile(mo).length());
+                }
+
+                out.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    out.writeUTF(entry.id);
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.lastModified);
+                    out.writeBoolean(entry.hash != null);
+                    if (entry.hash != null) {
+                        out.writeUTF(entry.hash);
+                    }
+                    out.writeInt(entry.rowCounts.size());
+                    for (Map.Entry<String, Integer> me : entry.rowCounts.entrySet()) {
+                        out.writeUTF(me.getKey());
+                        out.writeInt(me.getValue());
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            tmpFile.delete();
+        }
+
+        //Results saved by earlier versions
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (f.getName().endsWith(".result") || f.getName().equals("manifest.txt")) {
+                    f.delete();
+                }
+            }
+        }
+    }
+
+    private static void writeSchema(DataOutputStream out, Map<String, ColumnRegistry> schema)
+            throws IOException {
+        out.writeInt(schema.size());
+        for (Map.Entry<String, ColumnRegistry> me : schema.entrySet()) {
+            ColumnRegistry columns = me.getValue();
+            out.writeUTF(me.getKey());
+            out.writeInt(columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                out.writeUTF(columns.get(i));
+            }
+        }
+    }
+
+    private static void readSchema(DataInputStream in, Map<String, ColumnRegistry> schema)
+            throws IOException {
+        for (int i = in.readInt(); i > 0; i--) {
+            String mo = in.readUTF();
+            ColumnRegistry columns = new ColumnRegistry();
+            for (int j = in.readInt(); j > 0; j--) {
+                columns.add(in.readUTF());
+            }
+            schema.put(mo, columns);
+        }
+    }
+
+    /**
+     * Get the SHA-256 hash of the content of an input.
+     *
+     * @param input
+     * @return String
+     * @throws IOException
+     */
+    public static String hash(ParserInput input) throws IOException {
+        MessageDigest digest = newDigest();
+        InputStream in = input.open();
+        try {
+            byte[] buf = new byte[64 * 1024];
+            for (int n; (n = in.read(buf)) > 0;) {
+                digest.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Get the SHA-256 hash of a file.
+     *
+     * @param file
+     * @return String
+     * @throws IOException
+     */
+    public static String hash(File file) throws IOException {
+        return hash(ParserInput.forFile(file.toPath(), ParserInput.PLAIN));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
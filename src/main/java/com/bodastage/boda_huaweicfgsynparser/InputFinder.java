@@ -0,0 +1,353 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds the files to parse in the input directory or in a list of paths.
+ *
+ * Directories are walked depth first down to the maximum depth, reading one
+ * directory at a time, so the first files are parsed before the rest of a
+ * large tree is listed. Symbolic links to directories are not followed.
+ * Include and exclude globs are matched against the file name, or against
+ * the path relative to the directory being walked when they contain a /.
+ * Exclude globs also skip directories. Files given in the list are always
+ * parsed and directories in the list are walked.
+ *
+ * With largest first the whole list is gathered and sorted by size, so that
+ * the largest files start first when parsing in parallel.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class InputFinder {
+
+    static Logger logger = LoggerFactory.getLogger(InputFinder.class);
+
+    /**
+     * Name of the input list that is read from the standard input.
+     */
+    public static final String STDIN = "-";
+
+    private final List<PathMatcher> includes = new ArrayList<PathMatcher>();
+
+    private final List<PathMatcher> excludes = new ArrayList<PathMatcher>();
+
+    private final List<Boolean> includePaths = new ArrayList<Boolean>();
+
+    private final List<Boolean> excludePaths = new ArrayList<Boolean>();
+
+    private int maxDepth = 1;
+
+    private boolean largestFirst = false;
+
+    /**
+     * Paths read from the input list or null.
+     */
+    private List<Path> listedPaths = null;
+
+    /**
+     * Only parse the files matching a glob. Several globs can be added.
+     *
+     * @param glob
+     */
+    public void addInclude(String glob) {
+        includes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        includePaths.add(glob.indexOf('/') >= 0);
+    }
+
+    /**
+     * Skip the files and directories matching a glob.
+     *
+     * @param glob
+     */
+    public void addExclude(String glob) {
+        excludes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        excludePaths.add(glob.indexOf('/') >= 0);
+    }
+
+    /**
+     * Set how deep directories are walked. 1 only takes the files in the
+     * directory, which is the default.
+     *
+     * @param maxDepth Levels or 0 for no limit
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth <= 0 ? Integer.MAX_VALUE : maxDepth;
+    }
+
+    public void setLargestFirst(boolean largestFirst) {
+        this.largestFirst = largestFirst;
+    }
+
+    /**
+     * Read the paths to parse from a file with one path per line instead of
+     * walking the data source. Empty lines and lines starting with # are
+     * skipped. The list is read once and kept for the later passes.
+     *
+     * @param listFile File name or STDIN
+     * @throws IOException
+     */
+    public void setInputList(String listFile) throws IOException {
+        InputStream in = STDIN.equals(listFile) ? System.in : new FileInputStream(listFile);
+        List<Path> paths = new ArrayList<Path>();
+        BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    paths.add(Paths.get(line));
+                }
+            }
+        } finally {
+            if (in != System.in) {
+                br.close();
+            }
+        }
+        listedPaths = paths;
+        logger.info("Read " + paths.size() + " paths from "
+                + (in == System.in ? "the standard input" : listFile));
+    }
+
+    public boolean hasInputList() {
+        return listedPaths != null;
+    }
+
+    /**
+     * Find the files to parse.
+     *
+     * @param source File or directory, not used with an input list
+     * @return Iterator
+     */
+    public Iterator<Path> find(Path source) {
+        List<Path> roots = listedPaths != null ? listedPaths
+                : Collections.singletonList(source);
+        Iterator<Path> files = new Walk(roots);
+        if (!largestFirst) {
+            return files;
+        }
+
+        final Map<Path, Long> sizes = new HashMap<Path, Long>();
+        List<Path> list = new ArrayList<Path>();
+        while (files.hasNext()) {
+            Path f = files.next();
+            list.add(f);
+            try {
+                sizes.put(f, Files.size(f));
+            } catch (IOException e) {
+                sizes.put(f, 0L);
+            }
+        }
+        Collections.sort(list, new Comparator<Path>() {
+            @Override
+            public int compare(Path a, Path b) {
+                return Long.compare(sizes.get(b), sizes.get(a));
+            }
+        });
+        return list.iterator();
+    }
+
+    /**
+     * Get the name of a found file for the FILENAME column. When directories
+     * are walked more than one level deep, a file in a subdirectory is named
+     * by its path below the walked directory with / separators, so that files
+     * with the same name in different directories can be told apart. Other
+     * files keep their file name.
+     *
+     * @param source Data source given to find
+     * @param file File returned by find
+     * @return String
+     */
+    public String getName(Path source, Path file) {
+        String name = file.getFileName().toString();
+        if (maxDepth <= 1) {
+            return name;
+        }
+
+        List<Path> roots = listedPaths != null ? listedPaths
+                : Collections.singletonList(source);
+        for (Path root : roots) {
+            if (file.equals(root)) {
+                return name;
+            }
+        }
+        for (Path root : roots) {
+            if (root == null || !file.startsWith(root)) {
+                continue;
+            }
+            Path relative = root.relativize(file);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < relative.getNameCount(); i++) {
+                sb.append(i > 0 ? "/" : "").append(relative.getName(i));
+            }
+            return sb.toString();
+        }
+        return name;
+    }
+
+    private boolean isIncluded(Path relative) {
+        if (includes.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < includes.size(); i++) {
+            if (matches(includes.get(i), includePaths.get(i), relative)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isExcluded(Path relative) {
+        for (int i = 0; i < excludes.size(); i++) {
+            if (matches(excludes.get(i), excludePaths.get(i), relative)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(PathMatcher matcher, boolean wholePath, Path relative) {
+        return matcher.matches(wholePath ? relative : relative.getFileName());
+    }
+
+    /**
+     * A directory being walked.
+     */
+    private static class Level {
+
+        final Path root;
+
+        final int depth;
+
+        final Iterator<Path> entries;
+
+        Level(Path root, int depth, Iterator<Path> entries) {
+            this.root = root;
+            this.depth = depth;
+            this.entries = entries;
+        }
+    }
+
+    /**
+     * Walks the roots one directory at a time.
+     */
+    private class Walk implements Iterator<Path> {
+
+        private final Iterator<Path> roots;
+
+        private final Deque<Level> stack = new ArrayDeque<Level>();
+
+        private Path nextFile = null;
+
+        Walk(List<Path> roots) {
+            this.roots = roots.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (nextFile == null) {
+                if (stack.isEmpty()) {
+                    if (!roots.hasNext()) {
+                        return false;
+                    }
+                    Path root = roots.next();
+                    if (Files.isDirectory(root)) {
+                        push(root, root, 0);
+                    } else {
+                        //Listed files are parsed as given
+                        nextFile = root;
+                    }
+                    continue;
+                }
+
+                Level level = stack.peek();
+                if (!level.entries.hasNext()) {
+                    stack.pop();
+                    continue;
+                }
+
+                Path root = level.root;
+                int depth = level.depth + 1;
+                Path entry = level.entries.next();
+                Path relative = root.relativize(entry);
+                if (isExcluded(relative)) {
+                    continue;
+                }
+                if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    if (depth < maxDepth) {
+                        push(entry, root, depth);
+                    }
+                } else if (isIncluded(relative)) {
+                    nextFile = entry;
+                }
+            }
+            return true;
+        }
+
+        private void push(Path directory, Path root, int depth) {
+            List<Path> entries = new ArrayList<Path>();
+            try {
+                DirectoryStream<Path> ds = Files.newDirectoryStream(directory);
+                try {
+                    for (Path entry : ds) {
+                        entries.add(entry);
+                    }
+                } finally {
+                    ds.close();
+                }
+            } catch (IOException e) {
+                logger.error("Cannot list " + directory + ": " + e.getMessage());
+                logger.info("Skipping directory: " + directory + "\n");
+                return;
+            } catch (DirectoryIteratorException e) {
+                logger.error("Cannot list " + directory + ": " + e.getCause().getMessage());
+                logger.info("Skipping directory: " + directory + "\n");
+                return;
+            }
+            stack.push(new Level(root, depth, entries.iterator()));
+        }
+
+        @Override
+        public Path next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Path f = nextFile;
+            nextFile = null;
+            return f;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Parser events recorded with Java Flight Recorder.
+ *
+ * An event is only created when a recording has it enabled. The event types
+ * are looked up once, so the cost without a recording is a check of a
+ * flag and no allocation.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+class JfrParserEvents extends ParserEvents {
+
+    @Name("com.bodastage.boda_huaweicfgsynparser.FileParse")
+    @Label("File Parse")
+    @Description("Parsing of an input document in one stage")
+    @Category({"Boda", "Huawei CFGSYN Parser"})
+    @StackTrace(false)
+    static class FileParseEvent extends Event {
+
+        @Label("File")
+        String fileName;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+
+        @Label("Node Name")
+        String nodeName;
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    @Name("com.bodastage.boda_huaweicfgsynparser.WriterOpen")
+    @Label("Writer Open")
+    @Description("Creation or reopening of a csv file")
+    @Category({"Boda", "Huawei CFGSYN Parser"})
+    @StackTrace(false)
+    static class WriterOpenEvent extends Event {
+
+        @Label("File")
+        String file;
+
+        @Label("Append")
+        boolean append;
+    }
+
+    @Name("com.bodastage.boda_huaweicfgsynparser.SchemaGrowth")
+    @Label("Schema Growth")
+    @Description("Parameter added to the columns of an MO")
+    @Category({"Boda", "Huawei CFGSYN Parser"})
+    @StackTrace(false)
+    static class SchemaGrowthEvent extends Event {
+
+        @Label("MO")
+        String mo;
+
+        @Label("Parameter")
+        String parameter;
+
+        @Label("Columns")
+        int columns;
+    }
+
+    @Name("com.bodastage.boda_huaweicfgsynparser.SlowRow")
+    @Label("Slow Row")
+    @Description("csv row that took long to write")
+    @Category({"Boda", "Huawei CFGSYN Parser"})
+    @Threshold("1 ms")
+    static class SlowRowEvent extends Event {
+
+        @Label("MO")
+        String mo;
+
+        @Label("Length")
+        int length;
+    }
+
+    private static final EventType FILE_PARSE = EventType.getEventType(FileParseEvent.class);
+
+    private static final EventType WRITER_OPEN = EventType.getEventType(WriterOpenEvent.class);
+
+    private static final EventType SCHEMA_GROWTH
+            = EventType.getEventType(SchemaGrowthEvent.class);
+
+    private static final EventType SLOW_ROW = EventType.getEventType(SlowRowEvent.class);
+
+    @Override
+    public Object beginFileParse() {
+        if (!FILE_PARSE.isEnabled()) {
+            return null;
+        }
+        FileParseEvent event = new FileParseEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endFileParse(Object handle, String fileName, long size, String nodeName,
+            int parserState, boolean failed) {
+        FileParseEvent event = (FileParseEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.fileName = fileName;
+            event.size = size;
+            event.nodeName = nodeName;
+            event.phase = ParserStates.getName(parserState);
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginWriterOpen() {
+        if (!WRITER_OPEN.isEnabled()) {
+            return null;
+        }
+        WriterOpenEvent event = new WriterOpenEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endWriterOpen(Object handle, File file, boolean append) {
+        WriterOpenEvent event = (WriterOpenEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = file.getPath();
+            event.append = append;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void schemaGrowth(String mo, String parameter, int columns) {
+        if (!SCHEMA_GROWTH.isEnabled()) {
+            return;
+        }
+        SchemaGrowthEvent event = new SchemaGrowthEvent();
+        if (event.shouldCommit()) {
+            event.mo = mo;
+            event.parameter = parameter;
+            event.columns = columns;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginRow() {
+        if (!SLOW_ROW.isEnabled()) {
+            return null;
+        }
+        SlowRowEvent event = new SlowRowEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endRow(Object handle, String mo, int length) {
+        SlowRowEvent event = (SlowRowEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.mo = mo;
+            event.length = length;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.util.Arrays;
+
+/**
+ * An MO instance delivered to a MORecordHandler.
+ *
+ * The parser reuses one record for all the instances it reads, so a record
+ * is only valid during the call to the handler. Use copy() to keep one.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public final class MORecord {
+
+    String mo;
+
+    String fileName;
+
+    String dateTime;
+
+    String nodeName;
+
+    String functionType;
+
+    String syndataId;
+
+    String productVersion;
+
+    String neRMVersion;
+
+    String syndataObjId;
+
+    /**
+     * Parameters of the MO.
+     */
+    ColumnRegistry columns;
+
+    /**
+     * Value per parameter slot. The translated value replaces the value of
+     * parameters that have one.
+     */
+    String[] values;
+
+    /**
+     * Value of the parameters that have a translated value or null.
+     */
+    String[] rawValues;
+
+    MORecord() {
+    }
+
+    /**
+     * Get a copy of the record that is not reused by the parser.
+     *
+     * @return MORecord
+     */
+    public MORecord copy() {
+        return copy(columns.copy());
+    }
+
+    /**
+     * Get a copy of the record with a copy of its columns. Copies of records
+     * of the same MO with the same number of parameters can share the
+     * columns.
+     *
+     * @param columns Copy of the columns
+     * @return MORecord
+     */
+    MORecord copy(ColumnRegistry columns) {
+        MORecord copy = new MORecord();
+        copy.mo = mo;
+        copy.fileName = fileName;
+        copy.dateTime = dateTime;
+        copy.nodeName = nodeName;
+        copy.functionType = functionType;
+        copy.syndataId = syndataId;
+        copy.productVersion = productVersion;
+        copy.neRMVersion = neRMVersion;
+        copy.syndataObjId = syndataObjId;
+        copy.columns = columns;
+        copy.values = Arrays.copyOf(values, columns.size());
+        if (rawValues != null) {
+            copy.rawValues = Arrays.copyOf(rawValues, columns.size());
+        }
+        return copy;
+    }
+
+    /**
+     * MO class of the instance.
+     *
+     * @return String
+     */
+    public String getMO() {
+        return mo;
+    }
+
+    /**
+     * Base name of the document the instance was read from.
+     *
+     * @return String
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Date time written to the DATETIME column, which is the date time of
+     * the last file footer read while extracting parameters. When parameters
+     * and values are extracted in one pass this is the date time of the last
+     * footer read so far, or null before the first one.
+     *
+     * @return String
+     */
+    public String getDateTime() {
+        return dateTime;
+    }
+
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    public String getFunctionType() {
+        return functionType;
+    }
+
+    public String getSyndataId() {
+        return syndataId;
+    }
+
+    public String getProductVersion() {
+        return productVersion;
+    }
+
+    public String getNERMVersion() {
+        return neRMVersion;
+    }
+
+    public String getSyndataObjId() {
+        return syndataObjId;
+    }
+
+    /**
+     * Number of parameters. During a single pass extraction the parameters
+     * of an MO are those seen so far, so later records of the MO can have
+     * more.
+     *
+     * @return int
+     */
+    public int getParameterCount() {
+        return columns.size();
+    }
+
+    public String getParameterName(int index) {
+        return columns.get(index);
+    }
+
+    /**
+     * Get the index of a parameter.
+     *
+     * @param parameter
+     * @return int Index or -1 if the MO does not have the parameter
+     */
+    public int indexOf(String parameter) {
+        return columns.indexOf(parameter);
+    }
+
+    /**
+     * Get the value of a parameter.
+     *
+     * @param index
+     * @return String Value or null if the instance does not have the
+     * parameter
+     */
+    public String getValue(int index) {
+        if (rawValues != null && index < rawValues.length && rawValues[index] != null) {
+            return rawValues[index];
+        }
+        return getOutputValue(index);
+    }
+
+    /**
+     * Get the translated value of a parameter. This is the comment following
+     * the parameter in the document.
+     *
+     * @param index
+     * @return String Translated value or null if the parameter has none
+     */
+    public String getTranslatedValue(int index) {
+        if (rawValues != null && index < rawValues.length && rawValues[index] != null) {
+            return values[index];
+        }
+        return null;
+    }
+
+    /**
+     * Get the value written to the csv file, which is the translated value
+     * if the parameter has one.
+     *
+     * @param index
+     * @return String
+     */
+    public String getOutputValue(int index) {
+        if (index >= columns.size()) {
+            throw new IndexOutOfBoundsException("Parameter " + index + " of " + mo);
+        }
+        return index < values.length ? values[index] : null;
+    }
+}
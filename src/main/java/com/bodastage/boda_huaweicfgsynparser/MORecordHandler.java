@@ -0,0 +1,26 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.IOException;
+
+/**
+ * Receives the MO instances read by the parser.
+ *
+ * Records are delivered on the parsing thread in document order. The record
+ * is reused for the next instance once the call returns.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public interface MORecordHandler {
+
+    /**
+     * Handle an MO instance.
+     *
+     * @param record
+     * @throws IOException To stop parsing the document
+     */
+    void onRecord(MORecord record) throws IOException;
+}
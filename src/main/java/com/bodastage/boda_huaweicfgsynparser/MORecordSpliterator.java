@@ -0,0 +1,305 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Spliterator over the MO instances of a list of files.
+ *
+ * It splits between files, so a parallel stream parses different files on
+ * different threads. Each document is parsed in a single pass by its own
+ * parser and its instances are copies that are safe to keep. Documents that
+ * cannot be parsed are logged and skipped.
+ *
+ * tryAdvance moves the cursor of the current document on until it ends an
+ * instance, so only the instance being handed over is held. forEachRemaining
+ * parses the remaining documents whole with the default engine. A document
+ * left open by a stream that stopped early is closed by close.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+class MORecordSpliterator implements Spliterator<MORecord> {
+
+    static Logger logger = LoggerFactory.getLogger(MORecordSpliterator.class);
+
+    private final Path[] files;
+
+    /**
+     * Name of each file for the FILENAME column or null for its file name.
+     */
+    private final Function<Path, String> names;
+
+    private int index;
+
+    private final int end;
+
+    /**
+     * Documents of the files being traversed or null before the traversal
+     * starts.
+     */
+    private Iterator<ParserInput> inputs = null;
+
+    /**
+     * Instances ended by the last cursor event and not consumed yet by
+     * tryAdvance.
+     */
+    private final Deque<MORecord> buffer = new ArrayDeque<MORecord>();
+
+    /**
+     * Document being read by tryAdvance or null.
+     */
+    private ParserInput input = null;
+
+    private HuaweiCfgSynParser parser = null;
+
+    private InputStream in = null;
+
+    private XMLStreamReader cursor = null;
+
+    private ElementAttributes attributes = null;
+
+    /**
+     * This spliterator and the ones split off it, closed together.
+     */
+    private final List<MORecordSpliterator> splits;
+
+    /**
+     * Copies of the columns of each MO shared by the copied records.
+     */
+    private final Map<String, ColumnRegistry> columnCopies
+            = new HashMap<String, ColumnRegistry>();
+
+    MORecordSpliterator(Path[] files, Function<Path, String> names, int index, int end) {
+        this(files, names, index, end, new ArrayList<MORecordSpliterator>());
+    }
+
+    private MORecordSpliterator(Path[] files, Function<Path, String> names, int index,
+            int end, List<MORecordSpliterator> splits) {
+        this.files = files;
+        this.names = names;
+        this.index = index;
+        this.end = end;
+        this.splits = splits;
+        synchronized (splits) {
+            splits.add(this);
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super MORecord> action) {
+        while (buffer.isEmpty()) {
+            if (cursor == null) {
+                ParserInput next = nextInput();
+                if (next == null) {
+                    return false;
+                }
+                openCursor(next);
+            } else {
+                advanceCursor();
+            }
+        }
+        action.accept(buffer.poll());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super MORecord> action) {
+        while (cursor != null || !buffer.isEmpty()) {
+            while (!buffer.isEmpty()) {
+                action.accept(buffer.poll());
+            }
+            if (cursor != null) {
+                advanceCursor();
+            }
+        }
+        for (ParserInput next = nextInput(); next != null; next = nextInput()) {
+            parse(next, action);
+        }
+    }
+
+    /**
+     * Close the documents left open by this spliterator and the ones split
+     * off it.
+     */
+    void close() {
+        synchronized (splits) {
+            for (MORecordSpliterator split : splits) {
+                split.closeCursor();
+            }
+        }
+    }
+
+    /**
+     * Split off the first half of the files that have not been started.
+     */
+    @Override
+    public Spliterator<MORecord> trySplit() {
+        if (inputs != null || end - index < 2) {
+            return null;
+        }
+        int mid = (index + end) >>> 1;
+        MORecordSpliterator prefix = new MORecordSpliterator(files, names, index, mid, splits);
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return index < end || inputs == null || inputs.hasNext() || cursor != null
+                || !buffer.isEmpty() ? Long.MAX_VALUE : 0;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    private ParserInput nextInput() {
+        if (inputs == null) {
+            inputs = index < end
+                    ? ParserInput.expandAll(Arrays.asList(files).subList(index, end).iterator(), names)
+                    : Collections.<ParserInput>emptyList().iterator();
+            index = end;
+        }
+        return inputs.hasNext() ? inputs.next() : null;
+    }
+
+    /**
+     * Open a document to be read one cursor event at a time. Its instances
+     * are added to the buffer.
+     */
+    private void openCursor(ParserInput next) {
+        input = next;
+        parser = newParser(new Consumer<MORecord>() {
+            @Override
+            public void accept(MORecord record) {
+                buffer.add(record);
+            }
+        });
+        try {
+            in = input.open();
+            cursor = parser.openCursor(input, in);
+            attributes = new ElementAttributes.StreamReaderAttributes(cursor);
+        } catch (XMLStreamException e) {
+            skipCursor(e);
+        } catch (IOException e) {
+            skipCursor(e);
+        }
+    }
+
+    /**
+     * Handle the next event of the open document, closing it at its end.
+     */
+    private void advanceCursor() {
+        try {
+            if (cursor.hasNext()) {
+                parser.cursorEvent(cursor, cursor.next(), attributes);
+            } else {
+                closeCursor();
+            }
+        } catch (XMLStreamException e) {
+            skipCursor(e);
+        } catch (IOException e) {
+            skipCursor(e);
+        }
+    }
+
+    /**
+     * Log an error of the open document and skip the rest of it.
+     */
+    private void skipCursor(Exception e) {
+        logger.error(e.getMessage());
+        logger.info("Skipping file: " + input.getName() + "\n");
+        closeCursor();
+    }
+
+    private void closeCursor() {
+        try {
+            if (cursor != null) {
+                cursor.close();
+            }
+        } catch (XMLStreamException e) {
+            logger.warn(e.getMessage());
+        }
+        try {
+            if (in != null) {
+                in.close();
+            }
+        } catch (IOException e) {
+            logger.warn(e.getMessage());
+        }
+        cursor = null;
+        in = null;
+        parser = null;
+        attributes = null;
+    }
+
+    /**
+     * Parse a document, passing copies of its instances to an action.
+     */
+    private void parse(ParserInput input, Consumer<? super MORecord> action) {
+        HuaweiCfgSynParser parser = newParser(action);
+        try {
+            parser.parseInput(input);
+        } catch (XMLStreamException e) {
+            logger.error(e.getMessage());
+            logger.info("Skipping file: " + input.getName() + "\n");
+        } catch (IOException e) {
+            logger.error(e.getMessage());
+            logger.info("Skipping file: " + input.getName() + "\n");
+        }
+    }
+
+    /**
+     * Create the single pass parser of a document, passing copies of its
+     * instances to an action.
+     */
+    private HuaweiCfgSynParser newParser(final Consumer<? super MORecord> action) {
+        //The columns are discovered again in each document
+        columnCopies.clear();
+
+        HuaweiCfgSynParser parser = new HuaweiCfgSynParser();
+        parser.setParserState(ParserStates.EXTRACTING_PARAMETERS_AND_VALUES);
+        parser.setRecordHandler(new MORecordHandler() {
+            @Override
+            public void onRecord(MORecord record) {
+                action.accept(record.copy(getColumnCopy(record)));
+            }
+        });
+        return parser;
+    }
+
+    /**
+     * Get the copy of the columns of the record's MO, copying them again if
+     * they grew.
+     */
+    private ColumnRegistry getColumnCopy(MORecord record) {
+        ColumnRegistry columns = columnCopies.get(record.mo);
+        if (columns == null || columns.size() != record.columns.size()) {
+            columns = record.columns.copy();
+            columnCopies.put(record.mo, columns);
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Holds the rows of a managed object while its column set is still growing
+ * during single pass parsing.
+ *
+ * Each record keeps the number of columns that were known when the row was
+ * written. Columns are only ever appended, so a record is aligned to the final
+ * header by padding it with empty trailing values.
+ *
+ * The record stream is only open while the file is in a SpillFilePool's
+ * open set and is reopened in append mode after being closed. The backing
+ * file is removed once the rows have been drained.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class MOSpillFile {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * The temporary file backing the spilled rows.
+     *
+     * @since 1.3.0
+     */
+    private final File file;
+
+    /**
+     * Record output stream or null while the file is closed.
+     *
+     * @since 1.3.0
+     */
+    private DataOutputStream out = null;
+
+    /**
+     * Create a spill file for the given MO in the given directory.
+     *
+     * @param directory
+     * @param mo
+     * @throws IOException
+     */
+    public MOSpillFile(File directory, String mo) throws IOException {
+        file = File.createTempFile("." + mo + "-", ".spill", directory);
+    }
+
+    public boolean isOpen() {
+        return out != null;
+    }
+
+    /**
+     * Open the record stream, appending to the rows written so far.
+     *
+     * @throws IOException
+     */
+    public void open() throws IOException {
+        if (out == null) {
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(file, true), BUFFER_SIZE));
+        }
+    }
+
+    /**
+     * Write the buffered records and close the record stream.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        if (out != null) {
+            DataOutputStream o = out;
+            out = null;
+            o.close();
+        }
+    }
+
+    /**
+     * Append a row.
+     *
+     * @param fileName Base name of the file the row was read from
+     * @param columnCount Number of MO parameters known when the row was built
+     * @param row Row values following the DATETIME column
+     * @throws IOException
+     */
+    public void append(String fileName, int columnCount, String row) throws IOException {
+        if (out == null) {
+            throw new IllegalStateException("Spill file is closed: " + file);
+        }
+        out.writeInt(columnCount);
+        writeString(fileName);
+        writeString(row);
+    }
+
+    /**
+     * Append a whole csv row, with its FILENAME and DATETIME columns.
+     *
+     * @param columnCount Number of MO parameters in the row
+     * @param row
+     * @throws IOException
+     */
+    public void appendRow(int columnCount, String row) throws IOException {
+        if (out == null) {
+            throw new IllegalStateException("Spill file is closed: " + file);
+        }
+        out.writeInt(columnCount);
+        writeString(null);
+        writeString(row);
+    }
+
+    /**
+     * Write the spilled rows to the MO's csv writer, padding each row to the
+     * final number of columns. The backing file is removed afterwards.
+     *
+     * @param writer
+     * @param dateTime Value of the DATETIME column
+     * @param totalColumns Final number of MO parameters
+     * @return long Number of rows written
+     * @throws IOException
+     */
+    public long drainTo(CSVWriter writer, String dateTime, int totalColumns) throws IOException {
+        return drainTo(writer, dateTime, totalColumns, null);
+    }
+
+    /**
+     * Write the spilled rows to the MO's csv writer, padding each row to the
+     * final number of columns and putting its fields in another order. The
+     * backing file is removed afterwards.
+     *
+     * @param writer
+     * @param dateTime Value of the DATETIME column
+     * @param totalColumns Final number of MO parameters
+     * @param fieldOrder Field of the padded row for each field to write, or
+     * null to keep the fields in order
+     * @return long Number of rows written
+     * @throws IOException
+     */
+    public long drainTo(CSVWriter writer, String dateTime, int totalColumns, int[] fieldOrder)
+            throws IOException {
+        CSVRow row = new CSVRow();
+        long rows = 0;
+        DataInputStream in = null;
+        try {
+            close();
+            in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file), BUFFER_SIZE));
+            while (true) {
+                int columnCount;
+                try {
+                    columnCount = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                String fileName = readString(in);
+                if (fileName == null) {
+                    row.clear().append(readString(in));
+                } else {
+                    row.clear().append(fileName).append(dateTime).append(readString(in));
+                }
+                for (int i = columnCount; i < totalColumns; i++) {
+                    row.appendValue(null);
+                }
+                if (fieldOrder != null) {
+                    writer.writeRow(row.toString(), fieldOrder);
+                } else {
+                    writer.writeRow(row);
+                }
+                rows++;
+            }
+        } finally {
+            try {
+                if (in != null) {
+                    in.close();
+                }
+            } finally {
+                file.delete();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Remove the backing file.
+     *
+     * @throws IOException
+     */
+    public void delete() throws IOException {
+        try {
+            close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void writeString(String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
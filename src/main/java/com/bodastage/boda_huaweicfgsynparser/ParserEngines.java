@@ -0,0 +1,48 @@
+/*
+ *
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+/**
+ * XML parsing engines.
+ *
+ * @author engineering@bodastage.com
+ * @since 1.3.0
+ */
+public final class ParserEngines {
+    
+    /**
+     * StAX XMLEventReader. Allocates an event object per tag.
+     */
+    public static final int EVENT = 1;
+    
+    /**
+     * StAX XMLStreamReader cursor. Names and text are read off the cursor.
+     */
+    public static final int CURSOR = 2;
+    
+    /**
+     * Byte level scanner for the syndata layout. Falls back to the cursor
+     * engine on anything it does not recognise.
+     */
+    public static final int SCANNER = 3;
+    
+    /**
+     * Get the engine with the given name.
+     *
+     * @param name event, cursor or scanner
+     * @return int engine or -1 if the name is not known
+     */
+    public static int fromName(String name) {
+        if ("event".equalsIgnoreCase(name)) {
+            return EVENT;
+        }
+        if ("cursor".equalsIgnoreCase(name)) {
+            return CURSOR;
+        }
+        if ("scanner".equalsIgnoreCase(name)) {
+            return SCANNER;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+
+/**
+ * Profiling events of the parser.
+ *
+ * This class does nothing. When the JVM has Java Flight Recorder the events
+ * are recorded by JfrParserEvents, which is only loaded in that case so the
+ * parser still runs on JVMs without jdk.jfr. The begin methods return a
+ * handle that is passed to the matching end method, or null when the event is
+ * not being recorded in which case the end method is not called.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class ParserEvents {
+
+    private static final ParserEvents INSTANCE = create();
+
+    protected ParserEvents() {
+    }
+
+    /**
+     * Get the events of this JVM.
+     *
+     * @return ParserEvents
+     */
+    public static ParserEvents get() {
+        return INSTANCE;
+    }
+
+    private static ParserEvents create() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (ParserEvents) Class.forName(
+                    "com.bodastage.boda_huaweicfgsynparser.JfrParserEvents")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            return new ParserEvents();
+        } catch (LinkageError e) {
+            return new ParserEvents();
+        }
+    }
+
+    public Object beginFileParse() {
+        return null;
+    }
+
+    /**
+     * @param handle
+     * @param fileName
+     * @param size Input size in bytes or -1 if unknown
+     * @param nodeName Last NE of the document
+     * @param parserState
+     * @param failed
+     */
+    public void endFileParse(Object handle, String fileName, long size, String nodeName,
+            int parserState, boolean failed) {
+    }
+
+    public Object beginWriterOpen() {
+        return null;
+    }
+
+    public void endWriterOpen(Object handle, File file, boolean append) {
+    }
+
+    /**
+     * A parameter was added to the columns of an MO.
+     *
+     * @param mo
+     * @param parameter
+     * @param columns Number of columns of the MO
+     */
+    public void schemaGrowth(String mo, String parameter, int columns) {
+    }
+
+    public Object beginRow() {
+        return null;
+    }
+
+    public void endRow(Object handle, String mo, int length) {
+    }
+}
@@ -0,0 +1,635 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A document to parse. This is a plain file, a gzip compressed file or an
+ * entry of a zip, tar or tar.gz archive. Compressed inputs are detected by
+ * their magic bytes and decompressed on the fly.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public abstract class ParserInput {
+
+    static Logger logger = LoggerFactory.getLogger(ParserInput.class);
+
+    /**
+     * Input formats.
+     */
+    public static final int PLAIN = 0;
+
+    public static final int GZIP = 1;
+
+    public static final int ZIP = 2;
+
+    public static final int TAR = 3;
+
+    public static final int TAR_GZIP = 4;
+
+    /**
+     * Base name used for the FILENAME column and in the logs.
+     */
+    private final String name;
+
+    protected ParserInput(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Key of the input across runs. This is the absolute path of the file or
+     * the path of the archive followed by the entry name.
+     *
+     * @return String
+     */
+    public String getId() {
+        return name;
+    }
+
+    /**
+     * Size of the file holding the input.
+     *
+     * @return long Size in bytes or -1 when it is not known without reading
+     * the input
+     * @throws IOException
+     */
+    public long getSize() throws IOException {
+        return -1;
+    }
+
+    /**
+     * Last modified time of the file holding the input.
+     *
+     * @return long Milliseconds since the epoch or 0 if unknown
+     * @throws IOException
+     */
+    public long getLastModified() throws IOException {
+        return 0;
+    }
+
+    /**
+     * Open the document. The scanner engine opens it a second time when it
+     * falls back to StAX.
+     *
+     * @return InputStream
+     * @throws IOException
+     */
+    public abstract InputStream open() throws IOException;
+
+    /**
+     * Open the document as a channel.
+     *
+     * @return ReadableByteChannel
+     * @throws IOException
+     */
+    public ReadableByteChannel openChannel() throws IOException {
+        return Channels.newChannel(open());
+    }
+
+    /**
+     * Get an input that can be opened on another thread. Archive entries are
+     * read into memory as the archive can only be read in order.
+     *
+     * @return ParserInput
+     * @throws IOException
+     */
+    ParserInput detach() throws IOException {
+        return this;
+    }
+
+    /**
+     * Get the file holding the input when it is an uncompressed file that
+     * can be read from any offset.
+     *
+     * @return Path or null
+     */
+    Path getPlainFile() {
+        return null;
+    }
+
+    /**
+     * Detect the format of a file from its magic bytes.
+     *
+     * @param file
+     * @return int One of PLAIN, GZIP, ZIP, TAR or TAR_GZIP
+     * @throws IOException
+     */
+    public static int detectFormat(Path file) throws IOException {
+        byte[] head = new byte[262];
+        int n;
+        InputStream in = Files.newInputStream(file);
+        try {
+            n = readFully(in, head);
+        } finally {
+            in.close();
+        }
+
+        if (n >= 2 && (head[0] & 0xff) == 0x1f && (head[1] & 0xff) == 0x8b) {
+            InputStream gzIn = new GZIPInputStream(Files.newInputStream(file));
+            try {
+                return isTar(head, readFully(gzIn, head)) ? TAR_GZIP : GZIP;
+            } finally {
+                gzIn.close();
+            }
+        }
+        if (n >= 4 && head[0] == 'P' && head[1] == 'K'
+                && ((head[2] == 3 && head[3] == 4) || (head[2] == 5 && head[3] == 6))) {
+            return ZIP;
+        }
+        if (isTar(head, n)) {
+            return TAR;
+        }
+        return PLAIN;
+    }
+
+    /**
+     * Check whether the format holds several documents.
+     */
+    public static boolean isArchive(int format) {
+        return format == ZIP || format == TAR || format == TAR_GZIP;
+    }
+
+    /**
+     * Estimate the uncompressed size of the documents in a file without
+     * decompressing it. Gzip files are estimated from the size in their
+     * trailer and zip archives from their central directory. Tar headers
+     * are counted as document bytes.
+     *
+     * @param file
+     * @param format Format from detectFormat
+     * @return long Bytes
+     * @throws IOException
+     */
+    public static long estimateDocumentBytes(Path file, int format) throws IOException {
+        long size = Files.size(file);
+
+        if (format == GZIP || format == TAR_GZIP) {
+            if (size < 4) {
+                return size;
+            }
+            //ISIZE is the uncompressed size modulo 2^32 of the last member
+            ByteBuffer trailer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                while (trailer.hasRemaining()
+                        && channel.read(trailer, size - 4 + trailer.position()) > 0) {
+                }
+            } finally {
+                channel.close();
+            }
+            if (trailer.hasRemaining()) {
+                return size;
+            }
+            return Math.max(size, trailer.getInt(0) & 0xffffffffL);
+        }
+
+        if (format == ZIP) {
+            long total = 0;
+            ZipFile zip = new ZipFile(file.toFile());
+            try {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && entry.getSize() > 0) {
+                        total += entry.getSize();
+                    }
+                }
+            } finally {
+                zip.close();
+            }
+            return total;
+        }
+
+        return size;
+    }
+
+    private static boolean isTar(byte[] head, int n) {
+        return n >= 262 && head[257] == 'u' && head[258] == 's' && head[259] == 't'
+                && head[260] == 'a' && head[261] == 'r';
+    }
+
+    private static int readFully(InputStream in, byte[] buf) throws IOException {
+        int n = 0;
+        while (n < buf.length) {
+            int r = in.read(buf, n, buf.length - n);
+            if (r < 0) {
+                break;
+            }
+            n += r;
+        }
+        return n;
+    }
+
+    /**
+     * Input for a plain or gzip compressed file.
+     *
+     * @param file
+     * @param format PLAIN or GZIP
+     * @return ParserInput
+     */
+    public static ParserInput forFile(final Path file, int format) {
+        return forFile(file, format, file.getFileName().toString());
+    }
+
+    /**
+     * Input for a plain or gzip compressed file with the name of the FILENAME
+     * column. The .gz extension is removed from the name of gzip files.
+     *
+     * @param file
+     * @param format PLAIN or GZIP
+     * @param name
+     * @return ParserInput
+     */
+    public static ParserInput forFile(final Path file, int format, String name) {
+        if (format == GZIP) {
+            if (name.endsWith(".gz")) {
+                name = name.substring(0, name.length() - 3);
+            }
+            return new FileInput(name, file) {
+                @Override
+                public InputStream open() throws IOException {
+                    return new GZIPInputStream(Files.newInputStream(file), 64 * 1024);
+                }
+            };
+        }
+
+        return new FileInput(name, file) {
+            @Override
+            public InputStream open() throws IOException {
+                return Files.newInputStream(file);
+            }
+
+            @Override
+            public ReadableByteChannel openChannel() throws IOException {
+                return FileChannel.open(file, StandardOpenOption.READ);
+            }
+
+            @Override
+            Path getPlainFile() {
+                return file;
+            }
+        };
+    }
+
+    /**
+     * Input read from a file of its own.
+     */
+    private abstract static class FileInput extends ParserInput {
+
+        private final Path file;
+
+        FileInput(String name, Path file) {
+            super(name);
+            this.file = file;
+        }
+
+        @Override
+        public String getId() {
+            return file.toAbsolutePath().toString();
+        }
+
+        @Override
+        public long getSize() throws IOException {
+            return Files.size(file);
+        }
+
+        @Override
+        public long getLastModified() throws IOException {
+            return Files.getLastModifiedTime(file).toMillis();
+        }
+    }
+
+    /**
+     * Input for a document held in memory.
+     *
+     * @param name
+     * @param data
+     * @return ParserInput
+     */
+    public static ParserInput forBytes(String name, final byte[] data) {
+        return new ParserInput(name) {
+            @Override
+            public InputStream open() {
+                return new ByteArrayInputStream(data);
+            }
+        };
+    }
+
+    /**
+     * Get the documents in a file. Archives are read lazily, one entry at a
+     * time.
+     *
+     * @param file
+     * @param format Format from detectFormat
+     * @return Iterator
+     * @throws IOException
+     */
+    public static Iterator<ParserInput> expand(Path file, int format) throws IOException {
+        return expand(file, format, file.getFileName().toString());
+    }
+
+    /**
+     * Get the documents in a file, naming a plain or gzip compressed file.
+     * The documents of an archive are named after their entries.
+     *
+     * @param file
+     * @param format Format from detectFormat
+     * @param name
+     * @return Iterator
+     * @throws IOException
+     */
+    public static Iterator<ParserInput> expand(Path file, int format, String name)
+            throws IOException {
+        if (isArchive(format)) {
+            return new ArchiveIterator(file, format);
+        }
+        return Collections.singletonList(forFile(file, format, name)).iterator();
+    }
+
+    /**
+     * Get the documents in a list of files, expanding archives. Files and
+     * archives that cannot be read are logged and skipped.
+     *
+     * @param files
+     * @return Iterator
+     */
+    public static Iterator<ParserInput> expandAll(File[] files) {
+        List<Path> paths = new ArrayList<Path>(files.length);
+        for (File f : files) {
+            paths.add(f.toPath());
+        }
+        return expandAll(paths.iterator());
+    }
+
+    /**
+     * Get the documents in the files of an iterator, expanding archives.
+     * Files and archives that cannot be read are logged and skipped.
+     *
+     * @param files
+     * @return Iterator
+     */
+    public static Iterator<ParserInput> expandAll(Iterator<Path> files) {
+        return expandAll(files, null);
+    }
+
+    /**
+     * Get the documents in the files of an iterator, expanding archives and
+     * naming the other files with a function.
+     *
+     * @param files
+     * @param names Name of each file or null for its file name
+     * @return Iterator
+     */
+    public static Iterator<ParserInput> expandAll(final Iterator<Path> files,
+            final Function<Path, String> names) {
+        return new Iterator<ParserInput>() {
+            private Path file = null;
+
+            private Iterator<ParserInput> current = Collections.<ParserInput>emptyList().iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (true) {
+                    try {
+                        if (current.hasNext()) {
+                            return true;
+                        }
+                    } catch (RuntimeException e) {
+                        logger.error(e.getMessage());
+                        logger.info("Skipping rest of archive: " + file.getFileName() + "\n");
+                    }
+
+                    if (!files.hasNext()) {
+                        return false;
+                    }
+
+                    file = files.next();
+                    try {
+                        current = expand(file, detectFormat(file), names == null
+                                ? file.getFileName().toString() : names.apply(file));
+                    } catch (IOException e) {
+                        logger.error(e.getMessage());
+                        logger.info("Skipping file: " + file.getFileName() + "\n");
+                        current = Collections.<ParserInput>emptyList().iterator();
+                    }
+                }
+            }
+
+            @Override
+            public ParserInput next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Iterates over the entries of an archive. An entry has to be read before
+     * moving to the next one.
+     */
+    private static class ArchiveIterator implements Iterator<ParserInput> {
+
+        private final Path file;
+
+        private final int format;
+
+        private final ArchiveReader reader;
+
+        private String entryName;
+
+        private int entryIndex = -1;
+
+        /**
+         * Whether the current entry was handed out and the reader has to move
+         * to the next one.
+         */
+        private boolean consumed = false;
+
+        ArchiveIterator(Path file, int format) throws IOException {
+            this.file = file;
+            this.format = format;
+            this.reader = ArchiveReader.open(file, format);
+            advance();
+        }
+
+        private void advance() throws IOException {
+            try {
+                entryName = reader.nextEntry();
+            } catch (IOException e) {
+                entryName = null;
+                reader.close();
+                throw e;
+            }
+            entryIndex++;
+            if (entryName == null) {
+                reader.close();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (consumed) {
+                consumed = false;
+                try {
+                    advance();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return entryName != null;
+        }
+
+        @Override
+        public ParserInput next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            consumed = true;
+            return new ArchiveEntryInput(file, format, entryName, entryIndex,
+                    reader.getEntryStream());
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * An entry of an archive. The first open() returns the stream the archive
+     * is being read from. Later ones read the archive again up to the entry.
+     */
+    private static class ArchiveEntryInput extends ParserInput {
+
+        private final Path archive;
+
+        private final int format;
+
+        private final String entryName;
+
+        private final int entryIndex;
+
+        private InputStream entryStream;
+
+        ArchiveEntryInput(Path archive, int format, String entryName, int entryIndex,
+                InputStream entryStream) {
+            super(new File(entryName).getName());
+            this.archive = archive;
+            this.format = format;
+            this.entryName = entryName;
+            this.entryIndex = entryIndex;
+            this.entryStream = entryStream;
+        }
+
+        @Override
+        public String getId() {
+            return archive.toAbsolutePath() + "!" + entryName;
+        }
+
+        @Override
+        public long getLastModified() throws IOException {
+            return Files.getLastModifiedTime(archive).toMillis();
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            if (entryStream != null) {
+                InputStream in = entryStream;
+                entryStream = null;
+                return in;
+            }
+
+            final ArchiveReader reader = ArchiveReader.open(archive, format);
+            try {
+                for (int i = 0; i <= entryIndex; i++) {
+                    if (reader.nextEntry() == null) {
+                        throw new IOException("Archive entry " + getName() + " not found");
+                    }
+                }
+            } catch (IOException e) {
+                reader.close();
+                throw e;
+            }
+            return new FilterInputStream(reader.getEntryStream()) {
+                @Override
+                public void close() throws IOException {
+                    reader.close();
+                }
+            };
+        }
+
+        @Override
+        ParserInput detach() throws IOException {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            InputStream in = new BufferedInputStream(open());
+            try {
+                byte[] buf = new byte[64 * 1024];
+                for (int n; (n = in.read(buf)) > 0;) {
+                    data.write(buf, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+            final byte[] bytes = data.toByteArray();
+            final String id = getId();
+            final long lastModified = getLastModified();
+            return new ParserInput(getName()) {
+                @Override
+                public InputStream open() {
+                    return new ByteArrayInputStream(bytes);
+                }
+
+                @Override
+                public String getId() {
+                    return id;
+                }
+
+                @Override
+                public long getLastModified() {
+                    return lastModified;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,506 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counters updated while parsing, for watching long runs.
+ *
+ * The counters are LongAdders so the parser and its workers can update them
+ * without contention. They are exposed as a JMX MXBean and can be written
+ * periodically to a file in the Prometheus text format.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class ParserMetrics implements ParserMetricsMXBean {
+
+    static Logger logger = LoggerFactory.getLogger(ParserMetrics.class);
+
+    public static final String OBJECT_NAME
+            = "com.bodastage.boda_huaweicfgsynparser:type=ParserMetrics";
+
+    private static final String PREFIX = "huaweicfgsyn_";
+
+    /**
+     * Metrics registered with the platform MBean server, so that a parser
+     * whose bean was replaced does not unregister the bean of another.
+     */
+    private static ParserMetrics registered = null;
+
+    /**
+     * Counters of an MO class.
+     */
+    private static class MOCounters {
+
+        final LongAdder instances = new LongAdder();
+
+        final LongAdder rows = new LongAdder();
+    }
+
+    private final LongAdder bytesRead = new LongAdder();
+
+    private final LongAdder filesScanned = new LongAdder();
+
+    private final LongAdder filesCompleted = new LongAdder();
+
+    private final LongAdder filesFailed = new LongAdder();
+
+    private final LongAdder parseNanos = new LongAdder();
+
+    private final LongAdder writeNanos = new LongAdder();
+
+    /**
+     * Time the parser waited for room in the write queues and the writer
+     * threads waited for rows.
+     */
+    private final LongAdder writeStallNanos = new LongAdder();
+
+    private final LongAdder writerIdleNanos = new LongAdder();
+
+    private final AtomicInteger writeQueueDepth = new AtomicInteger();
+
+    private final ConcurrentMap<String, MOCounters> moCounters
+            = new ConcurrentHashMap<String, MOCounters>();
+
+    private volatile int openWriters = 0;
+
+    private volatile String currentFile = null;
+
+    private volatile int stage = ParserStates.EXTRACTING_PARAMETERS;
+
+    private ScheduledExecutorService exporter = null;
+
+    private File exportFile = null;
+
+    public void addBytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * Count a document that has been parsed.
+     *
+     * @param parserState Stage the document was parsed in
+     * @param failed
+     */
+    public void addFile(int parserState, boolean failed) {
+        if (parserState == ParserStates.EXTRACTING_PARAMETERS) {
+            filesScanned.increment();
+        } else if (failed) {
+            filesFailed.increment();
+        } else {
+            filesCompleted.increment();
+        }
+    }
+
+    public void addMOInstance(String mo) {
+        getMOCounters(mo).instances.increment();
+    }
+
+    public void addRowsWritten(String mo, long rows) {
+        getMOCounters(mo).rows.add(rows);
+    }
+
+    public void addParseTime(long nanos) {
+        parseNanos.add(nanos);
+    }
+
+    public void addWriteTime(long nanos) {
+        writeNanos.add(nanos);
+    }
+
+    public void addWriteStall(long nanos) {
+        writeStallNanos.add(nanos);
+    }
+
+    public void addWriterIdle(long nanos) {
+        writerIdleNanos.add(nanos);
+    }
+
+    public void addWriteQueueDepth(int delta) {
+        writeQueueDepth.addAndGet(delta);
+    }
+
+    public void setOpenWriters(int openWriters) {
+        this.openWriters = openWriters;
+    }
+
+    public void setCurrentFile(String currentFile) {
+        this.currentFile = currentFile;
+    }
+
+    public void setStage(int stage) {
+        this.stage = stage;
+    }
+
+    private MOCounters getMOCounters(String mo) {
+        MOCounters counters = moCounters.get(mo);
+        if (counters == null) {
+            counters = new MOCounters();
+            MOCounters existing = moCounters.putIfAbsent(mo, counters);
+            if (existing != null) {
+                counters = existing;
+            }
+        }
+        return counters;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getFilesScanned() {
+        return filesScanned.sum();
+    }
+
+    @Override
+    public long getFilesCompleted() {
+        return filesCompleted.sum();
+    }
+
+    @Override
+    public long getFilesFailed() {
+        return filesFailed.sum();
+    }
+
+    @Override
+    public long getMOInstanceCount() {
+        long count = 0;
+        for (MOCounters counters : moCounters.values()) {
+            count += counters.instances.sum();
+        }
+        return count;
+    }
+
+    @Override
+    public long getRowsWrittenCount() {
+        long count = 0;
+        for (MOCounters counters : moCounters.values()) {
+            count += counters.rows.sum();
+        }
+        return count;
+    }
+
+    @Override
+    public Map<String, Long> getMOInstances() {
+        Map<String, Long> instances = new TreeMap<String, Long>();
+        for (Map.Entry<String, MOCounters> me : moCounters.entrySet()) {
+            instances.put(me.getKey(), me.getValue().instances.sum());
+        }
+        return instances;
+    }
+
+    @Override
+    public Map<String, Long> getRowsWritten() {
+        Map<String, Long> rows = new TreeMap<String, Long>();
+        for (Map.Entry<String, MOCounters> me : moCounters.entrySet()) {
+            rows.put(me.getKey(), me.getValue().rows.sum());
+        }
+        return rows;
+    }
+
+    @Override
+    public long getParseTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(parseNanos.sum());
+    }
+
+    @Override
+    public long getWriteTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writeNanos.sum());
+    }
+
+    @Override
+    public long getWriteStallMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writeStallNanos.sum());
+    }
+
+    @Override
+    public long getWriterIdleMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writerIdleNanos.sum());
+    }
+
+    @Override
+    public int getWriteQueueDepth() {
+        return writeQueueDepth.get();
+    }
+
+    @Override
+    public int getOpenWriters() {
+        return openWriters;
+    }
+
+    @Override
+    public String getCurrentFile() {
+        return currentFile;
+    }
+
+    @Override
+    public String getStage() {
+        return ParserStates.getName(stage);
+    }
+
+    /**
+     * Register with the platform MBean server. A bean already registered
+     * under the same name is replaced.
+     */
+    public void registerMBean() {
+        synchronized (ParserMetrics.class) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(this, name);
+                registered = this;
+            } catch (JMException e) {
+                logger.warn("Cannot register the metrics MBean: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Unregister from the platform MBean server. Nothing is done when the
+     * bean has been replaced by the metrics of another parser.
+     */
+    public void unregisterMBean() {
+        synchronized (ParserMetrics.class) {
+            if (registered != this) {
+                return;
+            }
+            registered = null;
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+                        new ObjectName(OBJECT_NAME));
+            } catch (InstanceNotFoundException e) {
+                //Unregistered by someone else
+            } catch (JMException e) {
+                logger.warn("Cannot unregister the metrics MBean: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Get the metrics in the Prometheus text exposition format.
+     *
+     * @return String
+     */
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder(1024);
+        appendMetric(sb, "bytes_read_total", "counter", "Bytes read from the inputs.",
+                getBytesRead());
+        appendMetric(sb, "files_scanned_total", "counter",
+                "Documents read during parameter extraction.", getFilesScanned());
+        appendMetric(sb, "files_completed_total", "counter",
+                "Documents whose values were extracted.", getFilesCompleted());
+        appendMetric(sb, "files_failed_total", "counter",
+                "Documents that could not be parsed.", getFilesFailed());
+        appendSeconds(sb, "parse_seconds_total", "Time spent parsing documents.", parseNanos.sum());
+        appendSeconds(sb, "write_seconds_total", "Time spent writing csv files.", writeNanos.sum());
+        appendSeconds(sb, "write_stall_seconds_total",
+                "Time the parser waited for room in the write queues.", writeStallNanos.sum());
+        appendSeconds(sb, "writer_idle_seconds_total",
+                "Time the csv writer threads waited for rows.", writerIdleNanos.sum());
+        appendMetric(sb, "write_queue_depth", "gauge",
+                "Buffers waiting for the csv writer threads.", getWriteQueueDepth());
+        appendMetric(sb, "open_writers", "gauge", "Open csv files.", getOpenWriters());
+
+        Map<String, Long> instances = getMOInstances();
+        appendHeader(sb, "mo_instances_total", "counter", "MO instances parsed per MO class.");
+        for (Map.Entry<String, Long> me : instances.entrySet()) {
+            sb.append(PREFIX).append("mo_instances_total{mo=\"").append(escape(me.getKey()))
+                    .append("\"} ").append(me.getValue()).append('\n');
+        }
+
+        Map<String, Long> rows = getRowsWritten();
+        appendHeader(sb, "rows_written_total", "counter", "Csv rows written per MO class.");
+        for (Map.Entry<String, Long> me : rows.entrySet()) {
+            sb.append(PREFIX).append("rows_written_total{mo=\"").append(escape(me.getKey()))
+                    .append("\"} ").append(me.getValue()).append('\n');
+        }
+
+        appendHeader(sb, "current_file_info", "gauge", "Document being parsed.");
+        String file = getCurrentFile();
+        sb.append(PREFIX).append("current_file_info{file=\"").append(escape(file == null ? "" : file))
+                .append("\",stage=\"").append(getStage()).append("\"} 1\n");
+        return sb.toString();
+    }
+
+    private static void appendHeader(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void appendMetric(StringBuilder sb, String name, String type, String help,
+            long value) {
+        appendHeader(sb, name, type, help);
+        sb.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void appendSeconds(StringBuilder sb, String name, String help, long nanos) {
+        appendHeader(sb, name, "counter", help);
+        sb.append(PREFIX).append(name).append(' ')
+                .append(String.format(Locale.ROOT, "%.3f", nanos / 1e9)).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Write the metrics to a file in the Prometheus text format every
+     * interval, for example for the node exporter textfile collector.
+     *
+     * @param file
+     * @param intervalSeconds
+     */
+    public synchronized void startFileExport(File file, long intervalSeconds) {
+        stopFileExport();
+        exportFile = file;
+        exporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "metrics-export");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        exporter.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                writeFile();
+            }
+        }, 0, Math.max(1, intervalSeconds), TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the periodic export after writing the final values.
+     */
+    public synchronized void stopFileExport() {
+        if (exporter == null) {
+            return;
+        }
+        exporter.shutdown();
+        try {
+            exporter.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        exporter = null;
+        writeFile();
+    }
+
+    /**
+     * Replace the export file so readers never see a partial file.
+     */
+    private void writeFile() {
+        File file = exportFile;
+        try {
+            File directory = file.getAbsoluteFile().getParentFile();
+            File tmpFile = File.createTempFile("." + file.getName() + "-", ".tmp", directory);
+            try {
+                BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(
+                        Files.newOutputStream(tmpFile.toPath()), StandardCharsets.UTF_8));
+                try {
+                    bw.write(toPrometheus());
+                } finally {
+                    bw.close();
+                }
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                tmpFile.delete();
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot write metrics to " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Count the bytes read from a stream.
+     *
+     * @param in
+     * @return InputStream
+     */
+    public InputStream count(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    bytesRead.increment();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    bytesRead.add(n);
+                }
+                return n;
+            }
+        };
+    }
+
+    /**
+     * Count the bytes read from a channel.
+     *
+     * @param channel
+     * @return ReadableByteChannel
+     */
+    public ReadableByteChannel count(final ReadableByteChannel channel) {
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                int n = channel.read(dst);
+                if (n > 0) {
+                    bytesRead.add(n);
+                }
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.util.Map;
+
+/**
+ * JMX view of the parser metrics.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public interface ParserMetricsMXBean {
+
+    long getBytesRead();
+
+    /**
+     * Documents read during parameter extraction.
+     */
+    long getFilesScanned();
+
+    /**
+     * Documents whose values were extracted.
+     */
+    long getFilesCompleted();
+
+    long getFilesFailed();
+
+    long getMOInstanceCount();
+
+    long getRowsWrittenCount();
+
+    Map<String, Long> getMOInstances();
+
+    Map<String, Long> getRowsWritten();
+
+    long getParseTimeMillis();
+
+    long getWriteTimeMillis();
+
+    /**
+     * Time the parser waited for the csv writer threads.
+     */
+    long getWriteStallMillis();
+
+    /**
+     * Time the csv writer threads waited for the parser.
+     */
+    long getWriterIdleMillis();
+
+    int getWriteQueueDepth();
+
+    int getOpenWriters();
+
+    String getCurrentFile();
+
+    String getStage();
+}
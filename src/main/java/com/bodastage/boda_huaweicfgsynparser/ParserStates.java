@@ -23,4 +23,29 @@ public final class ParserStates {
      * Parsing completed
      */
     public static final int EXTRACTING_DONE = 3;
+    
+    /**
+     * Managed Object parameters and values extraction in a single pass
+     */
+    public static final int EXTRACTING_PARAMETERS_AND_VALUES = 4;
+
+    /**
+     * Get the name of a state.
+     *
+     * @since 1.3.0
+     * @param state
+     * @return String
+     */
+    public static String getName(int state) {
+        switch (state) {
+            case EXTRACTING_PARAMETERS:
+                return "EXTRACTING_PARAMETERS";
+            case EXTRACTING_VALUES:
+                return "EXTRACTING_VALUES";
+            case EXTRACTING_PARAMETERS_AND_VALUES:
+                return "EXTRACTING_PARAMETERS_AND_VALUES";
+            default:
+                return "EXTRACTING_DONE";
+        }
+    }
 }
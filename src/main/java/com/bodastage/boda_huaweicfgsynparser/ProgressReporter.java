@@ -0,0 +1,241 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs the progress of each pass over the input: percent of the input bytes
+ * read, bytes and files per second and the estimated time left.
+ *
+ * Progress is read from the parser metrics so parsing does not do any extra
+ * work for it. The total is the estimated uncompressed size of the input,
+ * taken before the first pass. Every pass reads the whole input, so the
+ * percentage of the pass starts again at 0 on each pass, while the overall
+ * percentage and the ETA count the passes still to come.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class ProgressReporter {
+
+    static Logger logger = LoggerFactory.getLogger(ProgressReporter.class);
+
+    private final ParserMetrics metrics;
+
+    private final long intervalSeconds;
+
+    /**
+     * Estimated document bytes of the input or -1 if not known yet.
+     */
+    private volatile long totalBytes = -1;
+
+    /**
+     * Bytes and files of inputs that were not read because their output was
+     * reused.
+     */
+    private final LongAdder skippedBytes = new LongAdder();
+
+    private final LongAdder skippedFiles = new LongAdder();
+
+    private volatile String phase = null;
+
+    private int pass;
+
+    private int passes;
+
+    private long phaseStart;
+
+    private long phaseBytes;
+
+    private long phaseFiles;
+
+    private ScheduledExecutorService timer = null;
+
+    private ScheduledFuture<?> task = null;
+
+    /**
+     * @param metrics Metrics of the parser
+     * @param intervalSeconds Seconds between progress lines
+     */
+    public ProgressReporter(ParserMetrics metrics, long intervalSeconds) {
+        this.metrics = metrics;
+        this.intervalSeconds = Math.max(1, intervalSeconds);
+    }
+
+    public boolean hasTotal() {
+        return totalBytes >= 0;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Count an input whose output was reused without reading it.
+     *
+     * @param bytes Size of the input or -1 if not known
+     */
+    public void addSkipped(long bytes) {
+        skippedBytes.add(Math.max(0, bytes));
+        skippedFiles.increment();
+    }
+
+    /**
+     * Start reporting a pass.
+     *
+     * @param stage Description of what the pass extracts
+     * @param pass Number of the pass
+     * @param passes Expected number of passes
+     */
+    public synchronized void startPhase(String stage, int pass, int passes) {
+        this.phase = "Pass " + pass + " of " + passes + ", " + stage;
+        this.pass = pass;
+        this.passes = Math.max(pass, passes);
+        phaseStart = nanoTime();
+        phaseBytes = getBytes();
+        phaseFiles = getFiles();
+
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "progress");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        task = timer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                report(getProgress());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop reporting the current pass and log its totals.
+     */
+    public synchronized void endPhase() {
+        if (phase == null) {
+            return;
+        }
+        task.cancel(false);
+        task = null;
+
+        double seconds = (nanoTime() - phaseStart) / 1e9;
+        long bytes = getBytes() - phaseBytes;
+        long files = getFiles() - phaseFiles;
+        report(String.format(Locale.ROOT, "%s done: %d files, %s in %s, %s/s, %.1f files/s",
+                phase, files, formatBytes(bytes), formatDuration(seconds),
+                formatBytes(rate(bytes, seconds)), rate(files, seconds)));
+        phase = null;
+    }
+
+    /**
+     * Stop the reporting thread.
+     */
+    public synchronized void close() {
+        endPhase();
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    /**
+     * Describe the progress of the current pass.
+     *
+     * @return String
+     */
+    public synchronized String getProgress() {
+        if (phase == null) {
+            return "Not parsing";
+        }
+
+        double seconds = (nanoTime() - phaseStart) / 1e9;
+        long bytes = getBytes() - phaseBytes;
+        long files = getFiles() - phaseFiles;
+        double bytesPerSecond = rate(bytes, seconds);
+
+        StringBuilder sb = new StringBuilder(phase).append(": ");
+        long total = totalBytes;
+        if (total > 0) {
+            //The estimate can be short, for example when a document is read
+            //twice, so stay below 100% until the pass ends
+            long read = Math.min(bytes, total);
+            double percent = Math.min(99.9, 100.0 * read / total);
+            sb.append(String.format(Locale.ROOT, "%.1f%% of %s, ", percent, formatBytes(total)));
+            if (passes > 1) {
+                double overall = Math.min(99.9,
+                        100.0 * ((pass - 1) * total + read) / (passes * total));
+                sb.append(String.format(Locale.ROOT, "%.1f%% overall, ", overall));
+            }
+        } else {
+            sb.append(formatBytes(bytes)).append(", ");
+        }
+        sb.append(String.format(Locale.ROOT, "%d files, %s/s, %.1f files/s",
+                files, formatBytes(bytesPerSecond), rate(files, seconds)));
+        if (total > 0 && bytesPerSecond > 0) {
+            long left = Math.max(0, total - bytes) + (passes - pass) * total;
+            sb.append(", ETA ").append(formatDuration(left / bytesPerSecond));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Current time in nanoseconds, replaced in tests.
+     *
+     * @return long
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Write a progress line.
+     *
+     * @param line
+     */
+    void report(String line) {
+        logger.info(line);
+    }
+
+    private long getBytes() {
+        return metrics.getBytesRead() + skippedBytes.sum();
+    }
+
+    private long getFiles() {
+        return metrics.getFilesScanned() + metrics.getFilesCompleted()
+                + metrics.getFilesFailed() + skippedFiles.sum();
+    }
+
+    private static double rate(long count, double seconds) {
+        return seconds > 0 ? count / seconds : 0;
+    }
+
+    static String formatBytes(double bytes) {
+        if (bytes >= 1024.0 * 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f GB", bytes / (1024.0 * 1024 * 1024));
+        }
+        if (bytes >= 1024.0 * 1024) {
+            return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024));
+        }
+        return String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0);
+    }
+
+    static String formatDuration(double seconds) {
+        long s = (long) seconds;
+        return String.format(Locale.ROOT, "%d:%02d:%02d", s / 3600, (s / 60) % 60, s % 60);
+    }
+}
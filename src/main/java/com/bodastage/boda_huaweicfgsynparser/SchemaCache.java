@@ -0,0 +1,409 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Schemas discovered in earlier runs, keyed by the product version and NRM
+ * version of the syndata.
+ *
+ * Each version has a file in the cache directory with one "MO:param1,param2"
+ * line per MO, the layout of the parameter configuration file.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class SchemaCache {
+
+    private static final Pattern ENCODING
+            = Pattern.compile("^(?:\\xEF\\xBB\\xBF)?<\\?xml[^>]*encoding\\s*=\\s*[\"']([A-Za-z0-9._-]+)[\"']");
+
+    /**
+     * Size of the first range read at the end of a file for the footer.
+     */
+    private static final int TAIL_SIZE = 64 * 1024;
+
+    private static final Pattern ATTRIBUTE
+            = Pattern.compile("([\\w:.\\-]+)\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')");
+
+    /**
+     * The versions and footer date time of an input, read without parsing
+     * the document.
+     */
+    public static class Summary {
+
+        /**
+         * Cache key of the first syndata or null.
+         */
+        String key;
+
+        /**
+         * dateTime of the last file footer or null.
+         */
+        String dateTime;
+    }
+
+    private final File directory;
+
+    public SchemaCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Get the cache key of a product and NRM version.
+     *
+     * @param productVersion
+     * @param neRMVersion
+     * @return String or null when both versions are unknown
+     */
+    public static String getKey(String productVersion, String neRMVersion) {
+        if (productVersion == null && neRMVersion == null) {
+            return null;
+        }
+        return productVersion + "_" + neRMVersion;
+    }
+
+    private File getFile(String key) {
+        return new File(directory, key.replaceAll("[^A-Za-z0-9._\\-]", "_") + ".cfg");
+    }
+
+    /**
+     * Load the schema of a version.
+     *
+     * @param key
+     * @return Map MO columns or null if the version is not cached
+     * @throws IOException
+     */
+    public Map<String, ColumnRegistry> load(String key) throws IOException {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        Map<String, ColumnRegistry> schema = new LinkedHashMap<String, ColumnRegistry>();
+        BufferedReader br = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+        try {
+            readSchema(br, schema);
+        } finally {
+            br.close();
+        }
+        return schema;
+    }
+
+    /**
+     * Save the schema of a version, replacing the cached one.
+     *
+     * @param key
+     * @param schema
+     * @throws IOException
+     */
+    public void save(String key, Map<String, ColumnRegistry> schema) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create schema cache directory " + directory);
+        }
+
+        File file = getFile(key);
+        File tmpFile = File.createTempFile("." + file.getName() + "-", ".tmp", directory);
+        try {
+            BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(
+                    Files.newOutputStream(tmpFile.toPath()), StandardCharsets.UTF_8));
+            try {
+                writeSchema(bw, schema);
+            } finally {
+                bw.close();
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * Write a schema as "MO:param1,param2" lines.
+     *
+     * @param bw
+     * @param schema
+     * @throws IOException
+     */
+    public static void writeSchema(BufferedWriter bw, Map<String, ColumnRegistry> schema)
+            throws IOException {
+        for (Map.Entry<String, ColumnRegistry> me : schema.entrySet()) {
+            ColumnRegistry columns = me.getValue();
+            bw.write(me.getKey());
+            bw.write(':');
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    bw.write(',');
+                }
+                bw.write(columns.get(i));
+            }
+            bw.newLine();
+        }
+    }
+
+    /**
+     * Read "MO:param1,param2" lines. A later line for the same MO replaces the
+     * earlier one.
+     *
+     * @param br
+     * @param schema
+     * @throws IOException
+     */
+    public static void readSchema(BufferedReader br, Map<String, ColumnRegistry> schema)
+            throws IOException {
+        for (String line; (line = br.readLine()) != null;) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+
+            int colon = line.indexOf(':');
+            String mo = colon < 0 ? line : line.substring(0, colon);
+            ColumnRegistry columns = new ColumnRegistry();
+            if (colon >= 0 && colon < line.length() - 1) {
+                for (String parameter : line.substring(colon + 1).split(",")) {
+                    columns.add(parameter);
+                }
+            }
+            schema.put(mo, columns);
+        }
+    }
+
+    /**
+     * Read the versions of the first syndata and the date time of the last
+     * file footer from the raw bytes of a document.
+     *
+     * @param in
+     * @return Summary
+     * @throws IOException
+     */
+    public static Summary summarize(InputStream in) throws IOException {
+        Summary summary = new Summary();
+        TagScanner scanner = new TagScanner(summary);
+        byte[] buf = new byte[64 * 1024];
+        for (int n; (n = in.read(buf)) > 0;) {
+            scanner.scan(buf, 0, n);
+        }
+        return summary;
+    }
+
+    /**
+     * Summarize an uncompressed document without reading all of it. The
+     * versions are read from the start of the file and the file footer is
+     * looked for in growing ranges at the end of the file.
+     *
+     * @param file
+     * @return Summary
+     * @throws IOException
+     */
+    public static Summary summarize(Path file) throws IOException {
+        Summary summary = new Summary();
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            ByteBuffer buf = ByteBuffer.allocate(TAIL_SIZE);
+
+            //Start of the file up to the first syndata
+            TagScanner scanner = new TagScanner(summary);
+            long head = 0;
+            while (summary.key == null && head < size) {
+                buf.clear();
+                int n = channel.read(buf, head);
+                if (n <= 0) {
+                    break;
+                }
+                scanner.scan(buf.array(), 0, n);
+                head += n;
+            }
+
+            //Footer of the last range at the end of the file that has one.
+            //The range reaching the part already read goes on from there.
+            long tail = TAIL_SIZE;
+            while (head < size) {
+                long start = Math.max(head, size - tail);
+                Summary footer = start == head ? summary : new Summary();
+                TagScanner tailScanner = start == head ? scanner
+                        : new TagScanner(footer, scanner.charset);
+                for (long pos = start; pos < size;) {
+                    buf.clear();
+                    int n = channel.read(buf, pos);
+                    if (n <= 0) {
+                        break;
+                    }
+                    tailScanner.scan(buf.array(), 0, n);
+                    pos += n;
+                }
+                if (start == head) {
+                    break;
+                }
+                if (footer.dateTime != null) {
+                    summary.dateTime = footer.dateTime;
+                    break;
+                }
+                tail *= 4;
+            }
+        } finally {
+            channel.close();
+        }
+        return summary;
+    }
+
+    /**
+     * Finds the syndata and fileFooter tags in the raw bytes of a document
+     * and reads their attributes in the declared encoding.
+     */
+    private static class TagScanner {
+
+        private final Summary summary;
+
+        private final StringBuilder tag = new StringBuilder();
+
+        /**
+         * Whether the first bytes still have to be checked for the XML
+         * declaration.
+         */
+        private boolean atStart;
+
+        /**
+         * Whether only fileFooter tags are read, when scanning from the
+         * middle of a document.
+         */
+        private final boolean footerOnly;
+
+        private Charset charset = StandardCharsets.UTF_8;
+
+        //0: text, 1: tag name, 2: attributes of a syndata or fileFooter tag
+        private int state = 0;
+
+        TagScanner(Summary summary) {
+            this.summary = summary;
+            this.atStart = true;
+            this.footerOnly = false;
+        }
+
+        TagScanner(Summary summary, Charset charset) {
+            this.summary = summary;
+            this.atStart = false;
+            this.footerOnly = true;
+            this.charset = charset;
+        }
+
+        void scan(byte[] buf, int off, int len) {
+            if (atStart) {
+                atStart = false;
+                charset = getDeclaredCharset(buf, off, len);
+            }
+
+            for (int i = off; i < off + len; i++) {
+                byte b = buf[i];
+                if (state == 0) {
+                    if (b == '<') {
+                        tag.setLength(0);
+                        state = 1;
+                    }
+                } else if (state == 1) {
+                    if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                        state = hasLocalName(tag, "fileFooter")
+                                || (!footerOnly && summary.key == null
+                                && hasLocalName(tag, "syndata")) ? 2 : 0;
+                        tag.append(' ');
+                    } else if (b == '>' || b == '/' || b == '<' || tag.length() > 64) {
+                        state = b == '<' ? 1 : 0;
+                        tag.setLength(0);
+                    } else {
+                        tag.append((char) (b & 0xff));
+                    }
+                } else if (b == '>') {
+                    summarizeTag(tag, summary, charset);
+                    state = 0;
+                } else if (tag.length() > 64 * 1024) {
+                    state = 0;
+                } else {
+                    tag.append((char) (b & 0xff));
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the encoding declared by the XML declaration at the start of a
+     * document. UTF-8 is the default.
+     */
+    static Charset getDeclaredCharset(byte[] buf, int off, int len) {
+        String start = new String(buf, off, Math.min(len, 1024), StandardCharsets.ISO_8859_1);
+        Matcher matcher = ENCODING.matcher(start);
+        if (matcher.find()) {
+            try {
+                return Charset.forName(matcher.group(1));
+            } catch (IllegalArgumentException e) {
+                return StandardCharsets.UTF_8;
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Check the local name of a tag name without allocating.
+     */
+    private static boolean hasLocalName(StringBuilder tag, String name) {
+        int start = tag.length() - name.length();
+        if (start < 0 || (start > 0 && tag.charAt(start - 1) != ':')) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (tag.charAt(start + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String localName(StringBuilder tag) {
+        int end = tag.indexOf(" ");
+        String name = end < 0 ? tag.toString() : tag.substring(0, end);
+        return name.substring(name.indexOf(':') + 1);
+    }
+
+    private static void summarizeTag(StringBuilder tag, Summary summary, Charset charset) {
+        String text = new String(tag.toString().getBytes(StandardCharsets.ISO_8859_1), charset);
+        Map<String, String> attributes = new LinkedHashMap<String, String>();
+        Matcher matcher = ATTRIBUTE.matcher(text);
+        while (matcher.find()) {
+            String name = matcher.group(1);
+            String value = matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+            attributes.put(name.substring(name.indexOf(':') + 1), unescape(value));
+        }
+
+        if (localName(tag).equals("syndata")) {
+            summary.key = getKey(attributes.get("productversion"), attributes.get("nermversion"));
+        } else if (attributes.containsKey("dateTime")) {
+            summary.dateTime = attributes.get("dateTime");
+        }
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('&') < 0) {
+            return value;
+        }
+        return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&amp;", "&");
+    }
+}
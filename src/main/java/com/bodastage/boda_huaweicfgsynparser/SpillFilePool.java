@@ -0,0 +1,150 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The spill files of the MOs in single pass mode with a bound on the number
+ * of open files.
+ *
+ * As with the CSVWriterPool, the least recently used spill file is closed
+ * when the bound is reached and reopened in append mode the next time a row
+ * is spilled to its MO.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class SpillFilePool {
+
+    /**
+     * Maximum number of open spill files.
+     */
+    private int maxOpen = CSVWriterPool.DEFAULT_MAX_OPEN;
+
+    /**
+     * Spill file of every MO in the order they were created.
+     */
+    private final Map<String, MOSpillFile> files = new LinkedHashMap<String, MOSpillFile>();
+
+    /**
+     * Open spill files from the least to the most recently used.
+     */
+    private final LinkedHashMap<String, MOSpillFile> open
+            = new LinkedHashMap<String, MOSpillFile>(16, 0.75f, true);
+
+    public void setMaxOpen(int maxOpen) {
+        this.maxOpen = Math.max(1, maxOpen);
+    }
+
+    public int getMaxOpen() {
+        return maxOpen;
+    }
+
+    public boolean isEmpty() {
+        return files.isEmpty();
+    }
+
+    public int getOpenCount() {
+        return open.size();
+    }
+
+    /**
+     * Append a row to the spill file of an MO, creating it in the given
+     * directory if it does not exist.
+     *
+     * @param directory
+     * @param mo
+     * @param fileName Base name of the file the row was read from
+     * @param columnCount Number of MO parameters known when the row was built
+     * @param row Row values following the DATETIME column
+     * @throws IOException
+     */
+    public void append(File directory, String mo, String fileName, int columnCount,
+            String row) throws IOException {
+        get(directory, mo).append(fileName, columnCount, row);
+    }
+
+    /**
+     * Append a whole csv row to the spill file of an MO.
+     *
+     * @param directory
+     * @param mo
+     * @param columnCount Number of MO parameters in the row
+     * @param row Row with its FILENAME and DATETIME columns
+     * @throws IOException
+     */
+    public void appendRow(File directory, String mo, int columnCount, String row)
+            throws IOException {
+        get(directory, mo).appendRow(columnCount, row);
+    }
+
+    /**
+     * Get the open spill file of an MO.
+     */
+    private MOSpillFile get(File directory, String mo) throws IOException {
+        MOSpillFile spillFile = open.get(mo);
+        if (spillFile == null) {
+            spillFile = files.get(mo);
+            if (spillFile == null) {
+                spillFile = new MOSpillFile(directory, mo);
+                files.put(mo, spillFile);
+            }
+            evict();
+            spillFile.open();
+            open.put(mo, spillFile);
+        }
+        return spillFile;
+    }
+
+    /**
+     * Close the least recently used spill files until there is room for one
+     * more.
+     */
+    private void evict() throws IOException {
+        Iterator<MOSpillFile> iter = open.values().iterator();
+        while (open.size() >= maxOpen && iter.hasNext()) {
+            MOSpillFile spillFile = iter.next();
+            iter.remove();
+            spillFile.close();
+        }
+    }
+
+    /**
+     * Get the spill files to drain. Draining a file closes and removes it.
+     *
+     * @return Map Spill file of each MO
+     */
+    public Map<String, MOSpillFile> getFiles() {
+        open.clear();
+        return files;
+    }
+
+    /**
+     * Remove the spill files that are left.
+     *
+     * @throws IOException The first error closing a spill file
+     */
+    public void clear() throws IOException {
+        IOException error = null;
+        for (MOSpillFile spillFile : files.values()) {
+            try {
+                spillFile.delete();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        files.clear();
+        open.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,684 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Byte level scanner for the spec:syndata/class/MO/attributes layout.
+ *
+ * The scanner reads the raw bytes of a document through a channel and calls
+ * the same handlers as the StAX engines. It only understands the subset of
+ * XML found in the backup files: tags, attributes, comments, processing
+ * instructions and short text without entity references, CDATA sections or
+ * carriage returns. On anything else scan() returns false and the file is
+ * handed over to the cursor engine, which skips the element events that were
+ * already handled.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+final class SyndataScanner {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final int NAME_CACHE_SIZE = 4096;
+
+    /**
+     * StAX splits text longer than its 8K buffer into several events and the
+     * handlers keep the last one. Longer text is left to StAX so that the
+     * output stays the same.
+     */
+    private static final int MAX_TEXT_LENGTH = 4096;
+
+    private static final Pattern ENCODING
+            = Pattern.compile("encoding\\s*=\\s*[\"']([A-Za-z0-9._:\\-]+)[\"']");
+
+    /**
+     * Character classes.
+     */
+    private static final byte NON_WS = 1;
+
+    private static final byte HIGH = 2;
+
+    private static final byte UNSUPPORTED = 4;
+
+    private static final byte NAME_START = 8;
+
+    private static final byte NAME = 16;
+
+    /**
+     * Classes of text and comment bytes.
+     */
+    private static final byte[] TEXT = new byte[256];
+
+    /**
+     * Classes of attribute value bytes.
+     */
+    private static final byte[] ATTR = new byte[256];
+
+    /**
+     * Classes of name bytes.
+     */
+    private static final byte[] NAMES = new byte[256];
+
+    static {
+        for (int c = 0; c < 256; c++) {
+            TEXT[c] = NON_WS;
+            if (c >= 0x80) {
+                TEXT[c] |= HIGH;
+                ATTR[c] = HIGH;
+            }
+        }
+        TEXT[' '] = 0;
+        TEXT['\t'] = 0;
+        TEXT['\n'] = 0;
+        TEXT['\r'] = UNSUPPORTED;
+        TEXT['&'] |= UNSUPPORTED;
+
+        //Attribute value normalization is left to StAX
+        ATTR['&'] = UNSUPPORTED;
+        ATTR['<'] = UNSUPPORTED;
+        ATTR['\t'] = UNSUPPORTED;
+        ATTR['\n'] = UNSUPPORTED;
+        ATTR['\r'] = UNSUPPORTED;
+
+        for (int c = 'a'; c <= 'z'; c++) {
+            NAMES[c] = NAME_START | NAME;
+            NAMES[c - 'a' + 'A'] = NAME_START | NAME;
+        }
+        for (int c = '0'; c <= '9'; c++) {
+            NAMES[c] = NAME;
+        }
+        NAMES['_'] = NAME_START | NAME;
+        NAMES[':'] = NAME_START | NAME;
+        NAMES['-'] = NAME;
+        NAMES['.'] = NAME;
+    }
+
+    /**
+     * Thrown internally when the scanner meets something it does not handle.
+     */
+    private static final class Unsupported extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Unsupported UNSUPPORTED_SYNTAX = new Unsupported();
+
+    /**
+     * A tag name decoded once and shared by all the tags that use it.
+     */
+    private static final class Name {
+
+        final byte[] bytes;
+
+        final int hash;
+
+        final String localName;
+
+        Name(byte[] bytes, int hash, int localStart) {
+            this.bytes = bytes;
+            this.hash = hash;
+            this.localName = new String(bytes, localStart, bytes.length - localStart,
+                    StandardCharsets.ISO_8859_1);
+        }
+
+        boolean matches(byte[] buf, int from, int length) {
+            if (bytes.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != buf[from + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Attributes of the start tag being handled. Values are decoded when
+     * asked for.
+     */
+    private final class ScannerAttributes implements ElementAttributes {
+
+        private int count = 0;
+
+        private int[] offsets = new int[5 * 8];
+
+        void clear() {
+            count = 0;
+        }
+
+        void add(int localStart, int nameEnd, int valueStart, int valueEnd, boolean high) {
+            if ((count + 1) * 5 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            int o = count * 5;
+            offsets[o] = localStart;
+            offsets[o + 1] = nameEnd;
+            offsets[o + 2] = valueStart;
+            offsets[o + 3] = valueEnd;
+            offsets[o + 4] = high ? 1 : 0;
+            count++;
+        }
+
+        @Override
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public String getLocalName(int index) {
+            int o = index * 5;
+            return new String(buf, offsets[o], offsets[o + 1] - offsets[o],
+                    StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public String getValue(int index) {
+            int o = index * 5;
+            return decode(offsets[o + 2], offsets[o + 3], offsets[o + 4] == 1);
+        }
+    }
+
+    private final HuaweiCfgSynParser parser;
+
+    /**
+     * Charset used to decode text with non ASCII bytes. This is the encoding
+     * from the XML declaration or UTF-8.
+     */
+    private Charset charset = StandardCharsets.UTF_8;
+
+    private ReadableByteChannel channel;
+
+    private byte[] buf = new byte[BUFFER_SIZE];
+
+    private ByteBuffer byteBuffer = ByteBuffer.wrap(buf);
+
+    private int pos = 0;
+
+    private int limit = 0;
+
+    private boolean eof = false;
+
+    /**
+     * Open elements.
+     */
+    private Name[] stack = new Name[32];
+
+    private int depth = 0;
+
+    private final Name[] names = new Name[NAME_CACHE_SIZE];
+
+    private int nameCount = 0;
+
+    private final ScannerAttributes attributes = new ScannerAttributes();
+
+    /**
+     * Number of start and end element events passed to the parser.
+     */
+    private long elementEvents = 0;
+
+    SyndataScanner(HuaweiCfgSynParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Check whether the markup characters of the charset are single ASCII
+     * bytes that never occur inside multi byte characters.
+     */
+    static boolean isSupportedCharset(Charset charset) {
+        String name = charset.name().toUpperCase();
+        return name.equals("UTF-8") || name.equals("US-ASCII")
+                || name.startsWith("ISO-8859-") || name.startsWith("WINDOWS-125");
+    }
+
+    /**
+     * Number of element events handled before scan() gave up.
+     */
+    long getElementEvents() {
+        return elementEvents;
+    }
+
+    /**
+     * Scan a file.
+     *
+     * @param channel The document. It is closed when done.
+     * @return boolean false if the document has to be parsed by StAX from
+     * getElementEvents() onwards
+     * @throws IOException
+     */
+    boolean scan(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        try {
+            load();
+
+            //Byte order marks and multi byte encodings
+            if (limit > 0 && buf[0] != '<' && (TEXT[buf[0] & 0xff] & NON_WS) != 0) {
+                return false;
+            }
+
+            readDeclaredEncoding();
+            scanDocument();
+            return true;
+        } catch (Unsupported e) {
+            return false;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Take the charset from the encoding of the XML declaration.
+     */
+    private void readDeclaredEncoding() throws IOException, Unsupported {
+        while (limit < 6 && load()) {
+        }
+        if (limit < 6 || buf[0] != '<' || buf[1] != '?' || buf[2] != 'x'
+                || buf[3] != 'm' || buf[4] != 'l' || (TEXT[buf[5] & 0xff] & NON_WS) != 0) {
+            return;
+        }
+
+        int end = 6;
+        while (true) {
+            if (end + 1 >= limit && !load()) {
+                throw UNSUPPORTED_SYNTAX;
+            }
+            if (end + 1 < limit && buf[end] == '?' && buf[end + 1] == '>') {
+                break;
+            }
+            end++;
+        }
+
+        Matcher matcher = ENCODING.matcher(
+                new String(buf, 6, end - 6, StandardCharsets.ISO_8859_1));
+        if (!matcher.find()) {
+            return;
+        }
+
+        try {
+            charset = Charset.forName(matcher.group(1));
+        } catch (IllegalArgumentException e) {
+            throw UNSUPPORTED_SYNTAX;
+        }
+        if (!isSupportedCharset(charset)) {
+            throw UNSUPPORTED_SYNTAX;
+        }
+    }
+
+    private void scanDocument() throws IOException, Unsupported {
+        while (true) {
+            if (pos >= limit && !load()) {
+                break;
+            }
+            if (buf[pos] == '<') {
+                markup();
+            } else {
+                text();
+            }
+        }
+
+        if (depth != 0) {
+            throw UNSUPPORTED_SYNTAX;
+        }
+    }
+
+    /**
+     * Read more bytes, keeping the ones from pos onwards at the start of the
+     * buffer.
+     *
+     * @return boolean false at the end of the file
+     */
+    private boolean load() throws IOException {
+        if (eof) {
+            return false;
+        }
+
+        int keep = limit - pos;
+        if (pos == 0 && limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+            byteBuffer = ByteBuffer.wrap(buf);
+        } else if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, keep);
+        }
+        pos = 0;
+        limit = keep;
+
+        byteBuffer.limit(buf.length);
+        byteBuffer.position(limit);
+        int n = channel.read(byteBuffer);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    /**
+     * Decode text. ASCII text is copied as Latin-1 without a decoder.
+     */
+    private String decode(int from, int to, boolean high) {
+        return new String(buf, from, to - from,
+                high ? charset : StandardCharsets.ISO_8859_1);
+    }
+
+    private void text() throws IOException, Unsupported {
+        int i = pos;
+        int flags = 0;
+        while (true) {
+            while (i < limit) {
+                int c = buf[i] & 0xff;
+                if (c == '<') {
+                    break;
+                }
+                flags |= TEXT[c];
+                i++;
+            }
+            if (i < limit) {
+                break;
+            }
+
+            int scanned = i - pos;
+            if (!load()) {
+                i = pos + scanned;
+                break;
+            }
+            i = pos + scanned;
+        }
+
+        int start = pos;
+        pos = i;
+
+        if ((flags & NON_WS) == 0) {
+            return;
+        }
+        if ((flags & UNSUPPORTED) != 0 || depth == 0 || i - start > MAX_TEXT_LENGTH) {
+            throw UNSUPPORTED_SYNTAX;
+        }
+        parser.characters(decode(start, i, (flags & HIGH) != 0));
+    }
+
+    private void markup() throws IOException, Unsupported {
+        while (true) {
+            int end = tryMarkup(pos);
+            if (end >= 0) {
+                pos = end;
+                return;
+            }
+            if (!load()) {
+                throw UNSUPPORTED_SYNTAX;
+            }
+        }
+    }
+
+    /**
+     * Handle the markup starting at start.
+     *
+     * @return int Index after the markup or -1 if more bytes are needed
+     */
+    private int tryMarkup(int start) throws IOException, Unsupported {
+        if (start + 1 >= limit) {
+            return -1;
+        }
+
+        byte b = buf[start + 1];
+        if (b == '/') {
+            return tryEndTag(start);
+        }
+        if (b == '!') {
+            return tryComment(start);
+        }
+        if (b == '?') {
+            return tryProcessingInstruction(start);
+        }
+        return tryStartTag(start);
+    }
+
+    private int tryStartTag(int start) throws IOException, Unsupported {
+        int i = start + 1;
+        if ((NAMES[buf[i] & 0xff] & NAME_START) == 0) {
+            throw UNSUPPORTED_SYNTAX;
+        }
+
+        int hash = 0;
+        int localStart = i;
+        while (i < limit && (NAMES[buf[i] & 0xff] & NAME) != 0) {
+            if (buf[i] == ':') {
+                localStart = i + 1;
+            }
+            hash = 31 * hash + buf[i];
+            i++;
+        }
+        int nameEnd = i;
+
+        attributes.clear();
+        while (true) {
+            while (i < limit && (TEXT[buf[i] & 0xff] & NON_WS) == 0) {
+                i++;
+            }
+            if (i >= limit) {
+                return -1;
+            }
+
+            byte b = buf[i];
+            if (b == '>') {
+                startElement(name(start + 1, nameEnd, hash, localStart));
+                return i + 1;
+            }
+            if (b == '/') {
+                if (i + 1 >= limit) {
+                    return -1;
+                }
+                if (buf[i + 1] != '>') {
+                    throw UNSUPPORTED_SYNTAX;
+                }
+                Name name = name(start + 1, nameEnd, hash, localStart);
+                startElement(name);
+                endElement(name);
+                return i + 2;
+            }
+
+            i = tryAttribute(i);
+            if (i < 0) {
+                return -1;
+            }
+        }
+    }
+
+    private int tryAttribute(int start) throws Unsupported {
+        int i = start;
+        if ((NAMES[buf[i] & 0xff] & NAME_START) == 0) {
+            throw UNSUPPORTED_SYNTAX;
+        }
+
+        int localStart = i;
+        while (i < limit && (NAMES[buf[i] & 0xff] & NAME) != 0) {
+            if (buf[i] == ':') {
+                localStart = i + 1;
+            }
+            i++;
+        }
+        int nameEnd = i;
+
+        while (i < limit && (TEXT[buf[i] & 0xff] & NON_WS) == 0) {
+            i++;
+        }
+        if (i >= limit) {
+            return -1;
+        }
+        if (buf[i] != '=') {
+            throw UNSUPPORTED_SYNTAX;
+        }
+        i++;
+        while (i < limit && (TEXT[buf[i] & 0xff] & NON_WS) == 0) {
+            i++;
+        }
+        if (i >= limit) {
+            return -1;
+        }
+
+        byte quote = buf[i];
+        if (quote != '"' && quote != '\'') {
+            throw UNSUPPORTED_SYNTAX;
+        }
+        i++;
+
+        int valueStart = i;
+        int flags = 0;
+        while (i < limit && buf[i] != quote) {
+            flags |= ATTR[buf[i] & 0xff];
+            i++;
+        }
+        if (i >= limit) {
+            return -1;
+        }
+        if ((flags & UNSUPPORTED) != 0) {
+            throw UNSUPPORTED_SYNTAX;
+        }
+
+        //Namespace declarations are not attributes
+        boolean xmlns = isXmlns(start, localStart == start ? nameEnd : localStart - 1);
+        if (!xmlns) {
+            attributes.add(localStart, nameEnd, valueStart, i, (flags & HIGH) != 0);
+        }
+        return i + 1;
+    }
+
+    private boolean isXmlns(int from, int to) {
+        return to - from == 5 && buf[from] == 'x' && buf[from + 1] == 'm'
+                && buf[from + 2] == 'l' && buf[from + 3] == 'n' && buf[from + 4] == 's';
+    }
+
+    private int tryEndTag(int start) throws IOException, Unsupported {
+        int i = start + 2;
+        while (i < limit && (NAMES[buf[i] & 0xff] & NAME) != 0) {
+            i++;
+        }
+        int nameEnd = i;
+        while (i < limit && (TEXT[buf[i] & 0xff] & NON_WS) == 0) {
+            i++;
+        }
+        if (i >= limit) {
+            return -1;
+        }
+        if (buf[i] != '>') {
+            throw UNSUPPORTED_SYNTAX;
+        }
+
+        //Mismatched tags are reported by StAX
+        if (depth == 0 || !stack[depth - 1].matches(buf, start + 2, nameEnd - start - 2)) {
+            throw UNSUPPORTED_SYNTAX;
+        }
+        endElement(stack[depth - 1]);
+        return i + 1;
+    }
+
+    private int tryComment(int start) throws Unsupported {
+        if (start + 4 > limit) {
+            return -1;
+        }
+        if (buf[start + 2] != '-' || buf[start + 3] != '-') {
+            //CDATA sections and DOCTYPE
+            throw UNSUPPORTED_SYNTAX;
+        }
+
+        int i = start + 4;
+        int flags = 0;
+        while (true) {
+            if (i + 2 >= limit) {
+                return -1;
+            }
+            byte b = buf[i];
+            if (b == '-' && buf[i + 1] == '-') {
+                if (buf[i + 2] != '>') {
+                    throw UNSUPPORTED_SYNTAX;
+                }
+                break;
+            }
+            flags |= TEXT[b & 0xff];
+            i++;
+        }
+
+        //Line ends are normalized by StAX
+        if ((flags & UNSUPPORTED) != 0 && hasCarriageReturn(start + 4, i)) {
+            throw UNSUPPORTED_SYNTAX;
+        }
+
+        if (parser.expectsComment()) {
+            parser.comment(decode(start + 4, i, (flags & HIGH) != 0));
+        }
+        return i + 3;
+    }
+
+    private boolean hasCarriageReturn(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int tryProcessingInstruction(int start) {
+        int i = start + 2;
+        while (true) {
+            if (i + 1 >= limit) {
+                return -1;
+            }
+            if (buf[i] == '?' && buf[i + 1] == '>') {
+                return i + 2;
+            }
+            i++;
+        }
+    }
+
+    private Name name(int from, int to, int hash, int localStart) {
+        int length = to - from;
+        int mask = NAME_CACHE_SIZE - 1;
+        int index = hash & mask;
+        while (names[index] != null) {
+            Name name = names[index];
+            if (name.hash == hash && name.matches(buf, from, length)) {
+                return name;
+            }
+            index = (index + 1) & mask;
+        }
+
+        Name name = new Name(Arrays.copyOfRange(buf, from, to), hash, localStart - from);
+        if (nameCount < NAME_CACHE_SIZE * 3 / 4) {
+            names[index] = name;
+            nameCount++;
+        }
+        return name;
+    }
+
+    private void startElement(Name name) throws IOException {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = name;
+        elementEvents++;
+        parser.startElement(name.localName, attributes);
+    }
+
+    private void endElement(Name name) throws IOException {
+        depth--;
+        elementEvents++;
+        parser.endElement(name.localName);
+    }
+}
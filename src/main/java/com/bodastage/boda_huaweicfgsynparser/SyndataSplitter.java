@@ -0,0 +1,506 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits large uncompressed documents into parts that can be parsed in
+ * parallel.
+ *
+ * A part is a range of whole class elements. It is read as a document of its
+ * own: the start of the file up to the first spec:syndata, the start tag of
+ * the syndata holding the range, the range and the end tags of the syndata
+ * and of the root. Each part keeps the syndata attributes and the last part
+ * has the file footer, so the rows of the parts in order are the rows of the
+ * file.
+ *
+ * The split points are found with a byte scan that only looks at the markup,
+ * which is done one part ahead of the parsing. Documents with a DOCTYPE or in
+ * an encoding that is not ASCII compatible are not split.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+class SyndataSplitter implements Iterator<ParserInput> {
+
+    static Logger logger = LoggerFactory.getLogger(SyndataSplitter.class);
+
+    private static final Pattern ENCODING
+            = Pattern.compile("^<\\?xml[^>]*encoding\\s*=\\s*[\"']([A-Za-z0-9._-]+)[\"']");
+
+    /**
+     * Largest start of file copied into every part.
+     */
+    private static final int MAX_PROLOG_SIZE = 1024 * 1024;
+
+    private final Iterator<ParserInput> inputs;
+
+    private final long partSize;
+
+    /**
+     * Scan of the file being split or null.
+     */
+    private FileScan scan = null;
+
+    /**
+     * Next part of the file being split.
+     */
+    private ParserInput nextPart = null;
+
+    /**
+     * @param inputs Documents to split
+     * @param partSize Size of the parts. Documents smaller than two parts
+     * are not split.
+     */
+    SyndataSplitter(Iterator<ParserInput> inputs, long partSize) {
+        this.inputs = inputs;
+        this.partSize = partSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextPart != null || inputs.hasNext();
+    }
+
+    @Override
+    public ParserInput next() {
+        if (nextPart == null) {
+            ParserInput input = inputs.next();
+            Path file = input.getPlainFile();
+            try {
+                if (file == null || Files.size(file) < 2 * partSize) {
+                    return input;
+                }
+                scan = new FileScan(input, file);
+            } catch (IOException e) {
+                logger.warn("Cannot split " + input.getName() + ": " + e.getMessage());
+                return input;
+            }
+            nextPart = scan.nextPart();
+        }
+
+        if (nextPart == null) {
+            throw new NoSuchElementException();
+        }
+        ParserInput part = nextPart;
+        nextPart = scan.nextPart();
+        if (nextPart == null) {
+            scan.close();
+            scan = null;
+        }
+        return part;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Finds the split points of a file.
+     */
+    private class FileScan {
+
+        private final ParserInput input;
+
+        private final Path file;
+
+        private final FileChannel channel;
+
+        private final long size;
+
+        private final byte[] buf = new byte[1024 * 1024];
+
+        private int pos = 0;
+
+        private int limit = 0;
+
+        /**
+         * File offset of the start of buf.
+         */
+        private long bufOffset = 0;
+
+        private int depth = 0;
+
+        private String rootName = null;
+
+        /**
+         * Start of the file up to the first syndata or null before it is
+         * reached.
+         */
+        private byte[] prolog = null;
+
+        /**
+         * Start tag and name of the open syndata or null.
+         */
+        private byte[] syndataTag = null;
+
+        private String syndataName = null;
+
+        /**
+         * Start of the next part and the syndata tag it opens with.
+         */
+        private long partStart = 0;
+
+        private byte[] partSyndataTag = null;
+
+        private int partIndex = 0;
+
+        /**
+         * Whether the rest of the file is one part.
+         */
+        private boolean done = false;
+
+        /**
+         * Whether the last part was handed out.
+         */
+        private boolean closed = false;
+
+        FileScan(ParserInput input, Path file) throws IOException {
+            this.input = input;
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.size = channel.size();
+
+            if (!isAsciiCompatible()) {
+                logger.info("Not splitting " + input.getName() + ": unsupported encoding");
+                done = true;
+            }
+        }
+
+        /**
+         * Scan to the next split point.
+         *
+         * @return ParserInput or null after the last part
+         */
+        ParserInput nextPart() {
+            if (closed) {
+                return null;
+            }
+
+            if (!done) {
+                try {
+                    long splitAt = scanToSplit(partStart + partSize);
+                    if (splitAt >= 0) {
+                        return newPart(splitAt);
+                    }
+                } catch (IOException e) {
+                    logger.warn((partStart == 0 ? "Not splitting " : "Not splitting the rest of ")
+                            + input.getName() + ": " + e.getMessage());
+                }
+                done = true;
+            }
+
+            closed = true;
+            if (partStart == 0) {
+                return input;
+            }
+            logger.info("Split " + input.getName() + " into " + (partIndex + 1) + " parts");
+            return new Part(input.getName(), file, partIndex, concat(prolog, partSyndataTag),
+                    partStart, size - partStart, new byte[0]);
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn(e.getMessage());
+            }
+        }
+
+        private ParserInput newPart(long splitAt) throws IOException {
+            byte[] prefix = partStart == 0 ? new byte[0] : concat(prolog, partSyndataTag);
+            byte[] suffix = ("</" + syndataName + "></" + rootName + ">")
+                    .getBytes(StandardCharsets.ISO_8859_1);
+            Part part = new Part(input.getName(), file, partIndex++, prefix,
+                    partStart, splitAt - partStart, suffix);
+            partStart = splitAt;
+            partSyndataTag = syndataTag;
+            return part;
+        }
+
+        /**
+         * Check the byte order mark and the encoding in the XML declaration.
+         */
+        private boolean isAsciiCompatible() throws IOException {
+            byte[] head = read(0, (int) Math.min(size, 256));
+            if (head.length < 2 || head[0] == 0 || head[1] == 0
+                    || (head[0] & 0xff) == 0xfe || (head[0] & 0xff) == 0xff) {
+                return false;
+            }
+            int offset = (head[0] & 0xff) == 0xef ? 3 : 0;
+            Matcher m = ENCODING.matcher(new String(head, offset, head.length - offset,
+                    StandardCharsets.ISO_8859_1));
+            if (!m.find()) {
+                return true;
+            }
+            try {
+                return SyndataScanner.isSupportedCharset(Charset.forName(m.group(1)));
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Scan the markup up to the first class start tag of a syndata at or
+         * after an offset.
+         *
+         * @return long Offset of the tag or -1 at the end of the file
+         * @throws IOException When the document cannot be split
+         */
+        private long scanToSplit(long from) throws IOException {
+            while (true) {
+                //Skip the text
+                while (pos < limit && buf[pos] != '<') {
+                    pos++;
+                }
+                if (pos == limit) {
+                    if (!load()) {
+                        return -1;
+                    }
+                    continue;
+                }
+                long tagStart = position();
+                pos++;
+
+                int c = read();
+                if (c == '?') {
+                    skipPast('?', 1);
+                } else if (c == '!') {
+                    c = read();
+                    if (c == '-') {
+                        read();
+                        skipPast('-', 2);
+                    } else if (c == '[') {
+                        skipPast(']', 2);
+                    } else {
+                        throw new IOException("DOCTYPE is not supported");
+                    }
+                } else if (c == '/') {
+                    skipPast('/', 0);
+                    if (--depth == 1) {
+                        syndataTag = null;
+                    }
+                } else if (c >= 0) {
+                    //Only the names of the root, the syndata and the class
+                    //tags are needed
+                    StringBuilder name = depth <= 2 ? new StringBuilder() : null;
+                    while (c >= 0 && c != '>' && c != '/' && c > ' ') {
+                        if (name != null) {
+                            name.append((char) c);
+                        }
+                        c = read();
+                    }
+                    boolean empty = skipStartTag(c);
+                    if (name == null) {
+                        if (!empty) {
+                            depth++;
+                        }
+                        continue;
+                    }
+                    String localName = name.substring(name.indexOf(":") + 1);
+
+                    if (depth == 0) {
+                        rootName = name.toString();
+                    } else if (depth == 1 && !empty && localName.equals("syndata")) {
+                        if (prolog == null) {
+                            if (tagStart > MAX_PROLOG_SIZE) {
+                                throw new IOException("The file header is too large");
+                            }
+                            prolog = read(0, (int) tagStart);
+                        }
+                        syndataTag = read(tagStart, (int) (position() - tagStart));
+                        syndataName = name.toString();
+                    } else if (depth == 2 && syndataTag != null && tagStart >= from
+                            && localName.equals("class")) {
+                        if (!empty) {
+                            depth++;
+                        }
+                        return tagStart;
+                    }
+                    if (!empty) {
+                        depth++;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Skip to the end of a start tag.
+         *
+         * @param c Character after the tag name
+         * @return boolean Whether the element is empty
+         */
+        private boolean skipStartTag(int c) throws IOException {
+            int last = 0;
+            while (c >= 0 && c != '>') {
+                if (c == '"' || c == '\'') {
+                    int quote = c;
+                    for (c = read(); c >= 0 && c != quote; c = read()) {
+                    }
+                }
+                last = c;
+                c = read();
+            }
+            return last == '/';
+        }
+
+        /**
+         * Skip past the next '>' that follows at least count times the
+         * character c.
+         */
+        private void skipPast(int c, int count) throws IOException {
+            int run = 0;
+            for (int b = read(); b >= 0; b = read()) {
+                if (b == '>' && run >= count) {
+                    return;
+                }
+                run = b == c ? run + 1 : 0;
+            }
+        }
+
+        private long position() {
+            return bufOffset + pos;
+        }
+
+        private int read() throws IOException {
+            if (pos == limit && !load()) {
+                return -1;
+            }
+            return buf[pos++] & 0xff;
+        }
+
+        /**
+         * Read the next block of the file.
+         *
+         * @return boolean false at the end of the file
+         */
+        private boolean load() throws IOException {
+            bufOffset += limit;
+            pos = 0;
+            limit = 0;
+            ByteBuffer bytes = ByteBuffer.wrap(buf);
+            int n = channel.read(bytes, bufOffset);
+            if (n <= 0) {
+                return false;
+            }
+            limit = n;
+            return true;
+        }
+
+        private byte[] read(long offset, int length) throws IOException {
+            ByteBuffer bytes = ByteBuffer.allocate(length);
+            while (bytes.hasRemaining()
+                    && channel.read(bytes, offset + bytes.position()) > 0) {
+            }
+            return Arrays.copyOf(bytes.array(), bytes.position());
+        }
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] bytes = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, bytes, a.length, b.length);
+        return bytes;
+    }
+
+    /**
+     * A range of a file read between a prefix and a suffix.
+     */
+    private static class Part extends ParserInput {
+
+        private final Path file;
+
+        private final int index;
+
+        private final byte[] prefix;
+
+        private final long start;
+
+        private final long length;
+
+        private final byte[] suffix;
+
+        Part(String name, Path file, int index, byte[] prefix, long start, long length,
+                byte[] suffix) {
+            super(name);
+            this.file = file;
+            this.index = index;
+            this.prefix = prefix;
+            this.start = start;
+            this.length = length;
+            this.suffix = suffix;
+        }
+
+        @Override
+        public String getId() {
+            return file.toAbsolutePath().toString() + "#" + index;
+        }
+
+        @Override
+        public long getSize() {
+            return prefix.length + length + suffix.length;
+        }
+
+        @Override
+        public long getLastModified() throws IOException {
+            return Files.getLastModifiedTime(file).toMillis();
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            channel.position(start);
+            InputStream range = new FilterInputStream(Channels.newInputStream(channel)) {
+                private long remaining = length;
+
+                @Override
+                public int read() throws IOException {
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    int b = in.read();
+                    if (b >= 0) {
+                        remaining--;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    int n = in.read(b, off, (int) Math.min(len, remaining));
+                    if (n > 0) {
+                        remaining -= n;
+                    }
+                    return n;
+                }
+            };
+            return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                    new ByteArrayInputStream(prefix), range, new ByteArrayInputStream(suffix))));
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Huawei bulk CM XML baseline syn backup data file parser.
+ */
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the csv files on dedicated threads while the parser goes on.
+ *
+ * The csv writers hand their full buffers to a writer thread through a
+ * bounded queue. When the queue is full the parser waits, so the memory held
+ * by queued rows stays bounded. A file is always handled by the same thread,
+ * which also opens and closes it, so its writes keep their order when the
+ * writer pool closes and reopens it.
+ *
+ * The time the parser waits for room in a queue and the time the writer
+ * threads wait for rows are added to the metrics. The first shows the
+ * writing is the bottleneck, the second that the parsing is.
+ *
+ * @author Bodastage <info@bodastage.com>
+ * @since 1.3.0
+ */
+public class WritePipeline implements Closeable {
+
+    static Logger logger = LoggerFactory.getLogger(WritePipeline.class);
+
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+
+    /**
+     * Work done on a writer thread.
+     */
+    interface Task {
+
+        void run() throws IOException;
+    }
+
+    private static final Task STOP = new Task() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private final ParserMetrics metrics;
+
+    private final List<BlockingQueue<Task>> queues = new ArrayList<BlockingQueue<Task>>();
+
+    private final List<Thread> threads = new ArrayList<Thread>();
+
+    /**
+     * Written buffers that can be reused.
+     */
+    private final ConcurrentLinkedQueue<ByteBuffer> freeBuffers
+            = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    /**
+     * First write error not reported to the parser yet.
+     */
+    private volatile IOException error = null;
+
+    private boolean closed = false;
+
+    /**
+     * @param threadCount Number of writer threads
+     * @param queueSize Buffers queued per thread before the parser waits
+     * @param metrics
+     */
+    public WritePipeline(int threadCount, int queueSize, ParserMetrics metrics) {
+        this.metrics = metrics;
+        for (int i = 0; i < Math.max(1, threadCount); i++) {
+            final BlockingQueue<Task> queue = new ArrayBlockingQueue<Task>(Math.max(1, queueSize));
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runTasks(queue);
+                }
+            }, "csv-writer-" + i);
+            thread.setDaemon(true);
+            queues.add(queue);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Get the writer thread of a file.
+     *
+     * @param file
+     * @return int
+     */
+    int getLane(File file) {
+        return (file.getAbsolutePath().hashCode() & 0x7fffffff) % queues.size();
+    }
+
+    /**
+     * Queue a task on a writer thread, waiting while its queue is full.
+     *
+     * @param lane
+     * @param task
+     * @throws IOException A write error of an earlier task
+     */
+    void submit(int lane, Task task) throws IOException {
+        checkError();
+        enqueue(lane, task);
+    }
+
+    private void enqueue(int lane, Task task) throws IOException {
+        BlockingQueue<Task> queue = queues.get(lane);
+        metrics.addWriteQueueDepth(1);
+        if (!queue.offer(task)) {
+            long start = System.nanoTime();
+            try {
+                queue.put(task);
+            } catch (InterruptedException e) {
+                metrics.addWriteQueueDepth(-1);
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the csv writers", e);
+            } finally {
+                metrics.addWriteStall(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Wait until the tasks queued so far have run on every writer thread.
+     *
+     * @throws IOException A write error
+     */
+    void sync() throws IOException {
+        final CountDownLatch done = new CountDownLatch(queues.size());
+        for (int i = 0; i < queues.size(); i++) {
+            submit(i, new Task() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            });
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the csv writers", e);
+        }
+        checkError();
+    }
+
+    /**
+     * Get an empty buffer of the csv writer size.
+     *
+     * @return ByteBuffer
+     */
+    ByteBuffer newBuffer() {
+        ByteBuffer buffer = freeBuffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocate(CSVWriter.BUFFER_SIZE);
+    }
+
+    /**
+     * Give back a buffer that has been written.
+     *
+     * @param buffer
+     */
+    void recycle(ByteBuffer buffer) {
+        buffer.clear();
+        freeBuffers.add(buffer);
+    }
+
+    /**
+     * Throw the first write error that has not been reported.
+     *
+     * @throws IOException
+     */
+    void checkError() throws IOException {
+        IOException e = error;
+        if (e != null) {
+            error = null;
+            throw e;
+        }
+    }
+
+    private void runTasks(BlockingQueue<Task> queue) {
+        while (true) {
+            Task task;
+            long start = System.nanoTime();
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            metrics.addWriterIdle(System.nanoTime() - start);
+            metrics.addWriteQueueDepth(-1);
+
+            if (task == STOP) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (IOException e) {
+                setError(e);
+            } catch (RuntimeException e) {
+                setError(new IOException(e));
+            }
+        }
+    }
+
+    private void setError(IOException e) {
+        logger.error(e.getMessage());
+        if (error == null) {
+            error = e;
+        }
+    }
+
+    /**
+     * Wait for the queued writes to finish and stop the writer threads. The
+     * csv writers have to be closed first.
+     *
+     * @throws IOException A write error that has not been reported
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        for (int i = 0; i < queues.size(); i++) {
+            enqueue(i, STOP);
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the csv writers", e);
+            }
+        }
+
+        logger.info(String.format(Locale.ROOT,
+                "Csv writer threads: parser waited %.1f s for the writers, writers waited %.1f s for rows",
+                metrics.getWriteStallMillis() / 1000.0, metrics.getWriterIdleMillis() / 1000.0));
+        checkError();
+    }
+}
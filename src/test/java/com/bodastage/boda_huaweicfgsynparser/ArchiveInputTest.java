@@ -0,0 +1,183 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compressed files and archives of the syndata fixture write the same csv
+ * files as the plain files.
+ */
+public class ArchiveInputTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File input;
+
+    /**
+     * Fixture files in the order the plain run parses them, so that the rows
+     * of the archives are in the same order.
+     */
+    private List<File> files;
+
+    private Map<String, String> expected;
+
+    @Before
+    public void setUp() throws Exception {
+        input = ParserTestSupport.copyFixture(tmp);
+        files = new ArrayList<File>();
+        for (Iterator<Path> it = new InputFinder().find(input.toPath()); it.hasNext();) {
+            files.add(it.next().toFile());
+        }
+        expected = ParserTestSupport.parseDefault(input, tmp);
+    }
+
+    @Test
+    public void testGzipFiles() throws Exception {
+        File directory = tmp.newFolder();
+        for (File f : files) {
+            File gz = new File(directory, f.getName() + ".gz");
+            OutputStream out = new GZIPOutputStream(create(gz));
+            try {
+                out.write(Files.readAllBytes(f.toPath()));
+            } finally {
+                out.close();
+            }
+            assertEquals(ParserInput.GZIP, ParserInput.detectFormat(gz.toPath()));
+        }
+        assertEquals(expected, parse(directory, 1));
+    }
+
+    @Test
+    public void testZip() throws Exception {
+        File zip = tmp.newFile("dump.zip");
+        ZipOutputStream out = new ZipOutputStream(create(zip));
+        try {
+            out.putNextEntry(new ZipEntry("dump/"));
+            out.closeEntry();
+            for (File f : files) {
+                out.putNextEntry(new ZipEntry("dump/" + f.getName()));
+                out.write(Files.readAllBytes(f.toPath()));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        assertEquals(ParserInput.ZIP, ParserInput.detectFormat(zip.toPath()));
+        assertEquals(expected, parse(zip, 1));
+    }
+
+    @Test
+    public void testTar() throws Exception {
+        File tar = tmp.newFile("dump.tar");
+        OutputStream out = create(tar);
+        try {
+            writeTar(out);
+        } finally {
+            out.close();
+        }
+        assertEquals(ParserInput.TAR, ParserInput.detectFormat(tar.toPath()));
+        assertEquals(expected, parse(tar, 1));
+    }
+
+    @Test
+    public void testTarGzip() throws Exception {
+        File tgz = tmp.newFile("dump.tgz");
+        OutputStream out = new GZIPOutputStream(create(tgz));
+        try {
+            writeTar(out);
+        } finally {
+            out.close();
+        }
+        assertEquals(ParserInput.TAR_GZIP, ParserInput.detectFormat(tgz.toPath()));
+        assertEquals(expected, parse(tgz, 1));
+        assertEquals(expected, parse(tgz, 2));
+    }
+
+    /**
+     * A file that is neither XML nor an archive is read as a plain document,
+     * fails to parse and is skipped.
+     */
+    @Test
+    public void testOtherFileSkipped() throws Exception {
+        File junk = new File(input, "notes.bin");
+        Files.write(junk.toPath(), new byte[]{0x13, 0x37, 'n', 'o', 't', ' ', 'x', 'm', 'l'});
+        assertEquals(ParserInput.PLAIN, ParserInput.detectFormat(junk.toPath()));
+
+        assertEquals(expected, parse(input, 1));
+        assertEquals(expected, parse(input, 2));
+    }
+
+    private Map<String, String> parse(File source, int threads) throws Exception {
+        File output = tmp.newFolder();
+        HuaweiCfgSynParser parser = ParserTestSupport.newParser(source, output);
+        parser.setThreads(threads);
+        parser.parse();
+        return ParserTestSupport.readOutput(output);
+    }
+
+    /**
+     * Write the fixture files as a ustar archive with a directory entry.
+     */
+    private void writeTar(OutputStream out) throws IOException {
+        writeTarEntry(out, "dump/", null);
+        for (File f : files) {
+            writeTarEntry(out, "dump/" + f.getName(), Files.readAllBytes(f.toPath()));
+        }
+        out.write(new byte[1024]);
+    }
+
+    private static void writeTarEntry(OutputStream out, String name, byte[] data)
+            throws IOException {
+        byte[] header = new byte[512];
+        put(header, 0, name);
+        put(header, 100, "0000644");
+        put(header, 108, "0000000");
+        put(header, 116, "0000000");
+        put(header, 124, String.format("%011o", data == null ? 0 : data.length));
+        put(header, 136, String.format("%011o", 0));
+        header[156] = (byte) (data == null ? '5' : '0');
+        put(header, 257, "ustar");
+        put(header, 263, "00");
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        int checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        put(header, 148, String.format("%06o", checksum));
+        header[154] = 0;
+        out.write(header);
+
+        if (data != null) {
+            out.write(data);
+            out.write(new byte[(512 - data.length % 512) % 512]);
+        }
+    }
+
+    private static void put(byte[] header, int offset, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+
+    private static OutputStream create(File file) throws IOException {
+        return new BufferedOutputStream(Files.newOutputStream(file.toPath()));
+    }
+}
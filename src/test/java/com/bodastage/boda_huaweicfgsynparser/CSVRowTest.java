@@ -0,0 +1,72 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class CSVRowTest {
+
+    private static String value(String value) {
+        return new CSVRow().appendValue(value).toString();
+    }
+
+    @Test
+    public void testPlainValue() {
+        assertEquals("abc", value("abc"));
+        assertEquals("", value(""));
+        assertEquals("", value(null));
+    }
+
+    @Test
+    public void testComma() {
+        assertEquals("\"a,b\"", value("a,b"));
+        assertEquals("\",\"", value(","));
+    }
+
+    @Test
+    public void testQuote() {
+        assertEquals("\"q\"\"uote\"", value("q\"uote"));
+        assertEquals("\"\"\"\"\"\"", value("\"\""));
+        assertEquals("\"a,\"\"b\"\"\"", value("a,\"b\""));
+    }
+
+    @Test
+    public void testLineBreaks() {
+        assertEquals("\"two\nlines\"", value("two\nlines"));
+        assertEquals("\"a\r\nb\"", value("a\r\nb"));
+        assertEquals("\"\r\"", value("\r"));
+    }
+
+    @Test
+    public void testSameAsToCSVFormat() {
+        HuaweiCfgSynParser parser = new HuaweiCfgSynParser();
+        String[] values = {"abc", "a,b", "q\"uote", "two\nlines", "a\r\nb", "\"x,\ny\""};
+        for (String v : values) {
+            assertEquals(parser.toCSVFormat(v), value(v));
+        }
+    }
+
+    @Test
+    public void testFields() {
+        CSVRow row = new CSVRow();
+        row.append("ne.xml").append(null).appendValue(null).appendValue("a,b");
+        assertEquals("ne.xml,null,,\"a,b\"", row.toString());
+
+        row.clear().appendValue("x");
+        assertEquals("x", row.toString());
+        assertEquals(1, row.length());
+    }
+
+    @Test
+    public void testGrowsPastInitialCapacity() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            sb.append('"');
+        }
+        String quotes = sb.toString();
+        String escaped = value(quotes);
+
+        assertEquals(2 * quotes.length() + 2, escaped.length());
+        assertEquals('"', escaped.charAt(0));
+        assertEquals('"', escaped.charAt(escaped.length() - 1));
+    }
+}
@@ -0,0 +1,127 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Evicting and reopening the writers of three MOs with one open file.
+ */
+public class CSVWriterPoolTest {
+
+    private static final String EOL = System.lineSeparator();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testOneOpenWriter() throws Exception {
+        File output = tmp.newFolder();
+        File a = new File(output, "A.csv");
+        File b = new File(output, "B.csv");
+        File c = new File(output, "C.csv");
+
+        CSVWriterPool pool = new CSVWriterPool();
+        pool.setMaxOpen(1);
+
+        CSVWriter writerA = create(pool, "A", a);
+        assertSame(writerA, pool.get("A"));
+        pool.get("A").writeLine("a1");
+
+        //Creating B flushes and closes the writer of A
+        create(pool, "B", b);
+        assertEquals("FILENAME" + EOL + "a1" + EOL, read(a));
+        assertEquals(1, pool.getOpenCount());
+        writerA.writeLine("lost");
+        try {
+            writerA.flush();
+            fail("The evicted writer is open");
+        } catch (ClosedChannelException e) {
+            //Closed on eviction
+        }
+        pool.get("B").writeLine("b1");
+
+        create(pool, "C", c);
+        assertEquals("FILENAME" + EOL + "b1" + EOL, read(b));
+        pool.get("C").writeLine("c1");
+
+        //A is reopened for appending, without a header
+        CSVWriter reopened = pool.get("A");
+        assertNotSame(writerA, reopened);
+        reopened.writeLine("a2");
+        pool.get("A").writeLine("a3");
+        pool.get("B").writeLine("b2");
+
+        assertEquals(5, pool.getHits());
+        assertEquals(5, pool.getMisses());
+        assertEquals(4, pool.getEvictions());
+        assertEquals(1, pool.getOpenCount());
+
+        pool.close();
+        assertEquals(0, pool.getOpenCount());
+        assertEquals("FILENAME" + EOL + "a1" + EOL + "a2" + EOL + "a3" + EOL, read(a));
+        assertEquals("FILENAME" + EOL + "b1" + EOL + "b2" + EOL, read(b));
+        assertEquals("FILENAME" + EOL + "c1" + EOL, read(c));
+    }
+
+    /**
+     * Rows queued for a writer thread before its file is closed are written
+     * before the file is reopened.
+     */
+    @Test
+    public void testOneOpenWriterOnWriterThreads() throws Exception {
+        File output = tmp.newFolder();
+        CSVWriterPool pool = new CSVWriterPool();
+        pool.setMaxOpen(1);
+        pool.setWriteThreads(2);
+        pool.setWriteQueueSize(1);
+
+        String[] mos = {"A", "B", "C"};
+        for (String mo : mos) {
+            create(pool, mo, new File(output, mo + ".csv"));
+        }
+        StringBuilder[] expected = new StringBuilder[mos.length];
+        for (int i = 0; i < mos.length; i++) {
+            expected[i] = new StringBuilder("FILENAME" + EOL);
+        }
+        for (int row = 0; row < 1000; row++) {
+            int i = row % mos.length;
+            pool.get(mos[i]).writeLine(mos[i] + row);
+            expected[i].append(mos[i]).append(row).append(EOL);
+        }
+        assertEquals(1000 + mos.length - 1, pool.getEvictions());
+        pool.close();
+
+        for (int i = 0; i < mos.length; i++) {
+            assertEquals(expected[i].toString(), read(new File(output, mos[i] + ".csv")));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testGetBeforeCreate() throws Exception {
+        new CSVWriterPool().get("A");
+    }
+
+    /**
+     * Create the output of an MO and write its header, as the parser does.
+     */
+    private static CSVWriter create(CSVWriterPool pool, String mo, File file)
+            throws IOException {
+        CSVWriter writer = pool.create(mo, file);
+        writer.writeLine("FILENAME");
+        return writer;
+    }
+
+    private static String read(File f) throws IOException {
+        return new String(Files.readAllBytes(f.toPath()), StandardCharsets.ISO_8859_1);
+    }
+}
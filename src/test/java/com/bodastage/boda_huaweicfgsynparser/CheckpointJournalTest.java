@@ -0,0 +1,200 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checkpoints of the value extraction pass and resuming a stopped run.
+ */
+public class CheckpointJournalTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testResumeLastCheckpoint() throws Exception {
+        File output = tmp.newFolder();
+        writeCheckpoints(output);
+
+        CheckpointJournal journal = new CheckpointJournal(output, 0);
+        assertTrue(journal.resume());
+        assertTrue(journal.isCompleted("a"));
+        assertTrue(journal.isCompleted("b"));
+        assertEquals(Long.valueOf(20), journal.getOutputLengths().get("CELL"));
+        assertEquals(2, journal.getSchemaMisses());
+        assertEquals("2090-11-02T08:00:00", journal.getDateTime());
+        assertEquals("CELLID", journal.getSchema().get("CELL").get(0));
+    }
+
+    /**
+     * A run stopping while it writes a checkpoint resumes from the one before.
+     */
+    @Test
+    public void testTornLastCheckpointIgnored() throws Exception {
+        File output = tmp.newFolder();
+        writeCheckpoints(output);
+
+        //Cut the closing line of the last checkpoint
+        File journalFile = new File(output, ".checkpoint");
+        byte[] data = Files.readAllBytes(journalFile.toPath());
+        String text = new String(data, StandardCharsets.UTF_8);
+        int torn = text.lastIndexOf("checkpoint\t") + 3;
+        RandomAccessFile raf = new RandomAccessFile(journalFile, "rw");
+        try {
+            raf.setLength(torn);
+        } finally {
+            raf.close();
+        }
+
+        CheckpointJournal journal = new CheckpointJournal(output, 0);
+        assertTrue(journal.resume());
+        assertTrue(journal.isCompleted("a"));
+        assertFalse(journal.isCompleted("b"));
+        assertEquals(1, journal.getCompletedCount());
+        assertEquals(Long.valueOf(10), journal.getOutputLengths().get("CELL"));
+        assertEquals(1, journal.getSchemaMisses());
+
+        //The torn checkpoint is dropped from the journal and the next one
+        //follows the last complete checkpoint
+        journal.addCompleted("c");
+        journal.checkpoint(lengths(30), 3);
+        journal = new CheckpointJournal(output, 0);
+        assertTrue(journal.resume());
+        assertTrue(journal.isCompleted("c"));
+        assertFalse(journal.isCompleted("b"));
+        assertEquals(Long.valueOf(30), journal.getOutputLengths().get("CELL"));
+    }
+
+    @Test
+    public void testNoJournal() throws Exception {
+        File output = tmp.newFolder();
+        assertFalse(new CheckpointJournal(output, 0).resume());
+
+        //A journal cut before its start line is not resumed
+        writeCheckpoints(output);
+        Files.write(new File(output, ".checkpoint").toPath(), "sta".getBytes(StandardCharsets.UTF_8));
+        assertFalse(new CheckpointJournal(output, 0).resume());
+    }
+
+    /**
+     * Stop a run after the checkpoint of its first two files, leave garbage
+     * after the checkpoint in the csv files and resume it.
+     */
+    @Test
+    public void testResumeStoppedRun() throws Exception {
+        File input = ParserTestSupport.copyFixture(tmp);
+        Map<String, String> expected = ParserTestSupport.parseDefault(input, tmp);
+
+        File output = tmp.newFolder();
+        HuaweiCfgSynParser parser = ParserTestSupport.newParser(input, output);
+        parser.setInputFinder(new StoppingInputFinder());
+        parser.setCheckpointInterval(1);
+        try {
+            parser.parse();
+            fail("The run was not stopped");
+        } catch (StopError e) {
+            //The run stopped before its third file
+        }
+
+        for (File f : output.listFiles()) {
+            if (f.getName().endsWith(".csv")) {
+                Files.write(f.toPath(), "garbage\n".getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.APPEND);
+            }
+        }
+
+        CheckpointJournal journal = new CheckpointJournal(output, 0);
+        assertTrue(journal.resume());
+        assertEquals(2, journal.getCompletedCount());
+
+        parser = ParserTestSupport.newParser(input, output);
+        parser.setCheckpointInterval(1);
+        parser.setResume(true);
+        parser.parse();
+
+        assertEquals(expected, ParserTestSupport.readOutput(output));
+        assertFalse(new File(output, ".checkpoint").exists());
+    }
+
+    private static void writeCheckpoints(File output) throws Exception {
+        Map<String, ColumnRegistry> schema = new LinkedHashMap<String, ColumnRegistry>();
+        ColumnRegistry columns = new ColumnRegistry();
+        columns.add("CELLID");
+        schema.put("CELL", columns);
+
+        CheckpointJournal journal = new CheckpointJournal(output, 0);
+        journal.start(schema, "2090-11-02T08:00:00", false);
+        journal.addCompleted("a");
+        journal.checkpoint(lengths(10), 1);
+        journal.addCompleted("b");
+        journal.checkpoint(lengths(20), 2);
+    }
+
+    private static Map<String, Long> lengths(long cell) {
+        Map<String, Long> lengths = new LinkedHashMap<String, Long>();
+        lengths.put("CELL", cell);
+        return lengths;
+    }
+
+    private static class StopError extends Error {
+    }
+
+    /**
+     * Finds the fixture files, waiting for the checkpoint interval before the
+     * second file of the value pass and stopping the run before the third.
+     */
+    private static class StoppingInputFinder extends InputFinder {
+
+        private int passes = 0;
+
+        @Override
+        public Iterator<Path> find(Path source) {
+            final Iterator<Path> files = super.find(source);
+            if (++passes < 2) {
+                return files;
+            }
+            return new Iterator<Path>() {
+                private int count = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return files.hasNext();
+                }
+
+                @Override
+                public Path next() {
+                    count++;
+                    if (count == 2) {
+                        try {
+                            Thread.sleep(1100);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    } else if (count == 3) {
+                        throw new StopError();
+                    }
+                    return files.next();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
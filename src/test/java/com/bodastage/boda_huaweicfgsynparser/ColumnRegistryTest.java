@@ -0,0 +1,58 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class ColumnRegistryTest {
+
+    @Test
+    public void testDuplicateNamesKeepTheirSlot() {
+        ColumnRegistry columns = new ColumnRegistry();
+        assertEquals(0, columns.add("CELLID"));
+        assertEquals(1, columns.add("NAME"));
+        assertEquals(0, columns.add("CELLID"));
+        assertEquals(1, columns.add("NAME"));
+        assertEquals(2, columns.add("EXTRA"));
+
+        assertEquals(3, columns.size());
+        assertEquals("CELLID", columns.get(0));
+        assertEquals("NAME", columns.get(1));
+        assertEquals("EXTRA", columns.get(2));
+    }
+
+    @Test
+    public void testNamesAreCaseSensitive() {
+        ColumnRegistry columns = new ColumnRegistry();
+        columns.add("Name");
+        columns.add("NAME");
+
+        assertEquals(2, columns.size());
+        assertEquals(0, columns.indexOf("Name"));
+        assertEquals(1, columns.indexOf("NAME"));
+    }
+
+    @Test
+    public void testUnknownName() {
+        ColumnRegistry columns = new ColumnRegistry();
+        columns.add("CELLID");
+
+        assertEquals(-1, columns.indexOf("NAME"));
+        assertTrue(columns.contains("CELLID"));
+        assertFalse(columns.contains("NAME"));
+    }
+
+    @Test
+    public void testCopyIsIndependent() {
+        ColumnRegistry columns = new ColumnRegistry();
+        columns.add("CELLID");
+        ColumnRegistry copy = columns.copy();
+        copy.add("NAME");
+        copy.add("CELLID");
+
+        assertEquals(1, columns.size());
+        assertEquals(2, copy.size());
+        assertEquals(0, copy.indexOf("CELLID"));
+    }
+}
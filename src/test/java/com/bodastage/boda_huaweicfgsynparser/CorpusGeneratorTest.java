@@ -0,0 +1,94 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Seeded corpora with a varied schema.
+ */
+public class CorpusGeneratorTest {
+
+    private static final int PARAMETERS = 8;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testSameSeedSameBytes() throws Exception {
+        assertSameFiles(generate(42, false), generate(42, false));
+        assertSameFiles(generate(42, true), generate(42, true));
+    }
+
+    @Test
+    public void testOtherSeed() throws Exception {
+        File a = new File(generate(42, false), "corpus_00000.xml");
+        File b = new File(generate(43, false), "corpus_00000.xml");
+        assertFalse(Arrays.equals(Files.readAllBytes(a.toPath()), Files.readAllBytes(b.toPath())));
+    }
+
+    /**
+     * Instances leave out parameters and later nodes add parameters, which
+     * become columns in the middle of the file.
+     */
+    @Test
+    public void testVariedSchema() throws Exception {
+        File corpus = generate(42, false);
+        String document = new String(Files.readAllBytes(
+                new File(corpus, "corpus_00000.xml").toPath()), StandardCharsets.UTF_8);
+        String[] nodes = document.split("<spec:syndata ");
+        assertEquals(5, nodes.length);
+
+        String late = "<PARAM" + PARAMETERS + ">";
+        assertFalse(nodes[1].contains(late));
+        assertTrue(document.contains(late));
+
+        String[] instances = nodes[1].split("<class>");
+        int sparse = 0;
+        for (int i = 1; i < instances.length; i++) {
+            for (int p = 1; p < PARAMETERS; p++) {
+                if (!instances[i].contains("<PARAM" + p + ">")) {
+                    sparse++;
+                }
+            }
+        }
+        assertTrue(sparse > 0);
+
+        File output = tmp.newFolder();
+        ParserTestSupport.newParser(corpus, output).parse();
+        String cells = ParserTestSupport.readOutput(output).get("CELL.csv");
+        assertTrue(cells.substring(0, cells.indexOf('\n')).contains(",PARAM" + PARAMETERS));
+    }
+
+    private File generate(long seed, boolean gzip) throws Exception {
+        CorpusGenerator generator = new CorpusGenerator();
+        generator.setNodes(4);
+        generator.setMOClasses(3);
+        generator.setParameters(PARAMETERS);
+        generator.setInstances(4);
+        generator.setSeed(seed);
+        generator.setVariation(30);
+
+        File corpus = tmp.newFolder();
+        generator.generate(corpus, 3, gzip);
+        return corpus;
+    }
+
+    private static void assertSameFiles(File a, File b) throws Exception {
+        String[] names = a.list();
+        Arrays.sort(names);
+        assertEquals(3, names.length);
+        for (String name : names) {
+            assertArrayEquals(name, Files.readAllBytes(new File(a, name).toPath()),
+                    Files.readAllBytes(new File(b, name).toPath()));
+        }
+    }
+}
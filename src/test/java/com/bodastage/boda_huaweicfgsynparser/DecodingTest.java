@@ -0,0 +1,127 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Values of ISO-8859-1 documents are decoded as the XML declaration says,
+ * whatever the default charset of the JVM. The build runs this test a second
+ * time with a default charset other than ISO-8859-1.
+ */
+public class DecodingTest {
+
+    /**
+     * EXTRA of the second CELL of ne1.xml and its comment.
+     */
+    private static final String VALUE = "Caf\u00e9";
+
+    private static final String TRANSLATED_VALUE = "Ex \u00e9";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File fixture;
+
+    /**
+     * ne1.xml without the entity references and CDATA section the scanner
+     * hands over to the cursor engine.
+     */
+    private File scannable;
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = new File(ParserTestSupport.copyFixture(tmp), "ne1.xml");
+
+        String document = new String(Files.readAllBytes(fixture.toPath()),
+                StandardCharsets.ISO_8859_1);
+        int start = document.indexOf("<P1>");
+        int end = document.indexOf("</P2>") + "</P2>".length();
+        assertTrue(start > 0 && end > start);
+        scannable = new File(tmp.newFolder(), "ne1.xml");
+        Files.write(scannable.toPath(), (document.substring(0, start)
+                + "<P1>ab</P1><P2>z</P2>" + document.substring(end))
+                .getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void testCursorEngine() throws Exception {
+        assertDecoded(ParserEngines.CURSOR);
+    }
+
+    @Test
+    public void testEventEngine() throws Exception {
+        assertDecoded(ParserEngines.EVENT);
+    }
+
+    @Test
+    public void testScannerEngine() throws Exception {
+        assertDecoded(ParserEngines.SCANNER);
+    }
+
+    private void assertDecoded(int engine) throws Exception {
+        for (File f : new File[]{fixture, scannable}) {
+            assertEquals(VALUE + "|" + TRANSLATED_VALUE, parseRecord(f, engine));
+            assertEquals(encoded(TRANSLATED_VALUE), parseCsvValue(f, engine));
+        }
+    }
+
+    /**
+     * Value and translated value of EXTRA in the MORecord of the second CELL.
+     */
+    private static String parseRecord(File f, int engine) throws Exception {
+        final List<String> values = new ArrayList<String>();
+        HuaweiCfgSynParser parser = new HuaweiCfgSynParser();
+        parser.setParserState(ParserStates.EXTRACTING_PARAMETERS_AND_VALUES);
+        parser.setEngine(engine);
+        parser.setRecordHandler(new MORecordHandler() {
+            @Override
+            public void onRecord(MORecord record) {
+                int index = record.indexOf("EXTRA");
+                if (record.getMO().equals("CELL") && index >= 0
+                        && record.getValue(index) != null) {
+                    values.add(record.getValue(index) + "|" + record.getTranslatedValue(index));
+                }
+            }
+        });
+        parser.parseInput(ParserInput.forFile(f.toPath(), ParserInput.PLAIN));
+        assertEquals(1, values.size());
+        return values.get(0);
+    }
+
+    /**
+     * EXTRA of the second row of CELL.csv, read with the default charset the
+     * csv files are written in.
+     */
+    private String parseCsvValue(File f, int engine) throws Exception {
+        File output = tmp.newFolder();
+        HuaweiCfgSynParser parser = ParserTestSupport.newParser(f, output);
+        parser.setEngine(engine);
+        parser.parse();
+
+        String csv = new String(Files.readAllBytes(new File(output, "CELL.csv").toPath()),
+                Charset.defaultCharset());
+        String[] rows = csv.split(System.lineSeparator());
+        assertEquals(3, rows.length);
+        assertTrue(rows[0].endsWith(",EXTRA"));
+        return rows[2].substring(rows[2].lastIndexOf(',') + 1);
+    }
+
+    /**
+     * A value as it reads back from a file in the default charset, with the
+     * characters the charset cannot encode replaced.
+     */
+    private static String encoded(String value) {
+        Charset charset = Charset.defaultCharset();
+        return new String(value.getBytes(charset), charset);
+    }
+}
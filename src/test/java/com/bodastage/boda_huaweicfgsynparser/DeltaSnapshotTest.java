@@ -0,0 +1,153 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.io.FileReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Rows written by a delta run against the snapshot of the previous run.
+ */
+public class DeltaSnapshotTest {
+
+    private static final String HEADER = "FILENAME,DATETIME,NODENAME,CELLID,NAME";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File output;
+
+    private File snapshot;
+
+    @Before
+    public void setUp() throws Exception {
+        output = tmp.newFolder();
+        snapshot = new File(tmp.getRoot(), "snapshot");
+    }
+
+    @Test
+    public void testFirstRunAddsAll() throws Exception {
+        DeltaSnapshot delta = apply("CELL",
+                "a.xml,2019-01-01,NE1,1,one",
+                "a.xml,2019-01-01,NE1,2,two");
+
+        assertEquals(2, delta.getAdded());
+        assertEquals(Arrays.asList("CHANGE," + HEADER,
+                "ADDED,a.xml,2019-01-01,NE1,1,one",
+                "ADDED,a.xml,2019-01-01,NE1,2,two"), read("CELL"));
+    }
+
+    @Test
+    public void testAddedModifiedRemoved() throws Exception {
+        apply("CELL",
+                "a.xml,2019-01-01,NE1,1,one",
+                "a.xml,2019-01-01,NE1,2,two",
+                "a.xml,2019-01-01,NE1,3,three");
+
+        //DATETIME and FILENAME are not compared
+        DeltaSnapshot delta = apply("CELL",
+                "b.xml,2019-01-02,NE1,1,one",
+                "b.xml,2019-01-02,NE1,2,TWO",
+                "b.xml,2019-01-02,NE1,4,four");
+
+        assertEquals(1, delta.getAdded());
+        assertEquals(1, delta.getModified());
+        assertEquals(1, delta.getRemoved());
+        assertEquals(1, delta.getUnchanged());
+        assertEquals(Arrays.asList("CHANGE," + HEADER,
+                "MODIFIED,b.xml,2019-01-02,NE1,2,TWO",
+                "ADDED,b.xml,2019-01-02,NE1,4,four",
+                "REMOVED,,,NE1,3,"), read("CELL"));
+    }
+
+    @Test
+    public void testRemovedMO() throws Exception {
+        apply("CELL", "a.xml,2019-01-01,NE1,1,one");
+
+        DeltaSnapshot delta = new DeltaSnapshot(snapshot);
+        delta.apply(output, Collections.<String>emptyList());
+
+        assertEquals(1, delta.getRemoved());
+        assertEquals(Arrays.asList("CHANGE,NODENAME,CELLID", "REMOVED,NE1,1"), read("CELL"));
+    }
+
+    @Test
+    public void testQuotedLineBreak() throws Exception {
+        apply("CELL",
+                "a.xml,2019-01-01,NE1,1,\"two\nlines\"",
+                "a.xml,2019-01-01,NE1,2,two");
+
+        DeltaSnapshot delta = apply("CELL",
+                "a.xml,2019-01-01,NE1,1,\"two\nlines\"",
+                "a.xml,2019-01-01,NE1,2,\"three\r\nlines\"");
+
+        assertEquals(0, delta.getAdded());
+        assertEquals(1, delta.getModified());
+        assertEquals(1, delta.getUnchanged());
+        assertEquals(Arrays.asList("CHANGE," + HEADER,
+                "MODIFIED,a.xml,2019-01-01,NE1,2,\"three\r\nlines\""), read("CELL"));
+    }
+
+    @Test
+    public void testKeyFile() throws Exception {
+        File keys = tmp.newFile();
+        Files.write(keys.toPath(), "CELL:NAME\n".getBytes(StandardCharsets.UTF_8));
+
+        DeltaSnapshot delta = new DeltaSnapshot(snapshot);
+        delta.loadKeys(keys.getPath());
+        write("CELL", "a.xml,2019-01-01,NE1,1,one");
+        delta.apply(output, Collections.singletonList("CELL"));
+
+        //Keyed by NAME, a changed CELLID is a modification
+        delta = new DeltaSnapshot(snapshot);
+        delta.loadKeys(keys.getPath());
+        write("CELL", "a.xml,2019-01-01,NE1,9,one");
+        delta.apply(output, Collections.singletonList("CELL"));
+
+        assertEquals(1, delta.getModified());
+        assertEquals(0, delta.getAdded());
+        assertEquals(0, delta.getRemoved());
+        for (String name : output.list()) {
+            assertFalse(name, name.endsWith(".tmp"));
+        }
+    }
+
+    private DeltaSnapshot apply(String mo, String... rows) throws Exception {
+        write(mo, rows);
+        DeltaSnapshot delta = new DeltaSnapshot(snapshot);
+        delta.apply(output, Collections.singletonList(mo));
+        return delta;
+    }
+
+    private void write(String mo, String... rows) throws Exception {
+        StringBuilder sb = new StringBuilder(HEADER).append('\n');
+        for (String row : rows) {
+            sb.append(row).append('\n');
+        }
+        Files.write(new File(output, mo + ".csv").toPath(),
+                sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<String> read(String mo) throws Exception {
+        List<String> rows = new ArrayList<String>();
+        CSVRecordReader reader = new CSVRecordReader(new FileReader(new File(output, mo + ".csv")));
+        try {
+            for (String row; (row = reader.readRecord()) != null;) {
+                rows.add(row);
+            }
+        } finally {
+            reader.close();
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,55 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The XML parsing engines write the same csv files.
+ */
+public class EngineOutputTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File input;
+
+    private Map<String, String> expected;
+
+    @Before
+    public void setUp() throws Exception {
+        input = ParserTestSupport.copyFixture(tmp);
+        expected = ParserTestSupport.parseDefault(input, tmp);
+    }
+
+    private Map<String, String> parse(int engine) throws Exception {
+        File output = tmp.newFolder();
+        HuaweiCfgSynParser parser = ParserTestSupport.newParser(input, output);
+        parser.setEngine(engine);
+        parser.parse();
+        return ParserTestSupport.readOutput(output);
+    }
+
+    @Test
+    public void testCursorEngine() throws Exception {
+        assertEquals(expected, parse(ParserEngines.CURSOR));
+    }
+
+    @Test
+    public void testEventEngine() throws Exception {
+        assertEquals(expected, parse(ParserEngines.EVENT));
+    }
+
+    /**
+     * ne1.xml has a CDATA section, which makes the scanner fall back to the
+     * cursor engine for that file.
+     */
+    @Test
+    public void testScannerEngine() throws Exception {
+        assertEquals(expected, parse(ParserEngines.SCANNER));
+    }
+}
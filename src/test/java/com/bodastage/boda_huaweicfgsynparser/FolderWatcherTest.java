@@ -0,0 +1,211 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Watching a directory the syndata fixture files are dropped into.
+ */
+public class FolderWatcherTest {
+
+    private static final String PERIOD = "[0-9]{8}_[0-9]{6}";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File fixture;
+
+    private File input;
+
+    private File output;
+
+    @Before
+    public void setUp() throws Exception {
+        fixture = ParserTestSupport.copyFixture(tmp);
+        input = tmp.newFolder();
+        output = tmp.newFolder();
+    }
+
+    /**
+     * Files dropped in one at a time are written to a hidden period directory
+     * that stop() publishes, and are not parsed again after a restart.
+     */
+    @Test
+    public void testWatchAndRestart() throws Exception {
+        Files.write(new File(input, "ne7.xml.part").toPath(), junk());
+        Files.write(new File(input, "ne8.xml.tmp").toPath(), junk());
+        Files.write(new File(input, ".ne9.xml").toPath(), junk());
+
+        HuaweiCfgSynParser parser = new HuaweiCfgSynParser();
+        Watch watch = new Watch(parser, 0);
+        String[] names = {"ne1.xml", "ne2.xml", "ne3.xml"};
+        for (int i = 0; i < names.length; i++) {
+            drop(names[i], names[i]);
+            waitForFiles(parser, i + 1);
+        }
+
+        String[] files = output.list();
+        assertEquals(1, files.length);
+        assertTrue(files[0], files[0].matches("\\." + PERIOD + "\\.tmp"));
+        String period = files[0].substring(1, files[0].length() - ".tmp".length());
+
+        watch.stop();
+        assertEquals(0, parser.getMetrics().getFilesFailed());
+        files = output.list();
+        Arrays.sort(files);
+        assertEquals(Arrays.asList(".watched", period), Arrays.asList(files));
+        assertEquals(parseDefault(names), ParserTestSupport.readOutput(new File(output, period)));
+        assertEquals(Arrays.asList(names), readWatched());
+
+        //Only the file added after the restart is parsed
+        parser = new HuaweiCfgSynParser();
+        watch = new Watch(parser, 0);
+        drop("ne3.xml", "ne4.xml");
+        waitForFiles(parser, 1);
+        Thread.sleep(1500);
+        watch.stop();
+
+        assertEquals(1, parser.getMetrics().getFilesCompleted());
+        assertEquals(Arrays.asList("ne1.xml", "ne2.xml", "ne3.xml", "ne4.xml"), readWatched());
+        files = output.list();
+        Arrays.sort(files);
+        assertEquals(3, files.length);
+        assertEquals(period, files[1]);
+        assertTrue(files[2], files[2].matches(PERIOD));
+        String cells = ParserTestSupport.readOutput(new File(output, files[2])).get("CELL.csv");
+        assertTrue(cells, cells.contains(System.lineSeparator() + "ne4.xml,"));
+        assertFalse(cells, cells.contains("ne3.xml"));
+    }
+
+    /**
+     * A file still being written is only parsed once it has not changed for
+     * the settle time.
+     */
+    @Test
+    public void testSettle() throws Exception {
+        byte[] data = Files.readAllBytes(new File(fixture, "ne1.xml").toPath());
+        File f = new File(input, "ne1.xml");
+
+        HuaweiCfgSynParser parser = new HuaweiCfgSynParser();
+        Watch watch = new Watch(parser, 2);
+        Files.write(f.toPath(), Arrays.copyOf(data, data.length / 2));
+        Thread.sleep(1000);
+        Files.write(f.toPath(), Arrays.copyOfRange(data, data.length / 2, data.length),
+                StandardOpenOption.APPEND);
+        Thread.sleep(1000);
+        assertEquals(0, parser.getMetrics().getFilesCompleted()
+                + parser.getMetrics().getFilesFailed());
+
+        waitForFiles(parser, 1);
+        watch.stop();
+        assertEquals(1, parser.getMetrics().getFilesCompleted());
+        assertEquals(0, parser.getMetrics().getFilesFailed());
+        assertEquals(Arrays.asList("ne1.xml"), readWatched());
+    }
+
+    /**
+     * Copy a fixture file into the input directory the way a transfer does,
+     * under a partial name first.
+     */
+    private void drop(String fixtureName, String name) throws Exception {
+        File part = new File(input, name + ".part");
+        Files.copy(new File(fixture, fixtureName).toPath(), part.toPath());
+        Files.move(part.toPath(), new File(input, name).toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static byte[] junk() {
+        return "not xml".getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void waitForFiles(HuaweiCfgSynParser parser, int files) throws Exception {
+        long end = System.currentTimeMillis() + 30000;
+        while (parser.getMetrics().getFilesCompleted()
+                + parser.getMetrics().getFilesFailed() < files) {
+            if (System.currentTimeMillis() > end) {
+                fail("Parsed " + parser.getMetrics().getFilesCompleted() + " of " + files);
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    /**
+     * Parse the fixture files in the given order.
+     */
+    private Map<String, String> parseDefault(String... names) throws Exception {
+        List<String> paths = new ArrayList<String>();
+        for (String name : names) {
+            paths.add(new File(fixture, name).getPath());
+        }
+        File list = tmp.newFile();
+        Files.write(list.toPath(), paths, StandardCharsets.UTF_8);
+
+        InputFinder finder = new InputFinder();
+        finder.setInputList(list.getPath());
+        File directory = tmp.newFolder();
+        HuaweiCfgSynParser parser = ParserTestSupport.newParser(fixture, directory);
+        parser.setInputFinder(finder);
+        parser.parse();
+        return ParserTestSupport.readOutput(directory);
+    }
+
+    private List<String> readWatched() throws Exception {
+        List<String> names = new ArrayList<String>();
+        for (String line : Files.readAllLines(new File(output, ".watched").toPath(),
+                StandardCharsets.UTF_8)) {
+            names.add(line.substring(0, line.indexOf('\t')));
+        }
+        return names;
+    }
+
+    /**
+     * A watcher running on its own thread.
+     */
+    private class Watch {
+
+        private final FolderWatcher watcher;
+
+        private final Thread thread;
+
+        private volatile Exception failure = null;
+
+        Watch(HuaweiCfgSynParser parser, int settleSeconds) {
+            watcher = new FolderWatcher(parser, input.toPath(), output.toPath());
+            watcher.setSettleSeconds(settleSeconds);
+            thread = new Thread("watcher") {
+                @Override
+                public void run() {
+                    try {
+                        watcher.run();
+                    } catch (Exception e) {
+                        failure = e;
+                    }
+                }
+            };
+            thread.start();
+        }
+
+        void stop() throws Exception {
+            watcher.stop(30);
+            thread.join(30000);
+            assertFalse(thread.isAlive());
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
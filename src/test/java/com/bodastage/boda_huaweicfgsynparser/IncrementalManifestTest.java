@@ -0,0 +1,334 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.io.FileReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Change detection of the incremental manifest and incremental runs on the
+ * syndata fixture.
+ */
+public class IncrementalManifestTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File output;
+
+    private File input;
+
+    @Before
+    public void setUp() throws Exception {
+        output = tmp.newFolder();
+        input = tmp.newFile("ne.xml");
+        Files.write(input.toPath(), "<a>content</a>".getBytes(StandardCharsets.UTF_8));
+        input.setLastModified(1000000000000L);
+    }
+
+    @Test
+    public void testUnchangedBySizeAndTime() throws Exception {
+        saveManifest(true);
+
+        IncrementalManifest manifest = IncrementalManifest.open(output, "discover");
+        IncrementalManifest.Entry entry = manifest.fingerprint(forFile(input));
+        assertTrue(manifest.isUnchanged(entry));
+    }
+
+    @Test
+    public void testTouchedInputUnchangedByHash() throws Exception {
+        saveManifest(true);
+        input.setLastModified(2000000000000L);
+
+        IncrementalManifest manifest = IncrementalManifest.open(output, "discover");
+        assertTrue(manifest.isUnchanged(manifest.fingerprint(forFile(input))));
+    }
+
+    @Test
+    public void testChangedContentDetectedByHash() throws Exception {
+        saveManifest(true);
+        Files.write(input.toPath(), "<a>CONTENT</a>".getBytes(StandardCharsets.UTF_8));
+        input.setLastModified(2000000000000L);
+
+        IncrementalManifest manifest = IncrementalManifest.open(output, "discover");
+        assertFalse(manifest.isUnchanged(manifest.fingerprint(forFile(input))));
+    }
+
+    @Test
+    public void testChangedSize() throws Exception {
+        saveManifest(true);
+        Files.write(input.toPath(), "<a>longer content</a>".getBytes(StandardCharsets.UTF_8));
+        input.setLastModified(1000000000000L);
+
+        IncrementalManifest manifest = IncrementalManifest.open(output, "discover");
+        assertFalse(manifest.isUnchanged(manifest.fingerprint(forFile(input))));
+    }
+
+    @Test
+    public void testFailedInputParsedAgain() throws Exception {
+        saveManifest(false);
+
+        IncrementalManifest manifest = IncrementalManifest.open(output, "discover");
+        assertFalse(manifest.isUnchanged(manifest.fingerprint(forFile(input))));
+    }
+
+    @Test
+    public void testOtherSettingsIgnored() throws Exception {
+        saveManifest(true);
+
+        IncrementalManifest manifest = IncrementalManifest.open(output, "parameters=x");
+        assertFalse(manifest.isUnchanged(manifest.fingerprint(forFile(input))));
+    }
+
+    @Test
+    public void testChangedOutputIgnored() throws Exception {
+        saveManifest(true);
+        Files.write(new File(output, "CELL.csv").toPath(),
+                "FILENAME\nne.xml\nextra\n".getBytes(StandardCharsets.UTF_8));
+
+        IncrementalManifest manifest = IncrementalManifest.open(output, "discover");
+        assertFalse(manifest.isUnchanged(manifest.fingerprint(forFile(input))));
+        assertTrue(manifest.getOutputs().isEmpty());
+    }
+
+    @Test
+    public void testRowRuns() throws Exception {
+        File other = tmp.newFile("other.xml");
+        File gone = tmp.newFile("gone.xml");
+        IncrementalManifest manifest = IncrementalManifest.open(output, "discover");
+        manifest.add(manifest.fingerprint(forFile(input)), rowCounts(2), true);
+        manifest.add(manifest.fingerprint(forFile(other)), rowCounts(3), true);
+        manifest.add(manifest.fingerprint(forFile(gone)), rowCounts(1), true);
+        manifest.save(new HashMap<String, ColumnRegistry>(),
+                new HashMap<String, Map<String, ColumnRegistry>>(),
+                Collections.<String>emptyList());
+
+        //The second input changed and the third is gone
+        manifest = IncrementalManifest.open(output, "discover");
+        IncrementalManifest.Entry entry = manifest.fingerprint(forFile(input));
+        assertTrue(manifest.isUnchanged(entry));
+        manifest.keep(entry);
+
+        assertTrue(manifest.dropsRows("CELL"));
+        assertFalse(manifest.dropsRows("TRX"));
+        assertArrayEquals(new int[]{2, -4}, manifest.getRowRuns("CELL"));
+    }
+
+    @Test
+    public void testUnchangedRunKeepsFiles() throws Exception {
+        File fixture = ParserTestSupport.copyFixture(tmp);
+        Map<String, String> expected = ParserTestSupport.parseDefault(fixture, tmp);
+
+        File out = tmp.newFolder();
+        parseIncrementally(fixture, out, 1);
+        assertEquals(expected, ParserTestSupport.readOutput(out));
+        for (File f : out.listFiles()) {
+            f.setLastModified(1000000000000L);
+        }
+
+        parseIncrementally(fixture, out, 1);
+        assertEquals(expected, ParserTestSupport.readOutput(out));
+        for (File f : out.listFiles()) {
+            if (f.isFile()) {
+                assertEquals(f.getName(), 1000000000000L, f.lastModified());
+            }
+        }
+    }
+
+    @Test
+    public void testChangedInput() throws Exception {
+        assertChangedInput(1);
+    }
+
+    @Test
+    public void testChangedInputOnThreads() throws Exception {
+        assertChangedInput(2);
+    }
+
+    /**
+     * Change a value of one input, then remove another. The rows of the
+     * changed input follow the rows that were kept, so the rows are compared
+     * in any order and without DATETIME, which kept rows have from the run
+     * that wrote them.
+     */
+    private void assertChangedInput(int threads) throws Exception {
+        File fixture = ParserTestSupport.copyFixture(tmp);
+        File out = tmp.newFolder();
+        parseIncrementally(fixture, out, threads);
+
+        File ne3 = new File(fixture, "ne3.xml");
+        String document = new String(Files.readAllBytes(ne3.toPath()), StandardCharsets.UTF_8);
+        Files.write(ne3.toPath(), document.replace("<P1>v3</P1>", "<P1>v4</P1>")
+                .getBytes(StandardCharsets.UTF_8));
+        parseIncrementally(fixture, out, threads);
+
+        File expected = tmp.newFolder();
+        ParserTestSupport.newParser(fixture, expected).parse();
+        Map<String, List<String>> rows = readRows(out);
+        assertEquals(readRows(expected), rows);
+        assertTrue(rows.get("NE.csv").toString().contains("v4"));
+
+        //The rows of a removed input are dropped and its columns kept
+        assertTrue(new File(fixture, "ne1.xml").delete());
+        parseIncrementally(fixture, out, threads);
+        Map<String, List<String>> kept = readRows(out);
+        for (Map.Entry<String, List<String>> me : rows.entrySet()) {
+            List<String> remaining = new ArrayList<String>();
+            for (String row : me.getValue()) {
+                if (!row.startsWith("ne1.xml,")) {
+                    remaining.add(row);
+                }
+            }
+            assertEquals(me.getKey(), remaining, kept.get(me.getKey()));
+        }
+
+        for (String name : out.list()) {
+            assertFalse(name, name.endsWith(".tmp") || name.endsWith(".spill"));
+        }
+    }
+
+    @Test
+    public void testChangedInputDateTimes() throws Exception {
+        assertChangedInputDateTimes(1);
+    }
+
+    @Test
+    public void testChangedInputDateTimesOnThreads() throws Exception {
+        assertChangedInputDateTimes(2);
+    }
+
+    /**
+     * Change a value and the footer date time of one input. The rows are
+     * those of a full run, except that the kept rows have the DATETIME of the
+     * first run and the rows of the changed input the date time of its
+     * footer, where a full run has the last date time on every row.
+     */
+    private void assertChangedInputDateTimes(int threads) throws Exception {
+        File fixture = ParserTestSupport.copyFixture(tmp);
+        File out = tmp.newFolder();
+        parseIncrementally(fixture, out, threads);
+        Map<String, String> firstDateTimes = readDateTimes(out);
+        String first = firstDateTimes.values().iterator().next();
+        assertEquals(Collections.singleton(first), new TreeSet<String>(firstDateTimes.values()));
+
+        File ne3 = new File(fixture, "ne3.xml");
+        String document = new String(Files.readAllBytes(ne3.toPath()), StandardCharsets.UTF_8);
+        Files.write(ne3.toPath(), document.replace("<P1>v3</P1>", "<P1>v4</P1>")
+                .replace("2090-10-01T12:00:00", "2092-02-02T00:00:00")
+                .getBytes(StandardCharsets.UTF_8));
+        parseIncrementally(fixture, out, threads);
+
+        File expected = tmp.newFolder();
+        ParserTestSupport.newParser(fixture, expected).parse();
+        assertEquals(readRows(expected), readRows(out));
+        assertEquals(1, new TreeSet<String>(readDateTimes(expected).values()).size());
+
+        Map<String, String> dateTimes = readDateTimes(out);
+        assertTrue(dateTimes.containsKey("NE.csv:ne3.xml"));
+        for (Map.Entry<String, String> me : dateTimes.entrySet()) {
+            assertEquals(me.getKey(), me.getKey().endsWith(":ne3.xml")
+                    ? "2092-02-02T00:00:00" : first, me.getValue());
+        }
+    }
+
+    private void parseIncrementally(File fixture, File out, int threads) throws Exception {
+        HuaweiCfgSynParser parser = ParserTestSupport.newParser(fixture, out);
+        parser.setIncremental(true);
+        parser.setThreads(threads);
+        parser.parse();
+    }
+
+    /**
+     * Read the header and the sorted rows of each csv file, leaving out the
+     * DATETIME column.
+     */
+    private static Map<String, List<String>> readRows(File directory) throws Exception {
+        Map<String, List<String>> files = new LinkedHashMap<String, List<String>>();
+        for (String name : new TreeSet<String>(Arrays.asList(directory.list()))) {
+            File f = new File(directory, name);
+            if (!f.isFile() || name.startsWith(".") || name.equals("fileFooter.csv")) {
+                continue;
+            }
+
+            List<String> rows = new ArrayList<String>();
+            CSVRecordReader reader = new CSVRecordReader(new FileReader(f));
+            try {
+                for (String row; (row = reader.readRecord()) != null;) {
+                    rows.add(row.replaceFirst("^([^,]*),[^,]*,", "$1,,"));
+                }
+            } finally {
+                reader.close();
+            }
+            Collections.sort(rows.subList(1, rows.size()));
+            files.put(name, rows);
+        }
+        return files;
+    }
+
+    /**
+     * Read the DATETIME of the rows of each input in each csv file.
+     *
+     * @return Map DATETIME by csv file and FILENAME
+     */
+    private static Map<String, String> readDateTimes(File directory) throws Exception {
+        Map<String, String> dateTimes = new LinkedHashMap<String, String>();
+        List<String> fields = new ArrayList<String>();
+        for (String name : new TreeSet<String>(Arrays.asList(directory.list()))) {
+            File f = new File(directory, name);
+            if (!f.isFile() || name.startsWith(".") || name.equals("fileFooter.csv")) {
+                continue;
+            }
+
+            CSVRecordReader reader = new CSVRecordReader(new FileReader(f));
+            try {
+                reader.readRecord();
+                for (String row; (row = reader.readRecord()) != null;) {
+                    DeltaSnapshot.splitFields(row, fields);
+                    String key = name + ":" + fields.get(0);
+                    String dateTime = dateTimes.put(key, fields.get(1));
+                    assertTrue(key, dateTime == null || dateTime.equals(fields.get(1)));
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return dateTimes;
+    }
+
+    private void saveManifest(boolean complete) throws Exception {
+        Files.write(new File(output, "CELL.csv").toPath(),
+                "FILENAME\nne.xml\n".getBytes(StandardCharsets.UTF_8));
+
+        IncrementalManifest manifest = IncrementalManifest.open(output, "discover");
+        manifest.add(manifest.fingerprint(forFile(input)), rowCounts(1), complete);
+        manifest.save(new HashMap<String, ColumnRegistry>(),
+                new HashMap<String, Map<String, ColumnRegistry>>(),
+                Collections.singletonList("CELL"));
+    }
+
+    private static Map<String, Integer> rowCounts(int rows) {
+        Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+        counts.put("CELL", rows);
+        return counts;
+    }
+
+    private static ParserInput forFile(File f) {
+        return ParserInput.forFile(f.toPath(), ParserInput.PLAIN);
+    }
+}
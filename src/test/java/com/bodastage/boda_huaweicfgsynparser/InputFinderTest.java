@@ -0,0 +1,95 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Names of the files found in subdirectories.
+ */
+public class InputFinderTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File input;
+
+    /**
+     * Copies of ne1.xml in two subdirectories, next to the fixture files.
+     */
+    @Before
+    public void setUp() throws Exception {
+        input = ParserTestSupport.copyFixture(tmp);
+        for (String directory : new String[]{"a", "b"}) {
+            File sub = new File(input, directory);
+            sub.mkdir();
+            Files.copy(new File(input, "ne1.xml").toPath(), new File(sub, "ne1.xml").toPath());
+        }
+    }
+
+    @Test
+    public void testFileNamesAtOneLevel() throws Exception {
+        assertEquals(new TreeSet<String>(Arrays.asList("ne1.xml", "ne2.xml", "ne3.xml")),
+                parseFileNames(new InputFinder(), 1));
+    }
+
+    @Test
+    public void testSubdirectoryPaths() throws Exception {
+        InputFinder finder = new InputFinder();
+        finder.setMaxDepth(0);
+        assertEquals(new TreeSet<String>(Arrays.asList("a/ne1.xml", "b/ne1.xml",
+                "ne1.xml", "ne2.xml", "ne3.xml")), parseFileNames(finder, 1));
+    }
+
+    @Test
+    public void testSubdirectoryPathsOnThreads() throws Exception {
+        InputFinder finder = new InputFinder();
+        finder.setMaxDepth(2);
+        assertEquals(new TreeSet<String>(Arrays.asList("a/ne1.xml", "b/ne1.xml",
+                "ne1.xml", "ne2.xml", "ne3.xml")), parseFileNames(finder, 2));
+    }
+
+    /**
+     * Listed files keep their name and the files of listed directories are
+     * named below them.
+     */
+    @Test
+    public void testInputList() throws Exception {
+        File list = tmp.newFile();
+        Files.write(list.toPath(), Arrays.asList(new File(input, "a/ne1.xml").getPath(),
+                new File(input, "b").getPath(), input.getPath()), StandardCharsets.UTF_8);
+
+        InputFinder finder = new InputFinder();
+        finder.setInputList(list.getPath());
+        finder.setMaxDepth(2);
+        assertEquals("ne1.xml", finder.getName(null, new File(input, "a/ne1.xml").toPath()));
+        assertEquals("ne1.xml", finder.getName(null, new File(input, "b/ne1.xml").toPath()));
+        assertEquals("ne2.xml", finder.getName(null, new File(input, "ne2.xml").toPath()));
+    }
+
+    /**
+     * Parse the input and collect the FILENAME column of NE.csv.
+     */
+    private Set<String> parseFileNames(InputFinder finder, int threads) throws Exception {
+        File output = tmp.newFolder();
+        HuaweiCfgSynParser parser = ParserTestSupport.newParser(input, output);
+        parser.setInputFinder(finder);
+        parser.setThreads(threads);
+        parser.parse();
+
+        Set<String> names = new TreeSet<String>();
+        for (String row : ParserTestSupport.readOutput(output).get("NE.csv").split("\n")) {
+            names.add(row.substring(0, row.indexOf(',')));
+        }
+        names.remove("FILENAME");
+        return names;
+    }
+}
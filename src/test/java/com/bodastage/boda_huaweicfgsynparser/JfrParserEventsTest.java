@@ -0,0 +1,64 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Only the events a recording enables are recorded.
+ */
+public class JfrParserEventsTest {
+
+    private static final String PREFIX = "com.bodastage.boda_huaweicfgsynparser.";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testEnabledEvents() throws Exception {
+        assertTrue(ParserEvents.get() instanceof JfrParserEvents);
+        File input = ParserTestSupport.copyFixture(tmp);
+
+        //No events are created without a recording
+        ParserTestSupport.parseDefault(input, tmp);
+
+        File dump = tmp.newFile("parse.jfr");
+        Recording recording = new Recording();
+        try {
+            recording.enable(PREFIX + "SchemaGrowth");
+            recording.enable(PREFIX + "FileParse");
+            recording.disable(PREFIX + "WriterOpen");
+            recording.disable(PREFIX + "SlowRow");
+            recording.start();
+            ParserTestSupport.parseDefault(input, tmp);
+            recording.stop();
+            recording.dump(dump.toPath());
+        } finally {
+            recording.close();
+        }
+
+        List<String> growth = new ArrayList<String>();
+        int files = 0;
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump.toPath())) {
+            String name = event.getEventType().getName();
+            if (name.equals(PREFIX + "SchemaGrowth")) {
+                growth.add(event.getString("mo") + "." + event.getString("parameter"));
+            } else if (name.equals(PREFIX + "FileParse")) {
+                files++;
+            } else {
+                assertTrue(name, !name.startsWith(PREFIX));
+            }
+        }
+        assertTrue(growth.toString(), growth.contains("CELL.EXTRA"));
+        assertTrue(growth.toString(), growth.contains("TRX.FREQ"));
+        assertEquals(6, files);
+    }
+}
@@ -0,0 +1,173 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * MO instances of the syndata fixture delivered to a record handler instead
+ * of the csv files.
+ */
+public class MORecordHandlerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File input;
+
+    private File output;
+
+    @Before
+    public void setUp() throws Exception {
+        input = ParserTestSupport.copyFixture(tmp);
+        output = tmp.newFolder();
+    }
+
+    /**
+     * A document parsed in one pass gives the parameters of each MO seen so
+     * far and no date time, as the footer follows the instances.
+     */
+    @Test
+    public void testParseInput() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        HuaweiCfgSynParser parser = ParserTestSupport.newParser(input, output);
+        parser.setParserState(ParserStates.EXTRACTING_PARAMETERS_AND_VALUES);
+        parser.setRecordHandler(handler);
+        parser.parseInput(ParserInput.forFile(new File(input, "ne1.xml").toPath(),
+                ParserInput.PLAIN));
+
+        assertEquals(Arrays.asList(
+                "CELL,ne1.xml,null,SITE1,NODE,NE=SITE1,BTS3900 V1,R1,-1"
+                + "[CELLID=1/One, NAME=a,b]",
+                "CELL,ne1.xml,null,SITE1,NODE,NE=SITE1,BTS3900 V1,R1,-1"
+                + "[CELLID=2, NAME=q\"uote, EXTRA=Caf\u00e9/Ex \u00e9]",
+                "NE,ne1.xml,null,SITE1,NODE,NE=SITE1,BTS3900 V1,R1,-1"
+                + "[P1=a&b A<c, P2=x<yz]"), handler.records);
+
+        MORecord cell = handler.copies.get(0);
+        assertEquals("One", cell.getTranslatedValue(0));
+        assertEquals("1", cell.getValue(0));
+        assertEquals("One", cell.getOutputValue(0));
+        assertNull(cell.getTranslatedValue(1));
+        assertEquals(-1, cell.indexOf("EXTRA"));
+        assertEquals(0, output.list().length);
+    }
+
+    /**
+     * The default two pass run gives every MO its full parameters, with null
+     * values for the parameters an instance does not have, and the date
+     * time of the last file footer like the DATETIME column.
+     */
+    @Test
+    public void testTwoPasses() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        HuaweiCfgSynParser parser = ParserTestSupport.newParser(input, output);
+        parser.setRecordHandler(handler);
+        parser.parse();
+
+        assertEquals(21, handler.records.size());
+        assertEquals(0, output.list().length);
+        for (String record : handler.records) {
+            if (record.startsWith("CELL,ne1.xml")) {
+                assertEquals("CELL,ne1.xml,2090-10-01T12:00:00,SITE1,NODE,NE=SITE1,BTS3900 V1,R1,"
+                        + "-1[CELLID=1/One, NAME=a,b, MORE=null, EXTRA=null]", record);
+                break;
+            }
+        }
+
+        int cells = 0;
+        for (MORecord record : handler.copies) {
+            assertEquals("2090-10-01T12:00:00", record.getDateTime());
+            if (record.getFileName().equals("ne2.xml")) {
+                //ne2.xml has a second spec:syndata
+                assertEquals(record.getFunctionType().equals("CME") ? "SITE2/CME" : "SITE2",
+                        record.getNodeName());
+                assertEquals("NE=" + record.getNodeName(), record.getSyndataId());
+                assertEquals("BTS3900 V2", record.getProductVersion());
+            }
+            if (record.getMO().equals("CELL")) {
+                assertEquals(Arrays.asList("CELLID", "NAME", "MORE", "EXTRA"), names(record));
+                cells++;
+            }
+        }
+        assertEquals(16, cells);
+    }
+
+    /**
+     * The parser passes the same record for every instance, so a record kept
+     * past the call shows the next instance while its copy does not.
+     */
+    @Test
+    public void testRecordReused() throws Exception {
+        final List<MORecord> kept = new ArrayList<MORecord>();
+        final List<MORecord> copies = new ArrayList<MORecord>();
+        HuaweiCfgSynParser parser = ParserTestSupport.newParser(input, output);
+        parser.setParserState(ParserStates.EXTRACTING_PARAMETERS_AND_VALUES);
+        parser.setRecordHandler(new MORecordHandler() {
+            @Override
+            public void onRecord(MORecord record) {
+                kept.add(record);
+                copies.add(record.copy());
+            }
+        });
+        parser.parseInput(ParserInput.forFile(new File(input, "ne1.xml").toPath(),
+                ParserInput.PLAIN));
+
+        assertEquals(3, kept.size());
+        assertSame(kept.get(0), kept.get(1));
+        assertSame(kept.get(0), kept.get(2));
+        assertEquals("NE", kept.get(0).getMO());
+        assertEquals("P1", kept.get(0).getParameterName(0));
+
+        assertNotSame(kept.get(0), copies.get(0));
+        assertEquals("CELL", copies.get(0).getMO());
+        assertEquals(Arrays.asList("CELLID", "NAME"), names(copies.get(0)));
+        assertEquals("1", copies.get(0).getValue(0));
+        assertEquals("2", copies.get(1).getValue(0));
+        assertEquals("Caf\u00e9", copies.get(1).getValue(2));
+        assertEquals("a&b A<c", copies.get(2).getValue(0));
+    }
+
+    private static List<String> names(MORecord record) {
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < record.getParameterCount(); i++) {
+            names.add(record.getParameterName(i));
+        }
+        return names;
+    }
+
+    /**
+     * Keeps a description and a copy of each record.
+     */
+    private static class RecordingHandler implements MORecordHandler {
+
+        final List<String> records = new ArrayList<String>();
+
+        final List<MORecord> copies = new ArrayList<MORecord>();
+
+        @Override
+        public void onRecord(MORecord record) {
+            List<String> values = new ArrayList<String>();
+            for (int i = 0; i < record.getParameterCount(); i++) {
+                String translated = record.getTranslatedValue(i);
+                values.add(record.getParameterName(i) + "=" + record.getValue(i)
+                        + (translated == null ? "" : "/" + translated));
+            }
+            records.add(record.getMO() + "," + record.getFileName() + ","
+                    + record.getDateTime() + "," + record.getNodeName() + ","
+                    + record.getFunctionType() + "," + record.getSyndataId() + ","
+                    + record.getProductVersion() + "," + record.getNERMVersion() + ","
+                    + record.getSyndataObjId() + values);
+            copies.add(record.copy());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Streams of the MO instances of the syndata fixture.
+ */
+public class MORecordStreamTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File input;
+
+    private List<String> expected;
+
+    @Before
+    public void setUp() throws Exception {
+        input = ParserTestSupport.copyFixture(tmp);
+        expected = new ArrayList<String>();
+        Stream<MORecord> stream = HuaweiCfgSynParser.stream(input.toPath());
+        for (Object record : stream.toArray()) {
+            expected.add(format((MORecord) record));
+        }
+        stream.close();
+    }
+
+    @Test
+    public void testOneRecordAtATime() throws Exception {
+        assertFalse(expected.isEmpty());
+
+        Stream<MORecord> stream = HuaweiCfgSynParser.stream(input.toPath());
+        List<String> records = new ArrayList<String>();
+        for (Iterator<MORecord> it = stream.iterator(); it.hasNext();) {
+            records.add(format(it.next()));
+        }
+        stream.close();
+        assertEquals(expected, records);
+    }
+
+    /**
+     * Stop handing over records one at a time in the middle of a document and
+     * take the rest in bulk.
+     */
+    @Test
+    public void testRemainingAfterFirstRecords() throws Exception {
+        final List<String> records = new ArrayList<String>();
+        Stream<MORecord> stream = HuaweiCfgSynParser.stream(input.toPath());
+        Spliterator<MORecord> spliterator = stream.spliterator();
+        for (int i = 0; i < 3; i++) {
+            spliterator.tryAdvance(new Consumer<MORecord>() {
+                @Override
+                public void accept(MORecord record) {
+                    records.add(format(record));
+                }
+            });
+        }
+        spliterator.forEachRemaining(new Consumer<MORecord>() {
+            @Override
+            public void accept(MORecord record) {
+                records.add(format(record));
+            }
+        });
+        stream.close();
+        assertEquals(expected, records);
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        Stream<MORecord> stream = HuaweiCfgSynParser.stream(input.toPath());
+        List<String> records = new ArrayList<String>();
+        for (Object record : stream.parallel().toArray()) {
+            records.add(format((MORecord) record));
+        }
+        stream.close();
+        assertEquals(expected, records);
+    }
+
+    @Test
+    public void testInputFinderDepth() throws Exception {
+        File nested = new File(input, "nested");
+        assertTrue(nested.mkdir());
+        Files.copy(new File(input, "ne1.xml").toPath(), new File(nested, "ne1.xml").toPath());
+
+        Stream<MORecord> stream = HuaweiCfgSynParser.stream(input.toPath());
+        assertEquals(expected.size(), stream.count());
+        stream.close();
+
+        InputFinder finder = new InputFinder();
+        finder.setMaxDepth(2);
+        stream = HuaweiCfgSynParser.stream(input.toPath(), finder);
+        long nestedRecords = HuaweiCfgSynParser.stream(new File(input, "ne1.xml").toPath()).count();
+        assertEquals(expected.size() + nestedRecords, stream.count());
+        stream.close();
+    }
+
+    @Test
+    public void testCloseAfterFirstRecord() throws Exception {
+        Stream<MORecord> stream = HuaweiCfgSynParser.stream(input.toPath());
+        assertEquals(expected.get(0), format(stream.findFirst().get()));
+        stream.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingPath() throws Exception {
+        HuaweiCfgSynParser.stream(new File(input, "missing").toPath());
+    }
+
+    private static String format(MORecord record) {
+        List<String> values = new ArrayList<String>();
+        for (int i = 0; i < record.getParameterCount(); i++) {
+            values.add(record.getParameterName(i) + "=" + record.getValue(i));
+        }
+        return record.getFileName() + "," + record.getNodeName() + "," + record.getMO() + values;
+    }
+}
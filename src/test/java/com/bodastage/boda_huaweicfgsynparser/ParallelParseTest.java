@@ -0,0 +1,53 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Parsing the files of a directory on a worker pool writes the same csv
+ * files as parsing them one after the other.
+ */
+public class ParallelParseTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File input;
+
+    private Map<String, String> expected;
+
+    @Before
+    public void setUp() throws Exception {
+        input = ParserTestSupport.copyFixture(tmp);
+        expected = ParserTestSupport.parseDefault(input, tmp);
+    }
+
+    private Map<String, String> parse(int threads, boolean singlePass) throws Exception {
+        File output = tmp.newFolder();
+        HuaweiCfgSynParser parser = ParserTestSupport.newParser(input, output);
+        parser.setThreads(threads);
+        parser.setSinglePass(singlePass);
+        parser.parse();
+        return ParserTestSupport.readOutput(output);
+    }
+
+    @Test
+    public void testTwoThreads() throws Exception {
+        assertEquals(expected, parse(2, false));
+    }
+
+    @Test
+    public void testMoreThreadsThanFiles() throws Exception {
+        assertEquals(expected, parse(8, false));
+    }
+
+    @Test
+    public void testSinglePassOnThreads() throws Exception {
+        assertEquals(expected, parse(3, true));
+    }
+}
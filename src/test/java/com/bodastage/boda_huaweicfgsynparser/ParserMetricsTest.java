@@ -0,0 +1,283 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Counters of a parse of the syndata fixture, their Prometheus text format
+ * and the MBean.
+ */
+public class ParserMetricsTest {
+
+    private static final Pattern HEADER
+            = Pattern.compile("# (HELP|TYPE) ([a-zA-Z_:][a-zA-Z0-9_:]*) (.+)");
+
+    private static final Pattern SAMPLE = Pattern.compile(
+            "([a-zA-Z_:][a-zA-Z0-9_:]*)(\\{(.*)\\})? (-?[0-9]+(\\.[0-9]+)?)");
+
+    private static final Pattern LABEL
+            = Pattern.compile("([a-zA-Z_][a-zA-Z0-9_]*)=\"((?:[^\"\\\\]|\\\\.)*)\"(,|$)");
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     * Both passes read every file, the second one counts the instances and
+     * rows and a file that is not XML fails in both.
+     */
+    @Test
+    public void testCounters() throws Exception {
+        File input = ParserTestSupport.copyFixture(tmp);
+        long bytes = 0;
+        for (File f : input.listFiles()) {
+            bytes += f.length();
+        }
+        Files.write(new File(input, "notes.bin").toPath(), new byte[]{0x13, 0x37, 'x'});
+        bytes += 3;
+
+        for (int threads = 1; threads <= 2; threads++) {
+            HuaweiCfgSynParser parser = ParserTestSupport.newParser(input, tmp.newFolder());
+            parser.setThreads(threads);
+            parser.parse();
+
+            ParserMetrics metrics = parser.getMetrics();
+            assertEquals(2 * bytes, metrics.getBytesRead());
+            assertEquals(4, metrics.getFilesScanned());
+            assertEquals(3, metrics.getFilesCompleted());
+            assertEquals(1, metrics.getFilesFailed());
+
+            Map<String, Long> expected = new TreeMap<String, Long>();
+            expected.put("CELL", 16L);
+            expected.put("NE", 3L);
+            expected.put("TRX", 2L);
+            assertEquals(expected, metrics.getMOInstances());
+            assertEquals(expected, metrics.getRowsWritten());
+            assertEquals(21, metrics.getMOInstanceCount());
+            assertEquals(21, metrics.getRowsWrittenCount());
+
+            assertEquals(0, metrics.getWriteQueueDepth());
+            assertEquals(0, metrics.getOpenWriters());
+            assertNull(metrics.getCurrentFile());
+            assertEquals("EXTRACTING_DONE", metrics.getStage());
+        }
+    }
+
+    @Test
+    public void testPrometheusFormat() throws Exception {
+        File input = ParserTestSupport.copyFixture(tmp);
+        File output = tmp.newFolder();
+        File file = new File(tmp.newFolder(), "metrics.prom");
+        HuaweiCfgSynParser parser = ParserTestSupport.newParser(input, output);
+        parser.setMetricsFile(file.getPath(), 1);
+        parser.parse();
+
+        String text = read(file);
+        assertEquals(parser.getMetrics().toPrometheus(), text);
+        assertEquals(1, file.getParentFile().list().length);
+
+        Map<String, String> samples = parse(text);
+        assertEquals(String.valueOf(parser.getMetrics().getBytesRead()),
+                samples.get("huaweicfgsyn_bytes_read_total"));
+        assertEquals("3", samples.get("huaweicfgsyn_files_completed_total"));
+        assertEquals("0", samples.get("huaweicfgsyn_files_failed_total"));
+        assertEquals("16", samples.get("huaweicfgsyn_mo_instances_total{mo=CELL}"));
+        assertEquals("2", samples.get("huaweicfgsyn_rows_written_total{mo=TRX}"));
+        assertEquals("1", samples.get(
+                "huaweicfgsyn_current_file_info{file=,stage=EXTRACTING_DONE}"));
+        assertTrue(samples.get("huaweicfgsyn_parse_seconds_total").matches("[0-9]+\\.[0-9]{3}"));
+    }
+
+    @Test
+    public void testLabelsEscaped() throws Exception {
+        ParserMetrics metrics = new ParserMetrics();
+        metrics.addMOInstance("A\"B");
+        metrics.setCurrentFile("C:\\in\\x\n.xml");
+
+        Map<String, String> samples = parse(metrics.toPrometheus());
+        assertEquals("1", samples.get("huaweicfgsyn_mo_instances_total{mo=A\"B}"));
+        assertEquals("1", samples.get(
+                "huaweicfgsyn_current_file_info{file=C:\\in\\x\n.xml,stage=EXTRACTING_PARAMETERS}"));
+    }
+
+    /**
+     * The export file is replaced while the counters change, so a reader
+     * never sees a partial file and no temporary files are left behind.
+     */
+    @Test
+    public void testFileReplacedAtomically() throws Exception {
+        final ParserMetrics metrics = new ParserMetrics();
+        for (int i = 0; i < 200; i++) {
+            metrics.addMOInstance("MO" + i);
+        }
+        File directory = tmp.newFolder();
+        File file = new File(directory, "metrics.prom");
+
+        Thread updater = new Thread() {
+            @Override
+            public void run() {
+                while (!isInterrupted()) {
+                    metrics.addBytesRead(1);
+                    metrics.addMOInstance("CELL");
+                }
+            }
+        };
+        updater.start();
+        metrics.startFileExport(file, 1);
+        try {
+            int reads = 0;
+            long end = System.currentTimeMillis() + 1500;
+            while (System.currentTimeMillis() < end) {
+                if (file.exists()) {
+                    parse(read(file));
+                    reads++;
+                }
+            }
+            assertTrue(reads > 0);
+        } finally {
+            updater.interrupt();
+            updater.join();
+            metrics.stopFileExport();
+        }
+
+        assertEquals(metrics.toPrometheus(), read(file));
+        assertEquals(1, directory.list().length);
+    }
+
+    /**
+     * The bean of the last registered parser is published and a parser
+     * whose bean was replaced leaves it registered.
+     */
+    @Test
+    public void testMBeanAcrossParsers() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(ParserMetrics.OBJECT_NAME);
+
+        HuaweiCfgSynParser first = new HuaweiCfgSynParser();
+        HuaweiCfgSynParser second = new HuaweiCfgSynParser();
+        first.getMetrics().addBytesRead(1);
+        second.getMetrics().addBytesRead(2);
+
+        first.getMetrics().registerMBean();
+        assertEquals(1L, server.getAttribute(name, "BytesRead"));
+        first.getMetrics().addBytesRead(10);
+        assertEquals(11L, server.getAttribute(name, "BytesRead"));
+        assertEquals("EXTRACTING_PARAMETERS", server.getAttribute(name, "Stage"));
+
+        second.getMetrics().registerMBean();
+        assertEquals(2L, server.getAttribute(name, "BytesRead"));
+
+        first.getMetrics().unregisterMBean();
+        assertTrue(server.isRegistered(name));
+        assertEquals(2L, server.getAttribute(name, "BytesRead"));
+
+        second.getMetrics().unregisterMBean();
+        assertFalse(server.isRegistered(name));
+        second.getMetrics().unregisterMBean();
+
+        first.getMetrics().registerMBean();
+        assertEquals(11L, server.getAttribute(name, "BytesRead"));
+        first.getMetrics().unregisterMBean();
+        assertFalse(server.isRegistered(name));
+    }
+
+    /**
+     * Check the text format line by line: every sample follows the HELP and
+     * TYPE lines of its metric, counters end in _total and label values are
+     * escaped.
+     *
+     * @return Map Sample values by name and unescaped labels
+     */
+    private static Map<String, String> parse(String text) {
+        assertTrue(text.endsWith("\n"));
+        Map<String, String> samples = new LinkedHashMap<String, String>();
+        Map<String, String> types = new LinkedHashMap<String, String>();
+        Set<String> helped = new HashSet<String>();
+        for (String line : text.substring(0, text.length() - 1).split("\n", -1)) {
+            Matcher m = HEADER.matcher(line);
+            if (m.matches()) {
+                String metric = m.group(2);
+                assertTrue(line, metric.startsWith("huaweicfgsyn_"));
+                if (m.group(1).equals("HELP")) {
+                    assertTrue(line, helped.add(metric));
+                } else {
+                    assertTrue(line, helped.contains(metric));
+                    assertFalse(line, types.containsKey(metric));
+                    assertTrue(line, m.group(3).equals("counter") || m.group(3).equals("gauge"));
+                    assertEquals(line, m.group(3).equals("counter"), metric.endsWith("_total"));
+                    types.put(metric, m.group(3));
+                }
+                continue;
+            }
+
+            m = SAMPLE.matcher(line);
+            if (!m.matches()) {
+                fail("Not a sample: " + line);
+            }
+            String metric = m.group(1);
+            assertTrue(line, types.containsKey(metric));
+            assertEquals(line, metric, lastKey(types));
+
+            StringBuilder key = new StringBuilder(metric);
+            if (m.group(3) != null) {
+                key.append('{');
+                Matcher label = LABEL.matcher(m.group(3));
+                int end = 0;
+                while (label.find() && label.start() == end) {
+                    key.append(end == 0 ? "" : ",").append(label.group(1)).append('=')
+                            .append(unescape(label.group(2)));
+                    end = label.end();
+                }
+                assertEquals(line, m.group(3).length(), end);
+                key.append('}');
+            }
+            assertNull(line, samples.put(key.toString(), m.group(4)));
+        }
+        assertEquals(types.keySet(), helped);
+        return samples;
+    }
+
+    private static String lastKey(Map<String, String> map) {
+        String last = null;
+        for (String key : map.keySet()) {
+            last = key;
+        }
+        return last;
+    }
+
+    private static String unescape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                c = value.charAt(++i);
+                sb.append(c == 'n' ? '\n' : c);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String read(File f) throws Exception {
+        return new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,80 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.xml.stream.XMLStreamException;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Runs the parser on the syndata fixture and reads back the csv files.
+ */
+final class ParserTestSupport {
+
+    private ParserTestSupport() {
+    }
+
+    /**
+     * Copy the syndata fixture to a new folder.
+     *
+     * @param tmp
+     * @return File Input directory
+     */
+    static File copyFixture(TemporaryFolder tmp) throws IOException {
+        File source;
+        try {
+            source = new File(ParserTestSupport.class.getResource("/syndata").toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+        File input = tmp.newFolder();
+        for (File f : source.listFiles()) {
+            Files.copy(f.toPath(), new File(input, f.getName()).toPath());
+        }
+        return input;
+    }
+
+    /**
+     * Create a parser writing the csv files of a data source to a new
+     * folder.
+     */
+    static HuaweiCfgSynParser newParser(File input, File output) {
+        HuaweiCfgSynParser parser = new HuaweiCfgSynParser();
+        parser.setDataSource(input.getPath());
+        parser.setOutputDirectory(output.getPath());
+        return parser;
+    }
+
+    /**
+     * Parse a data source with the default two pass run.
+     *
+     * @return Map Content of each csv file
+     */
+    static Map<String, String> parseDefault(File input, TemporaryFolder tmp)
+            throws IOException, XMLStreamException {
+        File output = tmp.newFolder();
+        newParser(input, output).parse();
+        return readOutput(output);
+    }
+
+    /**
+     * Read the csv files of an output directory, leaving out the hidden
+     * files the parser keeps there.
+     *
+     * @return Map Content of each file by name
+     */
+    static Map<String, String> readOutput(File output) throws IOException {
+        Map<String, String> files = new TreeMap<String, String>();
+        for (File f : output.listFiles()) {
+            if (f.isFile() && !f.getName().startsWith(".")) {
+                files.put(f.getName(), new String(Files.readAllBytes(f.toPath()),
+                        StandardCharsets.ISO_8859_1));
+            }
+        }
+        return files;
+    }
+}
@@ -0,0 +1,112 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Progress lines of the passes over a 10 MB input, on a clock the test
+ * moves.
+ */
+public class ProgressReporterTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private ParserMetrics metrics;
+
+    private ProgressReporter reporter;
+
+    private long now;
+
+    private List<String> lines;
+
+    @Before
+    public void setUp() {
+        metrics = new ParserMetrics();
+        lines = new ArrayList<String>();
+        now = 1000;
+        reporter = new ProgressReporter(metrics, 3600) {
+            @Override
+            long nanoTime() {
+                return now;
+            }
+
+            @Override
+            void report(String line) {
+                lines.add(line);
+            }
+        };
+        reporter.setTotalBytes(10 * MB);
+    }
+
+    @After
+    public void tearDown() {
+        reporter.close();
+    }
+
+    /**
+     * The first pass is at most half of the run and the ETA counts the
+     * second pass.
+     */
+    @Test
+    public void testTwoPasses() {
+        assertEquals("Not parsing", reporter.getProgress());
+
+        reporter.startPhase("extracting parameters", 1, 2);
+        read(5 * MB / 2, ParserStates.EXTRACTING_PARAMETERS, 5);
+        assertEquals("Pass 1 of 2, extracting parameters: 25.0% of 10.0 MB, 12.5% overall, "
+                + "1 files, 512.0 KB/s, 0.2 files/s, ETA 0:00:35", reporter.getProgress());
+
+        read(15 * MB / 2, ParserStates.EXTRACTING_PARAMETERS, 15);
+        assertEquals("Pass 1 of 2, extracting parameters: 99.9% of 10.0 MB, 50.0% overall, "
+                + "2 files, 512.0 KB/s, 0.1 files/s, ETA 0:00:20", reporter.getProgress());
+        reporter.endPhase();
+        assertEquals("Pass 1 of 2, extracting parameters done: 2 files, 10.0 MB in 0:00:20, "
+                + "512.0 KB/s, 0.1 files/s", lines.get(0));
+        assertEquals("Not parsing", reporter.getProgress());
+
+        reporter.startPhase("extracting values", 2, 2);
+        read(5 * MB, ParserStates.EXTRACTING_VALUES, 5);
+        assertEquals("Pass 2 of 2, extracting values: 50.0% of 10.0 MB, 75.0% overall, "
+                + "1 files, 1.0 MB/s, 0.2 files/s, ETA 0:00:05", reporter.getProgress());
+
+        //The estimate was short
+        read(6 * MB, ParserStates.EXTRACTING_VALUES, 5);
+        assertEquals("Pass 2 of 2, extracting values: 99.9% of 10.0 MB, 99.9% overall, "
+                + "2 files, 1.1 MB/s, 0.2 files/s, ETA 0:00:00", reporter.getProgress());
+        reporter.endPhase();
+        assertEquals("Pass 2 of 2, extracting values done: 2 files, 11.0 MB in 0:00:10, "
+                + "1.1 MB/s, 0.2 files/s", lines.get(1));
+        assertEquals(2, lines.size());
+    }
+
+    @Test
+    public void testOnePass() {
+        reporter.startPhase("extracting parameters and values", 1, 1);
+        read(2 * MB, ParserStates.EXTRACTING_PARAMETERS_AND_VALUES, 4);
+        reporter.addSkipped(MB);
+        assertEquals("Pass 1 of 1, extracting parameters and values: 30.0% of 10.0 MB, "
+                + "2 files, 768.0 KB/s, 0.5 files/s, ETA 0:00:09", reporter.getProgress());
+    }
+
+    @Test
+    public void testUnknownTotal() {
+        reporter.setTotalBytes(-1);
+        reporter.startPhase("extracting values", 2, 2);
+        read(3 * MB, ParserStates.EXTRACTING_VALUES, 3);
+        assertEquals("Pass 2 of 2, extracting values: 3.0 MB, 1 files, 1.0 MB/s, 0.3 files/s",
+                reporter.getProgress());
+    }
+
+    /**
+     * Read a document of the given size in the given number of seconds.
+     */
+    private void read(long bytes, int parserState, int seconds) {
+        metrics.addBytesRead(bytes);
+        metrics.addFile(parserState, false);
+        now += seconds * 1000000000L;
+    }
+}
@@ -0,0 +1,289 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Schema cache files, input summaries and extending a cached schema.
+ */
+public class SchemaCacheTest {
+
+    private static final String HEAD = "<spec:BACKUPCFG xmlns:spec=\"http://www.huawei.com/specs/huawei_wl_bulkcm_xml_baseline_syn_1.0.0\""
+            + " xmlns=\"http://www.huawei.com/specs/bsc6000_nrm_forSyn_collapse_1.0.0\">\n"
+            + "\t<spec:fileHeader fileFormatVersion=\"1.1.0\" nenrmversion=\"V1\" neversion=\"BTS3900\""
+            + " syntype=\"synall\" synlabel=\"L\" producttype=\"X\"/>\n";
+
+    private static final String FOOTER = "\t<spec:fileFooter label=\"LBL\" ExportResult=\"Success\""
+            + " dateTime=\"2090-11-02T08:00:00\">\n\t</spec:fileFooter>\n</spec:BACKUPCFG>\n";
+
+    private static final String CORPUS_KEY = "BTS3900 V100R011C10SPC262_V100R011C10";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testSchemaRoundTrip() throws Exception {
+        Map<String, ColumnRegistry> schema = new LinkedHashMap<String, ColumnRegistry>();
+        schema.put("CELL", registry("CELLID", "NAME", "NAME"));
+        schema.put("NE", registry());
+        schema.put("TRX", registry("TRXID"));
+
+        StringWriter sw = new StringWriter();
+        BufferedWriter bw = new BufferedWriter(sw);
+        SchemaCache.writeSchema(bw, schema);
+        bw.close();
+
+        Map<String, ColumnRegistry> read = new LinkedHashMap<String, ColumnRegistry>();
+        SchemaCache.readSchema(new BufferedReader(new StringReader(sw.toString())), read);
+
+        assertEquals(Arrays.asList("CELL", "NE", "TRX"), Arrays.asList(read.keySet().toArray()));
+        for (Map.Entry<String, ColumnRegistry> me : schema.entrySet()) {
+            ColumnRegistry columns = read.get(me.getKey());
+            assertEquals(me.getKey(), me.getValue().size(), columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                assertEquals(me.getValue().get(i), columns.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        SchemaCache cache = new SchemaCache(new File(tmp.getRoot(), "cache"));
+        assertNull(cache.load("BTS3900 V1_R1"));
+
+        Map<String, ColumnRegistry> schema = new LinkedHashMap<String, ColumnRegistry>();
+        schema.put("CELL", registry("CELLID", "NAME"));
+        cache.save("BTS3900 V1_R1", schema);
+
+        Map<String, ColumnRegistry> loaded = cache.load("BTS3900 V1_R1");
+        assertEquals(2, loaded.get("CELL").size());
+        assertEquals("NAME", loaded.get("CELL").get(1));
+    }
+
+    @Test
+    public void testSummarizeFileAsStream() throws Exception {
+        File input = ParserTestSupport.copyFixture(tmp);
+        for (File f : input.listFiles()) {
+            SchemaCache.Summary expected = SchemaCache.summarize(
+                    new ByteArrayInputStream(Files.readAllBytes(f.toPath())));
+            SchemaCache.Summary summary = SchemaCache.summarize(f.toPath());
+
+            assertNotNull(f.getName(), summary.key);
+            assertEquals(f.getName(), expected.key, summary.key);
+            assertEquals(f.getName(), expected.dateTime, summary.dateTime);
+        }
+    }
+
+    @Test
+    public void testSummarizeFooterBeforeLongTail() throws Exception {
+        StringBuilder tail = new StringBuilder();
+        for (int i = 0; i < 300 * 1024; i++) {
+            tail.append(i % 80 == 0 ? '\n' : ' ');
+        }
+        File f = write("tail.xml", StandardCharsets.UTF_8, "BTS3900 V1", "", tail.toString());
+
+        SchemaCache.Summary summary = SchemaCache.summarize(f.toPath());
+        assertEquals("BTS3900 V1_R1", summary.key);
+        assertEquals("2090-11-02T08:00:00", summary.dateTime);
+    }
+
+    @Test
+    public void testSummarizeDeclaredEncoding() throws Exception {
+        File f = write("latin.xml", StandardCharsets.ISO_8859_1, "BTS3900 V\u00e9", "", "");
+
+        assertEquals("BTS3900 V\u00e9_R1", SchemaCache.summarize(f.toPath()).key);
+        assertEquals("BTS3900 V\u00e9_R1", SchemaCache.summarize(
+                new ByteArrayInputStream(Files.readAllBytes(f.toPath()))).key);
+    }
+
+    @Test
+    public void testExtendCachedSchema() throws Exception {
+        assertExtendsCachedSchema(1, "ne1.xml", "ne2.xml", "ne4.xml", "ne3.xml", "ne5.xml");
+    }
+
+    @Test
+    public void testExtendCachedSchemaOnThreads() throws Exception {
+        assertExtendsCachedSchema(2, "ne1.xml", "ne2.xml", "ne4.xml", "ne3.xml", "ne5.xml");
+    }
+
+    /**
+     * The parameter missing from the cache is found before the cached ones.
+     */
+    @Test
+    public void testExtendCachedSchemaFromFirstFile() throws Exception {
+        assertExtendsCachedSchema(1, "ne4.xml", "ne1.xml", "ne2.xml", "ne3.xml", "ne5.xml");
+    }
+
+    @Test
+    public void testExtendCachedSchemaFromFirstFileOnThreads() throws Exception {
+        assertExtendsCachedSchema(2, "ne4.xml", "ne1.xml", "ne2.xml", "ne3.xml", "ne5.xml");
+    }
+
+    /**
+     * Parse with a cache missing a parameter and an MO of ne4.xml, which are
+     * added in the value pass. The csv files have the columns in the order
+     * of a run without the cache, in which the parameter of ne4.xml comes
+     * before the one of ne5.xml, and so has the schema saved to the cache.
+     */
+    private void assertExtendsCachedSchema(int threads, String... names) throws Exception {
+        File input = ParserTestSupport.copyFixture(tmp);
+        String cells = "\t\t<class>\n\t\t\t<CELL>\n\t\t\t\t<attributes>\n"
+                + "\t\t\t\t\t<CELLID>7</CELLID>\n\t\t\t\t\t<NEW>n</NEW>\n"
+                + "\t\t\t\t\t<NAME>seven</NAME>\n"
+                + "\t\t\t\t</attributes>\n\t\t\t</CELL>\n\t\t</class>\n"
+                + "\t\t<class>\n\t\t\t<TRX>\n\t\t\t\t<attributes>\n"
+                + "\t\t\t\t\t<TRXID>1</TRXID>\n"
+                + "\t\t\t\t</attributes>\n\t\t\t</TRX>\n\t\t</class>\n";
+        File extra = write("ne4.xml", StandardCharsets.UTF_8, "BTS3900 V1", cells, "");
+        Files.move(extra.toPath(), new File(input, extra.getName()).toPath());
+        String late = "\t\t<class>\n\t\t\t<CELL>\n\t\t\t\t<attributes>\n"
+                + "\t\t\t\t\t<LATE>l</LATE>\n\t\t\t\t\t<CELLID>8</CELLID>\n"
+                + "\t\t\t\t</attributes>\n\t\t\t</CELL>\n\t\t</class>\n";
+        extra = write("ne5.xml", StandardCharsets.UTF_8, "BTS3900 V1", late, "");
+        Files.move(extra.toPath(), new File(input, extra.getName()).toPath());
+
+        File list = writeList(input, names);
+        File output = tmp.newFolder();
+        newParser(input, output, list, null, threads).parse();
+        Map<String, String> expected = ParserTestSupport.readOutput(output);
+        assertTrue(expected.get("CELL.csv").startsWith(
+                "FILENAME,DATETIME,NODENAME,SYNCDATAFUNCTIONTYPE,SYNCDATAID,"
+                + "SYNCDATAPRODUCTVERSION,SYNCDATANERMVERSION,SYNCDATAOBJID,CELLID,"));
+
+        //Cache the schema of the fixture and ne5.xml without ne4.xml
+        File cacheDirectory = tmp.newFolder();
+        newParser(input, tmp.newFolder(), writeList(input, "ne1.xml", "ne2.xml", "ne5.xml"),
+                cacheDirectory, 1).parse();
+        Map<String, ColumnRegistry> cached = new SchemaCache(cacheDirectory).load("BTS3900 V1_R1");
+        assertNull(cached.get("TRX"));
+        assertTrue(cached.get("CELL").indexOf("NEW") < 0);
+
+        output = tmp.newFolder();
+        newParser(input, output, list, cacheDirectory, threads).parse();
+
+        assertEquals(expected, ParserTestSupport.readOutput(output));
+        for (String name : output.list()) {
+            assertFalse(name, name.endsWith(".spill") || name.endsWith(".tmp"));
+        }
+
+        //The missing parameter and MO are saved to the cache
+        cached = new SchemaCache(cacheDirectory).load("BTS3900 V1_R1");
+        assertNotNull(cached.get("TRX"));
+        assertTrue(cached.get("CELL").indexOf("NEW") < cached.get("CELL").indexOf("LATE"));
+
+        //A run on the extended cache writes the same files
+        output = tmp.newFolder();
+        newParser(input, output, list, cacheDirectory, threads).parse();
+        assertEquals(expected, ParserTestSupport.readOutput(output));
+    }
+
+    @Test
+    public void testExtendCachedSchemaOfVariedCorpus() throws Exception {
+        assertExtendsCachedSchemaOfVariedCorpus(1);
+    }
+
+    @Test
+    public void testExtendCachedSchemaOfVariedCorpusOnThreads() throws Exception {
+        assertExtendsCachedSchemaOfVariedCorpus(3);
+    }
+
+    /**
+     * Cache the schema of a corpus with two nodes per file and parse one
+     * with six, whose later nodes and sparse instances add parameters all
+     * through the files.
+     */
+    private void assertExtendsCachedSchemaOfVariedCorpus(int threads) throws Exception {
+        File input = tmp.newFolder();
+        newCorpusGenerator(6).generate(input, 4, false);
+        File list = writeList(input, input.list());
+
+        File output = tmp.newFolder();
+        newParser(input, output, list, null, threads).parse();
+        Map<String, String> expected = ParserTestSupport.readOutput(output);
+
+        File small = tmp.newFolder();
+        newCorpusGenerator(2).generate(small, 1, false);
+        File cacheDirectory = tmp.newFolder();
+        newParser(small, tmp.newFolder(), writeList(small, small.list()), cacheDirectory, 1).parse();
+        int cachedColumns = new SchemaCache(cacheDirectory).load(CORPUS_KEY).get("CELL").size();
+
+        output = tmp.newFolder();
+        newParser(input, output, list, cacheDirectory, threads).parse();
+        assertEquals(expected, ParserTestSupport.readOutput(output));
+        assertTrue(new SchemaCache(cacheDirectory).load(CORPUS_KEY).get("CELL").size()
+                > cachedColumns);
+    }
+
+    private static CorpusGenerator newCorpusGenerator(int nodes) {
+        CorpusGenerator generator = new CorpusGenerator();
+        generator.setNodes(nodes);
+        generator.setMOClasses(3);
+        generator.setParameters(6);
+        generator.setInstances(3);
+        generator.setVariation(30);
+        generator.setSeed(nodes);
+        return generator;
+    }
+
+    private File writeList(File input, String... names) throws Exception {
+        List<String> paths = new ArrayList<String>();
+        for (String name : names) {
+            paths.add(new File(input, name).getPath());
+        }
+        File list = tmp.newFile();
+        Files.write(list.toPath(), paths, StandardCharsets.UTF_8);
+        return list;
+    }
+
+    private HuaweiCfgSynParser newParser(File input, File output, File list,
+            File cacheDirectory, int threads) throws Exception {
+        InputFinder finder = new InputFinder();
+        finder.setInputList(list.getPath());
+        HuaweiCfgSynParser parser = ParserTestSupport.newParser(input, output);
+        parser.setInputFinder(finder);
+        parser.setThreads(threads);
+        if (cacheDirectory != null) {
+            parser.setSchemaCache(cacheDirectory.getPath());
+        }
+        return parser;
+    }
+
+    private File write(String name, Charset charset, String productVersion,
+            String classes, String tail) throws Exception {
+        String document = "<?xml version=\"1.0\" encoding=\"" + charset.name() + "\"?>\n" + HEAD
+                + "\t<spec:syndata FunctionType=\"NODE\" Id=\"NE=SITE4\" productversion=\""
+                + productVersion + "\" nermversion=\"R1\" objId=\"-1\">\n"
+                + classes + "\t</spec:syndata>\n" + FOOTER + tail;
+        File f = new File(tmp.getRoot(), name);
+        Files.write(f.toPath(), document.getBytes(charset));
+        return f;
+    }
+
+    private static ColumnRegistry registry(String... names) {
+        ColumnRegistry columns = new ColumnRegistry();
+        for (String name : names) {
+            columns.add(name);
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,82 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Single pass parsing writes the same csv files as the two pass run.
+ */
+public class SinglePassTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File input;
+
+    private Map<String, String> expected;
+
+    @Before
+    public void setUp() throws Exception {
+        input = ParserTestSupport.copyFixture(tmp);
+        expected = ParserTestSupport.parseDefault(input, tmp);
+    }
+
+    @Test
+    public void testSinglePass() throws Exception {
+        File output = tmp.newFolder();
+        HuaweiCfgSynParser parser = ParserTestSupport.newParser(input, output);
+        parser.setSinglePass(true);
+        parser.parse();
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, ParserTestSupport.readOutput(output));
+    }
+
+    @Test
+    public void testSinglePassWithOneOpenFile() throws Exception {
+        File output = tmp.newFolder();
+        HuaweiCfgSynParser parser = ParserTestSupport.newParser(input, output);
+        parser.setSinglePass(true);
+        parser.setMaxOpenFiles(1);
+        parser.parse();
+
+        assertEquals(expected, ParserTestSupport.readOutput(output));
+
+        //The spill files are removed once drained
+        for (String name : output.list()) {
+            assertFalse(name, name.endsWith(".spill"));
+        }
+    }
+
+    @Test
+    public void testMOSpillFilePadsRows() throws Exception {
+        File directory = tmp.newFolder();
+        File csv = new File(directory, "CELL.csv");
+        MOSpillFile spillFile = new MOSpillFile(directory, "CELL");
+        spillFile.open();
+        spillFile.append("a.xml", 1, "SITE1,1");
+        spillFile.close();
+        spillFile.open();
+        spillFile.append("b.xml", 2, "SITE2,2,x");
+
+        CSVWriter writer = new CSVWriter(csv);
+        try {
+            assertEquals(2, spillFile.drainTo(writer, "T", 3));
+        } finally {
+            writer.close();
+        }
+
+        String nl = System.lineSeparator();
+        assertEquals("a.xml,T,SITE1,1,," + nl + "b.xml,T,SITE2,2,x," + nl,
+                new String(Files.readAllBytes(csv.toPath()), StandardCharsets.UTF_8));
+        assertEquals(1, directory.list().length);
+    }
+}
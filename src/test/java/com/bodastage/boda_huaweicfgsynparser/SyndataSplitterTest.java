@@ -0,0 +1,202 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Split points of large documents and the rows of their parts.
+ */
+public class SyndataSplitterTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File input;
+
+    /**
+     * ne2.xml of the fixture, with two syndata and fourteen classes in the
+     * first.
+     */
+    private File file;
+
+    private String document;
+
+    @Before
+    public void setUp() throws Exception {
+        input = ParserTestSupport.copyFixture(tmp);
+        file = new File(input, "ne2.xml");
+        document = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testSmallFileNotSplit() throws Exception {
+        ParserInput whole = forFile(file);
+        SyndataSplitter splitter = new SyndataSplitter(
+                Collections.singletonList(whole).iterator(), file.length() / 2 + 1);
+        assertSame(whole, splitter.next());
+        assertFalse(splitter.hasNext());
+    }
+
+    /**
+     * A part ends right before the first class tag at or after its size.
+     */
+    @Test
+    public void testSplitAtClassTag() throws Exception {
+        int third = nthIndexOf(document, "<class>", 3);
+
+        List<ParserInput> parts = split(file, third);
+        assertEquals(document.substring(0, third) + "</spec:syndata></spec:BACKUPCFG>",
+                read(parts.get(0)));
+
+        parts = split(file, third + 1);
+        assertEquals(nthIndexOf(document, "<class>", 4)
+                + "</spec:syndata></spec:BACKUPCFG>".length(), read(parts.get(0)).length());
+    }
+
+    @Test
+    public void testPartsAreDocuments() throws Exception {
+        long partSize = 200;
+        List<ParserInput> parts = split(file, partSize);
+        assertTrue(parts.size() > 2);
+
+        String prolog = document.substring(0, document.indexOf("<spec:syndata"));
+        for (int i = 0; i < parts.size(); i++) {
+            ParserInput part = parts.get(i);
+            String text = read(part);
+            assertEquals(part.getSize(), text.getBytes(StandardCharsets.UTF_8).length);
+            assertTrue(text.startsWith(prolog));
+
+            //Every part but the first opens its range with a class tag
+            if (i > 0) {
+                String range = text.substring(text.indexOf('>', prolog.length()) + 1);
+                assertTrue(range.startsWith("<class>"));
+            }
+            if (i < parts.size() - 1) {
+                assertTrue(part.getSize() >= partSize);
+                assertTrue(text.endsWith("</spec:syndata></spec:BACKUPCFG>"));
+            } else {
+                assertTrue(text.contains("<spec:fileFooter"));
+            }
+        }
+
+        //The rows of the parts in order are the rows of the file, with the
+        //attributes of their syndata. The parameters missing from a row
+        //depend on what was seen before it, so only values are compared.
+        List<String> rows = new ArrayList<String>();
+        for (ParserInput part : parts) {
+            rows.addAll(parseRecords(part));
+        }
+        assertEquals(parseRecords(forFile(file)), rows);
+    }
+
+    @Test
+    public void testDoctypeNotSplit() throws Exception {
+        File doctype = tmp.newFile("doctype.xml");
+        Files.write(doctype.toPath(), document.replaceFirst("\n", "\n<!DOCTYPE x>\n")
+                .getBytes(StandardCharsets.UTF_8));
+        ParserInput whole = forFile(doctype);
+        assertEquals(Collections.singletonList(whole), split(whole, 200));
+    }
+
+    @Test
+    public void testUtf16NotSplit() throws Exception {
+        File utf16 = tmp.newFile("utf16.xml");
+        Files.write(utf16.toPath(), document.replace("UTF-8", "UTF-16")
+                .getBytes(StandardCharsets.UTF_16));
+        ParserInput whole = forFile(utf16);
+        assertEquals(Collections.singletonList(whole), split(whole, 200));
+    }
+
+    /**
+     * Parsing the fixture in parts on a worker pool writes the same csv files
+     * as the default run.
+     */
+    @Test
+    public void testSplitParseOutput() throws Exception {
+        Map<String, String> expected = ParserTestSupport.parseDefault(input, tmp);
+
+        File output = tmp.newFolder();
+        HuaweiCfgSynParser parser = ParserTestSupport.newParser(input, output);
+        parser.setThreads(2);
+        parser.setSplitSize(200);
+        parser.parse();
+        assertEquals(expected, ParserTestSupport.readOutput(output));
+    }
+
+    private List<ParserInput> split(File f, long partSize) {
+        return split(forFile(f), partSize);
+    }
+
+    private static List<ParserInput> split(ParserInput whole, long partSize) {
+        SyndataSplitter splitter = new SyndataSplitter(
+                Collections.singletonList(whole).iterator(), partSize);
+        List<ParserInput> parts = new ArrayList<ParserInput>();
+        while (splitter.hasNext()) {
+            parts.add(splitter.next());
+        }
+        return parts;
+    }
+
+    private static List<String> parseRecords(ParserInput part) throws Exception {
+        final List<String> records = new ArrayList<String>();
+        HuaweiCfgSynParser parser = new HuaweiCfgSynParser();
+        parser.setParserState(ParserStates.EXTRACTING_PARAMETERS_AND_VALUES);
+        parser.setRecordHandler(new MORecordHandler() {
+            @Override
+            public void onRecord(MORecord record) {
+                StringBuilder sb = new StringBuilder(record.getSyndataId())
+                        .append(',').append(record.getMO());
+                for (int i = 0; i < record.getParameterCount(); i++) {
+                    if (record.getValue(i) != null) {
+                        sb.append(',').append(record.getParameterName(i))
+                                .append('=').append(record.getValue(i));
+                    }
+                }
+                records.add(sb.toString());
+            }
+        });
+        parser.parseInput(part);
+        return records;
+    }
+
+    private static String read(ParserInput part) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputStream in = part.open();
+        try {
+            byte[] buf = new byte[4096];
+            for (int n; (n = in.read(buf)) > 0;) {
+                bytes.write(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static int nthIndexOf(String s, String part, int n) {
+        int index = -1;
+        for (int i = 0; i < n; i++) {
+            index = s.indexOf(part, index + 1);
+        }
+        return index;
+    }
+
+    private static ParserInput forFile(File f) {
+        return ParserInput.forFile(f.toPath(), ParserInput.PLAIN);
+    }
+}
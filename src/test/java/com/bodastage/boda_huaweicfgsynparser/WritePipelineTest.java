@@ -0,0 +1,67 @@
+package com.bodastage.boda_huaweicfgsynparser;
+
+import java.io.File;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Writing the csv files on writer threads gives the same files as writing
+ * them on the parsing thread.
+ */
+public class WritePipelineTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File input;
+
+    private Map<String, String> expected;
+
+    @Before
+    public void setUp() throws Exception {
+        input = ParserTestSupport.copyFixture(tmp);
+        expected = ParserTestSupport.parseDefault(input, tmp);
+    }
+
+    private Map<String, String> parse(int writeThreads, int threads, int maxOpenFiles)
+            throws Exception {
+        File output = tmp.newFolder();
+        HuaweiCfgSynParser parser = ParserTestSupport.newParser(input, output);
+        parser.setWriteThreads(writeThreads);
+        parser.setWriteQueueSize(1);
+        parser.setThreads(threads);
+        if (maxOpenFiles > 0) {
+            parser.setMaxOpenFiles(maxOpenFiles);
+        }
+        parser.parse();
+        return ParserTestSupport.readOutput(output);
+    }
+
+    @Test
+    public void testOneWriteThread() throws Exception {
+        assertEquals(expected, parse(1, 1, 0));
+    }
+
+    @Test
+    public void testTwoWriteThreads() throws Exception {
+        assertEquals(expected, parse(2, 1, 0));
+    }
+
+    @Test
+    public void testWriteThreadsWithWorkers() throws Exception {
+        assertEquals(expected, parse(2, 3, 0));
+    }
+
+    /**
+     * Files closed to stay under the limit are reopened for appending while
+     * their rows may still be queued.
+     */
+    @Test
+    public void testWriteThreadsWithOneOpenFile() throws Exception {
+        assertEquals(expected, parse(2, 1, 1));
+    }
+}